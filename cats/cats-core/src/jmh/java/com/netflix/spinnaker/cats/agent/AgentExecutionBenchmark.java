@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import com.netflix.spinnaker.cats.provider.ProviderRegistry;
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
+import com.netflix.spinnaker.cats.thread.TaskScope;
+import com.netflix.spinnaker.cats.thread.VirtualThreads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a caching cycle of I/O bound agents on the cached thread pools the schedulers use by default against
+ * virtual threads.
+ * <p>
+ * Each agent fans out callsPerAgent blocking calls (as an agent would per region or per page) and a cycle completes
+ * when every agent has. The time of a cycle is reported by JMH; the peak number of live threads and the heap used
+ * are printed after each iteration (add -prof gc for allocation rates).
+ * <p>
+ * Run with ./gradlew :cats:cats-core:jmh -Pjmh.include=AgentExecutionBenchmark, on Java 21 or later to compare
+ * against virtual threads (on older runtimes the virtual modes fall back to platform threads).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class AgentExecutionBenchmark {
+
+    @Param({"cachedPool", "virtualThreads", "partitionedVirtualThreads"})
+    public String mode;
+
+    @Param({"1000"})
+    public int agents;
+
+    @Param({"10"})
+    public int callsPerAgent;
+
+    @Param({"20"})
+    public long callMillis;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private AgentExecutionPool pool;
+    private ExecutorService fanOutExecutor;
+    private List<Agent> agentList;
+
+    @Setup
+    public void setup() {
+        switch (mode) {
+            case "cachedPool":
+                pool = new ExecutorAgentExecutionPool(Executors.newCachedThreadPool(new NamedThreadFactory("AgentExecution")));
+                fanOutExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("FanOut"));
+                break;
+            case "virtualThreads":
+                pool = new ExecutorAgentExecutionPool(VirtualThreads.newThreadPerTaskExecutor("AgentExecution"));
+                break;
+            case "partitionedVirtualThreads":
+                pool = new PartitionedAgentExecutionPool(agents, PartitionedAgentExecutionPool.UNLIMITED, Collections.emptyMap(),
+                    PartitionedAgentExecutionPool.UNLIMITED, null, VirtualThreads.newThreadFactory("AgentExecution"));
+                break;
+            default:
+                throw new IllegalArgumentException(mode);
+        }
+
+        agentList = new ArrayList<>(agents);
+        for (int i = 0; i < agents; i++) {
+            agentList.add(new BenchmarkAgent("provider" + (i % 5), "agent" + i));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakThreads() {
+        THREADS.resetPeakThreadCount();
+    }
+
+    /**
+     * JMH reports the time of a cycle; the threads and heap it needed are printed with each iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void reportResources() {
+        final Runtime runtime = Runtime.getRuntime();
+        System.out.println(String.format("peak threads: %d, heap used: %d MB",
+            THREADS.getPeakThreadCount(), (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool instanceof PartitionedAgentExecutionPool) {
+            ((PartitionedAgentExecutionPool) pool).shutdown();
+        }
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public void cycle() throws InterruptedException {
+        final CountDownLatch completed = new CountDownLatch(agents);
+        for (Agent agent : agentList) {
+            pool.submit(agent, () -> {
+                try {
+                    fanOut();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    completed.countDown();
+                }
+            });
+        }
+        completed.await();
+    }
+
+    private void fanOut() throws Exception {
+        try (TaskScope<Long> scope = fanOutExecutor == null ? TaskScope.open() : TaskScope.open(fanOutExecutor)) {
+            for (int i = 0; i < callsPerAgent; i++) {
+                scope.fork(blockingCall());
+            }
+            scope.join();
+        }
+    }
+
+    private Callable<Long> blockingCall() {
+        return () -> {
+            Thread.sleep(callMillis);
+            return callMillis;
+        };
+    }
+
+    private static class BenchmarkAgent implements Agent {
+        private final String providerName;
+        private final String agentType;
+
+        BenchmarkAgent(String providerName, String agentType) {
+            this.providerName = providerName;
+            this.agentType = agentType;
+        }
+
+        @Override
+        public String getAgentType() {
+            return agentType;
+        }
+
+        @Override
+        public String getProviderName() {
+            return providerName;
+        }
+
+        @Override
+        public AgentExecution getAgentExecution(ProviderRegistry providerRegistry) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * An AgentExecutionPool that limits how many agents run at once by the health of the systems agents depend on, and
+ * starts the agents of higher priority lanes first.
+ * <p>
+ * The limit is adjusted once per window (additive increase, multiplicative decrease). It is cut by decreaseFactor
+ * when, over the window:
+ * <ul>
+ * <li>the average latency of a redis round trip (reported with recordRedisLatency) exceeded redisLatencyThresholdMs,</li>
+ * <li>the fraction of failed executions exceeded errorRateThreshold, or</li>
+ * <li>an execution failed because its cloud provider throttled it,</li>
+ * </ul>
+ * and grows by one otherwise, between minConcurrency and maxConcurrency.
+ * <p>
+ * Executions are reported through the ExecutionInstrumentation interface, so the controller must also be registered
+ * as an instrumentation of the agents it admits. Agents that are admitted are run on the delegate pool. The limit is
+ * only applied to schedulers that ask which agents are admissible, such as the clustered schedulers, or a
+ * DefaultAgentScheduler that skips inadmissible agents.
+ */
+public class AdmissionController implements AgentExecutionPool, ExecutionInstrumentation {
+    static final int MIN_EXECUTIONS_FOR_ERROR_RATE = 5;
+
+    public enum Lane {
+        HIGH, NORMAL, LOW
+    }
+
+    public interface AdmissionMetrics {
+        /**
+         * Reported once per window.
+         *
+         * @param reason why the limit changed: redisLatency, errorRate, throttling or healthy
+         */
+        default void adjusted(int limit, int running, String reason) {
+            //noop
+        }
+
+        default void shed(Agent agent, Lane lane) {
+            //noop
+        }
+
+        class NOOP implements AdmissionMetrics {
+        }
+    }
+
+    private final AgentExecutionPool delegate;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final double decreaseFactor;
+    private final long redisLatencyThresholdNanos;
+    private final double errorRateThreshold;
+    private final long windowNanos;
+    private final Pattern highPriorityAgents;
+    private final Pattern lowPriorityAgents;
+    private final AdmissionMetrics admissionMetrics;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final Object windowLock = new Object();
+    private volatile double limit;
+    private volatile long windowStart = System.nanoTime();
+    private long redisRoundTrips;
+    private long redisLatencyNanos;
+    private int executions;
+    private int failures;
+    private int throttled;
+
+    /**
+     * @param highPriorityAgents the agent types that are started before other agents, or null
+     * @param lowPriorityAgents  the agent types that are started after other agents, or null
+     */
+    public AdmissionController(AgentExecutionPool delegate,
+                               int minConcurrency,
+                               int maxConcurrency,
+                               double decreaseFactor,
+                               long redisLatencyThresholdMs,
+                               double errorRateThreshold,
+                               long windowMs,
+                               String highPriorityAgents,
+                               String lowPriorityAgents,
+                               AdmissionMetrics admissionMetrics) {
+        if (minConcurrency < 1 || maxConcurrency < minConcurrency) {
+            throw new IllegalArgumentException("minConcurrency must be positive and at most maxConcurrency");
+        }
+        this.delegate = delegate;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.decreaseFactor = decreaseFactor;
+        this.redisLatencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(redisLatencyThresholdMs);
+        this.errorRateThreshold = errorRateThreshold;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.highPriorityAgents = highPriorityAgents == null ? null : Pattern.compile(highPriorityAgents);
+        this.lowPriorityAgents = lowPriorityAgents == null ? null : Pattern.compile(lowPriorityAgents);
+        this.admissionMetrics = admissionMetrics == null ? new AdmissionMetrics.NOOP() : admissionMetrics;
+        this.limit = maxConcurrency;
+    }
+
+    @Override
+    public void submit(Agent agent, Runnable execution) {
+        running.incrementAndGet();
+        try {
+            delegate.submit(agent, () -> {
+                try {
+                    execution.run();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            running.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the agents the delegate would start, highest lane first, up to the current limit
+     */
+    @Override
+    public List<Agent> admissible(List<Agent> agents) {
+        maybeAdjust();
+        final List<Agent> admissible = delegate.admissible(prioritize(agents));
+        final int available = Math.max(getLimit() - running.get(), 0);
+        if (admissible.size() <= available) {
+            return admissible;
+        }
+        for (Agent agent : admissible.subList(available, admissible.size())) {
+            admissionMetrics.shed(agent, getLane(agent));
+        }
+        return new ArrayList<>(admissible.subList(0, available));
+    }
+
+    @Override
+    public List<Agent> prioritize(List<Agent> agents) {
+        final List<Agent> prioritized = new ArrayList<>(agents);
+        prioritized.sort(Comparator.comparing(this::getLane));
+        return prioritized;
+    }
+
+    public Lane getLane(Agent agent) {
+        if (highPriorityAgents != null && highPriorityAgents.matcher(agent.getAgentType()).matches()) {
+            return Lane.HIGH;
+        }
+        if (lowPriorityAgents != null && lowPriorityAgents.matcher(agent.getAgentType()).matches()) {
+            return Lane.LOW;
+        }
+        return Lane.NORMAL;
+    }
+
+    /**
+     * @return the most agents that may run at once
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    /**
+     * Records a batch of redis round trips, for example a merge reported to RedisCache.CacheMetrics.
+     */
+    public void recordRedisLatency(int roundTrips, long durationNanos) {
+        synchronized (windowLock) {
+            redisRoundTrips += roundTrips;
+            redisLatencyNanos += durationNanos;
+        }
+    }
+
+    @Override
+    public void executionStarted(Agent agent) {
+        // executions are counted when they finish
+    }
+
+    @Override
+    public void executionCompleted(Agent agent, long elapsedMs) {
+        synchronized (windowLock) {
+            executions++;
+        }
+    }
+
+    @Override
+    public void executionDiscarded(Agent agent, long elapsedMs) {
+        synchronized (windowLock) {
+            executions++;
+        }
+    }
+
+    @Override
+    public void executionFailed(Agent agent, Throwable cause) {
+        synchronized (windowLock) {
+            executions++;
+            failures++;
+            if (isThrottlingError(cause)) {
+                throttled++;
+            }
+        }
+    }
+
+    private void maybeAdjust() {
+        if (System.nanoTime() - windowStart >= windowNanos) {
+            adjust(true);
+        }
+    }
+
+    /**
+     * Ends the current window, adjusting the limit by what was recorded during it.
+     */
+    void adjust() {
+        adjust(false);
+    }
+
+    /**
+     * @param ifElapsed only end the window if it has elapsed, since another thread may have ended it first
+     */
+    private void adjust(boolean ifElapsed) {
+        final String reason;
+        synchronized (windowLock) {
+            if (ifElapsed && System.nanoTime() - windowStart < windowNanos) {
+                return;
+            }
+            if (throttled > 0) {
+                reason = "throttling";
+            } else if (redisRoundTrips > 0 && redisLatencyNanos / redisRoundTrips > redisLatencyThresholdNanos) {
+                reason = "redisLatency";
+            } else if (executions >= MIN_EXECUTIONS_FOR_ERROR_RATE && (double) failures / executions > errorRateThreshold) {
+                reason = "errorRate";
+            } else {
+                reason = "healthy";
+            }
+
+            if (reason.equals("healthy")) {
+                limit = Math.min(limit + 1, maxConcurrency);
+            } else {
+                limit = Math.max(limit * decreaseFactor, minConcurrency);
+            }
+            windowStart = System.nanoTime();
+            redisRoundTrips = 0;
+            redisLatencyNanos = 0;
+            executions = 0;
+            failures = 0;
+            throttled = 0;
+        }
+        admissionMetrics.adjusted(getLimit(), running.get(), reason);
+    }
+
+    /**
+     * @return whether cause, or any of its causes, looks like a cloud provider rejecting a request for its rate
+     */
+    static boolean isThrottlingError(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            final String description = t.getClass().getSimpleName() + " " + t.getMessage();
+            if (description.contains("Throttl")
+                || description.contains("RequestLimitExceeded")
+                || description.contains("TooManyRequests")
+                || description.contains("Too Many Requests")
+                || description.contains("Rate exceeded")
+                || description.contains("Status Code: 429")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.cats.agent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs agent executions on behalf of an AgentScheduler.
+ * <p>
+ * A scheduler that holds a lock while an agent runs should only acquire the locks of agents that
+ * are admissible, so that agents don't wait in the pool while they hold a lock another node could use.
+ */
+public interface AgentExecutionPool {
+    /**
+     * Runs execution (an execution of agent) when capacity is available.
+     */
+    void submit(Agent agent, Runnable execution);
+
+    /**
+     * @return the agents, in order, that would start without waiting if they were all submitted now
+     */
+    List<Agent> admissible(List<Agent> agents);
+
+    /**
+     * @return whether agent would start without waiting if it was submitted now
+     */
+    default boolean hasCapacity(Agent agent) {
+        return !admissible(Collections.singletonList(agent)).isEmpty();
+    }
+
+    /**
+     * @return agents in the order a scheduler should try to start them
+     */
+    default List<Agent> prioritize(List<Agent> agents) {
+        return agents;
+    }
+}
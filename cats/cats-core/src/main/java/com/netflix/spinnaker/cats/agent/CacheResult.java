@@ -40,4 +40,18 @@ public interface CacheResult {
    * @return The ids of items that should be explicitly evicted.
    */
   default Map<String, Collection<String>> getEvictions() { return Collections.emptyMap(); }
+
+  /**
+   * A complete result replaces the data previously cached by the CachingAgent for its authoritative types:
+   * items it no longer contains are evicted.
+   *
+   * An incomplete (delta) result only contains the items that changed since the previous result, with the
+   * items that were deleted in getEvictions. Nothing is evicted by absence and the membership recorded by the
+   * last complete result is not rewritten, so applying a delta costs O(changes). Agents that compute deltas
+   * should still return a complete result periodically (and on their first run), which acts as the watermark
+   * the following deltas are applied to.
+   *
+   * @return false if this result only contains changes
+   */
+  default boolean isComplete() { return true; }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Stores the results of caching agents on a pool of writer threads, so that the thread (and agent execution slot)
+ * that ran loadData is free to run the next agent while the result is written.
+ * <p>
+ * Stores wait in a bounded queue. When the queue is full the store runs on the submitting thread instead, so an
+ * agent execution slot is only freed early while the writers are keeping up and the backlog of loaded results
+ * never exceeds the queue capacity.
+ * <p>
+ * A scheduler must keep its claim on an agent until the result is stored: each store checks that the claim is still
+ * valid right before it writes, and the result is discarded if another node may have run the agent since.
+ */
+public class CacheResultStoreStage {
+    public interface StoreMetrics {
+        default void queued(Agent agent, int queueDepth) {
+            //noop
+        }
+
+        /**
+         * @param queuedMs how long the result waited for a writer
+         */
+        default void stored(Agent agent, long queuedMs) {
+            //noop
+        }
+
+        /**
+         * The agent's claim was no longer valid when its result was about to be written.
+         */
+        default void discarded(Agent agent) {
+            //noop
+        }
+
+        /**
+         * The queue was full and the result was stored on the thread that loaded it.
+         */
+        default void backpressure(Agent agent) {
+            //noop
+        }
+
+        class NOOP implements StoreMetrics {
+        }
+    }
+
+    private final ThreadPoolExecutor writers;
+    private final StoreMetrics storeMetrics;
+
+    /**
+     * @param writerThreads the number of threads writing results
+     * @param queueCapacity the number of loaded results that may wait for a writer
+     */
+    public CacheResultStoreStage(int writerThreads, int queueCapacity, StoreMetrics storeMetrics) {
+        this.storeMetrics = storeMetrics == null ? new StoreMetrics.NOOP() : storeMetrics;
+        this.writers = new ThreadPoolExecutor(writerThreads, writerThreads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new NamedThreadFactory(CacheResultStoreStage.class.getSimpleName()), new RunOnSubmitter());
+    }
+
+    /**
+     * Runs store on a writer thread, or on the calling thread if the queue is full.
+     *
+     * @param stillValid checked right before the store runs; if false the store is skipped
+     * @param completed  run after the store (or after it was skipped), on the same thread
+     */
+    public void submit(Agent agent, BooleanSupplier stillValid, Runnable store, Runnable completed) {
+        submit(agent, stillValid, store, () -> {}, completed);
+    }
+
+    /**
+     * @param discarded run instead of store if stillValid is false, before completed
+     */
+    public void submit(Agent agent, BooleanSupplier stillValid, Runnable store, Runnable discarded, Runnable completed) {
+        writers.execute(new PendingStore(agent, stillValid, store, discarded, completed));
+        final int queueDepth = writers.getQueue().size();
+        if (queueDepth > 0) {
+            storeMetrics.queued(agent, queueDepth);
+        }
+    }
+
+    /**
+     * Runs an execution of agent, loading its result on the calling thread and storing it on this stage.
+     * <p>
+     * Executions that are not a CachingAgent.CacheExecution are run entirely on the calling thread.
+     *
+     * @param stillValid checked right before the result is stored; if false the result is discarded, and the execution
+     *                   is reported to executionInstrumentation as discarded rather than completed
+     * @param completed  run once the execution is over, after its result is stored or discarded or after it failed
+     */
+    public void execute(Agent agent, AgentExecution execution, ExecutionInstrumentation executionInstrumentation, BooleanSupplier stillValid, Runnable completed) {
+        final ExecutionTelemetry telemetry = ExecutionTelemetry.begin();
+        final long startTime = System.nanoTime();
+        final CacheResult result;
+        try {
+            executionInstrumentation.executionStarted(agent);
+            if (!(execution instanceof CachingAgent.CacheExecution)) {
+                execution.executeAgent(agent);
+                executionInstrumentation.executionCompleted(agent, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                executionInstrumentation.executionTelemetry(agent, telemetry);
+                completed.run();
+                return;
+            }
+            result = ((CachingAgent.CacheExecution) execution).executeAgentWithoutStore(agent);
+        } catch (Throwable cause) {
+            executionInstrumentation.executionFailed(agent, cause);
+            completed.run();
+            return;
+        } finally {
+            telemetry.end();
+        }
+
+        submit(agent, stillValid, () -> {
+            telemetry.attach();
+            try {
+                ((CachingAgent.CacheExecution) execution).storeAgentResult(agent, result);
+                executionInstrumentation.executionCompleted(agent, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                executionInstrumentation.executionTelemetry(agent, telemetry);
+            } catch (Throwable cause) {
+                executionInstrumentation.executionFailed(agent, cause);
+            } finally {
+                telemetry.end();
+            }
+        }, () -> executionInstrumentation.executionDiscarded(agent, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)),
+            completed);
+    }
+
+    /**
+     * @return the number of loaded results waiting for a writer
+     */
+    public int getQueueDepth() {
+        return writers.getQueue().size();
+    }
+
+    /**
+     * Stops accepting results; results already queued are still stored.
+     */
+    public void shutdown() {
+        writers.shutdown();
+    }
+
+    private class PendingStore implements Runnable {
+        private final Agent agent;
+        private final BooleanSupplier stillValid;
+        private final Runnable store;
+        private final Runnable discarded;
+        private final Runnable completed;
+        private final long queuedNanos = System.nanoTime();
+
+        PendingStore(Agent agent, BooleanSupplier stillValid, Runnable store, Runnable discarded, Runnable completed) {
+            this.agent = agent;
+            this.stillValid = stillValid;
+            this.store = store;
+            this.discarded = discarded;
+            this.completed = completed;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (stillValid.getAsBoolean()) {
+                    storeMetrics.stored(agent, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedNanos));
+                    store.run();
+                } else {
+                    storeMetrics.discarded(agent);
+                    discarded.run();
+                }
+            } finally {
+                completed.run();
+            }
+        }
+    }
+
+    private class RunOnSubmitter implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (runnable instanceof PendingStore) {
+                storeMetrics.backpressure(((PendingStore) runnable).agent);
+            }
+            runnable.run();
+        }
+    }
+}
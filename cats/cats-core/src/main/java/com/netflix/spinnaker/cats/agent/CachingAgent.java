@@ -40,7 +40,8 @@ public interface CachingAgent extends Agent {
    * Triggered by an AgentScheduler to tell this Agent to load its data.
    *
    * @param providerCache Cache associated with this Agent's provider
-   * @return the complete set of data for this Agent.
+   * @return the complete set of data for this Agent, or the changes since its previous result if the result
+   * is not complete (see {@link CacheResult#isComplete()}).
    */
   CacheResult loadData(ProviderCache providerCache);
 
@@ -63,7 +64,13 @@ public interface CachingAgent extends Agent {
       CachingAgent cachingAgent = (CachingAgent) agent;
       ProviderCache cache = providerRegistry.getProviderCache(cachingAgent.getProviderName());
 
-      return cachingAgent.loadData(cache);
+      long startTime = System.nanoTime();
+      CacheResult result = cachingAgent.loadData(cache);
+      ExecutionTelemetry telemetry = ExecutionTelemetry.current();
+      if (telemetry != null) {
+        telemetry.recordLoad(result, System.nanoTime() - startTime);
+      }
+      return result;
     }
 
     public void storeAgentResult(Agent agent, CacheResult result) {
@@ -77,7 +84,12 @@ public interface CachingAgent extends Agent {
         }
       }
 
+      long startTime = System.nanoTime();
       cache.putCacheResult(agent.getAgentType(), authoritative, result);
+      ExecutionTelemetry telemetry = ExecutionTelemetry.current();
+      if (telemetry != null) {
+        telemetry.recordPhase(ExecutionTelemetry.Phase.STORE, System.nanoTime() - startTime);
+      }
     }
   }
 }
@@ -45,4 +45,18 @@ public class CompositeExecutionInstrumentation implements ExecutionInstrumentati
             exec.executionFailed(agent, cause);
         }
     }
+
+    @Override
+    public void executionDiscarded(Agent agent, long elapsedMs) {
+        for (ExecutionInstrumentation exec : instrumentations) {
+            exec.executionDiscarded(agent, elapsedMs);
+        }
+    }
+
+    @Override
+    public void executionTelemetry(Agent agent, ExecutionTelemetry telemetry) {
+        for (ExecutionInstrumentation exec : instrumentations) {
+            exec.executionTelemetry(agent, telemetry);
+        }
+    }
 }
@@ -25,6 +25,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * An AgentScheduler that executes on a fixed interval.
@@ -34,6 +35,11 @@ import java.util.concurrent.TimeUnit;
  *
  * An exception thrown while reporting executionFailure will abort the schedule for
  * the CachingAgent.
+ *
+ * Agents run on the scheduling threads unless an AgentExecutionPool is supplied. An agent
+ * whose previous execution is still queued or running in the pool is skipped, as is, when
+ * skipInadmissible is set, an agent the pool can't start right away (such as an agent over the
+ * limit of an AdmissionController).
  */
 public class DefaultAgentScheduler extends CatsModuleAware implements AgentScheduler<AgentLock> {
     private static final long DEFAULT_INTERVAL = 60000;
@@ -41,6 +47,8 @@ public class DefaultAgentScheduler extends CatsModuleAware implements AgentSched
     private final ScheduledExecutorService scheduledExecutorService;
     private final long interval;
     private final TimeUnit timeUnit;
+    private final AgentExecutionPool agentExecutionPool;
+    private final boolean skipInadmissible;
     private final Map<Agent, Future> agentFutures = new ConcurrentHashMap<Agent, Future>();
 
     public DefaultAgentScheduler() {
@@ -55,16 +63,38 @@ public class DefaultAgentScheduler extends CatsModuleAware implements AgentSched
         this(Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), new NamedThreadFactory(DefaultAgentScheduler.class.getSimpleName())), interval, unit);
     }
 
+    public DefaultAgentScheduler(long interval, TimeUnit unit, AgentExecutionPool agentExecutionPool) {
+        this(interval, unit, agentExecutionPool, false);
+    }
+
+    /**
+     * @param skipInadmissible whether an agent the pool can't start right away waits for its next interval, rather
+     *                         than in the pool
+     */
+    public DefaultAgentScheduler(long interval, TimeUnit unit, AgentExecutionPool agentExecutionPool, boolean skipInadmissible) {
+        this(Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), new NamedThreadFactory(DefaultAgentScheduler.class.getSimpleName())), interval, unit, agentExecutionPool, skipInadmissible);
+    }
+
     public DefaultAgentScheduler(ScheduledExecutorService scheduledExecutorService, long interval, TimeUnit timeUnit) {
+        this(scheduledExecutorService, interval, timeUnit, new ExecutorAgentExecutionPool(Runnable::run));
+    }
+
+    public DefaultAgentScheduler(ScheduledExecutorService scheduledExecutorService, long interval, TimeUnit timeUnit, AgentExecutionPool agentExecutionPool) {
+        this(scheduledExecutorService, interval, timeUnit, agentExecutionPool, false);
+    }
+
+    public DefaultAgentScheduler(ScheduledExecutorService scheduledExecutorService, long interval, TimeUnit timeUnit, AgentExecutionPool agentExecutionPool, boolean skipInadmissible) {
         this.scheduledExecutorService = scheduledExecutorService;
         this.interval = interval;
         this.timeUnit = timeUnit;
+        this.agentExecutionPool = agentExecutionPool;
+        this.skipInadmissible = skipInadmissible;
     }
 
     @Override
     public void schedule(Agent agent, AgentExecution agentExecution, ExecutionInstrumentation executionInstrumentation) {
         Future agentFuture =
-          scheduledExecutorService.scheduleAtFixedRate(new AgentExecutionRunnable(agent, agentExecution, executionInstrumentation), 0, interval, timeUnit);
+          scheduledExecutorService.scheduleAtFixedRate(new AgentExecutionRunnable(agent, agentExecution, executionInstrumentation, agentExecutionPool, skipInadmissible), 0, interval, timeUnit);
 
         agentFutures.put(agent, agentFuture);
     }
@@ -96,21 +126,45 @@ public class DefaultAgentScheduler extends CatsModuleAware implements AgentSched
         private final Agent agent;
         private final AgentExecution execution;
         private final ExecutionInstrumentation executionInstrumentation;
+        private final AgentExecutionPool agentExecutionPool;
+        private final boolean skipInadmissible;
+        private final AtomicBoolean inFlight = new AtomicBoolean();
 
-        public AgentExecutionRunnable(Agent agent, AgentExecution execution, ExecutionInstrumentation executionInstrumentation) {
+        public AgentExecutionRunnable(Agent agent, AgentExecution execution, ExecutionInstrumentation executionInstrumentation, AgentExecutionPool agentExecutionPool, boolean skipInadmissible) {
             this.agent = agent;
             this.execution = execution;
             this.executionInstrumentation = executionInstrumentation;
+            this.agentExecutionPool = agentExecutionPool;
+            this.skipInadmissible = skipInadmissible;
         }
 
         public void run() {
+            if (inFlight.get() || (skipInadmissible && !agentExecutionPool.hasCapacity(agent))) {
+                return;
+            }
+            if (inFlight.compareAndSet(false, true)) {
+                agentExecutionPool.submit(agent, () -> {
+                    try {
+                        execute();
+                    } finally {
+                        inFlight.set(false);
+                    }
+                });
+            }
+        }
+
+        private void execute() {
+            final ExecutionTelemetry telemetry = ExecutionTelemetry.begin();
             try {
                 executionInstrumentation.executionStarted(agent);
                 long startTime = System.nanoTime();
                 execution.executeAgent(agent);
                 executionInstrumentation.executionCompleted(agent, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                executionInstrumentation.executionTelemetry(agent, telemetry);
             } catch (Throwable t) {
                 executionInstrumentation.executionFailed(agent, t);
+            } finally {
+                telemetry.end();
             }
         }
     }
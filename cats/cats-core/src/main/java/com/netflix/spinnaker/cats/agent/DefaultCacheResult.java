@@ -28,13 +28,23 @@ import java.util.Map;
 public class DefaultCacheResult implements CacheResult {
     private final Map<String, Collection<CacheData>> cacheResults;
     private final Map<String, Collection<String>> evictions;
+    private final boolean complete;
 
     public DefaultCacheResult(Map<String, Collection<CacheData>> cacheResults) {
       this(cacheResults, Collections.emptyMap());
     }
     public DefaultCacheResult(Map<String, Collection<CacheData>> cacheResults, Map<String, Collection<String>> evictions) {
+        this(cacheResults, evictions, true);
+    }
+
+    /**
+     * @param complete false if cacheResults and evictions only contain the changes since the previous result
+     * @see CacheResult#isComplete()
+     */
+    public DefaultCacheResult(Map<String, Collection<CacheData>> cacheResults, Map<String, Collection<String>> evictions, boolean complete) {
         this.cacheResults = cacheResults;
         this.evictions = evictions;
+        this.complete = complete;
     }
 
     @Override
@@ -46,4 +56,9 @@ public class DefaultCacheResult implements CacheResult {
     public Map<String, Collection<String>> getEvictions() {
         return evictions;
     }
+
+    @Override
+    public boolean isComplete() {
+        return complete;
+    }
 }
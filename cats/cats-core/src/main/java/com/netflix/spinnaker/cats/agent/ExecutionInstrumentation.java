@@ -22,4 +22,19 @@ public interface ExecutionInstrumentation {
     void executionCompleted(Agent agent, long elapsedMs);
 
     void executionFailed(Agent agent, Throwable cause);
+
+    /**
+     * Reports an execution of agent that loaded its result, but whose result was not stored because the agent's claim
+     * was lost in the meantime. It is reported instead of executionCompleted.
+     */
+    default void executionDiscarded(Agent agent, long elapsedMs) {
+        //noop
+    }
+
+    /**
+     * Reports the phase timings and result sizes of an execution of agent once its result is stored.
+     */
+    default void executionTelemetry(Agent agent, ExecutionTelemetry telemetry) {
+        //noop
+    }
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import com.netflix.spinnaker.cats.cache.CacheData;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The phase timings and result sizes of a single execution of an agent.
+ * <p>
+ * A scheduler begins the telemetry of an execution on the thread that runs it and reports it to
+ * ExecutionInstrumentation.executionTelemetry once the result is stored. CacheExecution records the LOAD and
+ * STORE phases and the items of each type in the result; caches record the keys written and skipped and the bytes
+ * serialized while the result is stored. An agent that wraps its cloud calls in fetch() also has its LOAD phase split
+ * into FETCH and TRANSFORM.
+ * <p>
+ * Recording outside of an execution (for example an on-demand update) is ignored.
+ */
+public class ExecutionTelemetry {
+    public enum Phase {
+        /**
+         * the whole of CachingAgent.loadData
+         */
+        LOAD,
+
+        /**
+         * the part of LOAD spent in fetch()
+         */
+        FETCH,
+
+        /**
+         * the part of LOAD not spent in fetch()
+         */
+        TRANSFORM,
+
+        /**
+         * storing the result in the provider cache
+         */
+        STORE
+    }
+
+    private static final ThreadLocal<ExecutionTelemetry> CURRENT = new ThreadLocal<>();
+
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+    private final Map<String, TypeTelemetry> types = new TreeMap<>();
+    private int fetches = 0;
+
+    /**
+     * Begins the telemetry of an execution on the current thread.
+     */
+    public static ExecutionTelemetry begin() {
+        final ExecutionTelemetry telemetry = new ExecutionTelemetry();
+        CURRENT.set(telemetry);
+        return telemetry;
+    }
+
+    /**
+     * @return the telemetry of the execution on the current thread, or null if there is none
+     */
+    public static ExecutionTelemetry current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs a call to a cloud provider, recording its time in the FETCH phase of the current execution.
+     * <p>
+     * The telemetry of an execution is bound to its thread, so calls forked to other threads (see TaskScope) are
+     * recorded by wrapping the fork and join as a whole.
+     */
+    public static <T> T fetch(Callable<T> call) throws Exception {
+        final long startTime = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            final ExecutionTelemetry telemetry = current();
+            if (telemetry != null) {
+                telemetry.recordFetch(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /**
+     * Records the keys of type a cache wrote, and the keys it skipped because they were unchanged.
+     */
+    public static void recordStore(String type, int keysWritten, int keysSkipped) {
+        final ExecutionTelemetry telemetry = current();
+        if (telemetry != null) {
+            telemetry.update(type, stats -> {
+                stats.keysWritten += keysWritten;
+                stats.keysSkipped += keysSkipped;
+            });
+        }
+    }
+
+    /**
+     * Records the bytes a cache serialized for type.
+     */
+    public static void recordSerialized(String type, long bytes) {
+        final ExecutionTelemetry telemetry = current();
+        if (telemetry != null) {
+            telemetry.update(type, stats -> stats.bytes += bytes);
+        }
+    }
+
+    /**
+     * Continues this telemetry on the current thread, for an execution whose result is stored on another thread.
+     */
+    public void attach() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Ends the telemetry of the execution on the current thread.
+     */
+    public void end() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    public synchronized void recordPhase(Phase phase, long elapsedNanos) {
+        phaseNanos.merge(phase, elapsedNanos, Long::sum);
+    }
+
+    /**
+     * Records the LOAD phase and the items of each type in result, splitting LOAD into FETCH and TRANSFORM if
+     * the agent recorded any fetches.
+     */
+    public synchronized void recordLoad(CacheResult result, long elapsedNanos) {
+        recordPhase(Phase.LOAD, elapsedNanos);
+        if (fetches > 0) {
+            recordPhase(Phase.TRANSFORM, Math.max(elapsedNanos - phaseNanos.getOrDefault(Phase.FETCH, 0L), 0));
+        }
+        for (Map.Entry<String, Collection<CacheData>> type : result.getCacheResults().entrySet()) {
+            final int items = type.getValue().size();
+            update(type.getKey(), stats -> stats.items += items);
+        }
+    }
+
+    /**
+     * @return the time spent in each phase that was recorded, in milliseconds
+     */
+    public synchronized Map<Phase, Long> getPhaseTimes() {
+        final Map<Phase, Long> phaseTimes = new EnumMap<>(Phase.class);
+        for (Map.Entry<Phase, Long> phase : phaseNanos.entrySet()) {
+            phaseTimes.put(phase.getKey(), TimeUnit.NANOSECONDS.toMillis(phase.getValue()));
+        }
+        return phaseTimes;
+    }
+
+    /**
+     * @return the result sizes and writes of each type, by type
+     */
+    public synchronized Map<String, TypeTelemetry> getTypes() {
+        final Map<String, TypeTelemetry> copy = new TreeMap<>();
+        for (Map.Entry<String, TypeTelemetry> type : types.entrySet()) {
+            copy.put(type.getKey(), type.getValue().copy());
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private synchronized void recordFetch(long elapsedNanos) {
+        fetches++;
+        recordPhase(Phase.FETCH, elapsedNanos);
+    }
+
+    private synchronized void update(String type, Consumer<TypeTelemetry> update) {
+        update.accept(types.computeIfAbsent(type, t -> new TypeTelemetry()));
+    }
+
+    public static class TypeTelemetry {
+        private int items;
+        private long bytes;
+        private int keysWritten;
+        private int keysSkipped;
+
+        /**
+         * @return the items of this type in the result
+         */
+        public int getItems() {
+            return items;
+        }
+
+        /**
+         * @return the bytes the cache serialized for this type, or 0 if it doesn't serialize items
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getKeysWritten() {
+            return keysWritten;
+        }
+
+        /**
+         * @return the keys the cache didn't write because they were unchanged
+         */
+        public int getKeysSkipped() {
+            return keysSkipped;
+        }
+
+        private TypeTelemetry copy() {
+            final TypeTelemetry copy = new TypeTelemetry();
+            copy.items = items;
+            copy.bytes = bytes;
+            copy.keysWritten = keysWritten;
+            copy.keysSkipped = keysSkipped;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.cats.agent;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * An AgentExecutionPool that hands every execution to an Executor, and so admits every agent.
+ */
+public class ExecutorAgentExecutionPool implements AgentExecutionPool {
+    private final Executor executor;
+
+    public ExecutorAgentExecutionPool(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void submit(Agent agent, Runnable execution) {
+        executor.execute(execution);
+    }
+
+    @Override
+    public List<Agent> admissible(List<Agent> agents) {
+        return agents;
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An AgentExecutionPool with a fixed number of threads, shared by partitions of agents with their own concurrency limits.
+ * <p>
+ * Agents are partitioned by provider and, for AccountAware agents, by account. At most providerConcurrency agents of a
+ * provider, and at most accountConcurrency agents of a partition, run at once; the rest wait in their partition's queue.
+ * <p>
+ * Each thread has a home partition. A thread whose home partition has nothing it may run steals the longest waiting
+ * execution of another partition, so threads are never idle while an execution is waiting within its limits, and a
+ * slow provider can only hold as many threads as its limit allows.
+ * <p>
+ * A partition that has had no executions for an hour, for example that of an account that was removed, is dropped.
+ */
+public class PartitionedAgentExecutionPool implements AgentExecutionPool {
+    public static final int UNLIMITED = -1;
+    static final long DEFAULT_PARTITION_IDLE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    public interface PartitionMetrics {
+        default void executionQueued(String partition, int queueDepth) {
+            //noop
+        }
+
+        /**
+         * @param waitMs how long the execution waited in the queue of its partition
+         * @param stolen whether the execution was run by a thread whose home is another partition
+         */
+        default void executionStarted(String partition, long waitMs, boolean stolen) {
+            //noop
+        }
+
+        class NOOP implements PartitionMetrics {
+        }
+    }
+
+    private final int threads;
+    private final int defaultProviderConcurrency;
+    private final Map<String, Integer> providerConcurrency;
+    private final int accountConcurrency;
+    private final PartitionMetrics partitionMetrics;
+    private final long partitionIdleNanos;
+    private final List<Thread> workers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition executionAvailable = lock.newCondition();
+    private final Map<String, Partition> partitions = new LinkedHashMap<>();
+    private final List<Partition> homes = new ArrayList<>();
+    // queued and running executions by provider
+    private final Map<String, Integer> providerLoad = new HashMap<>();
+    private final Map<String, Integer> providerRunning = new HashMap<>();
+    private int load = 0;
+    private long lastIdleSweepNanos = System.nanoTime();
+
+    /**
+     * @param threads                    the number of threads to run agents on
+     * @param defaultProviderConcurrency the most agents of a provider to run at once, or UNLIMITED
+     * @param providerConcurrency        overrides defaultProviderConcurrency, by provider name
+     * @param accountConcurrency         the most agents of a provider and account to run at once, or UNLIMITED
+     */
+    public PartitionedAgentExecutionPool(int threads,
+                                         int defaultProviderConcurrency,
+                                         Map<String, Integer> providerConcurrency,
+                                         int accountConcurrency,
+                                         PartitionMetrics partitionMetrics) {
+        this(threads, defaultProviderConcurrency, providerConcurrency, accountConcurrency, partitionMetrics,
+            new NamedThreadFactory(PartitionedAgentExecutionPool.class.getSimpleName()));
+    }
+
+    /**
+     * @param threadFactory creates the threads agents run on, for example virtual threads from VirtualThreads
+     */
+    public PartitionedAgentExecutionPool(int threads,
+                                         int defaultProviderConcurrency,
+                                         Map<String, Integer> providerConcurrency,
+                                         int accountConcurrency,
+                                         PartitionMetrics partitionMetrics,
+                                         ThreadFactory threadFactory) {
+        this(threads, defaultProviderConcurrency, providerConcurrency, accountConcurrency, partitionMetrics, threadFactory,
+            DEFAULT_PARTITION_IDLE_MILLIS);
+    }
+
+    /**
+     * @param partitionIdleMillis how long a partition may have no queued or running executions before it is dropped
+     */
+    PartitionedAgentExecutionPool(int threads,
+                                  int defaultProviderConcurrency,
+                                  Map<String, Integer> providerConcurrency,
+                                  int accountConcurrency,
+                                  PartitionMetrics partitionMetrics,
+                                  ThreadFactory threadFactory,
+                                  long partitionIdleMillis) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+        this.defaultProviderConcurrency = defaultProviderConcurrency;
+        this.providerConcurrency = providerConcurrency == null ? Collections.emptyMap() : new HashMap<>(providerConcurrency);
+        this.accountConcurrency = accountConcurrency;
+        this.partitionMetrics = partitionMetrics == null ? new PartitionMetrics.NOOP() : partitionMetrics;
+        this.partitionIdleNanos = TimeUnit.MILLISECONDS.toNanos(partitionIdleMillis);
+
+        workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            final Thread worker = threadFactory.newThread(() -> work(index));
+            if (!worker.isDaemon()) {
+                worker.setDaemon(true);
+            }
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    @Override
+    public void submit(Agent agent, Runnable execution) {
+        final String name = partitionName(agent);
+        final int queueDepth;
+        lock.lock();
+        try {
+            dropIdlePartitions();
+            Partition partition = partitions.get(name);
+            if (partition == null) {
+                partition = new Partition(name, agent.getProviderName());
+                partitions.put(name, partition);
+                homes.add(partition);
+            }
+            partition.queue.add(new QueuedExecution(execution, System.nanoTime()));
+            queueDepth = partition.queue.size();
+            partition.load++;
+            providerLoad.merge(partition.provider, 1, Integer::sum);
+            load++;
+            executionAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        partitionMetrics.executionQueued(name, queueDepth);
+    }
+
+    @Override
+    public List<Agent> admissible(List<Agent> agents) {
+        final List<Agent> admissible = new ArrayList<>(agents.size());
+        lock.lock();
+        try {
+            int projectedLoad = load;
+            final Map<String, Integer> projectedPartitionLoad = new HashMap<>();
+            final Map<String, Integer> projectedProviderLoad = new HashMap<>(providerLoad);
+            for (Agent agent : agents) {
+                final String name = partitionName(agent);
+                final Partition partition = partitions.get(name);
+                final int partitionLoad = projectedPartitionLoad.getOrDefault(name, partition == null ? 0 : partition.load);
+                final int currentProviderLoad = projectedProviderLoad.getOrDefault(agent.getProviderName(), 0);
+                if (projectedLoad < threads
+                    && withinLimit(partitionLoad, accountConcurrency)
+                    && withinLimit(currentProviderLoad, getProviderConcurrency(agent.getProviderName()))) {
+                    admissible.add(agent);
+                    projectedLoad++;
+                    projectedPartitionLoad.put(name, partitionLoad + 1);
+                    projectedProviderLoad.put(agent.getProviderName(), currentProviderLoad + 1);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return admissible;
+    }
+
+    /**
+     * @return a snapshot of each partition, by partition name
+     */
+    public Map<String, PartitionStats> getPartitionStats() {
+        final Map<String, PartitionStats> stats = new LinkedHashMap<>();
+        final long now = System.nanoTime();
+        lock.lock();
+        try {
+            for (Partition partition : partitions.values()) {
+                final QueuedExecution oldest = partition.queue.peek();
+                stats.put(partition.name, new PartitionStats(
+                    partition.name,
+                    partition.queue.size(),
+                    partition.running,
+                    partition.completed,
+                    partition.stolen,
+                    partition.started == 0 ? 0 : partition.totalWaitMs / partition.started,
+                    oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(now - oldest.queuedNanos)));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    /**
+     * Stops the threads of this pool; executions that have not started are discarded.
+     */
+    public void shutdown() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void work(int index) {
+        while (!Thread.currentThread().isInterrupted()) {
+            final Partition partition;
+            final QueuedExecution execution;
+            final boolean stolen;
+            lock.lock();
+            try {
+                Partition next;
+                while ((next = nextPartition(index)) == null) {
+                    executionAvailable.await();
+                }
+                partition = next;
+                execution = partition.queue.poll();
+                stolen = partition != homes.get(index % homes.size());
+                partition.running++;
+                partition.started++;
+                providerRunning.merge(partition.provider, 1, Integer::sum);
+                partition.totalWaitMs += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - execution.queuedNanos);
+                if (stolen) {
+                    partition.stolen++;
+                }
+            } catch (InterruptedException interrupted) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                partitionMetrics.executionStarted(partition.name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - execution.queuedNanos), stolen);
+                execution.execution.run();
+            } catch (Throwable ignored) {
+                // executions report their own failures
+            } finally {
+                completed(partition);
+            }
+        }
+    }
+
+    /**
+     * @return the home partition of worker index if it has an execution that may start, otherwise the partition whose
+     * oldest execution that may start has waited the longest, or null if no execution may start
+     */
+    private Partition nextPartition(int index) {
+        if (homes.isEmpty()) {
+            return null;
+        }
+        final Partition home = homes.get(index % homes.size());
+        if (mayStart(home)) {
+            return home;
+        }
+
+        Partition oldest = null;
+        for (Partition partition : homes) {
+            if (mayStart(partition) && (oldest == null || partition.queue.peek().queuedNanos < oldest.queue.peek().queuedNanos)) {
+                oldest = partition;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Drops the partitions that have had no executions for partitionIdleNanos, checking at most once in that time.
+     */
+    private void dropIdlePartitions() {
+        final long now = System.nanoTime();
+        if (now - lastIdleSweepNanos < partitionIdleNanos) {
+            return;
+        }
+        lastIdleSweepNanos = now;
+        final Iterator<Partition> iterator = partitions.values().iterator();
+        while (iterator.hasNext()) {
+            final Partition partition = iterator.next();
+            if (partition.load == 0 && now - partition.idleSinceNanos >= partitionIdleNanos) {
+                iterator.remove();
+                homes.remove(partition);
+            }
+        }
+    }
+
+    private boolean mayStart(Partition partition) {
+        if (partition.queue.isEmpty() || !withinLimit(partition.running, accountConcurrency)) {
+            return false;
+        }
+        return withinLimit(providerRunning.getOrDefault(partition.provider, 0), getProviderConcurrency(partition.provider));
+    }
+
+    private void completed(Partition partition) {
+        lock.lock();
+        try {
+            partition.running--;
+            partition.completed++;
+            partition.load--;
+            if (partition.load == 0) {
+                partition.idleSinceNanos = System.nanoTime();
+            }
+            providerLoad.merge(partition.provider, -1, Integer::sum);
+            providerRunning.merge(partition.provider, -1, Integer::sum);
+            load--;
+            // a limit of this partition's provider may have been lifted for any waiting thread
+            executionAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int getProviderConcurrency(String provider) {
+        return providerConcurrency.getOrDefault(provider, defaultProviderConcurrency);
+    }
+
+    private static boolean withinLimit(int current, int limit) {
+        return limit == UNLIMITED || current < limit;
+    }
+
+    private static String partitionName(Agent agent) {
+        if (agent instanceof AccountAware && ((AccountAware) agent).getAccountName() != null) {
+            return agent.getProviderName() + "/" + ((AccountAware) agent).getAccountName();
+        }
+        return agent.getProviderName();
+    }
+
+    public static class PartitionStats {
+        private final String partition;
+        private final int queueDepth;
+        private final int running;
+        private final long completed;
+        private final long stolen;
+        private final long averageWaitMs;
+        private final long oldestWaitMs;
+
+        PartitionStats(String partition, int queueDepth, int running, long completed, long stolen, long averageWaitMs, long oldestWaitMs) {
+            this.partition = partition;
+            this.queueDepth = queueDepth;
+            this.running = running;
+            this.completed = completed;
+            this.stolen = stolen;
+            this.averageWaitMs = averageWaitMs;
+            this.oldestWaitMs = oldestWaitMs;
+        }
+
+        public String getPartition() {
+            return partition;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        /**
+         * @return the executions of this partition that were run by a thread whose home is another partition
+         */
+        public long getStolen() {
+            return stolen;
+        }
+
+        public long getAverageWaitMs() {
+            return averageWaitMs;
+        }
+
+        /**
+         * @return how long the oldest queued execution has been waiting
+         */
+        public long getOldestWaitMs() {
+            return oldestWaitMs;
+        }
+    }
+
+    private static class Partition {
+        private final String name;
+        private final String provider;
+        private final ArrayDeque<QueuedExecution> queue = new ArrayDeque<>();
+        private int running = 0;
+        // queued and running executions
+        private int load = 0;
+        private long started = 0;
+        private long completed = 0;
+        private long stolen = 0;
+        private long totalWaitMs = 0;
+        private long idleSinceNanos = System.nanoTime();
+
+        Partition(String name, String provider) {
+            this.name = name;
+            this.provider = provider;
+        }
+    }
+
+    private static class QueuedExecution {
+        private final Runnable execution;
+        private final long queuedNanos;
+
+        QueuedExecution(Runnable execution, long queuedNanos) {
+            this.execution = execution;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+}
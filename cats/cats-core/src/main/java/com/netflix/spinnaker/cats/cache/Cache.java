@@ -17,6 +17,7 @@
 package com.netflix.spinnaker.cats.cache;
 
 import java.util.Collection;
+import java.util.stream.Stream;
 
 /**
  * Cache provides view access to data keyed by type and identifier.
@@ -73,4 +74,18 @@ public interface Cache {
      * @return the items matching the type and identifiers
      */
     Collection<CacheData> getAll(String type, String... identifiers);
+
+    /**
+     * Streams all the items for the specified type.
+     *
+     * Implementations should load the items lazily in bounded batches so that
+     * consumers can process very large types without holding every item in memory.
+     *
+     * @param type the type for which to retrieve items
+     * @param cacheFilter the relationship filter to apply, may be null
+     * @return all the items for the type
+     */
+    default Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+        return getAll(type, cacheFilter).stream();
+    }
 }
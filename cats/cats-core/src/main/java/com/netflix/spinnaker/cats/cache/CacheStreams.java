@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Helpers for implementing Cache.streamAll by loading items in batches.
+ */
+public final class CacheStreams {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private CacheStreams() {
+    }
+
+    /**
+     * Lazily loads the items for the identifiers from the cache, batchSize identifiers at a time.
+     */
+    public static Stream<CacheData> batched(Cache cache, String type, Collection<String> identifiers, CacheFilter cacheFilter, int batchSize) {
+        return fromPages(partition(identifiers, batchSize), ids -> cache.getAll(type, ids, cacheFilter));
+    }
+
+    /**
+     * Lazily loads one page of items at a time, only requesting the next page of
+     * identifiers once the items of the previous page have been consumed.
+     */
+    public static Stream<CacheData> fromPages(Iterator<? extends Collection<String>> identifierPages, Function<Collection<String>, Collection<CacheData>> loader) {
+        Stream<? extends Collection<String>> pages = StreamSupport.stream(Spliterators.spliteratorUnknownSize(identifierPages, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return pages.flatMap(page -> page.isEmpty() ? Stream.<CacheData>empty() : loader.apply(page).stream());
+    }
+
+    private static Iterator<Collection<String>> partition(Collection<String> identifiers, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be a positive integer (" + batchSize + ")");
+        }
+        final Iterator<String> source = identifiers.iterator();
+        return new Iterator<Collection<String>>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public Collection<String> next() {
+                List<String> batch = new ArrayList<>(batchSize);
+                while (source.hasNext() && batch.size() < batchSize) {
+                    batch.add(source.next());
+                }
+                return batch;
+            }
+        };
+    }
+}
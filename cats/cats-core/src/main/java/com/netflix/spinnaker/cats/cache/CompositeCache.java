@@ -22,6 +22,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * A cache that provides a unified view of multiples, merging items from each
@@ -70,6 +71,18 @@ public class CompositeCache implements Cache {
         return allItems.values();
     }
 
+    /**
+     * Items of the same id may be present in several of the caches, so the items are read
+     * in batches of identifiers and merged across caches one batch at a time.
+     */
+    @Override
+    public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+        if (caches.size() == 1) {
+            return caches.iterator().next().streamAll(type, cacheFilter);
+        }
+        return CacheStreams.batched(this, type, getIdentifiers(type), cacheFilter, CacheStreams.DEFAULT_BATCH_SIZE);
+    }
+
     @Override
     public Collection<String> getIdentifiers(String type) {
         HashSet<String> identifiers = new HashSet<>();
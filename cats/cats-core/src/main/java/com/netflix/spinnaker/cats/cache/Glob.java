@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
+/**
+ * A redis style glob (supporting *, ?, [...] and \ escapes) compiled to a Pattern, as accepted by
+ * Cache.filterIdentifiers.
+ */
+public class Glob {
+    private static final String TOKENS = "*?[]\\";
+
+    private static enum State {
+        INIT, ESCAPING, CAPTURING, CAPTURING_ESCAPE
+    }
+
+    private final StringTokenizer globTokenizer;
+    private final StringBuilder regex = new StringBuilder();
+    private final StringBuilder capture = new StringBuilder();
+    private final StringBuilder literal = new StringBuilder();
+    private final List<String> literals = new ArrayList<>();
+
+    private State state = State.INIT;
+
+    private final Pattern pattern;
+
+    public Glob(String globString) {
+        globTokenizer = new StringTokenizer(globString, TOKENS, true);
+        toInit();
+        pattern = buildPattern();
+    }
+
+    public Pattern toPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return the runs of literal characters that every string matching the glob contains
+     */
+    public List<String> getLiterals() {
+        return literals;
+    }
+
+    private void endLiteral() {
+        if (literal.length() > 0) {
+            literals.add(literal.toString());
+            literal.setLength(0);
+        }
+    }
+
+    private void toInit() {
+        state = State.INIT;
+        capture.setLength(0);
+    }
+
+    private void toEscaping() {
+        state = State.ESCAPING;
+    }
+
+    private void toCapturing() {
+        state = State.CAPTURING;
+    }
+
+    private void toCapturingEscape() {
+        state = State.CAPTURING_ESCAPE;
+    }
+
+    private void handleDelim(String s) {
+        switch (state) {
+            case ESCAPING:
+                regex.append(Pattern.quote(s));
+                literal.append(s);
+                toInit();
+                break;
+            case CAPTURING_ESCAPE:
+                capture.append(Pattern.quote(s));
+                toCapturing();
+                break;
+            case CAPTURING:
+                if ("\\".equals(s)) {
+                    toCapturingEscape();
+                } else if ("]".equals(s)) {
+                    regex.append("[").append(capture).append("]");
+                    toInit();
+                } else {
+                    capture.append(Pattern.quote(s));
+                    toCapturing();
+                }
+                break;
+            default:
+                switch (s) {
+                    case "\\":
+                        toEscaping();
+                        break;
+                    case "*":
+                        regex.append(".*");
+                        endLiteral();
+                        toInit();
+                        break;
+                    case "?":
+                        regex.append(".");
+                        endLiteral();
+                        toInit();
+                        break;
+                    case "[":
+                        endLiteral();
+                        toCapturing();
+                        break;
+                    case "]":
+                        regex.append(Pattern.quote("]"));
+                        literal.append(s);
+                        toInit();
+                        break;
+                    default:
+                        throw new IllegalStateException("Unhandled delimiter in init state: " + s);
+                }
+        }
+    }
+
+    private void handleStr(String s) {
+        switch (state) {
+            case CAPTURING:
+                capture.append(Pattern.quote(s));
+                toCapturing();
+                break;
+            default:
+                regex.append(Pattern.quote(s));
+                literal.append(s);
+                toInit();
+        }
+    }
+
+    private Pattern buildPattern() {
+        while (globTokenizer.hasMoreTokens()) {
+            String token = globTokenizer.nextToken();
+            if (token.length() == 1 && TOKENS.indexOf(token.charAt(0)) != -1) {
+                handleDelim(token);
+            } else {
+                handleStr(token);
+            }
+        }
+        if (state == State.CAPTURING || state == State.CAPTURING_ESCAPE) {
+            regex.append(Pattern.quote("["));
+            regex.append(capture);
+        }
+        endLiteral();
+        return Pattern.compile(regex.toString());
+    }
+
+}
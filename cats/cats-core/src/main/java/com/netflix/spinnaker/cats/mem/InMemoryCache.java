@@ -19,6 +19,7 @@ package com.netflix.spinnaker.cats.mem;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.CacheFilter;
 import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.cache.Glob;
 import com.netflix.spinnaker.cats.cache.WriteableCache;
 
 import java.util.ArrayList;
@@ -28,18 +29,34 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * A WriteableCache that stores objects in an in-memory map.
+ * <p>
+ * If identifier indexing is enabled the trigrams of each identifier are indexed so that
+ * filterIdentifiers only tests the identifiers sharing a trigram with the literal parts of the glob.
  */
 public class InMemoryCache implements WriteableCache {
+    private static final int TRIGRAM_LENGTH = 3;
+
     private ConcurrentMap<String, ConcurrentMap<String, CacheData>> typeMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, Set<String>>> trigramIndexes = new ConcurrentHashMap<>();
+    private final boolean identifierIndexEnabled;
+
+    public InMemoryCache() {
+        this(false);
+    }
+
+    public InMemoryCache(boolean identifierIndexEnabled) {
+        this.identifierIndexEnabled = identifierIndexEnabled;
+    }
 
     @Override
     public void merge(String type, CacheData cacheData) {
@@ -55,14 +72,16 @@ public class InMemoryCache implements WriteableCache {
 
     @Override
     public void evict(String type, String id) {
-        getTypeMap(type).remove(id);
+        evictAll(type, Arrays.asList(id));
     }
 
     @Override
     public void evictAll(String type, Collection<String> ids) {
         ConcurrentMap<String, CacheData> map = getTypeMap(type);
         for (String id : ids) {
-            map.remove(id);
+            if (map.remove(id) != null && identifierIndexEnabled) {
+                reindex(type, map, id);
+            }
         }
     }
 
@@ -98,6 +117,13 @@ public class InMemoryCache implements WriteableCache {
         return values;
     }
 
+    @Override
+    public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+        return getTypeMap(type).values().stream()
+            .map(data -> wrap(data, cacheFilter))
+            .filter(data -> data != null);
+    }
+
     @Override
     public Collection<CacheData> getAll(String type, Collection<String> identifiers) {
         return getAll(type, identifiers, null);
@@ -126,18 +152,94 @@ public class InMemoryCache implements WriteableCache {
     }
 
     public Collection<String> filterIdentifiers(String type, String glob) {
-        final Pattern pattern = new Glob(glob).toPattern();
+        final Glob parsed = new Glob(glob);
+        final Pattern pattern = parsed.toPattern();
+        final ConcurrentMap<String, CacheData> map = getTypeMap(type);
+        Collection<String> candidates = map.keySet();
+        if (identifierIndexEnabled) {
+            final Set<String> indexed = getIndexCandidates(type, parsed.getLiterals());
+            if (indexed != null) {
+                candidates = new ArrayList<>(indexed);
+            }
+        }
         final HashSet<String> matches = new HashSet<>();
-        for (String key : getTypeMap(type).keySet()) {
-            if (pattern.matcher(key).matches()) {
+        for (String key : candidates) {
+            if (pattern.matcher(key).matches() && map.containsKey(key)) {
                 matches.add(key);
             }
         }
         return matches;
     }
 
+    /**
+     * @return the smallest set of identifiers sharing a trigram of the literals, or null if no literal is long enough to use the index
+     */
+    private Set<String> getIndexCandidates(String type, List<String> literals) {
+        final ConcurrentMap<String, Set<String>> index = getTrigramIndex(type);
+        Set<String> candidates = null;
+        for (String literal : literals) {
+            for (String trigram : trigrams(literal)) {
+                final Set<String> ids = index.get(trigram);
+                if (ids == null) {
+                    return Collections.emptySet();
+                }
+                if (candidates == null || ids.size() < candidates.size()) {
+                    candidates = ids;
+                }
+            }
+        }
+        return candidates;
+    }
+
     private CacheData getOrCreate(String type, String id) {
-        return getCacheData(getTypeMap(type), id);
+        final ConcurrentMap<String, CacheData> map = getTypeMap(type);
+        final CacheData existing = map.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        final CacheData created = getCacheData(map, id);
+        if (identifierIndexEnabled) {
+            reindex(type, map, id);
+        }
+        return created;
+    }
+
+    /**
+     * Adds id to or removes it from the trigram index depending on whether it is currently in map.
+     * <p>
+     * Reconciling against the map (rather than indexing on merge and unindexing on evict) keeps the index
+     * consistent when a merge and an evict of the same id race.
+     */
+    private void reindex(String type, ConcurrentMap<String, CacheData> map, String id) {
+        final ConcurrentMap<String, Set<String>> index = getTrigramIndex(type);
+        synchronized (index) {
+            final boolean present = map.containsKey(id);
+            for (String trigram : trigrams(id)) {
+                if (present) {
+                    index.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(id);
+                } else {
+                    final Set<String> ids = index.get(trigram);
+                    if (ids != null) {
+                        ids.remove(id);
+                        if (ids.isEmpty()) {
+                            index.remove(trigram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private ConcurrentMap<String, Set<String>> getTrigramIndex(String type) {
+        return trigramIndexes.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+    }
+
+    private static Set<String> trigrams(String value) {
+        final Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + TRIGRAM_LENGTH <= value.length(); i++) {
+            trigrams.add(value.substring(i, i + TRIGRAM_LENGTH));
+        }
+        return trigrams;
     }
 
     private ConcurrentMap<String, CacheData> getTypeMap(String type) {
@@ -247,123 +349,4 @@ public class InMemoryCache implements WriteableCache {
             return relationships;
         }
     }
-
-    static class Glob {
-        private static final String TOKENS = "*?[]\\";
-
-        private static enum State {
-            INIT, ESCAPING, CAPTURING, CAPTURING_ESCAPE
-        }
-
-        private final StringTokenizer globTokenizer;
-        private final StringBuilder regex = new StringBuilder();
-        private final StringBuilder capture = new StringBuilder();
-
-        private State state = State.INIT;
-
-        private final Pattern pattern;
-
-        public Glob(String globString) {
-            globTokenizer = new StringTokenizer(globString, TOKENS, true);
-            toInit();
-            pattern = buildPattern();
-        }
-
-        public Pattern toPattern() {
-            return pattern;
-        }
-
-        private void toInit() {
-            state = State.INIT;
-            capture.setLength(0);
-        }
-
-        private void toEscaping() {
-            state = State.ESCAPING;
-        }
-
-        private void toCapturing() {
-            state = State.CAPTURING;
-        }
-
-        private void toCapturingEscape() {
-            state = State.CAPTURING_ESCAPE;
-        }
-
-        private void handleDelim(String s) {
-            switch (state) {
-                case ESCAPING:
-                    regex.append(Pattern.quote(s));
-                    toInit();
-                    break;
-                case CAPTURING_ESCAPE:
-                    capture.append(Pattern.quote(s));
-                    toCapturing();
-                    break;
-                case CAPTURING:
-                    if ("\\".equals(s)) {
-                        toCapturingEscape();
-                    } else if ("]".equals(s)) {
-                        regex.append("[").append(capture).append("]");
-                        toInit();
-                    } else {
-                        capture.append(Pattern.quote(s));
-                        toCapturing();
-                    }
-                    break;
-                default:
-                    switch (s) {
-                        case "\\":
-                            toEscaping();
-                            break;
-                        case "*":
-                            regex.append(".*");
-                            toInit();
-                            break;
-                        case "?":
-                            regex.append(".");
-                            toInit();
-                            break;
-                        case "[":
-                            toCapturing();
-                            break;
-                        case "]":
-                            regex.append(Pattern.quote("]"));
-                            toInit();
-                            break;
-                        default:
-                            throw new IllegalStateException("Unhandled delimiter in init state: " + s);
-                    }
-            }
-        }
-
-        private void handleStr(String s) {
-            switch (state) {
-                case CAPTURING:
-                    capture.append(Pattern.quote(s));
-                    toCapturing();
-                    break;
-                default:
-                    regex.append(Pattern.quote(s));
-                    toInit();
-            }
-        }
-
-        private Pattern buildPattern() {
-            while (globTokenizer.hasMoreTokens()) {
-                String token = globTokenizer.nextToken();
-                if (token.length() == 1 && TOKENS.indexOf(token.charAt(0)) != -1) {
-                    handleDelim(token);
-                } else {
-                    handleStr(token);
-                }
-            }
-            if (state == State.CAPTURING || state == State.CAPTURING_ESCAPE) {
-                regex.append(Pattern.quote("["));
-                regex.append(capture);
-            }
-            return Pattern.compile(regex.toString());
-        }
-
-    }
 }
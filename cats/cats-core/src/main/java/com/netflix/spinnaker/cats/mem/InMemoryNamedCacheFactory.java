@@ -27,10 +27,19 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class InMemoryNamedCacheFactory implements NamedCacheFactory {
     private final ConcurrentMap<String, WriteableCache> caches = new ConcurrentHashMap<>();
+    private final boolean identifierIndexEnabled;
+
+    public InMemoryNamedCacheFactory() {
+        this(false);
+    }
+
+    public InMemoryNamedCacheFactory(boolean identifierIndexEnabled) {
+        this.identifierIndexEnabled = identifierIndexEnabled;
+    }
 
     @Override
     public WriteableCache getCache(String name) {
-        WriteableCache cache = new InMemoryCache();
+        WriteableCache cache = new InMemoryCache(identifierIndexEnabled);
         WriteableCache existing = caches.putIfAbsent(name, cache);
         if (existing == null) {
             return cache;
@@ -49,6 +49,20 @@ public interface CatsModule {
 
     ExecutionInstrumentation getExecutionInstrumentation();
 
+    /**
+     * @return a version that changes whenever agents are added to or removed from the providers of this module, for
+     * views over the agents of the providers to know when to rebuild
+     */
+    default long getAgentsVersion() {
+        return 0;
+    }
+
+    /**
+     * Records that agents were added to or removed from the providers of this module.
+     */
+    default void agentsChanged() {
+    }
+
     public static class Builder {
         private NamedCacheFactory cacheFactory;
         private AgentScheduler scheduler;
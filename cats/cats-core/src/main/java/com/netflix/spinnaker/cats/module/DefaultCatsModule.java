@@ -27,6 +27,7 @@ import com.netflix.spinnaker.cats.provider.Provider;
 import com.netflix.spinnaker.cats.provider.ProviderRegistry;
 
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DefaultCatsModule implements CatsModule {
     private final NamedCacheFactory namedCacheFactory;
@@ -34,6 +35,7 @@ public class DefaultCatsModule implements CatsModule {
     private final AgentScheduler agentScheduler;
     private final Cache view;
     private final ExecutionInstrumentation executionInstrumentation;
+    private final AtomicLong agentsVersion = new AtomicLong();
 
     public DefaultCatsModule(Collection<Provider> providers, NamedCacheFactory namedCacheFactory, AgentScheduler agentScheduler, ExecutionInstrumentation executionInstrumentation) {
         this.namedCacheFactory = namedCacheFactory;
@@ -70,4 +72,14 @@ public class DefaultCatsModule implements CatsModule {
     public ExecutionInstrumentation getExecutionInstrumentation() {
       return executionInstrumentation;
     }
+
+    @Override
+    public long getAgentsVersion() {
+        return agentsVersion.get();
+    }
+
+    @Override
+    public void agentsChanged() {
+        agentsVersion.incrementAndGet();
+    }
 }
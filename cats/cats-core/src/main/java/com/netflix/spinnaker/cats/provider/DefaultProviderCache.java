@@ -20,6 +20,7 @@ import com.netflix.spinnaker.cats.agent.CacheResult;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.CacheFilter;
 import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter;
 import com.netflix.spinnaker.cats.cache.WriteableCache;
 
 import java.util.ArrayList;
@@ -30,6 +31,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * An implementation of ProviderCache that writes through to a provided backing
@@ -37,6 +39,10 @@ import java.util.Set;
  *
  * This implementation will handle aggregating results from multiple sources, and
  * the view methods will merge relationships from all sources into a single relationship.
+ *
+ * The ids cached by each source for a type are recorded as a relationship of the _ALL_ item
+ * when a complete CacheResult is stored, and the ids upserted by delta CacheResults since
+ * then as a relationship of the _DELTA_ item.
  */
 public class DefaultProviderCache implements ProviderCache {
 
@@ -44,6 +50,10 @@ public class DefaultProviderCache implements ProviderCache {
     private static final Map<String, Object> ALL_ATTRIBUTE = Collections.unmodifiableMap(new HashMap<String, Object>(1) {{
         put("id", ALL_ID);
     }});
+    private static final String DELTA_ID = "_DELTA_";
+    private static final Map<String, Object> DELTA_ATTRIBUTE = Collections.unmodifiableMap(new HashMap<String, Object>(1) {{
+        put("id", DELTA_ID);
+    }});
 
     private final WriteableCache backingStore;
 
@@ -59,7 +69,7 @@ public class DefaultProviderCache implements ProviderCache {
     @Override
     public CacheData get(String type, String id, CacheFilter cacheFilter) {
         validateTypes(type);
-        if (ALL_ID.equals(id)) {
+        if (isReserved(id)) {
             return null;
         }
         CacheData item = backingStore.get(type, id, cacheFilter);
@@ -82,6 +92,14 @@ public class DefaultProviderCache implements ProviderCache {
         return buildResponse(all);
     }
 
+    @Override
+    public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+        validateTypes(type);
+        return backingStore.streamAll(type, cacheFilter)
+            .filter(item -> !isReserved(item.getId()))
+            .map(this::mergeRelationships);
+    }
+
     @Override
     public Collection<CacheData> getAll(String type, Collection<String> identifiers) {
         return getAll(type, identifiers, null);
@@ -104,6 +122,7 @@ public class DefaultProviderCache implements ProviderCache {
         validateTypes(type);
         Set<String> identifiers = new HashSet<>(backingStore.getIdentifiers(type));
         identifiers.remove(ALL_ID);
+        identifiers.remove(DELTA_ID);
         return identifiers;
     }
 
@@ -112,6 +131,7 @@ public class DefaultProviderCache implements ProviderCache {
         validateTypes(type);
         Set<String> identifiers = new HashSet<>(backingStore.filterIdentifiers(type, glob));
         identifiers.remove(ALL_ID);
+        identifiers.remove(DELTA_ID);
 
         return identifiers;
     }
@@ -123,20 +143,31 @@ public class DefaultProviderCache implements ProviderCache {
         allTypes.addAll(cacheResult.getEvictions().keySet());
         validateTypes(allTypes);
 
+        if (!cacheResult.isComplete()) {
+            putCacheResultDelta(sourceAgentType, authoritativeTypes, cacheResult, allTypes);
+            return;
+        }
+
         Map<String, Collection<String>> evictions = new HashMap<>();
 
         for (String type : allTypes) {
             final Collection<String> previousSet;
+            boolean clearDeltas = false;
             if (authoritativeTypes.contains(type)) {
-                previousSet = getExistingSourceIdentifiers(type, sourceAgentType);
+                final Map<String, Set<String>> existing = getExistingSourceIdentifiers(type, sourceAgentType);
+                previousSet = existing.get(ALL_ID);
+                clearDeltas = !existing.get(DELTA_ID).isEmpty();
+                previousSet.addAll(existing.get(DELTA_ID));
             } else {
                 previousSet = new HashSet<>();
             }
             if (cacheResult.getCacheResults().containsKey(type)) {
-                cacheDataType(type, sourceAgentType, cacheResult.getCacheResults().get(type));
+                cacheDataType(type, sourceAgentType, cacheResult.getCacheResults().get(type), clearDeltas);
                 for (CacheData data : cacheResult.getCacheResults().get(type)) {
                     previousSet.remove(data.getId());
                 }
+            } else if (clearDeltas) {
+                backingStore.merge(type, deltaMembership(sourceAgentType, Collections.emptySet()));
             }
             if (cacheResult.getEvictions().containsKey(type)) {
               previousSet.addAll(cacheResult.getEvictions().get(type));
@@ -151,6 +182,40 @@ public class DefaultProviderCache implements ProviderCache {
         }
     }
 
+    /**
+     * Stores the upserts and evicts the deletions of a delta CacheResult without reading or rewriting the
+     * _ALL_ membership. For authoritative types the upserted ids are added to the source's _DELTA_ membership,
+     * so that the next complete result evicts any of them that it no longer contains.
+     */
+    private void putCacheResultDelta(String sourceAgentType, Collection<String> authoritativeTypes, CacheResult cacheResult, Collection<String> types) {
+        for (String type : types) {
+            final Collection<CacheData> items = cacheResult.getCacheResults().getOrDefault(type, Collections.emptyList());
+            final Collection<String> deletions = cacheResult.getEvictions().getOrDefault(type, Collections.emptyList());
+
+            final Collection<CacheData> toStore = new ArrayList<>(items.size() + 1);
+            for (CacheData item : items) {
+                toStore.add(uniqueifyRelationships(item, sourceAgentType));
+            }
+            if (authoritativeTypes.contains(type) && !(items.isEmpty() && deletions.isEmpty())) {
+                final Set<String> deltaIds = getExistingSourceIdentifiers(type, sourceAgentType, DELTA_ID).get(DELTA_ID);
+                boolean changed = deltaIds.removeAll(deletions);
+                for (CacheData item : items) {
+                    changed |= deltaIds.add(item.getId());
+                }
+                if (changed) {
+                    toStore.add(deltaMembership(sourceAgentType, deltaIds));
+                }
+            }
+
+            if (!toStore.isEmpty()) {
+                backingStore.mergeAll(type, toStore);
+            }
+            if (!deletions.isEmpty()) {
+                evictDeletedItems(type, deletions);
+            }
+        }
+    }
+
     @Override
     public void putCacheData(String sourceAgentType, CacheData cacheData) {
         backingStore.merge(sourceAgentType, cacheData);
@@ -179,26 +244,47 @@ public class DefaultProviderCache implements ProviderCache {
     private Collection<CacheData> buildResponse(Collection<CacheData> source) {
         Collection<CacheData> response = new ArrayList<>(source.size());
         for (CacheData item : source) {
-            if (!ALL_ID.equals(item.getId())) {
+            if (!isReserved(item.getId())) {
                 response.add(mergeRelationships(item));
             }
         }
         return Collections.unmodifiableCollection(response);
     }
 
-    private Collection<String> getExistingSourceIdentifiers(String type, String sourceAgentType) {
-        CacheData all = backingStore.get(type, ALL_ID);
-        if (all == null) {
-            return Collections.emptySet();
+    private static boolean isReserved(String id) {
+        return ALL_ID.equals(id) || DELTA_ID.equals(id);
+    }
+
+    private Map<String, Set<String>> getExistingSourceIdentifiers(String type, String sourceAgentType) {
+        return getExistingSourceIdentifiers(type, sourceAgentType, ALL_ID, DELTA_ID);
+    }
+
+    /**
+     * Reads only the source's relationship of each membership item.
+     *
+     * @return a mutable copy of the ids recorded for the source, keyed by membership item id
+     */
+    private Map<String, Set<String>> getExistingSourceIdentifiers(String type, String sourceAgentType, String... membershipIds) {
+        Map<String, Set<String>> existing = new HashMap<>(membershipIds.length);
+        for (String membershipId : membershipIds) {
+            existing.put(membershipId, new HashSet<>());
         }
-        Collection<String> relationship = all.getRelationships().get(sourceAgentType);
-        if (relationship == null) {
-            return Collections.emptySet();
+        for (CacheData membership : backingStore.getAll(type, Arrays.asList(membershipIds), RelationshipCacheFilter.include(sourceAgentType))) {
+            Collection<String> relationship = membership.getRelationships().get(sourceAgentType);
+            if (relationship != null && existing.containsKey(membership.getId())) {
+                existing.get(membership.getId()).addAll(relationship);
+            }
         }
-        return relationship;
+        return existing;
     }
 
-    private void cacheDataType(String type, String sourceAgentType, Collection<CacheData> items) {
+    private CacheData deltaMembership(String sourceAgentType, Collection<String> ids) {
+        Map<String, Collection<String>> deltaRelationship = new HashMap<>();
+        deltaRelationship.put(sourceAgentType, ids);
+        return new DefaultCacheData(DELTA_ID, DELTA_ATTRIBUTE, deltaRelationship);
+    }
+
+    private void cacheDataType(String type, String sourceAgentType, Collection<CacheData> items, boolean clearDeltas) {
         Collection<String> idSet = new HashSet<>();
 
         int ttlSeconds = -1;
@@ -215,6 +301,9 @@ public class DefaultProviderCache implements ProviderCache {
         allRelationship.put(sourceAgentType, idSet);
 
         toStore.add(new DefaultCacheData(ALL_ID, ttlSeconds, ALL_ATTRIBUTE, allRelationship));
+        if (clearDeltas) {
+            toStore.add(deltaMembership(sourceAgentType, Collections.emptySet()));
+        }
         backingStore.mergeAll(type, toStore);
     }
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.thread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fans out the calls of an agent (for example per region or per page) and waits for all of them.
+ * <p>
+ * Calls run on virtual threads when the runtime supports them, and on a shared pool of platform threads otherwise.
+ * If a call fails, the calls that have not completed are cancelled and join rethrows the failure. Closing the scope
+ * cancels any call that is still running, so calls never outlive the agent execution that forked them:
+ * <pre>
+ * try (TaskScope&lt;List&lt;Instance&gt;&gt; scope = TaskScope.open()) {
+ *     for (String region : regions) {
+ *         scope.fork(() -&gt; describeInstances(region));
+ *     }
+ *     List&lt;List&lt;Instance&gt;&gt; instances = scope.join();
+ * }
+ * </pre>
+ */
+public class TaskScope<T> implements AutoCloseable {
+    private static final ExecutorService PLATFORM_THREADS = Executors.newCachedThreadPool(daemon(new NamedThreadFactory(TaskScope.class.getSimpleName())));
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final CompletionService<T> completionService;
+    private final List<Future<T>> futures = new ArrayList<>();
+
+    public static <T> TaskScope<T> open() {
+        if (VirtualThreads.isSupported()) {
+            return new TaskScope<>(VirtualThreads.newThreadPerTaskExecutor(TaskScope.class.getSimpleName()), true);
+        }
+        return new TaskScope<>(PLATFORM_THREADS, false);
+    }
+
+    /**
+     * @param executor runs the forked calls; it is not shut down when the scope is closed
+     */
+    public static <T> TaskScope<T> open(ExecutorService executor) {
+        return new TaskScope<>(executor, false);
+    }
+
+    /**
+     * Runs every call in a new scope.
+     *
+     * @return the results of calls, in order
+     */
+    public static <T> List<T> invokeAll(Collection<? extends Callable<T>> calls) throws InterruptedException, ExecutionException {
+        try (TaskScope<T> scope = open()) {
+            for (Callable<T> call : calls) {
+                scope.fork(call);
+            }
+            return scope.join();
+        }
+    }
+
+    private TaskScope(ExecutorService executor, boolean ownsExecutor) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.completionService = new ExecutorCompletionService<>(executor);
+    }
+
+    public void fork(Callable<T> call) {
+        futures.add(completionService.submit(call));
+    }
+
+    /**
+     * Waits for every forked call.
+     *
+     * @return the results of the forked calls, in the order they were forked
+     * @throws ExecutionException with the failure of the first call to fail; the other calls are cancelled
+     */
+    public List<T> join() throws InterruptedException, ExecutionException {
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                completionService.take().get();
+            }
+        } catch (InterruptedException | ExecutionException failure) {
+            cancelAll();
+            throw failure;
+        }
+
+        final List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private void cancelAll() {
+        for (Future<T> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static ThreadFactory daemon(ThreadFactory threadFactory) {
+        return runnable -> {
+            final Thread thread = threadFactory.newThread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
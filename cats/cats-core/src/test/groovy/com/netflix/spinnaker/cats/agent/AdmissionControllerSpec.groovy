@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent
+
+import com.netflix.spinnaker.cats.provider.ProviderRegistry
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+
+class AdmissionControllerSpec extends Specification {
+
+    @Subject
+    AdmissionController controller
+
+    AdmissionController.AdmissionMetrics metrics = Mock(AdmissionController.AdmissionMetrics)
+
+    def setup() {
+        controller = new AdmissionController(new ExecutorAgentExecutionPool({ it.run() }), 2, 8, 0.5, 100, 0.5, 60000, '.*Health.*', '.*Reservation.*', metrics)
+    }
+
+    def 'halves the limit when the cloud provider throttles and grows it by one while healthy'() {
+        when:
+        controller.executionFailed(agent('ClusterCachingAgent'), new RuntimeException('Rate exceeded', new RuntimeException()))
+        controller.adjust()
+
+        then:
+        1 * metrics.adjusted(4, 0, 'throttling')
+        controller.limit == 4
+
+        when:
+        controller.executionCompleted(agent('ClusterCachingAgent'), 10)
+        controller.adjust()
+
+        then:
+        1 * metrics.adjusted(5, 0, 'healthy')
+
+        when:
+        3.times { controller.adjust() }
+
+        then:
+        controller.limit == 8
+    }
+
+    def 'cuts the limit when redis round trips are slow, down to the minimum'() {
+        when:
+        4.times {
+            controller.recordRedisLatency(10, TimeUnit.MILLISECONDS.toNanos(1500))
+            controller.adjust()
+        }
+
+        then:
+        4 * metrics.adjusted(_, 0, 'redisLatency')
+        controller.limit == 2
+    }
+
+    @Unroll
+    def 'cuts the limit when #failures of #executions executions fail: #cut'() {
+        when:
+        (executions - failures).times { controller.executionCompleted(agent('ClusterCachingAgent'), 10) }
+        failures.times { controller.executionFailed(agent('ClusterCachingAgent'), new IllegalStateException()) }
+        controller.adjust()
+
+        then:
+        controller.limit == (cut ? 4 : 8)
+
+        where:
+        executions | failures || cut
+        10         | 6        || true
+        10         | 5        || false
+        4          | 4        || false
+    }
+
+    def 'admits higher lanes first, up to the limit less the running agents'() {
+        setup:
+        def release = new CountDownLatch(1)
+        controller = new AdmissionController(new ExecutorAgentExecutionPool({ new Thread(it).start() }), 3, 3, 0.5, 100, 0.5, 60000, '.*Health.*', '.*Reservation.*', metrics)
+        def reservations = agent('ReservationReportCachingAgent')
+        def cluster = agent('ClusterCachingAgent')
+        def health = agent('InstanceHealthCachingAgent')
+
+        when:
+        controller.submit(agent('ImageCachingAgent'), { release.await(10, TimeUnit.SECONDS) })
+        def admissible = controller.admissible([reservations, cluster, health])
+
+        then:
+        admissible == [health, cluster]
+        1 * metrics.shed(reservations, AdmissionController.Lane.LOW)
+
+        when:
+        release.countDown()
+
+        then:
+        waitFor { controller.running == 0 }
+        controller.admissible([reservations, cluster, health]) == [health, cluster, reservations]
+    }
+
+    def 'ends an elapsed window once when it is checked concurrently'() {
+        setup:
+        controller = new AdmissionController(new ExecutorAgentExecutionPool({ it.run() }), 2, 8, 0.5, 100, 0.5, 50, null, null, metrics)
+        def start = new CyclicBarrier(8)
+        Thread.sleep(60)
+
+        when:
+        def threads = (1..8).collect {
+            Thread.start {
+                start.await()
+                controller.admissible([agent('ClusterCachingAgent')])
+            }
+        }
+        threads*.join()
+
+        then:
+        1 * metrics.adjusted(_, _, _)
+    }
+
+    def 'recognizes throttling errors'() {
+        expect:
+        AdmissionController.isThrottlingError(new RuntimeException('wrapped', new RuntimeException('Throttling: Rate exceeded')))
+        AdmissionController.isThrottlingError(new RuntimeException('Request limit exceeded. (Service: AmazonEC2; Status Code: 503; Error Code: RequestLimitExceeded)'))
+        !AdmissionController.isThrottlingError(new RuntimeException('Connection refused'))
+    }
+
+    private static boolean waitFor(Closure<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + 10000
+        while (!condition.call() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        condition.call()
+    }
+
+    private static Agent agent(String agentType) {
+        new Agent() {
+            @Override
+            String getAgentType() {
+                agentType
+            }
+
+            @Override
+            String getProviderName() {
+                'aws'
+            }
+
+            @Override
+            AgentExecution getAgentExecution(ProviderRegistry providerRegistry) {
+                null
+            }
+        }
+    }
+}
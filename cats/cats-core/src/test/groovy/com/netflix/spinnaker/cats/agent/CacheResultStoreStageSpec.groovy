@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent
+
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.provider.ProviderCache
+import com.netflix.spinnaker.cats.provider.ProviderRegistry
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class CacheResultStoreStageSpec extends Specification {
+
+    @Subject
+    CacheResultStoreStage stage
+
+    CountDownLatch release = new CountDownLatch(1)
+
+    ProviderCache providerCache = Mock(ProviderCache)
+    ProviderRegistry providerRegistry = Stub(ProviderRegistry) {
+        getProviderCache(_) >> providerCache
+    }
+    CachingAgent agent = Stub(CachingAgent) {
+        getProviderName() >> 'test'
+        getAgentType() >> 'test/agent'
+        getProvidedDataTypes() >> [AgentDataType.Authority.AUTHORITATIVE.forType('serverGroups')]
+        loadData(_) >> new DefaultCacheResult(serverGroups: [new DefaultCacheData('sg1', [:], [:])])
+    }
+    ExecutionInstrumentation instrumentation = Mock(ExecutionInstrumentation)
+
+    def cleanup() {
+        release.countDown()
+        stage?.shutdown()
+    }
+
+    def 'loads on the calling thread and stores on a writer'() {
+        setup:
+        stage = new CacheResultStoreStage(1, 1, null)
+        def completed = new CountDownLatch(1)
+        Thread storeThread = null
+
+        when:
+        stage.execute(agent, new CachingAgent.CacheExecution(providerRegistry), instrumentation, { true }, { completed.countDown() })
+        completed.await(10, TimeUnit.SECONDS)
+
+        then:
+        1 * instrumentation.executionStarted(agent)
+        1 * providerCache.putCacheResult('test/agent', _, _) >> { storeThread = Thread.currentThread() }
+        1 * instrumentation.executionCompleted(agent, _)
+        1 * instrumentation.executionTelemetry(agent, { it.types.serverGroups.items == 1 })
+        storeThread != null
+        storeThread != Thread.currentThread()
+    }
+
+    def 'discards a result whose claim was lost while it was queued'() {
+        setup:
+        def metrics = Mock(CacheResultStoreStage.StoreMetrics)
+        stage = new CacheResultStoreStage(1, 1, metrics)
+        def completed = new CountDownLatch(1)
+
+        when:
+        stage.execute(agent, new CachingAgent.CacheExecution(providerRegistry), instrumentation, { false }, { completed.countDown() })
+        completed.await(10, TimeUnit.SECONDS)
+
+        then:
+        1 * metrics.discarded(agent)
+        0 * providerCache.putCacheResult(_, _, _)
+        0 * instrumentation.executionCompleted(_, _)
+        1 * instrumentation.executionDiscarded(agent, _)
+    }
+
+    def 'stores on the submitting thread when the queue is full'() {
+        setup:
+        def metrics = Mock(CacheResultStoreStage.StoreMetrics)
+        stage = new CacheResultStoreStage(1, 1, metrics)
+        def stored = []
+
+        when:
+        stage.submit(agent, { true }, { release.await(10, TimeUnit.SECONDS) }, {})
+        waitFor { stage.queueDepth == 0 }
+        stage.submit(agent, { true }, { stored << 'queued' }, {})
+        stage.submit(agent, { true }, { stored << Thread.currentThread() }, {})
+
+        then:
+        stage.queueDepth == 1
+        stored == [Thread.currentThread()]
+        2 * metrics.queued(agent, 1)
+        1 * metrics.backpressure(agent)
+
+        when:
+        release.countDown()
+
+        then:
+        waitFor { stored.size() == 2 }
+    }
+
+    private static boolean waitFor(Closure<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + 10000
+        while (!condition.call() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        condition.call()
+    }
+}
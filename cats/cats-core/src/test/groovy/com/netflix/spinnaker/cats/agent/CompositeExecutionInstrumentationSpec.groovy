@@ -27,6 +27,7 @@ class CompositeExecutionInstrumentationSpec extends Specification {
         CompositeExecutionInstrumentation subj = new CompositeExecutionInstrumentation(Arrays.asList(e1, e2))
         CachingAgent agent = Stub(CachingAgent)
         Throwable cause = new RuntimeException('bewm')
+        ExecutionTelemetry telemetry = new ExecutionTelemetry()
 
         when:
         subj.executionStarted(agent)
@@ -48,5 +49,19 @@ class CompositeExecutionInstrumentationSpec extends Specification {
         then:
         1 * e1.executionFailed(agent, cause)
         1 * e2.executionFailed(agent, cause)
+
+        when:
+        subj.executionDiscarded(agent, 100)
+
+        then:
+        1 * e1.executionDiscarded(agent, 100)
+        1 * e2.executionDiscarded(agent, 100)
+
+        when:
+        subj.executionTelemetry(agent, telemetry)
+
+        then:
+        1 * e1.executionTelemetry(agent, telemetry)
+        1 * e2.executionTelemetry(agent, telemetry)
     }
 }
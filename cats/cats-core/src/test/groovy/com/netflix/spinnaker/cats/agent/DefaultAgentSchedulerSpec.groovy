@@ -44,6 +44,7 @@ class DefaultAgentSchedulerSpec extends Specification {
         1 * instr.executionStarted(agent)
         1 * exec.executeAgent(agent)
         1 * instr.executionCompleted(agent, _ )
+        1 * instr.executionTelemetry(agent, _)
         0 * _
     }
 
@@ -66,5 +67,26 @@ class DefaultAgentSchedulerSpec extends Specification {
         1 * instr.executionFailed(agent, cause)
         0 * _
     }
+    def 'agents the pool cannot start right away are skipped when skipping inadmissible agents'() {
+        setup:
+        def agent = Stub(CachingAgent)
+        def exec = Mock(AgentExecution)
+        def pool = Mock(AgentExecutionPool)
+        runnableScheduler = new ManualRunnableScheduler()
+        scheduler = new DefaultAgentScheduler(runnableScheduler, 1, TimeUnit.SECONDS, pool, skipInadmissible)
+
+        when:
+        scheduler.schedule(agent, exec, Stub(ExecutionInstrumentation))
+        runnableScheduler.runAll()
+
+        then:
+        _ * pool.hasCapacity(agent) >> false
+        submissions * pool.submit(agent, _)
+
+        where:
+        skipInadmissible || submissions
+        true             || 0
+        false            || 1
+    }
 
 }
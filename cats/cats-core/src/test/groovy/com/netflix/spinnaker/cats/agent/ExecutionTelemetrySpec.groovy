@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent
+
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.provider.ProviderCache
+import com.netflix.spinnaker.cats.provider.ProviderRegistry
+import spock.lang.Specification
+
+import static com.netflix.spinnaker.cats.agent.ExecutionTelemetry.Phase.*
+
+class ExecutionTelemetrySpec extends Specification {
+
+    ProviderCache providerCache = Mock(ProviderCache)
+    ProviderRegistry providerRegistry = Stub(ProviderRegistry) {
+        getProviderCache(_) >> providerCache
+    }
+    CachingAgent agent = Stub(CachingAgent) {
+        getProviderName() >> 'test'
+        getAgentType() >> 'test/agent'
+        getProvidedDataTypes() >> [AgentDataType.Authority.AUTHORITATIVE.forType('serverGroups')]
+    }
+    CacheResult result = new DefaultCacheResult(serverGroups: [new DefaultCacheData('sg1', [:], [:]), new DefaultCacheData('sg2', [:], [:])])
+
+    def 'records the load and store phases and the result of a cache execution'() {
+        setup:
+        def execution = new CachingAgent.CacheExecution(providerRegistry)
+        agent.loadData(_) >> result
+
+        when:
+        def telemetry = ExecutionTelemetry.begin()
+        execution.executeAgent(agent)
+        telemetry.end()
+
+        then:
+        1 * providerCache.putCacheResult('test/agent', { it == ['serverGroups'] as Set }, result) >> {
+            ExecutionTelemetry.recordStore('serverGroups', 3, 1)
+            ExecutionTelemetry.recordSerialized('serverGroups', 512)
+        }
+        telemetry.phaseTimes.keySet() == [LOAD, STORE] as Set
+        telemetry.types.serverGroups.items == 2
+        telemetry.types.serverGroups.keysWritten == 3
+        telemetry.types.serverGroups.keysSkipped == 1
+        telemetry.types.serverGroups.bytes == 512
+        ExecutionTelemetry.current() == null
+    }
+
+    def 'splits the load phase into fetch and transform when the agent records its fetches'() {
+        setup:
+        def execution = new CachingAgent.CacheExecution(providerRegistry)
+        agent.loadData(_) >> {
+            ExecutionTelemetry.fetch { Thread.sleep(20) }
+            result
+        }
+
+        when:
+        def telemetry = ExecutionTelemetry.begin()
+        execution.executeAgentWithoutStore(agent)
+        telemetry.end()
+
+        then:
+        telemetry.phaseTimes.keySet() == [LOAD, FETCH, TRANSFORM] as Set
+        telemetry.phaseTimes[FETCH] >= 20
+        Math.abs(telemetry.phaseTimes[LOAD] - telemetry.phaseTimes[FETCH] - telemetry.phaseTimes[TRANSFORM]) <= 1
+    }
+
+    def 'recording outside of an execution is ignored'() {
+        when:
+        def value = ExecutionTelemetry.fetch { 'value' }
+        ExecutionTelemetry.recordStore('serverGroups', 1, 1)
+
+        then:
+        value == 'value'
+        ExecutionTelemetry.current() == null
+    }
+}
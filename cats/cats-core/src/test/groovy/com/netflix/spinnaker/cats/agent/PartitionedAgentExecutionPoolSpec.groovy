@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent
+
+import com.netflix.spinnaker.cats.provider.ProviderRegistry
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import static com.netflix.spinnaker.cats.agent.PartitionedAgentExecutionPool.UNLIMITED
+
+class PartitionedAgentExecutionPoolSpec extends Specification {
+
+    @Subject
+    PartitionedAgentExecutionPool pool
+
+    CountDownLatch release = new CountDownLatch(1)
+
+    def cleanup() {
+        release.countDown()
+        pool?.shutdown()
+    }
+
+    def 'limits the agents of a provider that run at once'() {
+        setup:
+        pool = new PartitionedAgentExecutionPool(4, UNLIMITED, [slow: 1], UNLIMITED, null)
+        def fastDone = new CountDownLatch(2)
+
+        when:
+        3.times { pool.submit(new TestAgent('slow'), blocking()) }
+        2.times { pool.submit(new TestAgent('fast'), { fastDone.countDown() }) }
+
+        then:
+        fastDone.await(10, TimeUnit.SECONDS)
+        waitFor { pool.partitionStats.slow.running == 1 }
+        pool.partitionStats.slow.queueDepth == 2
+        waitFor { pool.partitionStats.fast.completed == 2 }
+
+        when:
+        release.countDown()
+
+        then:
+        waitFor { pool.partitionStats.slow.completed == 3 }
+    }
+
+    def 'partitions the agents of a provider by account'() {
+        setup:
+        pool = new PartitionedAgentExecutionPool(4, UNLIMITED, [:], 1, null)
+
+        when:
+        2.times { pool.submit(new TestAgent('aws', 'prod'), blocking()) }
+        2.times { pool.submit(new TestAgent('aws', 'test'), blocking()) }
+
+        then:
+        waitFor { pool.partitionStats.values().sum { it.running } == 2 }
+        pool.partitionStats.keySet() == ['aws/prod', 'aws/test'] as Set
+        pool.partitionStats['aws/prod'].running == 1
+        pool.partitionStats['aws/prod'].queueDepth == 1
+        pool.partitionStats['aws/test'].running == 1
+    }
+
+    def 'admits agents while threads and limits allow'() {
+        setup:
+        pool = new PartitionedAgentExecutionPool(3, 2, [:], UNLIMITED, null)
+        pool.submit(new TestAgent('aws'), blocking())
+        def due = [new TestAgent('aws'), new TestAgent('aws'), new TestAgent('titus'), new TestAgent('titus')]
+
+        expect:
+        pool.admissible(due) == [due[0], due[2]]
+        pool.hasCapacity(due[3])
+    }
+
+    def 'idle threads steal from other partitions'() {
+        setup:
+        pool = new PartitionedAgentExecutionPool(2, UNLIMITED, [:], UNLIMITED, null)
+        def titusRelease = new CountDownLatch(1)
+        pool.submit(new TestAgent('titus'), { titusRelease.await(10, TimeUnit.SECONDS) })
+        2.times { pool.submit(new TestAgent('aws'), blocking()) }
+
+        when:
+        titusRelease.countDown()
+
+        then:
+        waitFor { pool.partitionStats.aws.running == 2 }
+        pool.partitionStats.aws.stolen == 1
+    }
+
+    def 'reports queue depth and wait time'() {
+        setup:
+        def metrics = Mock(PartitionedAgentExecutionPool.PartitionMetrics)
+        pool = new PartitionedAgentExecutionPool(1, UNLIMITED, [:], UNLIMITED, metrics)
+        def done = new CountDownLatch(1)
+
+        when:
+        pool.submit(new TestAgent('aws'), blocking())
+        pool.submit(new TestAgent('aws'), { done.countDown() })
+        waitFor { pool.partitionStats.aws.queueDepth == 1 }
+        Thread.sleep(50)
+        release.countDown()
+        done.await(10, TimeUnit.SECONDS)
+
+        then:
+        1 * metrics.executionQueued('aws', 1)
+        1 * metrics.executionQueued('aws', { it >= 1 })
+        1 * metrics.executionStarted('aws', { it < 50 }, false)
+        1 * metrics.executionStarted('aws', { it >= 50 }, false)
+    }
+
+    def 'drops partitions that have been idle for partitionIdleMillis'() {
+        setup:
+        pool = new PartitionedAgentExecutionPool(2, UNLIMITED, [:], UNLIMITED, null, Executors.defaultThreadFactory(), 100)
+
+        when:
+        pool.submit(new TestAgent('aws', 'removed'), {} as Runnable)
+        pool.submit(new TestAgent('aws', 'prod'), blocking())
+
+        then:
+        waitFor { pool.partitionStats['aws/removed']?.completed == 1 }
+
+        when:
+        Thread.sleep(150)
+        pool.submit(new TestAgent('aws', 'test'), {} as Runnable)
+
+        then:
+        pool.partitionStats.keySet() == ['aws/prod', 'aws/test'] as Set
+        pool.@homes*.name as Set == ['aws/prod', 'aws/test'] as Set
+    }
+
+    private Runnable blocking() {
+        return { release.await(10, TimeUnit.SECONDS) } as Runnable
+    }
+
+    private static boolean waitFor(Closure<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + 10000
+        while (!condition.call() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        condition.call()
+    }
+
+    private static class TestAgent implements Agent, AccountAware {
+        final String providerName
+        final String accountName
+        final String agentType = UUID.randomUUID().toString()
+
+        TestAgent(String providerName, String accountName = null) {
+            this.providerName = providerName
+            this.accountName = accountName
+        }
+
+        @Override
+        AgentExecution getAgentExecution(ProviderRegistry providerRegistry) {
+            null
+        }
+    }
+}
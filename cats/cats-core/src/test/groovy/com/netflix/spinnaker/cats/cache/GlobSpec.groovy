@@ -14,7 +14,7 @@
  * limitations under the License.
  */
 
-package com.netflix.spinnaker.cats.mem
+package com.netflix.spinnaker.cats.cache
 
 import spock.lang.Specification
 import spock.lang.Subject
@@ -22,12 +22,12 @@ import spock.lang.Unroll
 
 class GlobSpec extends Specification {
     @Subject
-    InMemoryCache.Glob glob
+    Glob glob
 
     @Unroll("fixed string: #globString #matches #candidate")
     def 'no special characters is exact match only'() {
         setup:
-        glob = new InMemoryCache.Glob(globString)
+        glob = new Glob(globString)
 
         expect:
         glob.toPattern().matcher(candidate).matches() == expected
@@ -44,7 +44,7 @@ class GlobSpec extends Specification {
     @Unroll("wildcard char: #globString #matches #candidate")
     def 'wildcard character tests'() {
         setup:
-        glob = new InMemoryCache.Glob(globString)
+        glob = new Glob(globString)
 
         expect:
         glob.toPattern().matcher(candidate).matches() == expected
@@ -63,7 +63,7 @@ class GlobSpec extends Specification {
     @Unroll("wildcard string: #globString #matches #candidate")
     def 'wildcard string tests'() {
         setup:
-        glob = new InMemoryCache.Glob(globString)
+        glob = new Glob(globString)
 
         expect:
         glob.toPattern().matcher(candidate).matches() == expected
@@ -87,7 +87,7 @@ class GlobSpec extends Specification {
     @Unroll("escaping: #globString #matches #candidate")
     def 'escaping tests'() {
         setup:
-        glob = new InMemoryCache.Glob(globString)
+        glob = new Glob(globString)
 
         expect:
         glob.toPattern().matcher(candidate).matches() == expected
@@ -104,7 +104,7 @@ class GlobSpec extends Specification {
     @Unroll("char groups: #globString #matches #candidate")
     def 'char group tests'() {
         setup:
-        glob = new InMemoryCache.Glob(globString)
+        glob = new Glob(globString)
 
         expect:
         glob.toPattern().matcher(candidate).matches() == expected
@@ -128,7 +128,7 @@ class GlobSpec extends Specification {
     @Unroll("combined: #globString #matches #candidate")
     def 'combined tests'() {
         setup:
-        glob = new InMemoryCache.Glob(globString)
+        glob = new Glob(globString)
 
         expect:
         glob.toPattern().matcher(candidate).matches() == expected
@@ -147,4 +147,23 @@ class GlobSpec extends Specification {
         matches = expected ? 'matches' : 'does not match'
     }
 
+    @Unroll("literals: #globString")
+    def 'literal runs tests'() {
+        setup:
+        glob = new Glob(globString)
+
+        expect:
+        glob.literals == expected
+
+        where:
+        globString             | expected
+        'foo'                  | ['foo']
+        '*:serverGroups:*foo*' | [':serverGroups:', 'foo']
+        'f?o*bar'              | ['f', 'o', 'bar']
+        'bla[TF]EST'           | ['bla', 'EST']
+        '\\*ba?one'            | ['*ba', 'one']
+        'dontcare[\\'          | ['dontcare']
+        '*'                    | []
+    }
+
 }
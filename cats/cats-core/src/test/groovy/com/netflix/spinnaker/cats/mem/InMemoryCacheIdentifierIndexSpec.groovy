@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.mem
+
+import com.netflix.spinnaker.cats.cache.WriteableCacheSpec
+
+class InMemoryCacheIdentifierIndexSpec extends WriteableCacheSpec {
+
+    @Override
+    InMemoryCache getSubject() {
+        new InMemoryCache(true)
+    }
+
+    def 'filters identifiers containing a substring'() {
+        setup:
+        cache.mergeAll('serverGroups', (0..<100).collect { createData(serverGroupId(it)) })
+
+        expect:
+        cache.filterIdentifiers('serverGroups', '*:serverGroups:*app4*') == (40..49).collect { serverGroupId(it) }.plus(serverGroupId(4)) as Set
+        cache.filterIdentifiers('serverGroups', '*:serverGroups:*app4?-v001*').isEmpty()
+        cache.filterIdentifiers('serverGroups', '*:loadBalancers:*').isEmpty()
+    }
+
+    def 'removes evicted identifiers from the index'() {
+        setup:
+        def ids = (0..<10).collect { serverGroupId(it) }
+        cache.mergeAll('serverGroups', ids.collect { createData(it) })
+
+        when:
+        cache.evictAll('serverGroups', ids.drop(1))
+
+        then:
+        cache.filterIdentifiers('serverGroups', '*app*') == [ids[0]] as Set
+        trigramIndex('serverGroups').values().flatten() as Set == [ids[0]] as Set
+
+        when:
+        cache.merge('serverGroups', createData(ids[5]))
+
+        then:
+        cache.filterIdentifiers('serverGroups', '*app5*') == [ids[5]] as Set
+    }
+
+    private Map<String, Set<String>> trigramIndex(String type) {
+        (cache as InMemoryCache).trigramIndexes.get(type) as Map<String, Set<String>>
+    }
+
+    private static String serverGroupId(int index) {
+        "aws:serverGroups:app$index-v000:prod:us-west-2"
+    }
+}
@@ -123,6 +123,41 @@ class DefaultProviderCacheSpec extends CacheSpec {
         sg == null
     }
 
+    def 'a delta result applies upserts and deletions without rewriting the membership'() {
+        setup:
+        String agent = 'agent'
+        defaultProviderCache.putCacheResult(agent, ['serverGroup'], new DefaultCacheResult(serverGroup: ['a', 'b', 'c'].collect { createData(it) }))
+
+        when:
+        defaultProviderCache.putCacheResult(agent, ['serverGroup'], new DefaultCacheResult(
+            [serverGroup: [createData('a', [version: 2]), createData('d')]],
+            [serverGroup: ['b']],
+            false))
+
+        then:
+        defaultProviderCache.getIdentifiers('serverGroup') == ['a', 'c', 'd'] as Set
+        defaultProviderCache.getAll('serverGroup')*.id as Set == ['a', 'c', 'd'] as Set
+        defaultProviderCache.get('serverGroup', 'a').attributes.version == 2
+        backingStore.get('serverGroup', '_ALL_').relationships[agent] as Set == ['a', 'b', 'c'] as Set
+        backingStore.get('serverGroup', '_DELTA_').relationships[agent] as Set == ['a', 'd'] as Set
+    }
+
+    def 'a complete result evicts items upserted by deltas that it no longer contains'() {
+        setup:
+        String agent = 'agent'
+        defaultProviderCache.putCacheResult(agent, ['serverGroup'], new DefaultCacheResult(serverGroup: [createData('a')]))
+        defaultProviderCache.putCacheResult(agent, ['serverGroup'], new DefaultCacheResult([serverGroup: [createData('b')]], [:], false))
+        defaultProviderCache.putCacheResult('otherAgent', ['serverGroup'], new DefaultCacheResult([serverGroup: [createData('c')]], [:], false))
+
+        when:
+        defaultProviderCache.putCacheResult(agent, ['serverGroup'], new DefaultCacheResult(serverGroup: [createData('a')]))
+
+        then:
+        defaultProviderCache.getIdentifiers('serverGroup') == ['a', 'c'] as Set
+        backingStore.get('serverGroup', '_DELTA_').relationships[agent].isEmpty()
+        backingStore.get('serverGroup', '_DELTA_').relationships['otherAgent'] as Set == ['c'] as Set
+    }
+
     private CacheResult buildCacheResult(String account, String region, String sgVersion = 'v001') {
         String serverGroup = "$account/$region/testapp-test-$sgVersion"
         String cluster = "$account/testapp-test"
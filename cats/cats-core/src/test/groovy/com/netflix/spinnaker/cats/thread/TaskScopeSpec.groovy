@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.thread
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class TaskScopeSpec extends Specification {
+
+    def 'returns results in the order calls were forked'() {
+        when:
+        def results = TaskScope.invokeAll((0..<10).collect { int i ->
+            ({ Thread.sleep(10 - i); i } as Callable<Integer>)
+        })
+
+        then:
+        results == (0..<10).toList()
+    }
+
+    def 'runs calls concurrently'() {
+        setup:
+        def started = new CountDownLatch(4)
+
+        when:
+        def results = TaskScope.invokeAll((0..<4).collect {
+            ({ started.countDown(); started.await(10, TimeUnit.SECONDS) } as Callable<Boolean>)
+        })
+
+        then:
+        results == [true, true, true, true]
+    }
+
+    def 'cancels the remaining calls when a call fails'() {
+        setup:
+        def interrupted = new CountDownLatch(1)
+        def scope = TaskScope.<String>open()
+
+        when:
+        scope.fork({
+            try {
+                Thread.sleep(10000)
+            } catch (InterruptedException e) {
+                interrupted.countDown()
+            }
+            'slow'
+        } as Callable<String>)
+        scope.fork({ throw new IllegalStateException('failed') } as Callable<String>)
+        scope.join()
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof IllegalStateException
+        interrupted.await(10, TimeUnit.SECONDS)
+
+        cleanup:
+        scope.close()
+    }
+
+    def 'creates platform threads when virtual threads are unsupported'() {
+        when:
+        def thread = VirtualThreads.newThreadFactory('test').newThread({} as Runnable)
+
+        then:
+        thread.name.startsWith('test-')
+        VirtualThreads.supported || thread.class == Thread
+    }
+}
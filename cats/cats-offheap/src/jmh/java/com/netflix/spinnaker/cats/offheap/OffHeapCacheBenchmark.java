@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.offheap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+import com.netflix.spinnaker.cats.mem.InMemoryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reads and writes of server group sized items against InMemoryCache.
+ * <p>
+ * Run with ./gradlew :cats:cats-offheap:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:MaxDirectMemorySize=2g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OffHeapCacheBenchmark {
+
+    private static final String TYPE = "serverGroups";
+
+    @Param({"inMemory", "offHeap", "mapped"})
+    public String implementation;
+
+    @Param({"50000"})
+    public int itemCount;
+
+    private WriteableCache cache;
+    private List<String> ids;
+    private File directory;
+
+    @Setup
+    public void setup() throws Exception {
+        switch (implementation) {
+            case "inMemory":
+                cache = new InMemoryCache();
+                break;
+            case "offHeap":
+                cache = new OffHeapCache(new ObjectMapper(), OffHeapCacheOptions.builder().build());
+                break;
+            case "mapped":
+                directory = Files.createTempDirectory("offheap-benchmark").toFile();
+                cache = new OffHeapCache(new ObjectMapper(), OffHeapCacheOptions.builder().directory(directory.getAbsolutePath()).build());
+                break;
+            default:
+                throw new IllegalArgumentException(implementation);
+        }
+
+        ids = new ArrayList<>(itemCount);
+        final List<CacheData> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            final String id = "aws:serverGroups:app-stack-detail-v" + i + ":123456789012:us-west-2";
+            ids.add(id);
+            items.add(createItem(id, i));
+        }
+        cache.mergeAll(TYPE, items);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (directory != null) {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    public CacheData get() {
+        return cache.get(TYPE, randomId());
+    }
+
+    @Benchmark
+    public Collection<CacheData> getAll100() {
+        final int start = ThreadLocalRandom.current().nextInt(itemCount - 100);
+        return cache.getAll(TYPE, ids.subList(start, start + 100));
+    }
+
+    @Benchmark
+    public void merge() {
+        final String id = randomId();
+        cache.merge(TYPE, createItem(id, ThreadLocalRandom.current().nextInt()));
+    }
+
+    @Benchmark
+    public Collection<String> filterIdentifiers() {
+        return cache.filterIdentifiers(TYPE, "aws:serverGroups:app-stack-detail-v1*:*");
+    }
+
+    private String randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(itemCount));
+    }
+
+    private static CacheData createItem(String id, int index) {
+        final Map<String, Object> launchConfig = new HashMap<>();
+        launchConfig.put("imageId", "ami-" + index);
+        launchConfig.put("instanceType", "m3.large");
+        launchConfig.put("securityGroups", Arrays.asList("sg-1", "sg-2", "sg-3"));
+
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("name", "app-stack-detail-v" + index);
+        attributes.put("region", "us-west-2");
+        attributes.put("account", "prod");
+        attributes.put("createdTime", 1450000000000L + index);
+        attributes.put("launchConfig", launchConfig);
+        attributes.put("zones", Arrays.asList("us-west-2a", "us-west-2b", "us-west-2c"));
+
+        final List<String> instances = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            instances.add("aws:instances:prod:us-west-2:i-" + index + "-" + i);
+        }
+        final Map<String, Collection<String>> relationships = new HashMap<>();
+        relationships.put("instances", instances);
+        relationships.put("loadBalancers", Collections.singletonList("aws:loadBalancers:prod:us-west-2:app-frontend"));
+        return new DefaultCacheData(id, attributes, relationships);
+    }
+
+    private static void deleteRecursively(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
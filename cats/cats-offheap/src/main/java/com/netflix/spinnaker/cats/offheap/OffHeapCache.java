@@ -0,0 +1,296 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.offheap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.CacheFilter;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.cache.Glob;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A WriteableCache with the semantics of InMemoryCache that keeps the serialized items off heap.
+ * <p>
+ * Each type is held in a SegmentStore; only the ids and the location of each item are on heap.
+ * Items are serialized with the supplied ObjectMapper, so attributes must be serializable as JSON.
+ * <p>
+ * A persistent cache recovers the types already in its directory when it is created, so a restarted
+ * node serves reads immediately. Each mergeAll and evictAll is committed with a single sync of the
+ * segments it wrote.
+ */
+public class OffHeapCache implements WriteableCache {
+
+    private static final TypeReference<Map<String, Object>> ATTRIBUTES = new TypeReference<Map<String, Object>>() {
+    };
+    private static final TypeReference<Map<String, Collection<String>>> RELATIONSHIPS = new TypeReference<Map<String, Collection<String>>>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final OffHeapCacheOptions options;
+    private final File directory;
+    private final ConcurrentMap<String, SegmentStore> stores = new ConcurrentHashMap<>();
+
+    public OffHeapCache(ObjectMapper objectMapper, OffHeapCacheOptions options) {
+        this(objectMapper, options, options.getDirectory() == null ? null : new File(options.getDirectory()));
+    }
+
+    /**
+     * @param directory the directory to map segment files in, or null to allocate direct buffers
+     */
+    public OffHeapCache(ObjectMapper objectMapper, OffHeapCacheOptions options, File directory) {
+        this.objectMapper = objectMapper;
+        this.options = options;
+        this.directory = directory;
+        if (options.isPersistent()) {
+            recoverStores();
+        }
+    }
+
+    @Override
+    public void merge(String type, CacheData cacheData) {
+        mergeAll(type, Arrays.asList(cacheData));
+    }
+
+    @Override
+    public void mergeAll(String type, Collection<CacheData> items) {
+        final SegmentStore store = getStore(type);
+        for (CacheData item : items) {
+            final Map<String, Object> attributes = withoutNullValues(item.getAttributes());
+            final byte[] serializedAttributes = attributes.isEmpty() ? new byte[0] : serialize(attributes);
+            synchronized (store) {
+                final Map<String, Collection<String>> relationships = new HashMap<>();
+                final byte[] existing = store.read(item.getId());
+                if (existing != null) {
+                    relationships.putAll(deserializeRelationships(existing));
+                }
+                for (Map.Entry<String, Collection<String>> relationship : item.getRelationships().entrySet()) {
+                    if (relationship.getValue() == null) {
+                        relationships.remove(relationship.getKey());
+                    } else {
+                        relationships.put(relationship.getKey(), relationship.getValue());
+                    }
+                }
+                store.write(item.getId(), toValue(serializedAttributes, serialize(relationships)));
+            }
+        }
+        store.sync();
+    }
+
+    @Override
+    public void evict(String type, String id) {
+        evictAll(type, Arrays.asList(id));
+    }
+
+    @Override
+    public void evictAll(String type, Collection<String> ids) {
+        final SegmentStore store = getStore(type);
+        for (String id : ids) {
+            store.remove(id);
+        }
+        store.sync();
+    }
+
+    @Override
+    public CacheData get(String type, String id) {
+        return get(type, id, null);
+    }
+
+    @Override
+    public CacheData get(String type, String id, CacheFilter cacheFilter) {
+        return read(getStore(type), id, cacheFilter);
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type) {
+        return getAll(type, (CacheFilter) null);
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type, CacheFilter cacheFilter) {
+        return getAll(type, getStore(type).ids(), cacheFilter);
+    }
+
+    @Override
+    public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+        final SegmentStore store = getStore(type);
+        return store.ids().stream()
+            .map(id -> read(store, id, cacheFilter))
+            .filter(data -> data != null);
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type, Collection<String> identifiers) {
+        return getAll(type, identifiers, null);
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type, Collection<String> identifiers, CacheFilter cacheFilter) {
+        final SegmentStore store = getStore(type);
+        final Collection<CacheData> values = new ArrayList<>(identifiers.size());
+        for (String id : identifiers) {
+            final CacheData data = read(store, id, cacheFilter);
+            if (data != null) {
+                values.add(data);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type, String... identifiers) {
+        return getAll(type, Arrays.asList(identifiers));
+    }
+
+    @Override
+    public Collection<String> getIdentifiers(String type) {
+        return new HashSet<>(getStore(type).ids());
+    }
+
+    @Override
+    public Collection<String> filterIdentifiers(String type, String glob) {
+        final Pattern pattern = new Glob(glob).toPattern();
+        final HashSet<String> matches = new HashSet<>();
+        for (String key : getStore(type).ids()) {
+            if (pattern.matcher(key).matches()) {
+                matches.add(key);
+            }
+        }
+        return matches;
+    }
+
+    private SegmentStore getStore(String type) {
+        final SegmentStore existing = stores.get(type);
+        if (existing != null) {
+            return existing;
+        }
+        return stores.computeIfAbsent(type, this::createStore);
+    }
+
+    private SegmentStore createStore(String type) {
+        return new SegmentStore(options.getSegmentSize(), options.getCompactionThreshold(), typeDirectory(type), options.isPersistent());
+    }
+
+    private void recoverStores() {
+        final File[] typeDirectories = directory.listFiles(File::isDirectory);
+        if (typeDirectories == null) {
+            return;
+        }
+        for (File typeDirectory : typeDirectories) {
+            try {
+                final String type = URLDecoder.decode(typeDirectory.getName(), "UTF-8");
+                stores.put(type, createStore(type));
+            } catch (UnsupportedEncodingException uee) {
+                throw new IllegalStateException(uee);
+            }
+        }
+    }
+
+    private File typeDirectory(String type) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            return new File(directory, URLEncoder.encode(type, "UTF-8"));
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    private CacheData read(SegmentStore store, String id, CacheFilter cacheFilter) {
+        final byte[] value = store.read(id);
+        if (value == null) {
+            return null;
+        }
+        final int attributesLength = ByteBuffer.wrap(value).getInt();
+        if (attributesLength == 0) {
+            // an item without attributes is not returned (consistent with InMemoryCache)
+            return null;
+        }
+
+        try {
+            final Map<String, Object> attributes = objectMapper.readValue(value, 4, attributesLength, ATTRIBUTES);
+            Map<String, Collection<String>> relationships = deserializeRelationships(value);
+            if (cacheFilter != null) {
+                final Map<String, Collection<String>> filtered = new HashMap<>();
+                for (String relationship : cacheFilter.filter(CacheFilter.Type.RELATIONSHIP, relationships.keySet())) {
+                    filtered.put(relationship, relationships.get(relationship));
+                }
+                relationships = filtered;
+            }
+            return new DefaultCacheData(id, attributes, relationships);
+        } catch (IOException deserializationException) {
+            throw new RuntimeException("Deserialization failed", deserializationException);
+        }
+    }
+
+    private Map<String, Collection<String>> deserializeRelationships(byte[] value) {
+        final int relationshipsOffset = 4 + ByteBuffer.wrap(value).getInt();
+        try {
+            return objectMapper.readValue(value, relationshipsOffset, value.length - relationshipsOffset, RELATIONSHIPS);
+        } catch (IOException deserializationException) {
+            throw new RuntimeException("Relationship deserialization failed", deserializationException);
+        }
+    }
+
+    /**
+     * @return [int attributesLength][attributes][relationships], where attributesLength is 0 if there are no attributes
+     */
+    private static byte[] toValue(byte[] attributes, byte[] relationships) {
+        return ByteBuffer.allocate(4 + attributes.length + relationships.length)
+            .putInt(attributes.length)
+            .put(attributes)
+            .put(relationships)
+            .array();
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException serializationException) {
+            throw new RuntimeException("Serialization failed", serializationException);
+        }
+    }
+
+    private static <V> Map<String, V> withoutNullValues(Map<String, V> source) {
+        final Map<String, V> result = new HashMap<>(source.size());
+        for (Map.Entry<String, V> entry : source.entrySet()) {
+            if (entry.getValue() != null) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.offheap;
+
+public class OffHeapCacheOptions {
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final int segmentSize;
+    private final double compactionThreshold;
+    private final String directory;
+    private final boolean persistent;
+
+    public OffHeapCacheOptions(int segmentSize, double compactionThreshold, String directory) {
+        this(segmentSize, compactionThreshold, directory, false);
+    }
+
+    public OffHeapCacheOptions(int segmentSize, double compactionThreshold, String directory, boolean persistent) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize must be a positive integer (" + segmentSize + ")");
+        }
+        if (compactionThreshold < 0 || compactionThreshold >= 1) {
+            throw new IllegalArgumentException("compactionThreshold must be at least 0 and less than 1 (" + compactionThreshold + ")");
+        }
+        if (persistent && directory == null) {
+            throw new IllegalArgumentException("directory is required for a persistent cache");
+        }
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+        this.directory = directory;
+        this.persistent = persistent;
+    }
+
+    /**
+     * @return the size in bytes of each segment; items larger than this are stored in a segment of their own
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return the fraction of live bytes below which a full segment is compacted
+     */
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * @return the directory to create memory-mapped segment files in, or null to allocate direct buffers
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return true if the segment files are kept and recovered when the cache is created
+     */
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    public static class Builder {
+        public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+        public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+        int segmentSize;
+        double compactionThreshold;
+        String directory;
+        boolean persistent;
+
+        public Builder() {
+            segmentSize(DEFAULT_SEGMENT_SIZE);
+            compactionThreshold(DEFAULT_COMPACTION_THRESHOLD);
+        }
+
+        public Builder segmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        public Builder compactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        public Builder directory(String directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        public Builder persistent(boolean persistent) {
+            this.persistent = persistent;
+            return this;
+        }
+
+        public OffHeapCacheOptions build() {
+            return new OffHeapCacheOptions(segmentSize, compactionThreshold, directory, persistent);
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public double getCompactionThreshold() {
+            return compactionThreshold;
+        }
+
+        public void setCompactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public boolean isPersistent() {
+            return persistent;
+        }
+
+        public void setPersistent(boolean persistent) {
+            this.persistent = persistent;
+        }
+    }
+}
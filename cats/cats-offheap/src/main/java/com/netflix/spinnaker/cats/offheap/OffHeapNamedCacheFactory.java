@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.offheap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.spinnaker.cats.cache.NamedCacheFactory;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Produces OffHeapCaches.
+ */
+public class OffHeapNamedCacheFactory implements NamedCacheFactory {
+    private final ObjectMapper objectMapper;
+    private final OffHeapCacheOptions options;
+    private final ConcurrentMap<String, WriteableCache> caches = new ConcurrentHashMap<>();
+
+    public OffHeapNamedCacheFactory(ObjectMapper objectMapper, OffHeapCacheOptions options) {
+        this.objectMapper = objectMapper;
+        this.options = options;
+    }
+
+    @Override
+    public WriteableCache getCache(String name) {
+        return caches.computeIfAbsent(name, n -> new OffHeapCache(objectMapper, options, cacheDirectory(n)));
+    }
+
+    private File cacheDirectory(String name) {
+        if (options.getDirectory() == null) {
+            return null;
+        }
+        try {
+            return new File(options.getDirectory(), URLEncoder.encode(name, "UTF-8"));
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.offheap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Stores a byte[] value per id in append-only off-heap segments, either direct ByteBuffers or
+ * memory-mapped segment files, with an on-heap index of id to segment and offset.
+ * <p>
+ * Each record is written as [int length][int crc][int idLength][id][value], where length excludes
+ * the length field itself and the crc covers everything after the crc field. Writing a value for
+ * an existing id appends a new record and leaves the previous record as garbage; once a full
+ * segment's live bytes drop below the compaction threshold its live records are copied to the
+ * active segment and the segment is released.
+ * <p>
+ * A persistent store keeps its segment files and rebuilds the index from them when it is created,
+ * replaying the records in segment order. Removals are then written as tombstone records, and
+ * sync() forces the segments written since the previous sync to disk.
+ * <p>
+ * Writes are serialized on the store. Reads don't lock: records are never modified once written
+ * and a released segment is only dropped after the index points at the copied records.
+ */
+class SegmentStore {
+    private static final int HEADER_SIZE = 12;
+    private static final int TOMBSTONE = 0x80000000;
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+    private final int segmentSize;
+    private final double compactionThreshold;
+    private final File directory;
+    private final boolean persistent;
+
+    private final ConcurrentMap<String, Long> index = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final Deque<Segment> compactionQueue = new ArrayDeque<>();
+    private final Set<Segment> unsynced = new LinkedHashSet<>();
+    private Segment active;
+    private int nextSegmentId = 0;
+
+    /**
+     * @param directory  the directory to map segment files in, or null to allocate direct buffers
+     * @param persistent if true the segment files already in the directory are recovered, otherwise they are deleted
+     */
+    SegmentStore(int segmentSize, double compactionThreshold, File directory, boolean persistent) {
+        if (persistent && directory == null) {
+            throw new IllegalArgumentException("A persistent store requires a directory");
+        }
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+        this.directory = directory;
+        this.persistent = persistent;
+        if (directory != null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalStateException("Unable to create segment directory " + directory);
+            }
+            if (persistent) {
+                recover();
+            } else {
+                for (File file : segmentFiles(directory).values()) {
+                    if (!file.delete()) {
+                        throw new IllegalStateException("Unable to delete stale segment " + file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the value stored for id, or null if there is none
+     */
+    byte[] read(String id) {
+        while (true) {
+            final Long address = index.get(id);
+            if (address == null) {
+                return null;
+            }
+            final Segment segment = segments.get(segmentId(address));
+            if (segment != null) {
+                return segment.readValue(offset(address));
+            }
+            // the segment was compacted after the index was read, the index now points at the copied record
+        }
+    }
+
+    synchronized void write(String id, byte[] value) {
+        final byte[] record = record(id, value, false);
+        final Segment segment = segmentFor(record.length);
+        final int offset = segment.append(record, true);
+        written(segment);
+        final Long previous = index.put(id, address(segment.id, offset));
+        if (previous != null) {
+            release(previous);
+        }
+        compact();
+    }
+
+    synchronized boolean remove(String id) {
+        final Long previous = index.remove(id);
+        if (previous == null) {
+            return false;
+        }
+        if (persistent) {
+            final byte[] tombstone = record(id, new byte[0], true);
+            final Segment segment = segmentFor(tombstone.length);
+            segment.append(tombstone, false);
+            written(segment);
+        }
+        release(previous);
+        compact();
+        return true;
+    }
+
+    /**
+     * Forces the segments written since the previous sync to disk, committing every write made before the call.
+     */
+    void sync() {
+        if (!persistent) {
+            return;
+        }
+        final List<Segment> toSync;
+        synchronized (this) {
+            toSync = new ArrayList<>(unsynced);
+            unsynced.clear();
+        }
+        for (Segment segment : toSync) {
+            ((MappedByteBuffer) segment.buffer).force();
+        }
+    }
+
+    /**
+     * @return a live view of the stored ids
+     */
+    Set<String> ids() {
+        return index.keySet();
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    private Segment segmentFor(int recordSize) {
+        if (recordSize > segmentSize) {
+            // a segment of its own, which is released as soon as the record is replaced or removed
+            final Segment dedicated = allocate(recordSize);
+            compactionQueue.add(dedicated);
+            return dedicated;
+        }
+        if (active == null || active.remaining() < recordSize) {
+            if (active != null) {
+                compactionQueue.add(active);
+            }
+            active = allocate(segmentSize);
+        }
+        return active;
+    }
+
+    private void release(long address) {
+        final Segment segment = segments.get(segmentId(address));
+        segment.liveBytes -= segment.recordSize(offset(address));
+        if (segment != active && !compactionQueue.contains(segment)) {
+            compactionQueue.add(segment);
+        }
+    }
+
+    /**
+     * Compacts the full segments whose live bytes are below the compaction threshold.
+     * <p>
+     * Tombstones are carried forward while an older segment, which may hold a record they remove, remains.
+     */
+    private void compact() {
+        Segment segment;
+        while ((segment = compactionQueue.poll()) != null) {
+            if (segment == active || !segments.containsKey(segment.id) || segment.liveBytes >= compactionThreshold * segment.capacity()) {
+                continue;
+            }
+            final boolean keepTombstones = persistent && hasSegmentBefore(segment.id);
+            int offset = 0;
+            while (offset < segment.position) {
+                final int recordSize = segment.recordSize(offset);
+                if (segment.isTombstone(offset)) {
+                    // an id that was merged again after its removal doesn't need the tombstone
+                    if (keepTombstones && !index.containsKey(segment.readId(offset))) {
+                        final Segment target = segmentFor(recordSize);
+                        target.append(segment.readRecord(offset), false);
+                        written(target);
+                    }
+                } else if (segment.liveBytes > 0) {
+                    final String id = segment.readId(offset);
+                    final Long current = index.get(id);
+                    if (current != null && current == address(segment.id, offset)) {
+                        final Segment target = segmentFor(recordSize);
+                        final int newOffset = target.append(segment.readRecord(offset), true);
+                        written(target);
+                        index.put(id, address(target.id, newOffset));
+                        segment.liveBytes -= recordSize;
+                    }
+                }
+                offset += recordSize;
+            }
+            if (persistent) {
+                // the copies must be durable before the segment file is deleted
+                for (Segment target : unsynced) {
+                    ((MappedByteBuffer) target.buffer).force();
+                }
+                unsynced.clear();
+            }
+            segments.remove(segment.id);
+            unsynced.remove(segment);
+            segment.release();
+        }
+    }
+
+    private void written(Segment segment) {
+        if (persistent) {
+            unsynced.add(segment);
+        }
+    }
+
+    private boolean hasSegmentBefore(int segmentId) {
+        for (Integer id : segments.keySet()) {
+            if (id < segmentId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rebuilds the index from the segment files. Each segment is read up to its first invalid record,
+     * which is where a write that was not synced before a crash would have been torn.
+     */
+    private void recover() {
+        for (File file : segmentFiles(directory).values()) {
+            final Segment segment = map(Integer.parseInt(file.getName().substring(SEGMENT_FILE_PREFIX.length())), file, file.length());
+            int offset = 0;
+            while (segment.isValid(offset)) {
+                final int recordSize = segment.recordSize(offset);
+                final String id = segment.readId(offset);
+                final Long previous;
+                if (segment.isTombstone(offset)) {
+                    previous = index.remove(id);
+                } else {
+                    previous = index.put(id, address(segment.id, offset));
+                    segment.liveBytes += recordSize;
+                }
+                if (previous != null) {
+                    final Segment previousSegment = segments.get(segmentId(previous));
+                    previousSegment.liveBytes -= previousSegment.recordSize(offset(previous));
+                }
+                offset += recordSize;
+            }
+            segment.position = offset;
+            nextSegmentId = segment.id + 1;
+        }
+        compactionQueue.addAll(segments.values());
+    }
+
+    private Segment allocate(int size) {
+        if (directory == null) {
+            final Segment segment = new Segment(nextSegmentId++, ByteBuffer.allocateDirect(size), null);
+            segments.put(segment.id, segment);
+            return segment;
+        }
+        final int id = nextSegmentId++;
+        return map(id, new File(directory, SEGMENT_FILE_PREFIX + id), size);
+    }
+
+    private Segment map(int id, File file, long size) {
+        try (RandomAccessFile segmentFile = new RandomAccessFile(file, "rw")) {
+            segmentFile.setLength(size);
+            final Segment segment = new Segment(id, segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size), file);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Unable to map segment " + file, ioe);
+        }
+    }
+
+    /**
+     * @return the segment files in the directory, ordered by segment id
+     */
+    private static TreeMap<Integer, File> segmentFiles(File directory) {
+        final TreeMap<Integer, File> files = new TreeMap<>();
+        final File[] existing = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX));
+        if (existing != null) {
+            for (File file : existing) {
+                files.put(Integer.parseInt(file.getName().substring(SEGMENT_FILE_PREFIX.length())), file);
+            }
+        }
+        return files;
+    }
+
+    private static byte[] record(String id, byte[] value, boolean tombstone) {
+        final byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + idBytes.length + value.length);
+        record.putInt(record.capacity() - 4)
+            .putInt(0)
+            .putInt(tombstone ? idBytes.length | TOMBSTONE : idBytes.length)
+            .put(idBytes)
+            .put(value);
+        record.putInt(4, crc(record.array(), 8, record.capacity() - 8));
+        return record.array();
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static long address(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentId(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static class Segment {
+        final int id;
+        final ByteBuffer buffer;
+        final File file;
+        int position = 0;
+        long liveBytes = 0;
+
+        Segment(int id, ByteBuffer buffer, File file) {
+            this.id = id;
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        int remaining() {
+            return buffer.capacity() - position;
+        }
+
+        int append(byte[] record, boolean live) {
+            final int offset = position;
+            final ByteBuffer target = buffer.duplicate();
+            target.position(offset);
+            target.put(record);
+            position = target.position();
+            if (live) {
+                liveBytes += record.length;
+            }
+            return offset;
+        }
+
+        int recordSize(int offset) {
+            return 4 + buffer.getInt(offset);
+        }
+
+        boolean isTombstone(int offset) {
+            return (buffer.getInt(offset + 8) & TOMBSTONE) != 0;
+        }
+
+        int idLength(int offset) {
+            return buffer.getInt(offset + 8) & ~TOMBSTONE;
+        }
+
+        /**
+         * @return true if a complete record, with a matching crc, starts at offset
+         */
+        boolean isValid(int offset) {
+            if (offset > capacity() - HEADER_SIZE) {
+                return false;
+            }
+            final int length = buffer.getInt(offset);
+            if (length < HEADER_SIZE - 4 || length > capacity() - offset - 4) {
+                return false;
+            }
+            final byte[] record = readRecord(offset);
+            return idLength(offset) <= length - HEADER_SIZE + 4 && crc(record, 8, record.length - 8) == buffer.getInt(offset + 4);
+        }
+
+        String readId(int offset) {
+            final byte[] id = new byte[idLength(offset)];
+            final ByteBuffer source = buffer.duplicate();
+            source.position(offset + HEADER_SIZE);
+            source.get(id);
+            return new String(id, StandardCharsets.UTF_8);
+        }
+
+        byte[] readValue(int offset) {
+            final int idLength = idLength(offset);
+            final byte[] value = new byte[recordSize(offset) - HEADER_SIZE - idLength];
+            final ByteBuffer source = buffer.duplicate();
+            source.position(offset + HEADER_SIZE + idLength);
+            source.get(value);
+            return value;
+        }
+
+        byte[] readRecord(int offset) {
+            final byte[] record = new byte[recordSize(offset)];
+            final ByteBuffer source = buffer.duplicate();
+            source.position(offset);
+            source.get(record);
+            return record;
+        }
+
+        void release() {
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.offheap
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.WriteableCacheSpec
+
+class OffHeapCacheSpec extends WriteableCacheSpec {
+
+    static final int SEGMENT_SIZE = 1024
+
+    @Override
+    OffHeapCache getSubject() {
+        new OffHeapCache(new ObjectMapper(), OffHeapCacheOptions.builder().segmentSize(SEGMENT_SIZE).build())
+    }
+
+    def 'compacts segments once most of their records are replaced'() {
+        when:
+        100.times { int round ->
+            cache.mergeAll('foo', (0..<10).collect { createData("item-$it", [round: round]) })
+        }
+
+        then:
+        cache.getAll('foo')*.attributes.round.unique() == [99]
+        storeOf(cache, 'foo').segmentCount() <= 2
+    }
+
+    def 'releases segments of evicted items'() {
+        setup:
+        def ids = (0..<100).collect { "item-$it".toString() }
+        cache.mergeAll('foo', ids.collect { createData(it) })
+
+        when:
+        cache.evictAll('foo', ids)
+
+        then:
+        cache.getIdentifiers('foo').isEmpty()
+        storeOf(cache, 'foo').segmentCount() <= 1
+    }
+
+    def 'stores items larger than a segment'() {
+        setup:
+        def attributes = [payload: 'x' * (SEGMENT_SIZE * 3)]
+
+        when:
+        cache.merge('foo', createData('big', attributes))
+        cache.merge('foo', createData('small'))
+
+        then:
+        cache.get('foo', 'big').attributes == attributes
+        cache.get('foo', 'small') != null
+
+        when:
+        cache.evict('foo', 'big')
+
+        then:
+        storeOf(cache, 'foo').segmentCount() == 1
+    }
+
+    def 'reads items while their segments are compacted'() {
+        setup:
+        def ids = (0..<20).collect { "item-$it".toString() }
+        cache.mergeAll('foo', ids.collect { createData(it, [round: 0]) })
+        def writer = Thread.start {
+            (1..500).each { int round ->
+                cache.mergeAll('foo', ids.collect { createData(it, [round: round]) })
+            }
+        }
+
+        when:
+        def reads = []
+        while (writer.alive) {
+            reads.addAll(cache.getAll('foo', ids))
+        }
+        writer.join()
+
+        then:
+        reads.every { it.attributes.round instanceof Integer }
+        cache.getAll('foo', ids)*.attributes.round.unique() == [500]
+    }
+
+    def 'maps segment files when configured with a directory'() {
+        setup:
+        File directory = File.createTempDir()
+        def mapped = new OffHeapCache(new ObjectMapper(), OffHeapCacheOptions.builder().segmentSize(SEGMENT_SIZE).directory(directory.absolutePath).build())
+
+        when:
+        mapped.mergeAll('foo:bar', (0..<50).collect { createData("item-$it", [index: it], [rel: ["rel-$it".toString()]]) })
+
+        then:
+        mapped.getAll('foo:bar').size() == 50
+        mapped.get('foo:bar', 'item-7').relationships.rel == ['rel-7']
+        new File(directory, URLEncoder.encode('foo:bar', 'UTF-8')).listFiles().size() > 1
+
+        cleanup:
+        directory.deleteDir()
+    }
+
+    def 'recovers persisted items when created on an existing directory'() {
+        setup:
+        File directory = File.createTempDir()
+        def persistent = persistentCache(directory)
+        persistent.mergeAll('foo:bar', (0..<50).collect { createData("item-$it", [index: it], [rel: ["rel-$it".toString()]]) })
+        persistent.merge('foo:bar', createData('item-7', [index: 70]))
+        persistent.evict('foo:bar', 'item-8')
+
+        when:
+        def recovered = persistentCache(directory)
+
+        then:
+        recovered.stores.keySet() == ['foo:bar'] as Set
+        recovered.getIdentifiers('foo:bar').size() == 49
+        recovered.get('foo:bar', 'item-7').attributes.index == 70
+        recovered.get('foo:bar', 'item-7').relationships.rel == ['rel-7']
+        recovered.get('foo:bar', 'item-8') == null
+
+        cleanup:
+        directory.deleteDir()
+    }
+
+    def 'does not resurrect evicted items after their segments are compacted'() {
+        setup:
+        File directory = File.createTempDir()
+        def persistent = persistentCache(directory)
+        def ids = (0..<20).collect { "item-$it".toString() }
+        persistent.mergeAll('foo', ids.collect { createData(it, [round: 0]) })
+        persistent.evictAll('foo', ids.take(10))
+        50.times { int round ->
+            persistent.mergeAll('foo', ids.drop(10).collect { createData(it, [round: round]) })
+        }
+
+        when:
+        def recovered = persistentCache(directory)
+
+        then:
+        recovered.getIdentifiers('foo') == ids.drop(10) as Set
+        recovered.getAll('foo')*.attributes.round.unique() == [49]
+
+        cleanup:
+        directory.deleteDir()
+    }
+
+    def 'ignores a torn record when recovering'() {
+        setup:
+        File directory = File.createTempDir()
+        def persistent = persistentCache(directory)
+        persistent.merge('foo', createData('first'))
+        persistent.merge('foo', createData('second'))
+        def active = storeOf(persistent, 'foo').active
+        new RandomAccessFile(active.file as File, 'rw').withCloseable {
+            long last = (active.position as int) - 1
+            it.seek(last)
+            int value = it.read()
+            it.seek(last)
+            it.write(~value)
+        }
+
+        when:
+        def recovered = persistentCache(directory)
+
+        then:
+        recovered.getIdentifiers('foo') == ['first'] as Set
+
+        when:
+        recovered.merge('foo', createData('third'))
+
+        then:
+        persistentCache(directory).getIdentifiers('foo') == ['first', 'third'] as Set
+
+        cleanup:
+        directory.deleteDir()
+    }
+
+    private static OffHeapCache persistentCache(File directory) {
+        new OffHeapCache(new ObjectMapper(), OffHeapCacheOptions.builder().segmentSize(SEGMENT_SIZE).directory(directory.absolutePath).persistent(true).build())
+    }
+
+    private static SegmentStore storeOf(OffHeapCache cache, String type) {
+        cache.stores.get(type) as SegmentStore
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.redis.JedisPoolSource;
+import com.netflix.spinnaker.cats.redis.test.RedisStandIn;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares getAll of a large type with sequential and parallel reads.
+ * <p>
+ * Runs against an in-process RedisStandIn so that the round trip latency is controlled.
+ * <p>
+ * Run with ./gradlew :cats:cats-redis:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class RedisCacheReadBenchmark {
+
+    private static final String TYPE = "items";
+
+    @Param({"1", "2", "4", "8"})
+    public int maxGetParallelism;
+
+    @Param({"2"})
+    public long roundTripMillis;
+
+    @Param({"20000"})
+    public int itemCount;
+
+    private RedisStandIn redis;
+    private JedisPool pool;
+    private RedisCache cache;
+    private List<String> ids;
+
+    @Setup
+    public void setup() throws Exception {
+        redis = new RedisStandIn(roundTripMillis);
+        final GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+        poolConfig.setMaxTotal(16);
+        pool = new JedisPool(poolConfig, "localhost", redis.getPort());
+        cache = new RedisCache("test", new JedisPoolSource(pool), new ObjectMapper(), RedisCacheOptions.builder()
+            .maxGetBatch(100)
+            .maxGetParallelism(maxGetParallelism)
+            .hashing(false)
+            .build(), null);
+
+        ids = new ArrayList<>(itemCount);
+        final List<CacheData> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            final String id = "item-" + i;
+            ids.add(id);
+            items.add(createItem(id, i));
+        }
+        cache.mergeAll(TYPE, items);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.destroy();
+        redis.close();
+    }
+
+    @Benchmark
+    public Collection<CacheData> getAll() {
+        return cache.getAll(TYPE, ids);
+    }
+
+    private static CacheData createItem(String id, int index) {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("name", id);
+        attributes.put("index", index);
+        attributes.put("tags", Arrays.asList("a", "b", "c"));
+
+        final Map<String, Collection<String>> relationships = new HashMap<>();
+        relationships.put("instances", Collections.singletonList("i-" + index));
+        return new DefaultCacheData(id, attributes, relationships);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A lua script that is loaded once and then run by its SHA.
+ * <p>
+ * If redis no longer knows the script (it was restarted or its script cache was flushed) the script is
+ * loaded again and the call retried, so callers never need to check SCRIPT EXISTS.
+ */
+public class RedisScript {
+    private final String script;
+    private volatile String sha;
+
+    public RedisScript(String script) {
+        this.script = script;
+    }
+
+    public Object eval(Jedis jedis, List<String> keys, List<String> args) {
+        return withSha(jedis, sha -> jedis.evalsha(sha, keys, args));
+    }
+
+    public Object evalBinary(Jedis jedis, List<byte[]> keys, List<byte[]> args) {
+        return withSha(jedis, sha -> jedis.evalsha(sha.getBytes(StandardCharsets.UTF_8), keys, args));
+    }
+
+    private Object withSha(Jedis jedis, Function<String, Object> evalsha) {
+        String loaded = sha;
+        if (loaded == null) {
+            loaded = sha = jedis.scriptLoad(script);
+        }
+        try {
+            return evalsha.apply(loaded);
+        } catch (JedisDataException noScript) {
+            if (noScript.getMessage() == null || !noScript.getMessage().startsWith("NOSCRIPT")) {
+                throw noScript;
+            }
+            loaded = sha = jedis.scriptLoad(script);
+            return evalsha.apply(loaded);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A RedisValueCodec backed by Jackson that writes either JSON or Smile,
+ * optionally LZ4 compressed.
+ *
+ * Decoding inspects the leading bytes of each value so that values written
+ * as JSON, Smile or compressed by any prior configuration remain readable.
+ * The JSON/uncompressed encoding is byte for byte identical to the legacy
+ * format, so existing hashes continue to match.
+ */
+public class JacksonValueCodec implements RedisValueCodec {
+
+    public enum Format {
+        JSON,
+        SMILE
+    }
+
+    public enum Compression {
+        NONE,
+        LZ4
+    }
+
+    private static final byte[] LZ4_MAGIC = new byte[]{0x00, 'L', 'Z', '4'};
+    private static final int LZ4_HEADER_SIZE = LZ4_MAGIC.length + 4;
+    private static final byte[] SMILE_MAGIC = new byte[]{':', ')', '\n'};
+
+    private final ObjectMapper objectMapper;
+    private final SmileFactory smileFactory = new SmileFactory();
+    private final LZ4Factory lz4 = LZ4Factory.fastestInstance();
+    private final Format format;
+    private final Compression compression;
+    private final String name;
+
+    public JacksonValueCodec(ObjectMapper objectMapper, Format format, Compression compression) {
+        this.objectMapper = objectMapper;
+        this.format = format == null ? Format.JSON : format;
+        this.compression = compression == null ? Compression.NONE : compression;
+        this.name = (this.format.name() + (this.compression == Compression.NONE ? "" : "+" + this.compression.name())).toLowerCase();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        final byte[] serialized;
+        if (format == Format.SMILE) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (JsonGenerator generator = smileFactory.createGenerator(out)) {
+                objectMapper.writeValue(generator, value);
+            }
+            serialized = out.toByteArray();
+        } else {
+            serialized = objectMapper.writeValueAsBytes(value);
+        }
+
+        if (compression == Compression.LZ4) {
+            return compress(serialized);
+        }
+        return serialized;
+    }
+
+    @Override
+    public <T> T decode(byte[] value, TypeReference<T> type) throws IOException {
+        final byte[] serialized = startsWith(value, LZ4_MAGIC) ? decompress(value) : value;
+        if (startsWith(serialized, SMILE_MAGIC)) {
+            try (JsonParser parser = smileFactory.createParser(serialized)) {
+                return objectMapper.readValue(parser, type);
+            }
+        }
+        return objectMapper.readValue(serialized, type);
+    }
+
+    private byte[] compress(byte[] serialized) {
+        byte[] compressed = lz4.fastCompressor().compress(serialized);
+        return ByteBuffer.allocate(LZ4_HEADER_SIZE + compressed.length)
+            .put(LZ4_MAGIC)
+            .putInt(serialized.length)
+            .put(compressed)
+            .array();
+    }
+
+    private byte[] decompress(byte[] value) throws IOException {
+        if (value.length < LZ4_HEADER_SIZE) {
+            throw new IOException("Truncated LZ4 value (" + value.length + " bytes)");
+        }
+        int originalLength = ByteBuffer.wrap(value, LZ4_MAGIC.length, 4).getInt();
+        return lz4.fastDecompressor().decompress(value, LZ4_HEADER_SIZE, originalLength);
+    }
+
+    private static boolean startsWith(byte[] value, byte[] magic) {
+        return value.length >= magic.length && Arrays.equals(Arrays.copyOf(value, magic.length), magic);
+    }
+}
@@ -16,27 +16,47 @@
 
 package com.netflix.spinnaker.cats.redis.cache;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
+import com.netflix.spinnaker.cats.agent.ExecutionTelemetry;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.CacheFilter;
+import com.netflix.spinnaker.cats.cache.CacheStreams;
 import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.cache.Glob;
 import com.netflix.spinnaker.cats.cache.WriteableCache;
 import com.netflix.spinnaker.cats.redis.JedisSource;
+import com.netflix.spinnaker.cats.redis.RedisScript;
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.ScanParams;
 import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class RedisCache implements WriteableCache {
 
@@ -56,6 +76,20 @@ public class RedisCache implements WriteableCache {
             //noop
         }
 
+        /**
+         * Reported once per merged batch, in addition to the operation counts, so that
+         * the pipelined and scripted merge paths can be compared.
+         */
+        default void merge(String prefix,
+                           String type,
+                           MergePath path,
+                           int itemCount,
+                           int keysWritten,
+                           int roundTrips,
+                           long durationNanos) {
+            //noop
+        }
+
         default void evict(String prefix,
                            String type,
                            int itemCount,
@@ -77,11 +111,167 @@ public class RedisCache implements WriteableCache {
             //noop
         }
 
+        default void serialize(String prefix,
+                               String type,
+                               String codec,
+                               int valueCount,
+                               long bytesOut) {
+            //noop
+        }
+
+        default void deserialize(String prefix,
+                                 String type,
+                                 String codec,
+                                 int valueCount,
+                                 long bytesIn) {
+            //noop
+        }
+
+        default void nearCacheGet(String prefix,
+                                  String type,
+                                  int requestedSize,
+                                  int hits,
+                                  int misses) {
+            //noop
+        }
+
+        default void nearCacheEvict(String prefix,
+                                    String type,
+                                    int evictions) {
+            //noop
+        }
+
+        default void refreshRelationships(String prefix,
+                                          String type,
+                                          long version,
+                                          int relationshipCount) {
+            //noop
+        }
+
+        /**
+         * Reported for each filterIdentifiers call answered from the identifier index; candidates is the
+         * number of identifiers read from the index and tested against the glob.
+         */
+        default void filterIdentifiers(String prefix,
+                                       String type,
+                                       int candidates,
+                                       int matches) {
+            //noop
+        }
+
         class NOOP implements CacheMetrics {
         }
     }
 
+    public enum MergePath {
+        /**
+         * Reads the existing hashes, then writes the changed values, hashes, memberships and TTLs in pipelines.
+         */
+        PIPELINED,
+
+        /**
+         * Compares hashes and writes values, hashes, memberships and TTLs in a single EVALSHA per batch.
+         */
+        SCRIPTED
+    }
+
     private static final String HASH_CHARSET = "UTF8";
+    private static final int TRIGRAM_LENGTH = 3;
+    static final int INDEX_BUILD_LOCK_SECONDS = 600;
+
+    /**
+     * Merges a batch of values in one round trip.
+     * <p>
+     * KEYS: hashes, hashes.disabled, members, members.2, relationships, relationships.version
+     * <p>
+     * ARGV: hashing enabled ('1' or '0'), the number of ids followed by the ids, the number of relationship
+     * names followed by the names, then (key, hash, value, ttlSeconds) for each value. An empty hash is not stored.
+     * <p>
+     * The value keys are passed as arguments rather than KEYS, so the script assumes a single (non clustered) redis.
+     * <p>
+     * Returns {keysWritten, hashMatches, hashUpdates, expireOperations, relationshipsVersion}, where
+     * relationshipsVersion is 0 unless new relationship names were added.
+     */
+    private static final String MERGE_SCRIPT =
+        "local function saddAll(key, first, last)\n" +
+        "  local added = 0\n" +
+        "  for i = first, last, 1000 do\n" +
+        "    added = added + redis.call('sadd', key, unpack(ARGV, i, math.min(i + 999, last)))\n" +
+        "  end\n" +
+        "  return added\n" +
+        "end\n" +
+        "local hashing = ARGV[1] == '1' and redis.call('exists', KEYS[2]) == 0\n" +
+        "local idCount = tonumber(ARGV[2])\n" +
+        "local relStart = 3 + idCount\n" +
+        "local relCount = tonumber(ARGV[relStart])\n" +
+        "local written, matched, hashUpdates, expires = 0, 0, 0, 0\n" +
+        "for i = relStart + relCount + 1, #ARGV, 4 do\n" +
+        "  local key, hash, ttl = ARGV[i], ARGV[i + 1], tonumber(ARGV[i + 3])\n" +
+        "  if hashing and hash ~= '' and redis.call('hget', KEYS[1], key) == hash then\n" +
+        "    matched = matched + 1\n" +
+        "  else\n" +
+        "    redis.call('set', key, ARGV[i + 2])\n" +
+        "    written = written + 1\n" +
+        "    if hash ~= '' then\n" +
+        "      redis.call('hset', KEYS[1], key, hash)\n" +
+        "      hashUpdates = hashUpdates + 1\n" +
+        "    end\n" +
+        "    if ttl > 0 then\n" +
+        "      redis.call('expire', key, ttl)\n" +
+        "      expires = expires + 1\n" +
+        "    end\n" +
+        "  end\n" +
+        "end\n" +
+        "local version = 0\n" +
+        "if written > 0 then\n" +
+        "  if idCount > 0 then\n" +
+        "    saddAll(KEYS[4], 3, relStart - 1)\n" +
+        "    saddAll(KEYS[3], 3, relStart - 1)\n" +
+        "  end\n" +
+        "  if relCount > 0 and saddAll(KEYS[5], relStart + 1, relStart + relCount) > 0 then\n" +
+        "    version = redis.call('incr', KEYS[6])\n" +
+        "  end\n" +
+        "end\n" +
+        "return {written, matched, hashUpdates, expires, version}\n";
+
+    /**
+     * Reconciles the trigram index with the members set for a batch of ids.
+     * <p>
+     * KEYS: members, members.trigrams
+     * <p>
+     * ARGV: the ids
+     * <p>
+     * Each id of at least three bytes is indexed if it is a member and unindexed if it is not, so the script is
+     * run after both merges and evictions. An id is indexed with one member per trigram of its bytes, the trigram
+     * followed by the id, and is treated as indexed if the member for its first trigram exists.
+     * <p>
+     * Returns {idsIndexed, idsUnindexed}.
+     */
+    private static final String INDEX_SCRIPT =
+        "local indexed, unindexed = 0, 0\n" +
+        "for i = 1, #ARGV do\n" +
+        "  local id = ARGV[i]\n" +
+        "  if #id >= 3 then\n" +
+        "    local present = redis.call('sismember', KEYS[1], id) == 1\n" +
+        "    if present ~= (redis.call('zscore', KEYS[2], string.sub(id, 1, 3) .. id) ~= false) then\n" +
+        "      local args = {}\n" +
+        "      for j = 1, #id - 2 do\n" +
+        "        if present then\n" +
+        "          args[#args + 1] = 0\n" +
+        "        end\n" +
+        "        args[#args + 1] = string.sub(id, j, j + 2) .. id\n" +
+        "      end\n" +
+        "      if present then\n" +
+        "        redis.call('zadd', KEYS[2], unpack(args))\n" +
+        "        indexed = indexed + 1\n" +
+        "      else\n" +
+        "        redis.call('zrem', KEYS[2], unpack(args))\n" +
+        "        unindexed = unindexed + 1\n" +
+        "      end\n" +
+        "    end\n" +
+        "  end\n" +
+        "end\n" +
+        "return {indexed, unindexed}\n";
 
     private static final TypeReference<Map<String, Object>> ATTRIBUTES = new TypeReference<Map<String, Object>>() {
     };
@@ -90,16 +280,75 @@ public class RedisCache implements WriteableCache {
 
     private final String prefix;
     private final JedisSource source;
-    private final ObjectMapper objectMapper;
+    private final RedisValueCodec codec;
     private final CacheMetrics cacheMetrics;
     private final RedisCacheOptions options;
+    private final ConcurrentMap<String, RelationshipSnapshot> relationshipSnapshots = new ConcurrentHashMap<>();
+    private final ExecutorService readExecutor;
+    private final ExecutorService indexExecutor;
+    // types whose identifier index this node is building
+    private final Set<String> indexBuilds = ConcurrentHashMap.newKeySet();
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final RedisScript mergeScript = new RedisScript(MERGE_SCRIPT);
+    private final RedisScript indexScript = new RedisScript(INDEX_SCRIPT);
+    private volatile boolean scriptedMergeAvailable = true;
 
     public RedisCache(String prefix, JedisSource source, ObjectMapper objectMapper, RedisCacheOptions options, CacheMetrics cacheMetrics) {
+        this(prefix, source, newCodec(objectMapper, options), options, cacheMetrics);
+    }
+
+    public RedisCache(String prefix, JedisSource source, RedisValueCodec codec, RedisCacheOptions options, CacheMetrics cacheMetrics) {
+        this(prefix, source, codec, options, cacheMetrics, newReadExecutor(prefix, options), newIndexExecutor(prefix, options));
+    }
+
+    /**
+     * Creates a cache that runs its reads and identifier index builds on the supplied executors, which
+     * the caller owns and shuts down. A null readExecutor reads the batches sequentially.
+     */
+    public RedisCache(String prefix, JedisSource source, ObjectMapper objectMapper, RedisCacheOptions options, CacheMetrics cacheMetrics, ExecutorService readExecutor, ExecutorService indexExecutor) {
+        this(prefix, source, newCodec(objectMapper, options), options, cacheMetrics, readExecutor, indexExecutor);
+    }
+
+    private RedisCache(String prefix, JedisSource source, RedisValueCodec codec, RedisCacheOptions options, CacheMetrics cacheMetrics, ExecutorService readExecutor, ExecutorService indexExecutor) {
         this.prefix = prefix;
         this.source = source;
-        this.objectMapper = objectMapper.disable(SerializationFeature.WRITE_NULL_MAP_VALUES);
+        this.codec = codec;
         this.options = options;
         this.cacheMetrics = cacheMetrics == null ? new CacheMetrics.NOOP() : cacheMetrics;
+        this.readExecutor = options.getMaxGetParallelism() > 1 ? readExecutor : null;
+        this.indexExecutor = options.isIdentifierIndexEnabled() ? indexExecutor : null;
+        if (this.indexExecutor == null && options.isIdentifierIndexEnabled()) {
+            throw new IllegalArgumentException("identifierIndexEnabled requires an indexExecutor");
+        }
+    }
+
+    private static RedisValueCodec newCodec(ObjectMapper objectMapper, RedisCacheOptions options) {
+        return new JacksonValueCodec(objectMapper.disable(SerializationFeature.WRITE_NULL_MAP_VALUES), options.getSerializationFormat(), options.getCompression());
+    }
+
+    /**
+     * Each read task holds its own connection from the JedisSource, so the pool should allow at
+     * least maxGetParallelism connections in addition to those used by other callers.
+     */
+    static ExecutorService newReadExecutor(String name, RedisCacheOptions options) {
+        return options.getMaxGetParallelism() > 1 ? newExecutor(name, options.getMaxGetParallelism()) : null;
+    }
+
+    static ExecutorService newIndexExecutor(String name, RedisCacheOptions options) {
+        return options.isIdentifierIndexEnabled() ? newExecutor(name + "-index", 1) : null;
+    }
+
+    private static ExecutorService newExecutor(String name, int parallelism) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            parallelism,
+            parallelism,
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new NamedThreadFactory(RedisCache.class.getSimpleName() + "-" + name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @Override
@@ -118,14 +367,33 @@ public class RedisCache implements WriteableCache {
         if (items.isEmpty()) {
             return;
         }
+        if (!(options.isScriptedMergeEnabled() && scriptedMergeAvailable && scriptedMergeItems(type, items))) {
+            pipelinedMergeItems(type, items);
+        }
+        if (options.isIdentifierIndexEnabled()) {
+            final Set<String> ids = new LinkedHashSet<>(items.size());
+            for (CacheData item : items) {
+                ids.add(item.getId());
+            }
+            try (Jedis jedis = source.getJedis()) {
+                reindexIdentifiers(jedis, type, ids);
+            }
+        }
+    }
+
+    private void pipelinedMergeItems(String type, Collection<CacheData> items) {
+        final long startTime = System.nanoTime();
         final Set<String> relationshipNames = new HashSet<>();
-        final List<String> keysToSet = new LinkedList<>();
+        final List<byte[]> keysToSet = new LinkedList<>();
         final Set<String> idSet = new HashSet<>();
 
         final Map<String, Integer> ttlSecondsByKey = new HashMap<>();
         int skippedWrites = 0;
+        int valuesSerialized = 0;
+        long bytesOut = 0;
 
-        final Map<String, byte[]> hashes = getHashes(type, items);
+        final AtomicInteger hashRoundTrips = new AtomicInteger();
+        final Map<String, byte[]> hashes = getHashes(type, items, hashRoundTrips);
 
         final NavigableMap<byte[], byte[]> updatedHashes = new TreeMap<>(new ByteArrayComparator());
 
@@ -136,9 +404,11 @@ public class RedisCache implements WriteableCache {
             idSet.add(item.getId());
             updatedHashes.putAll(op.hashesToSet);
             skippedWrites += op.skippedWrites;
+            valuesSerialized += op.valuesSerialized;
+            bytesOut += op.bytesWritten;
 
             if (item.getTtlSeconds() > 0) {
-                for (String key : op.keysToSet) {
+                for (String key : op.keysWritten) {
                     ttlSecondsByKey.put(key, item.getTtlSeconds());
                 }
             }
@@ -149,6 +419,7 @@ public class RedisCache implements WriteableCache {
         int hmsetOperations = 0;
         int pipelineOperations = 0;
         int expireOperations = 0;
+        int versionOperations = 0;
         if (keysToSet.size() > 0) {
             try (Jedis jedis = source.getJedis()) {
                 Pipeline pipeline = jedis.pipelined();
@@ -160,14 +431,15 @@ public class RedisCache implements WriteableCache {
                     saddOperations++;
                 }
 
-                for (List<String> keys : Lists.partition(keysToSet, options.getMaxMsetSize())) {
-                    pipeline.mset(keys.toArray(new String[keys.size()]));
+                for (List<byte[]> keys : Lists.partition(keysToSet, options.getMaxMsetSize())) {
+                    pipeline.mset(keys.toArray(new byte[keys.size()][]));
                     msetOperations++;
                 }
 
+                final List<Response<Long>> relationshipsAdded = new ArrayList<>();
                 if (!relationshipNames.isEmpty()) {
                     for (List<String> relNamesPart : Iterables.partition(relationshipNames, options.getMaxSaddSize())) {
-                        pipeline.sadd(allRelationshipsId(type), relNamesPart.toArray(new String[relNamesPart.size()]));
+                        relationshipsAdded.add(pipeline.sadd(allRelationshipsId(type), relNamesPart.toArray(new String[relNamesPart.size()])));
                         saddOperations++;
                     }
                 }
@@ -180,6 +452,17 @@ public class RedisCache implements WriteableCache {
                 }
                 pipeline.sync();
                 pipelineOperations++;
+
+                long newRelationships = 0;
+                for (Response<Long> added : relationshipsAdded) {
+                    newRelationships += added.get();
+                }
+                if (newRelationships > 0) {
+                    // bump the version so that other readers refresh their relationship snapshot
+                    final long version = jedis.incr(relationshipsVersionId(type));
+                    versionOperations++;
+                    loadRelationshipSnapshot(jedis, type, version);
+                }
             }
             try (Jedis jedis = source.getJedis()) {
                 for (List<Map.Entry<String, Integer>> ttlPart : Iterables.partition(ttlSecondsByKey.entrySet(), options.getMaxPipelineSize())) {
@@ -206,6 +489,146 @@ public class RedisCache implements WriteableCache {
             hmsetOperations,
             pipelineOperations,
             expireOperations);
+        cacheMetrics.merge(
+            prefix,
+            type,
+            MergePath.PIPELINED,
+            items.size(),
+            keysToSet.size() / 2,
+            hashRoundTrips.get() + pipelineOperations + versionOperations,
+            System.nanoTime() - startTime);
+        cacheMetrics.serialize(prefix, type, codec.getName(), valuesSerialized, bytesOut);
+        ExecutionTelemetry.recordStore(type, keysToSet.size() / 2, skippedWrites);
+        ExecutionTelemetry.recordSerialized(type, bytesOut);
+    }
+
+    /**
+     * Merges the items with a single EVALSHA of MERGE_SCRIPT.
+     * <p>
+     * Every value is sent along with its hash and redis skips the values whose stored hash matches,
+     * so bytesOut reports every serialized value rather than only the changed ones.
+     *
+     * @return false if the script could not be run, in which case the items should be merged with the pipelined path
+     */
+    private boolean scriptedMergeItems(String type, Collection<CacheData> items) {
+        final long startTime = System.nanoTime();
+        final Set<String> relationshipNames = new LinkedHashSet<>();
+        final Set<String> idSet = new LinkedHashSet<>();
+        final List<byte[]> values = new ArrayList<>();
+        int valuesSerialized = 0;
+        long bytesOut = 0;
+
+        for (CacheData item : items) {
+            MergeOp op = buildMergeOp(type, item, Collections.emptyMap());
+            relationshipNames.addAll(op.relNames);
+            idSet.add(item.getId());
+            valuesSerialized += op.valuesSerialized;
+            bytesOut += op.bytesWritten;
+
+            final byte[] ttlSeconds = stringToBytes(Integer.toString(Math.max(item.getTtlSeconds(), 0)));
+            for (Iterator<byte[]> keyValues = op.keysToSet.iterator(); keyValues.hasNext(); ) {
+                final byte[] key = keyValues.next();
+                final byte[] hash = op.hashesToSet.get(key);
+                values.add(key);
+                values.add(hash == null ? new byte[0] : hash);
+                values.add(keyValues.next());
+                values.add(ttlSeconds);
+            }
+        }
+
+        int keysWritten = 0;
+        int hashMatches = 0;
+        int hashUpdates = 0;
+        int expireOperations = 0;
+        int roundTrips = 0;
+        if (!values.isEmpty()) {
+            final List<byte[]> keys = Arrays.asList(
+                hashesId(type),
+                stringToBytes(hashesDisabled(type)),
+                stringToBytes(allOfTypeId(type)),
+                stringToBytes(allOfTypeReindex(type)),
+                stringToBytes(allRelationshipsId(type)),
+                stringToBytes(relationshipsVersionId(type)));
+
+            final List<byte[]> args = new ArrayList<>(3 + idSet.size() + relationshipNames.size() + values.size());
+            args.add(stringToBytes(options.isHashingEnabled() ? "1" : "0"));
+            args.add(stringToBytes(Integer.toString(idSet.size())));
+            args.addAll(Arrays.asList(stringsToBytes(idSet)));
+            args.add(stringToBytes(Integer.toString(relationshipNames.size())));
+            args.addAll(Arrays.asList(stringsToBytes(relationshipNames)));
+            args.addAll(values);
+
+            try (Jedis jedis = source.getJedis()) {
+                final List<?> result;
+                try {
+                    result = (List<?>) mergeScript.evalBinary(jedis, keys, args);
+                    roundTrips++;
+                } catch (JedisDataException scriptFailure) {
+                    if (!isScriptingUnsupported(scriptFailure)) {
+                        // e.g. BUSY, OOM or LOADING, the next merge tries the script again
+                        throw scriptFailure;
+                    }
+                    log.warn("Scripting is not supported, falling back to pipelined merges of {}", type, scriptFailure);
+                    scriptedMergeAvailable = false;
+                    return false;
+                }
+
+                keysWritten = ((Long) result.get(0)).intValue();
+                hashMatches = ((Long) result.get(1)).intValue();
+                hashUpdates = ((Long) result.get(2)).intValue();
+                expireOperations = ((Long) result.get(3)).intValue();
+                final long version = (Long) result.get(4);
+                if (version > 0) {
+                    // new relationship names were added, the version was bumped by the script
+                    loadRelationshipSnapshot(jedis, type, version);
+                }
+            }
+        }
+
+        cacheMetrics.merge(
+            prefix,
+            type,
+            items.size(),
+            keysWritten,
+            relationshipNames.size(),
+            hashMatches,
+            hashUpdates,
+            0,
+            0,
+            0,
+            0,
+            expireOperations);
+        cacheMetrics.merge(
+            prefix,
+            type,
+            MergePath.SCRIPTED,
+            items.size(),
+            keysWritten,
+            roundTrips,
+            System.nanoTime() - startTime);
+        cacheMetrics.serialize(prefix, type, codec.getName(), valuesSerialized, bytesOut);
+        ExecutionTelemetry.recordStore(type, keysWritten, hashMatches);
+        ExecutionTelemetry.recordSerialized(type, bytesOut);
+        return true;
+    }
+
+    /**
+     * @return whether the redis (or proxy) we are talking to does not run scripts at all, rather than failing this call
+     */
+    static boolean isScriptingUnsupported(JedisDataException scriptFailure) {
+        final String message = scriptFailure.getMessage();
+        // RedisScript has already reloaded the script once if it was NOSCRIPT
+        return message != null && (message.startsWith("NOSCRIPT") || message.toLowerCase().contains("unknown command"));
+    }
+
+    /**
+     * Runs INDEX_SCRIPT over the ids in batches of at most maxMergeBatchSize.
+     */
+    private void reindexIdentifiers(Jedis jedis, String type, Collection<String> ids) {
+        final List<byte[]> keys = Arrays.asList(stringToBytes(allOfTypeId(type)), trigramsId(type));
+        for (List<String> idPart : Iterables.partition(ids, options.getMaxMergeBatchSize())) {
+            indexScript.evalBinary(jedis, keys, Arrays.asList(stringsToBytes(idPart)));
+        }
     }
 
     @Override
@@ -218,7 +641,7 @@ public class RedisCache implements WriteableCache {
         if (identifiers.isEmpty()) {
             return;
         }
-        final Collection<String> allRelationships = scanMembers(allRelationshipsId(type));
+        final Collection<String> allRelationships = getCurrentRelationshipSnapshot(type).relationships;
         for (List<String> items : Iterables.partition(new HashSet<>(identifiers), options.getMaxEvictBatchSize())) {
             evictItems(type, items, allRelationships);
         }
@@ -254,6 +677,10 @@ public class RedisCache implements WriteableCache {
             }
 
             pipe.sync();
+
+            if (options.isIdentifierIndexEnabled()) {
+                reindexIdentifiers(jedis, type, identifiers);
+            }
         }
 
         cacheMetrics.evict(
@@ -302,6 +729,14 @@ public class RedisCache implements WriteableCache {
         return getAll(type, Arrays.asList(identifiers));
     }
 
+    /**
+     * Walks the members of the type with SSCAN, reading at most maxGetBatchSize items at a time.
+     */
+    @Override
+    public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+        return CacheStreams.fromPages(scanIdentifiers(type), ids -> getAll(type, ids, cacheFilter));
+    }
+
     @Override
     public Collection<CacheData> getAll(String type,
                                         Collection<String> identifiers,
@@ -310,28 +745,104 @@ public class RedisCache implements WriteableCache {
             return Collections.emptySet();
         }
         Collection<String> ids = new LinkedHashSet<>(identifiers);
+        Collection<CacheData> result = getAll(type, ids, cacheFilter, getRelationshipSnapshot(type), true);
+        if (result == null) {
+            // the relationship names changed since the snapshot was taken, refresh and read again
+            result = getAll(type, ids, cacheFilter, refreshRelationshipSnapshot(type), false);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the items using the relationship names from the provided snapshot.
+     *
+     * @return the items, or null if validateVersion is set and the stored relationships version
+     * does not match the version of the snapshot
+     */
+    private Collection<CacheData> getAll(String type,
+                                         Collection<String> ids,
+                                         CacheFilter cacheFilter,
+                                         RelationshipSnapshot snapshot,
+                                         boolean validateVersion) {
         final List<String> knownRels;
-        Set<String> allRelationships = scanMembers(allRelationshipsId(type));
         if (cacheFilter == null) {
-            knownRels = new ArrayList<>(allRelationships);
+            knownRels = new ArrayList<>(snapshot.relationships);
         } else {
-            knownRels = new ArrayList<>(cacheFilter.filter(CacheFilter.Type.RELATIONSHIP, allRelationships));
+            knownRels = new ArrayList<>(cacheFilter.filter(CacheFilter.Type.RELATIONSHIP, snapshot.relationships));
+        }
+
+        final Long expectedVersion = validateVersion ? Long.valueOf(snapshot.version) : null;
+        final List<List<String>> idParts = Lists.newArrayList(Iterables.partition(ids, options.getMaxGetBatchSize()));
+        if (readExecutor != null && idParts.size() > 1) {
+            return getAllParallel(type, ids.size(), idParts, knownRels, expectedVersion);
         }
 
         Collection<CacheData> result = new ArrayList<>(ids.size());
 
-        for (List<String> idPart : Iterables.partition(ids, options.getMaxGetBatchSize())) {
-            result.addAll(getItems(type, idPart, knownRels));
+        for (List<String> idPart : idParts) {
+            Collection<CacheData> items = getItems(type, idPart, knownRels, expectedVersion);
+            if (items == null) {
+                return null;
+            }
+            result.addAll(items);
         }
 
         return result;
     }
 
-    private Collection<CacheData> getItems(String type, List<String> ids, List<String> knownRels) {
+    /**
+     * Reads and deserializes each id partition on the read executor, returning the items in the
+     * same order as a sequential read.
+     */
+    private Collection<CacheData> getAllParallel(String type,
+                                                 int size,
+                                                 List<List<String>> idParts,
+                                                 List<String> knownRels,
+                                                 Long expectedVersion) {
+        final List<Future<Collection<CacheData>>> futures = new ArrayList<>(idParts.size());
+        for (List<String> idPart : idParts) {
+            futures.add(readExecutor.submit(() -> getItems(type, idPart, knownRels, expectedVersion)));
+        }
+
+        Collection<CacheData> result = new ArrayList<>(size);
+        try {
+            for (Future<Collection<CacheData>> future : futures) {
+                Collection<CacheData> items = future.get();
+                if (items == null) {
+                    return null;
+                }
+                result.addAll(items);
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted reading " + type, interrupted);
+        } catch (ExecutionException executionException) {
+            if (executionException.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) executionException.getCause();
+            }
+            throw new RuntimeException("Failed reading " + type, executionException.getCause());
+        } finally {
+            for (Future<Collection<CacheData>> future : futures) {
+                future.cancel(false);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param expectedVersion if not null, the relationships version is read in the same MGET as the items
+     *                        and null is returned if it does not match
+     */
+    private Collection<CacheData> getItems(String type, List<String> ids, List<String> knownRels, Long expectedVersion) {
 
         final int singleResultSize = knownRels.size() + 1;
+        final int resultOffset = expectedVersion == null ? 0 : 1;
 
-        final List<String> keysToGet = new ArrayList<>(singleResultSize * ids.size());
+        final List<String> keysToGet = new ArrayList<>(singleResultSize * ids.size() + resultOffset);
+        if (expectedVersion != null) {
+            keysToGet.add(relationshipsVersionId(type));
+        }
         for (String id : ids) {
             keysToGet.add(attributesId(type, id));
             for (String rel : knownRels) {
@@ -339,13 +850,19 @@ public class RedisCache implements WriteableCache {
             }
         }
 
-        final List<String> keyResult = new ArrayList<>(keysToGet.size());
+        final List<byte[]> keyResult = new ArrayList<>(keysToGet.size());
 
         int mgetOperations = 0;
         try (Jedis jedis = source.getJedis()) {
+            final Pipeline pipeline = jedis.pipelined();
+            final List<Response<List<byte[]>>> responses = new ArrayList<>();
             for (List<String> part : Lists.partition(keysToGet, options.getMaxMgetSize())) {
                 mgetOperations++;
-                keyResult.addAll(jedis.mget(part.toArray(new String[part.size()])));
+                responses.add(pipeline.mget(stringsToBytes(part)));
+            }
+            pipeline.sync();
+            for (Response<List<byte[]>> response : responses) {
+                keyResult.addAll(response.get());
             }
         }
 
@@ -353,19 +870,170 @@ public class RedisCache implements WriteableCache {
             throw new RuntimeException("Expected same size result as request");
         }
 
+        if (expectedVersion != null && parseVersion(keyResult.get(0)) != expectedVersion) {
+            return null;
+        }
+
         Collection<CacheData> results = new ArrayList<>(ids.size());
         Iterator<String> idIterator = ids.iterator();
-        for (int ofs = 0; ofs < keyResult.size(); ofs += singleResultSize) {
+        for (int ofs = resultOffset; ofs < keyResult.size(); ofs += singleResultSize) {
             CacheData item = extractItem(idIterator.next(), keyResult.subList(ofs, ofs + singleResultSize), knownRels);
             if (item != null) {
                 results.add(item);
             }
         }
 
-        cacheMetrics.get(prefix, type, results.size(), ids.size(), keysToGet.size(), knownRels.size(), mgetOperations);
+        int valuesDeserialized = 0;
+        long bytesIn = 0;
+        for (byte[] value : keyResult.subList(resultOffset, keyResult.size())) {
+            if (value != null) {
+                valuesDeserialized++;
+                bytesIn += value.length;
+            }
+        }
+
+        cacheMetrics.get(prefix, type, results.size(), ids.size(), keysToGet.size() - resultOffset, knownRels.size(), mgetOperations);
+        cacheMetrics.deserialize(prefix, type, codec.getName(), valuesDeserialized, bytesIn);
         return results;
     }
 
+    /**
+     * Computes a fingerprint for each of the supplied items from the hashes stored
+     * under the hashes key for the type, without reading the item values.
+     *
+     * @param type        the type of the items
+     * @param identifiers the ids of the items
+     * @return id to fingerprint, containing only items that have a stored attributes hash. Empty if hashing is disabled.
+     * @see #getFingerprintsAndExpirations(String, Collection)
+     */
+    public Map<String, byte[]> getFingerprints(String type, Collection<String> identifiers) {
+        return getFingerprintsAndExpirations(type, identifiers).fingerprints;
+    }
+
+    /**
+     * Computes a fingerprint for each of the supplied items from the hashes stored
+     * under the hashes key for the type, and reads when the attributes of each expire,
+     * without reading the item values.
+     * <p>
+     * The fingerprint covers the attributes and every known relationship of the item,
+     * so it changes whenever any stored value for the item is rewritten. The hashes of an
+     * item are not expired with its values, so a fingerprint alone can't tell that an item
+     * written with a ttl has expired.
+     * <p>
+     * Each batch of maxGetBatchSize items is a single pipeline; the first also checks that
+     * hashing is enabled and that the relationship names are current, and the batch is read
+     * again with the current names if they are not.
+     *
+     * @param type        the type of the items
+     * @param identifiers the ids of the items
+     * @return the fingerprints and expirations; both empty if hashing is disabled
+     */
+    public Fingerprints getFingerprintsAndExpirations(String type, Collection<String> identifiers) {
+        final Fingerprints result = new Fingerprints();
+        if (identifiers.isEmpty() || !options.isHashingEnabled()) {
+            return result;
+        }
+
+        RelationshipSnapshot snapshot = getRelationshipSnapshot(type);
+        final byte[] hashesId = hashesId(type);
+        try (Jedis jedis = source.getJedis()) {
+            boolean validated = false;
+            for (List<String> idPart : Iterables.partition(new LinkedHashSet<>(identifiers), options.getMaxGetBatchSize())) {
+                while (true) {
+                    final List<String> knownRels = new ArrayList<>(snapshot.relationships);
+                    Collections.sort(knownRels);
+                    final int singleResultSize = knownRels.size() + 1;
+                    final List<String> hashKeys = new ArrayList<>(singleResultSize * idPart.size());
+                    for (String id : idPart) {
+                        hashKeys.add(attributesId(type, id));
+                        for (String rel : knownRels) {
+                            hashKeys.add(relationshipId(type, id, rel));
+                        }
+                    }
+
+                    final Pipeline pipeline = jedis.pipelined();
+                    final Response<Boolean> disabled = validated ? null : pipeline.exists(hashesDisabled(type));
+                    final Response<byte[]> version = validated ? null : pipeline.get(stringToBytes(relationshipsVersionId(type)));
+                    final List<Response<List<byte[]>>> hashParts = new ArrayList<>();
+                    for (List<String> hashPart : Lists.partition(hashKeys, options.getMaxHmgetSize())) {
+                        hashParts.add(pipeline.hmget(hashesId, stringsToBytes(hashPart)));
+                    }
+                    final List<Response<Long>> ttls = new ArrayList<>(idPart.size());
+                    for (String id : idPart) {
+                        ttls.add(pipeline.pttl(attributesId(type, id)));
+                    }
+                    pipeline.sync();
+
+                    if (!validated) {
+                        if (disabled.get()) {
+                            return new Fingerprints();
+                        }
+                        final long storedVersion = parseVersion(version.get());
+                        validated = true;
+                        if (storedVersion != snapshot.version) {
+                            // relationship names were added since the snapshot, read this batch again with them
+                            snapshot = loadRelationshipSnapshot(jedis, type, storedVersion);
+                            continue;
+                        }
+                    }
+
+                    final List<byte[]> hashValues = new ArrayList<>(hashKeys.size());
+                    for (Response<List<byte[]>> hashPart : hashParts) {
+                        hashValues.addAll(hashPart.get());
+                    }
+                    if (hashValues.size() != hashKeys.size()) {
+                        throw new RuntimeException("Expected same size result as request");
+                    }
+                    addFingerprints(result, idPart, hashValues, singleResultSize, ttls);
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void addFingerprints(Fingerprints result, List<String> ids, List<byte[]> hashValues, int singleResultSize, List<Response<Long>> ttls) {
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < ids.size(); i++) {
+            final int ofs = i * singleResultSize;
+            if (hashValues.get(ofs) == null) {
+                continue;
+            }
+            final Hasher hasher = Hashing.sha1().newHasher();
+            for (byte[] hash : hashValues.subList(ofs, ofs + singleResultSize)) {
+                if (hash == null) {
+                    hasher.putInt(-1);
+                } else {
+                    hasher.putInt(hash.length).putBytes(hash);
+                }
+            }
+            result.fingerprints.put(ids.get(i), hasher.hash().asBytes());
+
+            final Long ttl = ttls.get(i).get();
+            // -1 if the key does not expire, -2 if it no longer exists
+            if (ttl != null && ttl != -1) {
+                result.expirations.put(ids.get(i), now + Math.max(ttl, 0));
+            }
+        }
+    }
+
+    /**
+     * The fingerprints of items, and the time (in epoch milliseconds) the attributes of those that expire
+     * expire at, by id.
+     */
+    public static class Fingerprints {
+        public final Map<String, byte[]> fingerprints = new HashMap<>();
+        public final Map<String, Long> expirations = new HashMap<>();
+    }
+
+    /**
+     * Pages through the identifiers of a type with SSCAN, at most maxGetBatchSize at a time.
+     */
+    Iterator<Collection<String>> scanIdentifiers(String type) {
+        return new MemberBatchIterator(allOfTypeId(type));
+    }
+
     @Override
     public Collection<String> getIdentifiers(String type) {
         return scanMembers(allOfTypeId(type));
@@ -373,30 +1041,323 @@ public class RedisCache implements WriteableCache {
 
     @Override
     public Collection<String> filterIdentifiers(String type, String glob) {
+        if (options.isIdentifierIndexEnabled()) {
+            final Collection<String> indexed = filterIndexedIdentifiers(type, new Glob(glob));
+            if (indexed != null) {
+                return indexed;
+            }
+        }
         return scanMembers(allOfTypeId(type), Optional.of(glob));
     }
 
+    /**
+     * Reads the identifiers sharing the least common trigram of the literal parts of the glob from the
+     * trigram index, then keeps those matching the glob that are still members.
+     *
+     * @return the matching identifiers, or null if the members should be scanned instead (the glob has no
+     * literal of three or more bytes, the trigram is too common to save much over a scan, or the index
+     * has not been built for the existing members yet, in which case a build is started in the background)
+     */
+    private Collection<String> filterIndexedIdentifiers(String type, Glob glob) {
+        final Set<byte[]> trigrams = new TreeSet<>(new ByteArrayComparator());
+        for (String literal : glob.getLiterals()) {
+            final byte[] bytes = stringToBytes(literal);
+            for (int i = 0; i + TRIGRAM_LENGTH <= bytes.length; i++) {
+                trigrams.add(Arrays.copyOfRange(bytes, i, i + TRIGRAM_LENGTH));
+            }
+        }
+        if (trigrams.isEmpty()) {
+            return null;
+        }
+
+        final byte[] trigramsId = trigramsId(type);
+        try (Jedis jedis = source.getJedis()) {
+            final Pipeline pipeline = jedis.pipelined();
+            final Response<Boolean> complete = pipeline.exists(trigramsCompleteId(type));
+            final Response<Long> memberCount = pipeline.scard(allOfTypeId(type));
+            final Map<byte[], Response<Long>> counts = new LinkedHashMap<>();
+            for (byte[] trigram : trigrams) {
+                counts.put(trigram, pipeline.zlexcount(trigramsId, lexMin(trigram), lexMax(trigram)));
+            }
+            pipeline.sync();
+
+            if (!complete.get()) {
+                startIdentifierIndexBuild(type);
+                return null;
+            }
+
+            byte[] leastCommon = null;
+            long leastCount = Long.MAX_VALUE;
+            for (Map.Entry<byte[], Response<Long>> count : counts.entrySet()) {
+                if (count.getValue().get() < leastCount) {
+                    leastCommon = count.getKey();
+                    leastCount = count.getValue().get();
+                }
+            }
+            if (leastCount == 0) {
+                cacheMetrics.filterIdentifiers(prefix, type, 0, 0);
+                return new HashSet<>();
+            }
+            if (leastCount * 2 > memberCount.get()) {
+                return null;
+            }
+
+            final Pattern pattern = glob.toPattern();
+            final List<String> candidates = new ArrayList<>();
+            for (byte[] entry : jedis.zrangeByLex(trigramsId, lexMin(leastCommon), lexMax(leastCommon))) {
+                final String id = new String(entry, TRIGRAM_LENGTH, entry.length - TRIGRAM_LENGTH, Charset.forName(HASH_CHARSET));
+                if (pattern.matcher(id).matches()) {
+                    candidates.add(id);
+                }
+            }
+
+            // the index is reconciled after the members set is updated, so confirm each match is still a member
+            final Set<String> matches = new HashSet<>();
+            if (!candidates.isEmpty()) {
+                final Pipeline membership = jedis.pipelined();
+                final List<Response<Boolean>> isMember = new ArrayList<>(candidates.size());
+                for (String id : candidates) {
+                    isMember.add(membership.sismember(allOfTypeId(type), id));
+                }
+                membership.sync();
+                for (int i = 0; i < candidates.size(); i++) {
+                    if (isMember.get(i).get()) {
+                        matches.add(candidates.get(i));
+                    }
+                }
+            }
+            cacheMetrics.filterIdentifiers(prefix, type, (int) leastCount, matches.size());
+            return matches;
+        }
+    }
+
+    /**
+     * Builds the identifier index of the type on the index executor, unless this node is already building it.
+     */
+    private void startIdentifierIndexBuild(String type) {
+        if (!indexBuilds.add(type)) {
+            return;
+        }
+        indexExecutor.execute(() -> {
+            try {
+                buildIdentifierIndex(type);
+            } catch (Exception e) {
+                log.warn("Failed to build identifier index for {}:{}", prefix, type, e);
+            } finally {
+                indexBuilds.remove(type);
+            }
+        });
+    }
+
+    /**
+     * Indexes the members that were added before the identifier index was enabled.
+     * <p>
+     * Only the node holding the build lock scans the members; the lock expires after
+     * INDEX_BUILD_LOCK_SECONDS in case that node goes away, and the next search on any node
+     * starts another build.
+     * <p>
+     * Merges and evictions made while the members are scanned reconcile their own ids, so the index
+     * is complete once every member seen by the scan has been reconciled.
+     */
+    private void buildIdentifierIndex(String type) {
+        final String lockId = trigramsLockId(type);
+        final String owner = UUID.randomUUID().toString();
+        try (Jedis jedis = source.getJedis()) {
+            if (!"OK".equals(jedis.set(lockId, owner, "NX", "EX", INDEX_BUILD_LOCK_SECONDS))) {
+                // another node is building the index
+                return;
+            }
+            try {
+                if (jedis.exists(trigramsCompleteId(type))) {
+                    return;
+                }
+                log.info("Building identifier index for {}:{}", prefix, type);
+                reindexIdentifiers(jedis, type, scanMembers(jedis, allOfTypeId(type), Optional.empty()));
+                jedis.set(trigramsCompleteId(type), "true");
+            } finally {
+                if (owner.equals(jedis.get(lockId))) {
+                    jedis.del(lockId);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the inclusive ZRANGEBYLEX bound of the index entries starting with trigram
+     */
+    private static byte[] lexMin(byte[] trigram) {
+        final byte[] min = new byte[trigram.length + 1];
+        min[0] = '[';
+        System.arraycopy(trigram, 0, min, 1, trigram.length);
+        return min;
+    }
+
+    /**
+     * @return the exclusive ZRANGEBYLEX bound of the index entries starting with trigram (the next trigram)
+     */
+    private static byte[] lexMax(byte[] trigram) {
+        final byte[] max = new byte[trigram.length + 1];
+        max[0] = '(';
+        System.arraycopy(trigram, 0, max, 1, trigram.length);
+        for (int i = max.length - 1; i > 0; i--) {
+            if (++max[i] != 0) {
+                return max;
+            }
+        }
+        return new byte[]{'+'};
+    }
+
     private Set<String> scanMembers(String setKey) {
         return scanMembers(setKey, Optional.empty());
     }
 
     private Set<String> scanMembers(String setKey, Optional<String> glob) {
         try (Jedis jedis = source.getJedis()) {
-            final Set<String> matches = new HashSet<>();
-            final ScanParams scanParams = new ScanParams().count(options.getScanSize());
-            glob.ifPresent(scanParams::match);
-            String cursor = "0";
-            while (true) {
-                final ScanResult<String> scanResult = jedis.sscan(setKey, cursor, scanParams);
-                matches.addAll(scanResult.getResult());
-                cursor = scanResult.getStringCursor();
-                if ("0".equals(cursor)) {
-                    return matches;
+            return scanMembers(jedis, setKey, glob);
+        }
+    }
+
+    private Set<String> scanMembers(Jedis jedis, String setKey, Optional<String> glob) {
+        final Set<String> matches = new HashSet<>();
+        final ScanParams scanParams = new ScanParams().count(options.getScanSize());
+        glob.ifPresent(scanParams::match);
+        String cursor = "0";
+        while (true) {
+            final ScanResult<String> scanResult = jedis.sscan(setKey, cursor, scanParams);
+            matches.addAll(scanResult.getResult());
+            cursor = scanResult.getStringCursor();
+            if ("0".equals(cursor)) {
+                return matches;
+            }
+        }
+    }
+
+    /**
+     * Iterates the members of a set in batches of at most maxGetBatchSize, issuing the next
+     * SSCAN only once the members of the previous page have been handed out.
+     * <p>
+     * SSCAN may return a member more than once, so members seen on an earlier page are skipped.
+     */
+    private class MemberBatchIterator implements Iterator<Collection<String>> {
+        private final String setKey;
+        private final Set<String> seen = new HashSet<>();
+        private final Deque<String> pending = new ArrayDeque<>();
+        private String cursor = "0";
+        private boolean scanComplete = false;
+
+        MemberBatchIterator(String setKey) {
+            this.setKey = setKey;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pending.isEmpty() && !scanComplete) {
+                try (Jedis jedis = source.getJedis()) {
+                    final ScanResult<String> scanResult = jedis.sscan(setKey, cursor, new ScanParams().count(options.getScanSize()));
+                    for (String member : scanResult.getResult()) {
+                        if (seen.add(member)) {
+                            pending.add(member);
+                        }
+                    }
+                    cursor = scanResult.getStringCursor();
+                    scanComplete = "0".equals(cursor);
                 }
             }
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public Collection<String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final List<String> batch = new ArrayList<>(Math.min(pending.size(), options.getMaxGetBatchSize()));
+            while (!pending.isEmpty() && batch.size() < options.getMaxGetBatchSize()) {
+                batch.add(pending.poll());
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * The relationship names of a type, as of a version of the relationships version counter.
+     * <p>
+     * Relationship names are only ever added to a type, and every addition increments the
+     * version counter, so a snapshot is current for as long as the stored version matches.
+     * <p>
+     * Names can still be added without an increment (by nodes that predate the counter), and the
+     * counter can return to an earlier value when redis is flushed or fails over, so a snapshot is
+     * also reloaded once it is older than relationshipSnapshotMaxAgeSeconds.
+     */
+    private static class RelationshipSnapshot {
+        final long version;
+        final Set<String> relationships;
+        final long loadedAt;
+
+        RelationshipSnapshot(long version, Set<String> relationships, long loadedAt) {
+            this.version = version;
+            this.relationships = Collections.unmodifiableSet(relationships);
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * @return the locally held snapshot for the type (loading it if absent or too old) without validating it against redis
+     */
+    private RelationshipSnapshot getRelationshipSnapshot(String type) {
+        final RelationshipSnapshot snapshot = relationshipSnapshots.get(type);
+        if (snapshot != null && !isExpired(snapshot)) {
+            return snapshot;
+        }
+        return refreshRelationshipSnapshot(type);
+    }
+
+    /**
+     * @return a snapshot for the type that has been validated against the stored version
+     */
+    private RelationshipSnapshot getCurrentRelationshipSnapshot(String type) {
+        final RelationshipSnapshot snapshot = relationshipSnapshots.get(type);
+        if (snapshot == null) {
+            return refreshRelationshipSnapshot(type);
+        }
+        try (Jedis jedis = source.getJedis()) {
+            final long version = parseVersion(jedis.get(stringToBytes(relationshipsVersionId(type))));
+            if (version == snapshot.version && !isExpired(snapshot)) {
+                return snapshot;
+            }
+            return loadRelationshipSnapshot(jedis, type, version);
         }
     }
 
+    private RelationshipSnapshot refreshRelationshipSnapshot(String type) {
+        try (Jedis jedis = source.getJedis()) {
+            final long version = parseVersion(jedis.get(stringToBytes(relationshipsVersionId(type))));
+            return loadRelationshipSnapshot(jedis, type, version);
+        }
+    }
+
+    /**
+     * Loads the relationship names for a type. The version must be read before the names so that
+     * a concurrent addition results in a snapshot that is older than (and invalidated by) the stored version.
+     */
+    private RelationshipSnapshot loadRelationshipSnapshot(Jedis jedis, String type, long version) {
+        final RelationshipSnapshot snapshot = new RelationshipSnapshot(version, scanMembers(jedis, allRelationshipsId(type), Optional.empty()), System.currentTimeMillis());
+        relationshipSnapshots.put(type, snapshot);
+        cacheMetrics.refreshRelationships(prefix, type, version, snapshot.relationships.size());
+        return snapshot;
+    }
+
+    private boolean isExpired(RelationshipSnapshot snapshot) {
+        return System.currentTimeMillis() - snapshot.loadedAt >= TimeUnit.SECONDS.toMillis(options.getRelationshipSnapshotMaxAgeSeconds());
+    }
+
+    private long parseVersion(byte[] version) {
+        if (version == null) {
+            return 0;
+        }
+        return Long.parseLong(new String(version, Charset.forName(HASH_CHARSET)));
+    }
+
     private byte[] stringToBytes(String string) {
         return string.getBytes(Charset.forName(HASH_CHARSET));
     }
@@ -412,15 +1373,21 @@ public class RedisCache implements WriteableCache {
 
     private static class MergeOp {
         final Set<String> relNames;
-        final List<String> keysToSet;
+        final List<byte[]> keysToSet;
+        final List<String> keysWritten;
         final Map<byte[], byte[]> hashesToSet;
         final int skippedWrites;
+        final int valuesSerialized;
+        final long bytesWritten;
 
-        public MergeOp(Set<String> relNames, List<String> keysToSet, Map<byte[], byte[]> hashesToSet, int skippedWrites) {
+        public MergeOp(Set<String> relNames, List<byte[]> keysToSet, List<String> keysWritten, Map<byte[], byte[]> hashesToSet, int skippedWrites, int valuesSerialized, long bytesWritten) {
             this.relNames = relNames;
             this.keysToSet = keysToSet;
+            this.keysWritten = keysWritten;
             this.hashesToSet = hashesToSet;
             this.skippedWrites = skippedWrites;
+            this.valuesSerialized = valuesSerialized;
+            this.bytesWritten = bytesWritten;
         }
     }
 
@@ -432,12 +1399,13 @@ public class RedisCache implements WriteableCache {
      * @param id              the id of the item
      * @param serializedValue the serialized value
      * @param keys            values to persist - if the hash does not match id and serializedValue are appended
+     * @param keysWritten     ids to persist - if the hash does not match id is appended
      * @param updatedHashes   hashes to persist - if the hash does not match adds an entry of id -> computed hash
      * @return true if the hash matched, false otherwise
      */
-    private boolean hashCheck(Map<String, byte[]> hashes, String id, String serializedValue, List<String> keys, Map<byte[], byte[]> updatedHashes) {
+    private boolean hashCheck(Map<String, byte[]> hashes, String id, byte[] serializedValue, List<byte[]> keys, List<String> keysWritten, Map<byte[], byte[]> updatedHashes) {
         if (options.isHashingEnabled()) {
-            final byte[] hash = Hashing.sha1().newHasher().putBytes(stringToBytes(serializedValue)).hash().asBytes();
+            final byte[] hash = Hashing.sha1().newHasher().putBytes(serializedValue).hash().asBytes();
             final byte[] existingHash = hashes.get(id);
             if (Arrays.equals(hash, existingHash)) {
                 return true;
@@ -445,46 +1413,57 @@ public class RedisCache implements WriteableCache {
             updatedHashes.put(stringToBytes(id), hash);
         }
 
-        keys.add(id);
+        keys.add(stringToBytes(id));
         keys.add(serializedValue);
+        keysWritten.add(id);
         return false;
     }
 
     private MergeOp buildMergeOp(String type, CacheData cacheData, Map<String, byte[]> hashes) {
         int skippedWrites = 0;
-        final String serializedAttributes;
+        int valuesSerialized = 0;
+        long bytesWritten = 0;
+        final byte[] serializedAttributes;
         try {
             if (cacheData.getAttributes().isEmpty()) {
                 serializedAttributes = null;
             } else {
-                serializedAttributes = objectMapper.writeValueAsString(cacheData.getAttributes());
+                serializedAttributes = codec.encode(cacheData.getAttributes());
+                valuesSerialized++;
             }
-        } catch (JsonProcessingException serializationException) {
+        } catch (IOException serializationException) {
             throw new RuntimeException("Attribute serialization failed", serializationException);
         }
 
-        final Map<byte[], byte[]> hashesToSet = new HashMap<>();
-        final List<String> keysToSet = new ArrayList<>((cacheData.getRelationships().size() + 1) * 2);
-        if (serializedAttributes != null &&
-            hashCheck(hashes, attributesId(type, cacheData.getId()), serializedAttributes, keysToSet, hashesToSet)) {
-            skippedWrites++;
+        final Map<byte[], byte[]> hashesToSet = new TreeMap<>(new ByteArrayComparator());
+        final List<byte[]> keysToSet = new ArrayList<>((cacheData.getRelationships().size() + 1) * 2);
+        final List<String> keysWritten = new ArrayList<>(cacheData.getRelationships().size() + 1);
+        if (serializedAttributes != null) {
+            if (hashCheck(hashes, attributesId(type, cacheData.getId()), serializedAttributes, keysToSet, keysWritten, hashesToSet)) {
+                skippedWrites++;
+            } else {
+                bytesWritten += serializedAttributes.length;
+            }
         }
 
         if (!cacheData.getRelationships().isEmpty()) {
             for (Map.Entry<String, Collection<String>> relationship : cacheData.getRelationships().entrySet()) {
-                final String relationshipValue;
+                final byte[] relationshipValue;
                 try {
-                    relationshipValue = objectMapper.writeValueAsString(new LinkedHashSet<>(relationship.getValue()));
-                } catch (JsonProcessingException serializationException) {
+                    relationshipValue = codec.encode(new LinkedHashSet<>(relationship.getValue()));
+                    valuesSerialized++;
+                } catch (IOException serializationException) {
                     throw new RuntimeException("Relationship serialization failed", serializationException);
                 }
-                if (hashCheck(hashes, relationshipId(type, cacheData.getId(), relationship.getKey()), relationshipValue, keysToSet, hashesToSet)) {
+                if (hashCheck(hashes, relationshipId(type, cacheData.getId(), relationship.getKey()), relationshipValue, keysToSet, keysWritten, hashesToSet)) {
                     skippedWrites++;
+                } else {
+                    bytesWritten += relationshipValue.length;
                 }
             }
         }
 
-        return new MergeOp(cacheData.getRelationships().keySet(), keysToSet, hashesToSet, skippedWrites);
+        return new MergeOp(cacheData.getRelationships().keySet(), keysToSet, keysWritten, hashesToSet, skippedWrites, valuesSerialized, bytesWritten);
     }
 
     private boolean isHashingDisabled(String type) {
@@ -511,7 +1490,7 @@ public class RedisCache implements WriteableCache {
         return new ArrayList<>(keys);
     }
 
-    private Map<String, byte[]> getHashes(String type, Collection<CacheData> items) {
+    private Map<String, byte[]> getHashes(String type, Collection<CacheData> items, AtomicInteger roundTrips) {
         if (isHashingDisabled(type)) {
             return Collections.emptyMap();
         }
@@ -527,6 +1506,7 @@ public class RedisCache implements WriteableCache {
         try (Jedis jedis = source.getJedis()) {
             for (List<String> hashPart : Lists.partition(hashKeys, options.getMaxHmgetSize())) {
                 hashValues.addAll(jedis.hmget(hashesId, stringsToBytes(hashPart)));
+                roundTrips.incrementAndGet();
             }
         }
         if (hashValues.size() != hashKeys.size()) {
@@ -543,19 +1523,19 @@ public class RedisCache implements WriteableCache {
         return isHashingDisabled(type) ? Collections.emptyMap() : hashes;
     }
 
-    private CacheData extractItem(String id, List<String> keyResult, List<String> knownRels) {
+    private CacheData extractItem(String id, List<byte[]> keyResult, List<String> knownRels) {
         if (keyResult.get(0) == null) {
             return null;
         }
 
         try {
-            final Map<String, Object> attributes = objectMapper.readValue(keyResult.get(0), ATTRIBUTES);
+            final Map<String, Object> attributes = codec.decode(keyResult.get(0), ATTRIBUTES);
             final Map<String, Collection<String>> relationships = new HashMap<>(keyResult.size() - 1);
             for (int relIdx = 1; relIdx < keyResult.size(); relIdx++) {
-                String rel = keyResult.get(relIdx);
+                byte[] rel = keyResult.get(relIdx);
                 if (rel != null) {
                     String relType = knownRels.get(relIdx - 1);
-                    Collection<String> deserializedRel = objectMapper.readValue(rel, RELATIONSHIPS);
+                    Collection<String> deserializedRel = codec.decode(rel, RELATIONSHIPS);
                     relationships.put(relType, deserializedRel);
                 }
             }
@@ -587,6 +1567,10 @@ public class RedisCache implements WriteableCache {
         return String.format("%s:%s:relationships", prefix, type);
     }
 
+    private String relationshipsVersionId(String type) {
+        return String.format("%s:%s:relationships.version", prefix, type);
+    }
+
     private String allOfTypeId(String type) {
         return String.format("%s:%s:members", prefix, type);
     }
@@ -595,6 +1579,18 @@ public class RedisCache implements WriteableCache {
         return String.format("%s:%s:members.2", prefix, type);
     }
 
+    private byte[] trigramsId(String type) {
+        return stringToBytes(String.format("%s:%s:members.trigrams", prefix, type));
+    }
+
+    private String trigramsCompleteId(String type) {
+        return String.format("%s:%s:members.trigrams.complete", prefix, type);
+    }
+
+    private String trigramsLockId(String type) {
+        return String.format("%s:%s:members.trigrams.lock", prefix, type);
+    }
+
     /**
      * Comparator for lexical sort of byte arrays to enable a partitioning a
      * sorted map of hash keys.
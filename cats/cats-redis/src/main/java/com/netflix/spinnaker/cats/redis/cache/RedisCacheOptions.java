@@ -34,6 +34,15 @@ public class RedisCacheOptions {
     private final int maxEvictBatchSize;
     private final int maxGetBatchSize;
     private final boolean hashingEnabled;
+    private final JacksonValueCodec.Format serializationFormat;
+    private final JacksonValueCodec.Compression compression;
+    private final boolean nearCacheEnabled;
+    private final int nearCacheMaxEntries;
+    private final int nearCacheMaxAgeSeconds;
+    private final int maxGetParallelism;
+    private final boolean scriptedMergeEnabled;
+    private final boolean identifierIndexEnabled;
+    private final int relationshipSnapshotMaxAgeSeconds;
 
     private static int posInt(String name, int value) {
         Preconditions.checkArgument(value > 0, "%s must be a positive integer (%s)", name, value);
@@ -46,6 +55,10 @@ public class RedisCacheOptions {
     }
 
     public RedisCacheOptions(int maxMsetSize, int maxMgetSize, int maxHmgetSize, int maxHmsetSize, int maxSaddSize, int maxDelSize, int maxPipelineSize, int scanSize, int maxMergeBatchSize, int maxEvictBatchSize, int maxGetBatchSize, boolean hashingEnabled) {
+        this(maxMsetSize, maxMgetSize, maxHmgetSize, maxHmsetSize, maxSaddSize, maxDelSize, maxPipelineSize, scanSize, maxMergeBatchSize, maxEvictBatchSize, maxGetBatchSize, hashingEnabled, JacksonValueCodec.Format.JSON, JacksonValueCodec.Compression.NONE, false, Builder.DEFAULT_NEAR_CACHE_MAX_ENTRIES, Builder.DEFAULT_NEAR_CACHE_MAX_AGE_SECONDS, Builder.DEFAULT_MAX_GET_PARALLELISM, Builder.DEFAULT_SCRIPTED_MERGE_ENABLED, Builder.DEFAULT_IDENTIFIER_INDEX_ENABLED, Builder.DEFAULT_RELATIONSHIP_SNAPSHOT_MAX_AGE_SECONDS);
+    }
+
+    public RedisCacheOptions(int maxMsetSize, int maxMgetSize, int maxHmgetSize, int maxHmsetSize, int maxSaddSize, int maxDelSize, int maxPipelineSize, int scanSize, int maxMergeBatchSize, int maxEvictBatchSize, int maxGetBatchSize, boolean hashingEnabled, JacksonValueCodec.Format serializationFormat, JacksonValueCodec.Compression compression, boolean nearCacheEnabled, int nearCacheMaxEntries, int nearCacheMaxAgeSeconds, int maxGetParallelism, boolean scriptedMergeEnabled, boolean identifierIndexEnabled, int relationshipSnapshotMaxAgeSeconds) {
         this.maxMsetSize = posEven("maxMsetSize", maxMsetSize);
         this.maxMgetSize = posInt("maxMgetSize", maxMgetSize);
         this.maxHmgetSize = posInt("maxHmgetSize", maxHmgetSize);
@@ -58,6 +71,15 @@ public class RedisCacheOptions {
         this.maxEvictBatchSize = posInt("maxEvictBatchSize", maxEvictBatchSize);
         this.maxGetBatchSize = posInt("maxGetBatchSize", maxGetBatchSize);
         this.hashingEnabled = hashingEnabled;
+        this.serializationFormat = Preconditions.checkNotNull(serializationFormat, "serializationFormat");
+        this.compression = Preconditions.checkNotNull(compression, "compression");
+        this.nearCacheEnabled = nearCacheEnabled;
+        this.nearCacheMaxEntries = posInt("nearCacheMaxEntries", nearCacheMaxEntries);
+        this.nearCacheMaxAgeSeconds = posInt("nearCacheMaxAgeSeconds", nearCacheMaxAgeSeconds);
+        this.maxGetParallelism = posInt("maxGetParallelism", maxGetParallelism);
+        this.scriptedMergeEnabled = scriptedMergeEnabled;
+        this.identifierIndexEnabled = identifierIndexEnabled;
+        this.relationshipSnapshotMaxAgeSeconds = posInt("relationshipSnapshotMaxAgeSeconds", relationshipSnapshotMaxAgeSeconds);
     }
 
     public int getMaxMsetSize() {
@@ -108,12 +130,57 @@ public class RedisCacheOptions {
         return hashingEnabled;
     }
 
+    public JacksonValueCodec.Format getSerializationFormat() {
+        return serializationFormat;
+    }
+
+    public JacksonValueCodec.Compression getCompression() {
+        return compression;
+    }
+
+    public boolean isNearCacheEnabled() {
+        return nearCacheEnabled;
+    }
+
+    public int getNearCacheMaxEntries() {
+        return nearCacheMaxEntries;
+    }
+
+    public int getNearCacheMaxAgeSeconds() {
+        return nearCacheMaxAgeSeconds;
+    }
+
+    public int getMaxGetParallelism() {
+        return maxGetParallelism;
+    }
+
+    public boolean isScriptedMergeEnabled() {
+        return scriptedMergeEnabled;
+    }
+
+    public boolean isIdentifierIndexEnabled() {
+        return identifierIndexEnabled;
+    }
+
+    public int getRelationshipSnapshotMaxAgeSeconds() {
+        return relationshipSnapshotMaxAgeSeconds;
+    }
+
     public static class Builder {
         public static final int DEFAULT_MULTI_OP_SIZE = 10000;
         public static final int DEFAULT_BATCH_SIZE = 5000;
         public static final int DEFAULT_SCAN_SIZE = 25000;
         public static final int DEFAULT_MAX_PIPELINE_SIZE = 5000;
         public static final boolean DEFAULT_HASHING_ENABLED = true;
+        public static final JacksonValueCodec.Format DEFAULT_SERIALIZATION_FORMAT = JacksonValueCodec.Format.JSON;
+        public static final JacksonValueCodec.Compression DEFAULT_COMPRESSION = JacksonValueCodec.Compression.NONE;
+        public static final boolean DEFAULT_NEAR_CACHE_ENABLED = false;
+        public static final int DEFAULT_NEAR_CACHE_MAX_ENTRIES = 10000;
+        public static final int DEFAULT_NEAR_CACHE_MAX_AGE_SECONDS = 600;
+        public static final int DEFAULT_MAX_GET_PARALLELISM = 1;
+        public static final boolean DEFAULT_SCRIPTED_MERGE_ENABLED = false;
+        public static final boolean DEFAULT_IDENTIFIER_INDEX_ENABLED = false;
+        public static final int DEFAULT_RELATIONSHIP_SNAPSHOT_MAX_AGE_SECONDS = 60;
 
         int maxMsetSize;
         int maxMgetSize;
@@ -127,6 +194,15 @@ public class RedisCacheOptions {
         int maxEvictBatchSize;
         int maxGetBatchSize;
         boolean hashingEnabled;
+        JacksonValueCodec.Format serializationFormat;
+        JacksonValueCodec.Compression compression;
+        boolean nearCacheEnabled;
+        int nearCacheMaxEntries;
+        int nearCacheMaxAgeSeconds;
+        int maxGetParallelism;
+        boolean scriptedMergeEnabled;
+        boolean identifierIndexEnabled;
+        int relationshipSnapshotMaxAgeSeconds;
 
         public Builder() {
             batchSize(DEFAULT_BATCH_SIZE);
@@ -134,6 +210,15 @@ public class RedisCacheOptions {
             multiOp(DEFAULT_MULTI_OP_SIZE);
             maxPipeline(DEFAULT_MAX_PIPELINE_SIZE);
             hashing(DEFAULT_HASHING_ENABLED);
+            serializationFormat(DEFAULT_SERIALIZATION_FORMAT);
+            compression(DEFAULT_COMPRESSION);
+            nearCache(DEFAULT_NEAR_CACHE_ENABLED);
+            nearCacheMaxEntries(DEFAULT_NEAR_CACHE_MAX_ENTRIES);
+            nearCacheMaxAge(DEFAULT_NEAR_CACHE_MAX_AGE_SECONDS);
+            maxGetParallelism(DEFAULT_MAX_GET_PARALLELISM);
+            scriptedMerge(DEFAULT_SCRIPTED_MERGE_ENABLED);
+            identifierIndex(DEFAULT_IDENTIFIER_INDEX_ENABLED);
+            relationshipSnapshotMaxAge(DEFAULT_RELATIONSHIP_SNAPSHOT_MAX_AGE_SECONDS);
         }
 
         public Builder maxMergeBatch(int maxMergeBatch) {
@@ -212,8 +297,53 @@ public class RedisCacheOptions {
             return this;
         }
 
+        public Builder serializationFormat(JacksonValueCodec.Format serializationFormat) {
+            this.serializationFormat = serializationFormat;
+            return this;
+        }
+
+        public Builder compression(JacksonValueCodec.Compression compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        public Builder nearCache(boolean nearCacheEnabled) {
+            this.nearCacheEnabled = nearCacheEnabled;
+            return this;
+        }
+
+        public Builder nearCacheMaxEntries(int nearCacheMaxEntries) {
+            this.nearCacheMaxEntries = nearCacheMaxEntries;
+            return this;
+        }
+
+        public Builder nearCacheMaxAge(int nearCacheMaxAgeSeconds) {
+            this.nearCacheMaxAgeSeconds = nearCacheMaxAgeSeconds;
+            return this;
+        }
+
+        public Builder maxGetParallelism(int maxGetParallelism) {
+            this.maxGetParallelism = maxGetParallelism;
+            return this;
+        }
+
+        public Builder scriptedMerge(boolean scriptedMergeEnabled) {
+            this.scriptedMergeEnabled = scriptedMergeEnabled;
+            return this;
+        }
+
+        public Builder identifierIndex(boolean identifierIndexEnabled) {
+            this.identifierIndexEnabled = identifierIndexEnabled;
+            return this;
+        }
+
+        public Builder relationshipSnapshotMaxAge(int relationshipSnapshotMaxAgeSeconds) {
+            this.relationshipSnapshotMaxAgeSeconds = relationshipSnapshotMaxAgeSeconds;
+            return this;
+        }
+
         public RedisCacheOptions build() {
-            return new RedisCacheOptions(maxMsetSize, maxMgetSize, maxHmgetSize, maxHmsetSize, maxSaddSize, maxDelSize, maxPipelineSize, scanSize, maxMergeBatchSize, maxEvictBatchSize, maxGetBatchSize, hashingEnabled);
+            return new RedisCacheOptions(maxMsetSize, maxMgetSize, maxHmgetSize, maxHmsetSize, maxSaddSize, maxDelSize, maxPipelineSize, scanSize, maxMergeBatchSize, maxEvictBatchSize, maxGetBatchSize, hashingEnabled, serializationFormat, compression, nearCacheEnabled, nearCacheMaxEntries, nearCacheMaxAgeSeconds, maxGetParallelism, scriptedMergeEnabled, identifierIndexEnabled, relationshipSnapshotMaxAgeSeconds);
         }
 
         public void setBatchSize(int batchSize) {
@@ -319,5 +449,77 @@ public class RedisCacheOptions {
         public void setHashingEnabled(boolean hashingEnabled) {
             this.hashingEnabled = hashingEnabled;
         }
+
+        public JacksonValueCodec.Format getSerializationFormat() {
+            return serializationFormat;
+        }
+
+        public void setSerializationFormat(JacksonValueCodec.Format serializationFormat) {
+            this.serializationFormat = serializationFormat;
+        }
+
+        public JacksonValueCodec.Compression getCompression() {
+            return compression;
+        }
+
+        public void setCompression(JacksonValueCodec.Compression compression) {
+            this.compression = compression;
+        }
+
+        public boolean isNearCacheEnabled() {
+            return nearCacheEnabled;
+        }
+
+        public void setNearCacheEnabled(boolean nearCacheEnabled) {
+            this.nearCacheEnabled = nearCacheEnabled;
+        }
+
+        public int getNearCacheMaxEntries() {
+            return nearCacheMaxEntries;
+        }
+
+        public void setNearCacheMaxEntries(int nearCacheMaxEntries) {
+            this.nearCacheMaxEntries = nearCacheMaxEntries;
+        }
+
+        public int getNearCacheMaxAgeSeconds() {
+            return nearCacheMaxAgeSeconds;
+        }
+
+        public void setNearCacheMaxAgeSeconds(int nearCacheMaxAgeSeconds) {
+            this.nearCacheMaxAgeSeconds = nearCacheMaxAgeSeconds;
+        }
+
+        public int getMaxGetParallelism() {
+            return maxGetParallelism;
+        }
+
+        public void setMaxGetParallelism(int maxGetParallelism) {
+            this.maxGetParallelism = maxGetParallelism;
+        }
+
+        public boolean isScriptedMergeEnabled() {
+            return scriptedMergeEnabled;
+        }
+
+        public void setScriptedMergeEnabled(boolean scriptedMergeEnabled) {
+            this.scriptedMergeEnabled = scriptedMergeEnabled;
+        }
+
+        public boolean isIdentifierIndexEnabled() {
+            return identifierIndexEnabled;
+        }
+
+        public void setIdentifierIndexEnabled(boolean identifierIndexEnabled) {
+            this.identifierIndexEnabled = identifierIndexEnabled;
+        }
+
+        public int getRelationshipSnapshotMaxAgeSeconds() {
+            return relationshipSnapshotMaxAgeSeconds;
+        }
+
+        public void setRelationshipSnapshotMaxAgeSeconds(int relationshipSnapshotMaxAgeSeconds) {
+            this.relationshipSnapshotMaxAgeSeconds = relationshipSnapshotMaxAgeSeconds;
+        }
     }
 }
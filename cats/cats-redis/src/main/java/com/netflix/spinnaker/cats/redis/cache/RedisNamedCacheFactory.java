@@ -21,22 +21,47 @@ import com.netflix.spinnaker.cats.cache.NamedCacheFactory;
 import com.netflix.spinnaker.cats.cache.WriteableCache;
 import com.netflix.spinnaker.cats.redis.JedisSource;
 
-public class RedisNamedCacheFactory implements NamedCacheFactory {
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the RedisCaches of every provider. They share one read executor and one identifier index
+ * executor, which close shuts down.
+ */
+public class RedisNamedCacheFactory implements NamedCacheFactory, Closeable {
 
     private final JedisSource jedisSource;
     private final ObjectMapper objectMapper;
     private final RedisCacheOptions options;
     private final RedisCache.CacheMetrics cacheMetrics;
+    private final ExecutorService readExecutor;
+    private final ExecutorService indexExecutor;
 
     public RedisNamedCacheFactory(JedisSource jedisSource, ObjectMapper objectMapper, RedisCacheOptions options, RedisCache.CacheMetrics cacheMetrics) {
         this.jedisSource = jedisSource;
         this.objectMapper = objectMapper;
         this.options = options;
         this.cacheMetrics = cacheMetrics;
+        this.readExecutor = RedisCache.newReadExecutor("shared", options);
+        this.indexExecutor = RedisCache.newIndexExecutor("shared", options);
     }
 
     @Override
     public WriteableCache getCache(String name) {
-        return new RedisCache(name, jedisSource, objectMapper, options, cacheMetrics);
+        RedisCache cache = new RedisCache(name, jedisSource, objectMapper, options, cacheMetrics, readExecutor, indexExecutor);
+        if (options.isNearCacheEnabled()) {
+            return new RedisNearCache(name, cache, options, cacheMetrics);
+        }
+        return cache;
+    }
+
+    @Override
+    public void close() {
+        if (readExecutor != null) {
+            readExecutor.shutdown();
+        }
+        if (indexExecutor != null) {
+            indexExecutor.shutdown();
+        }
     }
 }
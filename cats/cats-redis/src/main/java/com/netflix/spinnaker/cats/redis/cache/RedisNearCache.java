@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.CacheFilter;
+import com.netflix.spinnaker.cats.cache.CacheStreams;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A WriteableCache that keeps recently read items from a RedisCache on heap.
+ * <p>
+ * Before serving an item locally the fingerprint of the hashes RedisCache stores for
+ * that item is read (a single pipeline per batch); only items whose fingerprint changed,
+ * or that are not held locally, are read and deserialized from redis.
+ * <p>
+ * The hashes of an item outlive the values of an item written with a ttl, so the expiry
+ * of each item read from redis is held with it and an expired item is read again.
+ * <p>
+ * Each type is bounded to a maximum number of entries and a maximum entry age.
+ */
+public class RedisNearCache implements WriteableCache {
+
+    private final String prefix;
+    private final RedisCache backingStore;
+    private final RedisCacheOptions options;
+    private final RedisCache.CacheMetrics cacheMetrics;
+    private final ConcurrentMap<String, Cache<String, NearCacheEntry>> typeCaches = new ConcurrentHashMap<>();
+
+    public RedisNearCache(String prefix, RedisCache backingStore, RedisCacheOptions options, RedisCache.CacheMetrics cacheMetrics) {
+        this.prefix = prefix;
+        this.backingStore = backingStore;
+        this.options = options;
+        this.cacheMetrics = cacheMetrics == null ? new RedisCache.CacheMetrics.NOOP() : cacheMetrics;
+    }
+
+    @Override
+    public void merge(String type, CacheData cacheData) {
+        mergeAll(type, Arrays.asList(cacheData));
+    }
+
+    @Override
+    public void mergeAll(String type, Collection<CacheData> items) {
+        backingStore.mergeAll(type, items);
+        Cache<String, NearCacheEntry> cache = getTypeCache(type);
+        for (CacheData item : items) {
+            cache.invalidate(item.getId());
+        }
+    }
+
+    @Override
+    public void evict(String type, String id) {
+        evictAll(type, Arrays.asList(id));
+    }
+
+    @Override
+    public void evictAll(String type, Collection<String> ids) {
+        backingStore.evictAll(type, ids);
+        getTypeCache(type).invalidateAll(ids);
+    }
+
+    @Override
+    public CacheData get(String type, String id) {
+        return get(type, id, null);
+    }
+
+    @Override
+    public CacheData get(String type, String id, CacheFilter cacheFilter) {
+        Collection<CacheData> result = getAll(type, Arrays.asList(id), cacheFilter);
+        if (result.isEmpty()) {
+            return null;
+        }
+        return result.iterator().next();
+    }
+
+    @Override
+    public Collection<String> getIdentifiers(String type) {
+        return backingStore.getIdentifiers(type);
+    }
+
+    @Override
+    public Collection<String> filterIdentifiers(String type, String glob) {
+        return backingStore.filterIdentifiers(type, glob);
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type) {
+        return getAll(type, (CacheFilter) null);
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type, CacheFilter cacheFilter) {
+        return getAll(type, backingStore.getIdentifiers(type), cacheFilter);
+    }
+
+    @Override
+    public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+        return CacheStreams.fromPages(backingStore.scanIdentifiers(type), ids -> getAll(type, ids, cacheFilter));
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type, Collection<String> identifiers) {
+        return getAll(type, identifiers, null);
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type, String... identifiers) {
+        return getAll(type, Arrays.asList(identifiers));
+    }
+
+    @Override
+    public Collection<CacheData> getAll(String type, Collection<String> identifiers, CacheFilter cacheFilter) {
+        if (identifiers.isEmpty()) {
+            return backingStore.getAll(type, identifiers, cacheFilter);
+        }
+
+        final Collection<String> ids = new LinkedHashSet<>(identifiers);
+        final RedisCache.Fingerprints validation = backingStore.getFingerprintsAndExpirations(type, ids);
+        final Map<String, byte[]> fingerprints = validation.fingerprints;
+        if (fingerprints.isEmpty()) {
+            cacheMetrics.nearCacheGet(prefix, type, ids.size(), 0, ids.size());
+            return backingStore.getAll(type, ids, cacheFilter);
+        }
+
+        final Cache<String, NearCacheEntry> cache = getTypeCache(type);
+        final Map<String, CacheData> resolved = new LinkedHashMap<>(ids.size());
+        final List<String> misses = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        for (String id : ids) {
+            final byte[] fingerprint = fingerprints.get(id);
+            if (fingerprint == null) {
+                // no stored attributes hash; the item does not exist (or is not hashed)
+                cache.invalidate(id);
+                resolved.put(id, null);
+                misses.add(id);
+                continue;
+            }
+            final NearCacheEntry entry = cache.getIfPresent(id);
+            if (entry != null && Arrays.equals(entry.fingerprint, fingerprint) && !entry.isExpired(now)) {
+                resolved.put(id, entry.data);
+            } else {
+                resolved.put(id, null);
+                misses.add(id);
+            }
+        }
+
+        cacheMetrics.nearCacheGet(prefix, type, ids.size(), ids.size() - misses.size(), misses.size());
+
+        if (!misses.isEmpty()) {
+            final Collection<CacheData> items = backingStore.getAll(type, misses, null);
+            final Map<String, Long> expirations = validation.expirations;
+            for (CacheData item : items) {
+                final byte[] fingerprint = fingerprints.get(item.getId());
+                if (fingerprint != null) {
+                    cache.put(item.getId(), new NearCacheEntry(fingerprint, item, expirations.getOrDefault(item.getId(), Long.MAX_VALUE)));
+                }
+                resolved.put(item.getId(), item);
+            }
+        }
+
+        final Collection<CacheData> result = new ArrayList<>(resolved.size());
+        for (CacheData item : resolved.values()) {
+            if (item != null) {
+                result.add(copy(item, cacheFilter));
+            }
+        }
+        return result;
+    }
+
+    private Cache<String, NearCacheEntry> getTypeCache(String type) {
+        Cache<String, NearCacheEntry> existing = typeCaches.get(type);
+        if (existing != null) {
+            return existing;
+        }
+
+        final RemovalListener<String, NearCacheEntry> evictionListener = notification -> {
+            if (notification.wasEvicted()) {
+                cacheMetrics.nearCacheEvict(prefix, type, 1);
+            }
+        };
+        Cache<String, NearCacheEntry> cache = CacheBuilder.newBuilder()
+            .maximumSize(options.getNearCacheMaxEntries())
+            .expireAfterWrite(options.getNearCacheMaxAgeSeconds(), TimeUnit.SECONDS)
+            .removalListener(evictionListener)
+            .build();
+        existing = typeCaches.putIfAbsent(type, cache);
+        return existing == null ? cache : existing;
+    }
+
+    /**
+     * Returns a copy of a locally held item so that callers can't mutate the shared
+     * instance, applying the cacheFilter to the relationships.
+     */
+    private static CacheData copy(CacheData item, CacheFilter cacheFilter) {
+        final Map<String, Collection<String>> relationships = new HashMap<>(item.getRelationships().size());
+        final Collection<String> relationshipNames = cacheFilter == null ?
+            item.getRelationships().keySet() :
+            cacheFilter.filter(CacheFilter.Type.RELATIONSHIP, item.getRelationships().keySet());
+        for (String relationship : relationshipNames) {
+            Collection<String> value = item.getRelationships().get(relationship);
+            if (value != null) {
+                relationships.put(relationship, new ArrayList<>(value));
+            }
+        }
+        return new DefaultCacheData(item.getId(), new HashMap<>(item.getAttributes()), relationships);
+    }
+
+    private static class NearCacheEntry {
+        final byte[] fingerprint;
+        final CacheData data;
+        final long expiresAt;
+
+        NearCacheEntry(byte[] fingerprint, CacheData data, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.data = data;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+}
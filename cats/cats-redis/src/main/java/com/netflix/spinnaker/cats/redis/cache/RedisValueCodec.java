@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.io.IOException;
+
+/**
+ * Converts attribute maps and relationship collections to and from the
+ * byte representation stored in redis.
+ *
+ * Implementations must be able to decode any value written by an earlier
+ * codec configuration (at minimum the legacy JSON encoding) so that the
+ * stored format can be changed on a live cluster without a flush.
+ */
+public interface RedisValueCodec {
+    /**
+     * @return a short name for this codec, used for metrics
+     */
+    String getName();
+
+    byte[] encode(Object value) throws IOException;
+
+    <T> T decode(byte[] value, TypeReference<T> type) throws IOException;
+}
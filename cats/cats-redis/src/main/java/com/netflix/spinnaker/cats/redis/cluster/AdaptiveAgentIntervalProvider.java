@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cluster;
+
+import com.netflix.spinnaker.cats.agent.Agent;
+import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.redis.JedisSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An AgentIntervalProvider that adapts the interval of each agent to how often its results change.
+ * <p>
+ * The scheduler reports every execution of an agent. For each agent an exponentially weighted average
+ * of its execution time, result size and change rate (the fraction of runs whose result differed from
+ * the previous run) is kept, and its interval moves from a lower bound when every run changes towards
+ * the freshness SLO of its provider when runs stop changing:
+ * <pre>
+ * lower    = max(minInterval, executionTime * DUTY_CYCLE_MULTIPLIER)
+ * interval = lower + (freshness - lower) * (1 - changeRate)
+ * </pre>
+ * Agents that have not completed a run, and agents whose last run failed, use the interval of the delegate
+ * (capped at their freshness SLO).
+ * <p>
+ * Results are compared by a fingerprint of their items' ids, attributes and relationships, so attribute
+ * values without a stable hashCode are always seen as changed (and the agent is not backed off).
+ * <p>
+ * The sort scheduler runs an agent on whichever node acquires it, so with a JedisSource the statistics are kept in
+ * the STATS_KEY hash, by agent type, and each run continues from the last run of the agent on any node. Without
+ * one they are kept on this node only, which is only suitable for a single node.
+ */
+public class AdaptiveAgentIntervalProvider implements AgentIntervalProvider {
+    static final double SMOOTHING = 0.3;
+    static final int DUTY_CYCLE_MULTIPLIER = 4;
+    static final int DEFAULT_FRESHNESS_MULTIPLIER = 4;
+    static final String STATS_KEY = "AGENT_STATS";
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveAgentIntervalProvider.class);
+
+    private final AgentIntervalProvider delegate;
+    private final long minIntervalMs;
+    private final long defaultFreshnessMs;
+    private final Map<String, Long> providerFreshnessMs;
+    private final JedisSource jedisSource;
+    private final ConcurrentMap<String, AgentStats> agentStats = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate            provides the timeout and the interval of agents without execution history
+     * @param minIntervalMs       the shortest interval an agent is run at, or -1 for half of the delegate's interval
+     * @param defaultFreshnessMs  the longest interval an agent is run at, or -1 for DEFAULT_FRESHNESS_MULTIPLIER times the delegate's interval
+     * @param providerFreshnessMs the longest interval the agents of a provider are run at, by provider name
+     */
+    public AdaptiveAgentIntervalProvider(AgentIntervalProvider delegate, long minIntervalMs, long defaultFreshnessMs, Map<String, Long> providerFreshnessMs) {
+        this(delegate, minIntervalMs, defaultFreshnessMs, providerFreshnessMs, null);
+    }
+
+    /**
+     * @param jedisSource holds the statistics of every agent for all nodes, or null to keep them on this node
+     */
+    public AdaptiveAgentIntervalProvider(AgentIntervalProvider delegate, long minIntervalMs, long defaultFreshnessMs, Map<String, Long> providerFreshnessMs, JedisSource jedisSource) {
+        this.delegate = delegate;
+        this.jedisSource = jedisSource;
+        this.minIntervalMs = minIntervalMs;
+        this.defaultFreshnessMs = defaultFreshnessMs;
+        this.providerFreshnessMs = providerFreshnessMs == null ? Collections.emptyMap() : new HashMap<>(providerFreshnessMs);
+    }
+
+    @Override
+    public Interval getInterval(Agent agent) {
+        final Interval base = delegate.getInterval(agent);
+        final long freshness = getFreshness(agent, base);
+        final AgentStats stats = agentStats.get(agent.getAgentType());
+        if (stats == null || stats.lastRunFailed) {
+            return new Interval(Math.min(base.getInterval(), freshness), base.getTimeout());
+        }
+
+        final long minInterval = minIntervalMs < 0 ? base.getInterval() / 2 : minIntervalMs;
+        final long lower = Math.min(Math.max(minInterval, (long) (stats.executionTimeMs * DUTY_CYCLE_MULTIPLIER)), freshness);
+        final long interval = lower + (long) ((freshness - lower) * (1 - stats.changeRate));
+        return new Interval(interval, base.getTimeout());
+    }
+
+    /**
+     * Records a successful execution of agent.
+     */
+    public void recordExecution(Agent agent, long elapsedMs, CacheResult result) {
+        final long fingerprint = fingerprint(result);
+        final int resultSize = size(result);
+        final AgentStats previous = loadStats(agent.getAgentType());
+        if (previous == null) {
+            storeStats(agent.getAgentType(), new AgentStats(elapsedMs, resultSize, 1, fingerprint, false));
+            return;
+        }
+        final boolean changed = previous.lastRunFailed || fingerprint != previous.fingerprint;
+        storeStats(agent.getAgentType(), new AgentStats(
+            smooth(previous.executionTimeMs, elapsedMs),
+            smooth(previous.resultSize, resultSize),
+            smooth(previous.changeRate, changed ? 1 : 0),
+            fingerprint,
+            false));
+    }
+
+    /**
+     * Records a failed execution of agent; it is run at its base interval until it succeeds again.
+     */
+    public void recordFailure(Agent agent) {
+        final AgentStats previous = loadStats(agent.getAgentType());
+        if (previous != null) {
+            storeStats(agent.getAgentType(), new AgentStats(previous.executionTimeMs, previous.resultSize, previous.changeRate, previous.fingerprint, true));
+        }
+    }
+
+    /**
+     * @return whether the statistics are kept in redis for all nodes
+     */
+    boolean isShared() {
+        return jedisSource != null;
+    }
+
+    /**
+     * Reads the statistics of agentTypes, as last recorded by any node, with a single HMGET.
+     */
+    void refreshStats(Jedis jedis, List<String> agentTypes) {
+        if (!isShared() || agentTypes.isEmpty()) {
+            return;
+        }
+        final List<String> values = jedis.hmget(STATS_KEY, agentTypes.toArray(new String[agentTypes.size()]));
+        for (int i = 0; i < agentTypes.size(); i++) {
+            if (values.get(i) != null) {
+                agentStats.put(agentTypes.get(i), AgentStats.parse(values.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Estimates how stale the data of a due agent is relative to its freshness SLO, for ordering due agents
+     * when they can't all be run. Agents past their SLO have a priority above 1.
+     *
+     * @param overdueMs how long ago the agent became due
+     */
+    public double getPriority(Agent agent, long overdueMs) {
+        final Interval base = delegate.getInterval(agent);
+        return (double) (getInterval(agent).getInterval() + Math.max(overdueMs, 0)) / Math.max(getFreshness(agent, base), 1);
+    }
+
+    /**
+     * @return the statistics of agentType as last recorded or read by this node, or null if there are none
+     */
+    public AgentStats getStats(String agentType) {
+        return agentStats.get(agentType);
+    }
+
+    private AgentStats loadStats(String agentType) {
+        if (isShared()) {
+            try (Jedis jedis = jedisSource.getJedis()) {
+                final String value = jedis.hget(STATS_KEY, agentType);
+                return value == null ? null : AgentStats.parse(value);
+            } catch (RuntimeException e) {
+                log.warn("Failed to read the statistics of {}, continuing from this node's", agentType, e);
+            }
+        }
+        return agentStats.get(agentType);
+    }
+
+    private void storeStats(String agentType, AgentStats stats) {
+        agentStats.put(agentType, stats);
+        if (isShared()) {
+            try (Jedis jedis = jedisSource.getJedis()) {
+                jedis.hset(STATS_KEY, agentType, stats.format());
+            } catch (RuntimeException e) {
+                log.warn("Failed to store the statistics of {}", agentType, e);
+            }
+        }
+    }
+
+    private long getFreshness(Agent agent, Interval base) {
+        final Long providerFreshness = providerFreshnessMs.get(agent.getProviderName());
+        if (providerFreshness != null) {
+            return providerFreshness;
+        }
+        return defaultFreshnessMs < 0 ? base.getInterval() * DEFAULT_FRESHNESS_MULTIPLIER : defaultFreshnessMs;
+    }
+
+    private static double smooth(double average, double sample) {
+        return average + SMOOTHING * (sample - average);
+    }
+
+    private static int size(CacheResult result) {
+        int size = 0;
+        for (Collection<CacheData> items : result.getCacheResults().values()) {
+            size += items.size();
+        }
+        return size;
+    }
+
+    /**
+     * An order independent hash of the items and evictions in result.
+     */
+    static long fingerprint(CacheResult result) {
+        long fingerprint = 0;
+        for (Map.Entry<String, Collection<CacheData>> type : result.getCacheResults().entrySet()) {
+            long typeFingerprint = type.getKey().hashCode();
+            for (CacheData item : type.getValue()) {
+                typeFingerprint += 31L * (31L * item.getId().hashCode() + item.getAttributes().hashCode()) + item.getRelationships().hashCode();
+            }
+            fingerprint += typeFingerprint * 17;
+        }
+        for (Map.Entry<String, Collection<String>> evictions : result.getEvictions().entrySet()) {
+            fingerprint += 31L * evictions.getKey().hashCode() + evictions.getValue().hashCode();
+        }
+        return fingerprint;
+    }
+
+    public static class AgentStats {
+        private final double executionTimeMs;
+        private final double resultSize;
+        private final double changeRate;
+        private final long fingerprint;
+        private final boolean lastRunFailed;
+
+        AgentStats(double executionTimeMs, double resultSize, double changeRate, long fingerprint, boolean lastRunFailed) {
+            this.executionTimeMs = executionTimeMs;
+            this.resultSize = resultSize;
+            this.changeRate = changeRate;
+            this.fingerprint = fingerprint;
+            this.lastRunFailed = lastRunFailed;
+        }
+
+        String format() {
+            return executionTimeMs + "," + resultSize + "," + changeRate + "," + fingerprint + "," + lastRunFailed;
+        }
+
+        static AgentStats parse(String value) {
+            final String[] fields = value.split(",");
+            return new AgentStats(
+                Double.parseDouble(fields[0]),
+                Double.parseDouble(fields[1]),
+                Double.parseDouble(fields[2]),
+                Long.parseLong(fields[3]),
+                Boolean.parseBoolean(fields[4]));
+        }
+
+        /**
+         * @return the weighted average execution time in milliseconds
+         */
+        public double getExecutionTimeMs() {
+            return executionTimeMs;
+        }
+
+        /**
+         * @return the weighted average number of items in a result
+         */
+        public double getResultSize() {
+            return resultSize;
+        }
+
+        /**
+         * @return the weighted average fraction of runs whose result changed, between 0 and 1
+         */
+        public double getChangeRate() {
+            return changeRate;
+        }
+
+        public boolean isLastRunFailed() {
+            return lastRunFailed;
+        }
+    }
+}
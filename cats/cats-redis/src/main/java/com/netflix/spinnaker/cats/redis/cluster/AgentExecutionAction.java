@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.cats.redis.cluster;
+
+import com.netflix.spinnaker.cats.agent.Agent;
+import com.netflix.spinnaker.cats.agent.AgentExecution;
+import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation;
+import com.netflix.spinnaker.cats.agent.ExecutionTelemetry;
+
+import java.util.concurrent.TimeUnit;
+
+class AgentExecutionAction {
+    private final Agent agent;
+    private final AgentExecution agentExecution;
+    private final ExecutionInstrumentation executionInstrumentation;
+
+    AgentExecutionAction(Agent agent, AgentExecution agentExecution, ExecutionInstrumentation executionInstrumentation) {
+        this.agent = agent;
+        this.agentExecution = agentExecution;
+        this.executionInstrumentation = executionInstrumentation;
+    }
+
+    Agent getAgent() {
+        return agent;
+    }
+
+    AgentExecution getAgentExecution() {
+        return agentExecution;
+    }
+
+    ExecutionInstrumentation getExecutionInstrumentation() {
+        return executionInstrumentation;
+    }
+
+    void execute() {
+        final ExecutionTelemetry telemetry = ExecutionTelemetry.begin();
+        try {
+            executionInstrumentation.executionStarted(agent);
+            final long startTime = System.nanoTime();
+            agentExecution.executeAgent(agent);
+            executionInstrumentation.executionCompleted(agent, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            executionInstrumentation.executionTelemetry(agent, telemetry);
+        } catch (Throwable cause) {
+            executionInstrumentation.executionFailed(agent, cause);
+        } finally {
+            telemetry.end();
+        }
+    }
+}
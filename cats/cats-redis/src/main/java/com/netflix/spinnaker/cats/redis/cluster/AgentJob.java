@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.cats.redis.cluster;
+
+import com.netflix.spinnaker.cats.agent.CacheResultStoreStage;
+
+import java.util.Map;
+
+/**
+ * Runs an agent whose run key was acquired, then releases the run key and removes the agent from the active agents
+ * of its scheduler.
+ */
+class AgentJob implements Runnable {
+    private final long lockReleaseTime;
+    private final AgentExecutionAction action;
+    private final AgentRunKeyLock runKeyLock;
+    private final CacheResultStoreStage storeStage;
+    private final Map<String, Long> activeAgents;
+
+    /**
+     * @param storeStage stores the result of the agent, or null to store it on the calling thread
+     */
+    AgentJob(long lockReleaseTime, AgentExecutionAction action, AgentRunKeyLock runKeyLock, CacheResultStoreStage storeStage, Map<String, Long> activeAgents) {
+        this.lockReleaseTime = lockReleaseTime;
+        this.action = action;
+        this.runKeyLock = runKeyLock;
+        this.storeStage = storeStage;
+        this.activeAgents = activeAgents;
+    }
+
+    @Override
+    public void run() {
+        final String agentType = action.getAgent().getAgentType();
+        if (storeStage != null) {
+            // the lock is released once the result is stored, and the result is only stored if the lock is still held
+            storeStage.execute(action.getAgent(), action.getAgentExecution(), action.getExecutionInstrumentation(),
+                () -> runKeyLock.owns(agentType),
+                () -> agentCompleted(agentType));
+            return;
+        }
+        try {
+            action.execute();
+        } finally {
+            agentCompleted(agentType);
+        }
+    }
+
+    private void agentCompleted(String agentType) {
+        try {
+            runKeyLock.release(agentType, lockReleaseTime);
+        } finally {
+            activeAgents.remove(agentType);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.cats.redis.cluster;
+
+import com.netflix.spinnaker.cats.redis.JedisSource;
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The per-agent run keys that ClusteredAgentScheduler and ShardedAgentScheduler run agents under.
+ * <p>
+ * A run key is the agent type, set to the identity of the node running the agent. It is acquired with the timeout
+ * of the agent and, once the agent completes, either deleted or left to expire at the agent's next execution time,
+ * so that no node runs the agent again before then. Both schedulers use the same keys, so their nodes can run side
+ * by side.
+ */
+class AgentRunKeyLock {
+    private static final long MIN_TTL_THRESHOLD = 500L;
+    private static final String SET_IF_NOT_EXIST = "NX";
+    private static final String SET_EXPIRE_TIME_MILLIS = "PX";
+    private static final String SUCCESS_RESPONSE = "OK";
+
+    private static final String DELETE_LOCK_KEY = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+    private static final String TTL_LOCK_KEY = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2], 'XX') else return nil end";
+
+    private final JedisSource jedisSource;
+    private final NodeIdentity nodeIdentity;
+
+    AgentRunKeyLock(JedisSource jedisSource, NodeIdentity nodeIdentity) {
+        this.jedisSource = jedisSource;
+        this.nodeIdentity = nodeIdentity;
+    }
+
+    boolean acquire(String agentType, long timeout) {
+        try (Jedis jedis = jedisSource.getJedis()) {
+            String response = jedis.set(agentType, nodeIdentity.getNodeIdentity(), SET_IF_NOT_EXIST, SET_EXPIRE_TIME_MILLIS, timeout);
+            return SUCCESS_RESPONSE.equals(response);
+        }
+    }
+
+    boolean owns(String agentType) {
+        try (Jedis jedis = jedisSource.getJedis()) {
+            return nodeIdentity.getNodeIdentity().equals(jedis.get(agentType));
+        }
+    }
+
+    /**
+     * @param when the next execution time of the agent; the key is deleted if that is (nearly) now
+     */
+    void release(String agentType, long when) {
+        final long newTtl = when - System.currentTimeMillis();
+        try (Jedis jedis = jedisSource.getJedis()) {
+            if (newTtl < MIN_TTL_THRESHOLD) {
+                jedis.eval(DELETE_LOCK_KEY, Collections.singletonList(agentType), Collections.singletonList(nodeIdentity.getNodeIdentity()));
+            } else {
+                jedis.eval(TTL_LOCK_KEY, Collections.singletonList(agentType), Arrays.asList(nodeIdentity.getNodeIdentity(), Long.toString(newTtl)));
+            }
+        }
+    }
+}
@@ -21,11 +21,10 @@ import com.netflix.spinnaker.cats.module.CatsModuleAware;
 import com.netflix.spinnaker.cats.redis.JedisSource;
 import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import redis.clients.jedis.Jedis;
 
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
@@ -35,37 +34,62 @@ public class ClusteredAgentScheduler extends CatsModuleAware implements AgentSch
     private final JedisSource jedisSource;
     private final NodeIdentity nodeIdentity;
     private final AgentIntervalProvider intervalProvider;
-    private final ExecutorService agentExecutionPool;
+    private final AgentExecutionPool agentExecutionPool;
+    private final CacheResultStoreStage storeStage;
     private final Map<String, AgentExecutionAction> agents = new ConcurrentHashMap<>();
     private final Map<String, Long> activeAgents = new ConcurrentHashMap<>();
     private final NodeStatusProvider nodeStatusProvider;
+    private final AgentRunKeyLock runKeyLock;
 
     public ClusteredAgentScheduler(JedisSource jedisSource, NodeIdentity nodeIdentity, AgentIntervalProvider intervalProvider, NodeStatusProvider nodeStatusProvider) {
         this(jedisSource, nodeIdentity, intervalProvider, nodeStatusProvider, Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(ClusteredAgentScheduler.class.getSimpleName())), Executors.newCachedThreadPool(new NamedThreadFactory(AgentExecutionAction.class.getSimpleName())));
     }
 
     public ClusteredAgentScheduler(JedisSource jedisSource, NodeIdentity nodeIdentity, AgentIntervalProvider intervalProvider, NodeStatusProvider nodeStatusProvider, ScheduledExecutorService lockPollingScheduler, ExecutorService agentExecutionPool) {
+        this(jedisSource, nodeIdentity, intervalProvider, nodeStatusProvider, lockPollingScheduler, new ExecutorAgentExecutionPool(agentExecutionPool));
+    }
+
+    /**
+     * @param agentExecutionPool the locks of agents the pool can't start right away are left for other nodes
+     */
+    public ClusteredAgentScheduler(JedisSource jedisSource, NodeIdentity nodeIdentity, AgentIntervalProvider intervalProvider, NodeStatusProvider nodeStatusProvider, ScheduledExecutorService lockPollingScheduler, AgentExecutionPool agentExecutionPool) {
+        this(jedisSource, nodeIdentity, intervalProvider, nodeStatusProvider, lockPollingScheduler, agentExecutionPool, null);
+    }
+
+    /**
+     * @param storeStage stores the results of caching agents after their execution slot is freed, or null to store
+     *                   them on the execution slot; an agent's lock is held until its result is stored
+     */
+    public ClusteredAgentScheduler(JedisSource jedisSource, NodeIdentity nodeIdentity, AgentIntervalProvider intervalProvider, NodeStatusProvider nodeStatusProvider, ScheduledExecutorService lockPollingScheduler, AgentExecutionPool agentExecutionPool, CacheResultStoreStage storeStage) {
         this.jedisSource = jedisSource;
         this.nodeIdentity = nodeIdentity;
         this.intervalProvider = intervalProvider;
         this.nodeStatusProvider = nodeStatusProvider;
         this.agentExecutionPool = agentExecutionPool;
+        this.storeStage = storeStage;
+        this.runKeyLock = new AgentRunKeyLock(jedisSource, nodeIdentity);
         lockPollingScheduler.scheduleAtFixedRate(this, 0, 1, TimeUnit.SECONDS);
     }
 
-    private Map<String, Long> acquire() {
-        Map<String, Long> acquired = new HashMap<>(agents.size());
+    private void runAgents() {
         Set<String> skip = new HashSet<>(activeAgents.keySet());
-        for (Map.Entry<String, AgentExecutionAction> agent : agents.entrySet()) {
-            if (!skip.contains(agent.getKey())) {
-                final String agentType = agent.getKey();
-                AgentIntervalProvider.Interval interval = intervalProvider.getInterval(agent.getValue().getAgent());
-                if (acquireRunKey(agentType, interval.getTimeout())) {
-                    acquired.put(agentType, System.currentTimeMillis() + interval.getInterval());
+        List<Agent> scheduled = new ArrayList<>();
+        for (AgentExecutionAction action : agents.values()) {
+            scheduled.add(action.getAgent());
+        }
+        for (Agent agent : agentExecutionPool.prioritize(scheduled)) {
+            final String agentType = agent.getAgentType();
+            final AgentExecutionAction action = agents.get(agentType);
+            // An agent is submitted as soon as it is acquired, so that the capacity check of the next agent sees it.
+            if (action != null && !skip.contains(agentType) && agentExecutionPool.hasCapacity(agent)) {
+                AgentIntervalProvider.Interval interval = intervalProvider.getInterval(agent);
+                if (runKeyLock.acquire(agentType, interval.getTimeout())) {
+                    final long lockReleaseTime = System.currentTimeMillis() + interval.getInterval();
+                    activeAgents.put(agentType, lockReleaseTime);
+                    agentExecutionPool.submit(agent, new AgentJob(lockReleaseTime, action, runKeyLock, storeStage, activeAgents));
                 }
             }
         }
-        return acquired;
     }
 
     @Override
@@ -80,61 +104,6 @@ public class ClusteredAgentScheduler extends CatsModuleAware implements AgentSch
         }
     }
 
-    private void runAgents() {
-        Map<String, Long> thisRun = acquire();
-        activeAgents.putAll(thisRun);
-        for (final Map.Entry<String, Long> toRun : thisRun.entrySet()) {
-            final AgentExecutionAction exec = agents.get(toRun.getKey());
-            agentExecutionPool.submit(new AgentJob(toRun.getValue(), exec, this));
-        }
-    }
-
-    private static final long MIN_TTL_THRESHOLD = 500L;
-    private static final String SET_IF_NOT_EXIST = "NX";
-    private static final String SET_EXPIRE_TIME_MILLIS = "PX";
-    private static final String SUCCESS_RESPONSE = "OK";
-    private static final Integer DEL_SUCCESS = 1;
-
-    private static final String DELETE_LOCK_KEY = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
-    private static final String TTL_LOCK_KEY = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2], 'XX') else return nil end";
-
-    private boolean acquireRunKey(String agentType, long timeout) {
-        try (Jedis jedis = jedisSource.getJedis()) {
-            String response = jedis.set(agentType, nodeIdentity.getNodeIdentity(), SET_IF_NOT_EXIST, SET_EXPIRE_TIME_MILLIS, timeout);
-            return SUCCESS_RESPONSE.equals(response);
-        }
-    }
-
-    private boolean deleteLock(Jedis jedis, String agentType) {
-        Object response = jedis.eval(DELETE_LOCK_KEY, Arrays.asList(agentType), Arrays.asList(nodeIdentity.getNodeIdentity()));
-        return DEL_SUCCESS.equals(response);
-    }
-
-    private boolean ttlLock(Jedis jedis, String agentType, long newTtl) {
-        Object response = jedis.eval(TTL_LOCK_KEY, Arrays.asList(agentType), Arrays.asList(nodeIdentity.getNodeIdentity(), Long.toString(newTtl)));
-        return SUCCESS_RESPONSE.equals(response);
-    }
-
-    private void releaseRunKey(String agentType, long when) {
-        final long newTtl = when - System.currentTimeMillis();
-        final boolean delete = newTtl < MIN_TTL_THRESHOLD;
-        try (Jedis jedis = jedisSource.getJedis()) {
-            if (delete) {
-                deleteLock(jedis, agentType);
-            } else {
-                ttlLock(jedis, agentType, newTtl);
-            }
-        }
-    }
-
-    private void agentCompleted(String agentType, long nextExecutionTime) {
-        try {
-            releaseRunKey(agentType, nextExecutionTime);
-        } finally {
-            activeAgents.remove(agentType);
-        }
-    }
-
     @Override
     public void schedule(Agent agent, AgentExecution agentExecution, ExecutionInstrumentation executionInstrumentation) {
         if (agent instanceof AgentSchedulerAware) {
@@ -149,53 +118,4 @@ public class ClusteredAgentScheduler extends CatsModuleAware implements AgentSch
     public void unschedule(Agent agent) {
         agents.remove(agent.getAgentType());
     }
-
-    private static class AgentJob implements Runnable {
-        private final long lockReleaseTime;
-        private final AgentExecutionAction action;
-        private final ClusteredAgentScheduler scheduler;
-
-        public AgentJob(long lockReleaseTime, AgentExecutionAction action, ClusteredAgentScheduler scheduler) {
-            this.lockReleaseTime = lockReleaseTime;
-            this.action = action;
-            this.scheduler = scheduler;
-        }
-
-        @Override
-        public void run() {
-            try {
-                action.execute();
-            } finally {
-                scheduler.agentCompleted(action.getAgent().getAgentType(), lockReleaseTime);
-            }
-        }
-    }
-
-    private static class AgentExecutionAction {
-        private final Agent agent;
-        private final AgentExecution agentExecution;
-        private final ExecutionInstrumentation executionInstrumentation;
-
-        public AgentExecutionAction(Agent agent, AgentExecution agentExecution, ExecutionInstrumentation executionInstrumentation) {
-            this.agent = agent;
-            this.agentExecution = agentExecution;
-            this.executionInstrumentation = executionInstrumentation;
-        }
-
-        public Agent getAgent() {
-            return agent;
-        }
-
-        public void execute() {
-            try {
-                executionInstrumentation.executionStarted(agent);
-                long startTime = System.nanoTime();
-                agentExecution.executeAgent(agent);
-                executionInstrumentation.executionCompleted(agent, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
-            } catch (Throwable cause) {
-                executionInstrumentation.executionFailed(agent, cause);
-            }
-        }
-
-    }
 }
@@ -19,11 +19,13 @@ package com.netflix.spinnaker.cats.redis.cluster;
 import com.netflix.spinnaker.cats.agent.*;
 import com.netflix.spinnaker.cats.module.CatsModuleAware;
 import com.netflix.spinnaker.cats.redis.JedisSource;
+import com.netflix.spinnaker.cats.redis.RedisScript;
 import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Tuple;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -38,13 +40,21 @@ import java.util.concurrent.*;
  * The amortized cost of this scheduler is much lower than the original ClusteredAgentScheduler, since during each
  * cache interval every key will only be removed from Redis once. If the interval is 60s, and the agent polls every 1s,
  * we already have a (30s / 1) * (# of clouddrivers) factor of improvement.
+ *
+ * Each scheduling tick reads the redis time once and moves every stale and every acquired agent with a single script
+ * call, so the number of redis round trips per tick doesn't grow with the number of agents.
+ *
+ * With an AdaptiveAgentIntervalProvider every execution is reported to the provider, and when more agents are due
+ * than there are free threads the stalest agents relative to their provider's freshness SLO are run first.
  */
 @SuppressFBWarnings
 public class ClusteredSortAgentScheduler extends CatsModuleAware implements AgentScheduler<ClusteredSortAgentLock>, Runnable {
   private final JedisSource jedisSource;
   private final NodeStatusProvider nodeStatusProvider;
   private final AgentIntervalProvider intervalProvider;
-  private final ExecutorService agentWorkPool;
+  private final SchedulerMetrics schedulerMetrics;
+  private final AgentExecutionPool agentWorkPool;
+  private final CacheResultStoreStage storeStage;
 
   private static final int NOW = 0;
   private static final int REDIS_REFRESH_PERIOD = 30;
@@ -58,19 +68,98 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware implements Agen
   // This code assumes that every agent being run is in exactly either the WAITING or WORKING set.
   private static final String WAITING_SET = "WAITZ";
   private static final String WORKING_SET = "WORKZ";
-  private static final String ADD_AGENT_SCRIPT = "addAgentScript";
-  private static final String VALID_SCORE_SCRIPT = "validScoreScript";
-  private static final String SWAP_SET_SCRIPT = "swapSetScript";
-  private static final String REMOVE_AGENT_SCRIPT = "removeAgentScript";
-  private static final String CONDITIONAL_SWAP_SET_SCRIPT = "conditionalSwapSetScript";
 
-  private ConcurrentHashMap<String, String> scriptShas;
+  // Note that a nil reply is converted to false (not nil) in lua, so the presence checks below test for truthiness.
+
+  // When we switch an agent from one set to another, we first make sure it exists in the set we are removing it
+  // from, and then we perform the swap. If this check fails, the thread performing the swap does not get ownership
+  // of the agent.
+  // Swap happens from KEYS[1] -> KEYS[2] with the agent type being ARGV[1], and the score being ARGV[2].
+  private final RedisScript swapSetScript = new RedisScript(
+      "local score = redis.call('zscore', KEYS[1], ARGV[1])\n" +
+      "if score then\n" +
+      "  redis.call('zrem', KEYS[1], ARGV[1])\n" +
+      "  redis.call('zadd', KEYS[2], ARGV[2], ARGV[1])\n" +
+      "  return score\n" +
+      "else return nil end\n");
+
+  private final RedisScript conditionalSwapSetScript = new RedisScript(
+      "local score = redis.call('zscore', KEYS[1], ARGV[1])\n" +
+      "if score == ARGV[3] then\n" +
+      "  redis.call('zrem', KEYS[1], ARGV[1])\n" +
+      "  redis.call('zadd', KEYS[2], ARGV[2], ARGV[1])\n" +
+      "  return score\n" +
+      "else return nil end\n");
+
+  private final RedisScript validScoreScript = new RedisScript(
+      "local score = redis.call('zscore', KEYS[1], ARGV[1])\n" +
+      "if score == ARGV[2] then\n" +
+      "  return score\n" +
+      "else return nil end\n");
+
+  // If an agent isn't present in either the WAITING or WORKING sets, it's safe to add. If it's present in either,
+  // it's being worked on or was recently run, so leave it be.
+  // KEYS[1] and KEYS[2] are checked for inclusion. Each agent in ARGV[2..n] that is in neither is added to KEYS[1]
+  // with score ARGV[1].
+  private final RedisScript addAgentsScript = new RedisScript(
+      "local added = 0\n" +
+      "for i = 2, #ARGV do\n" +
+      "  if not redis.call('zscore', KEYS[1], ARGV[i]) and not redis.call('zscore', KEYS[2], ARGV[i]) then\n" +
+      "    redis.call('zadd', KEYS[1], ARGV[1], ARGV[i])\n" +
+      "    added = added + 1\n" +
+      "  end\n" +
+      "end\n" +
+      "return added\n");
+
+  private final RedisScript removeAgentScript = new RedisScript(
+      "redis.call('zrem', KEYS[1], ARGV[1])\n" +
+      "redis.call('zrem', KEYS[2], ARGV[1])\n");
+
+  // Moves agents from KEYS[1] -> KEYS[2]. ARGV[1] is the current time, ARGV[2] the most agents to move, and
+  // ARGV[3..n] pairs of agent type and the score to move it with. An agent is only moved if it is still in KEYS[1]
+  // with a score no later than ARGV[1], so an agent moved by another node in the meantime is left alone.
+  // Returns the agent types that were moved.
+  private final RedisScript moveDueAgentsScript = new RedisScript(
+      "local moved = {}\n" +
+      "local limit = tonumber(ARGV[2])\n" +
+      "for i = 3, #ARGV, 2 do\n" +
+      "  if #moved >= limit then break end\n" +
+      "  local score = redis.call('zscore', KEYS[1], ARGV[i])\n" +
+      "  if score and tonumber(score) <= tonumber(ARGV[1]) then\n" +
+      "    redis.call('zrem', KEYS[1], ARGV[i])\n" +
+      "    redis.call('zadd', KEYS[2], ARGV[i + 1], ARGV[i])\n" +
+      "    moved[#moved + 1] = ARGV[i]\n" +
+      "  end\n" +
+      "end\n" +
+      "return moved\n");
 
   public ClusteredSortAgentScheduler(JedisSource jedisSource, NodeStatusProvider nodeStatusProvider, AgentIntervalProvider intervalProvider, Integer parallelism) {
+    this(jedisSource, nodeStatusProvider, intervalProvider, parallelism, null);
+  }
+
+  public ClusteredSortAgentScheduler(JedisSource jedisSource, NodeStatusProvider nodeStatusProvider, AgentIntervalProvider intervalProvider, Integer parallelism, SchedulerMetrics schedulerMetrics) {
+    this(jedisSource, nodeStatusProvider, intervalProvider, parallelism, schedulerMetrics, null);
+  }
+
+  /**
+   * @param agentWorkPool runs acquired agents; only agents it can start right away are acquired. If null, agents run
+   *                      on a cached thread pool.
+   */
+  public ClusteredSortAgentScheduler(JedisSource jedisSource, NodeStatusProvider nodeStatusProvider, AgentIntervalProvider intervalProvider, Integer parallelism, SchedulerMetrics schedulerMetrics, AgentExecutionPool agentWorkPool) {
+    this(jedisSource, nodeStatusProvider, intervalProvider, parallelism, schedulerMetrics, agentWorkPool, null);
+  }
+
+  /**
+   * @param storeStage stores agent results after the agent's parallelism permit is released, or null to store them on
+   *                   the agent's worker. An agent stays in the working set until its result is stored.
+   */
+  public ClusteredSortAgentScheduler(JedisSource jedisSource, NodeStatusProvider nodeStatusProvider, AgentIntervalProvider intervalProvider, Integer parallelism, SchedulerMetrics schedulerMetrics, AgentExecutionPool agentWorkPool, CacheResultStoreStage storeStage) {
     this.jedisSource = jedisSource;
     this.nodeStatusProvider = nodeStatusProvider;
     this.agents = new ConcurrentHashMap<>();
     this.intervalProvider = intervalProvider;
+    this.schedulerMetrics = schedulerMetrics == null ? new SchedulerMetrics.NOOP() : schedulerMetrics;
+    this.storeStage = storeStage;
     this.log = LoggerFactory.getLogger(getClass());
 
     if (parallelism == 0 || parallelism < -1) {
@@ -81,77 +170,30 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware implements Agen
       this.runningAgents = Optional.empty();
     }
 
-    scriptShas = new ConcurrentHashMap<>();
-    storeScripts();
-
-    this.agentWorkPool = Executors.newCachedThreadPool(new NamedThreadFactory(AgentWorker.class.getSimpleName()));
+    this.agentWorkPool = agentWorkPool != null ? agentWorkPool : new ExecutorAgentExecutionPool(Executors.newCachedThreadPool(new NamedThreadFactory(AgentWorker.class.getSimpleName())));
     Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(ClusteredSortAgentScheduler.class.getSimpleName()))
       .scheduleAtFixedRate(this, 0, 1, TimeUnit.SECONDS);
   }
 
-  private void storeScripts() {
-    try (Jedis jedis = jedisSource.getJedis()) {
-      // When we switch an agent from one set to another, we first make sure it exists in the set we are removing it
-      // from, and then we perform the swap. If this check fails, the thread performing the swap does not get ownership
-      // of the agent.
-      // Swap happens from KEYS[1] -> KEYS[2] with the agent type being ARGV[1], and the score being ARGV[2].
-      scriptShas.put(SWAP_SET_SCRIPT, jedis.scriptLoad(
-          "local score = redis.call('zscore', KEYS[1], ARGV[1])\n" +
-          "if score ~= nil then\n" +
-          "  redis.call('zrem', KEYS[1], ARGV[1])\n" +
-          "  redis.call('zadd', KEYS[2], ARGV[2], ARGV[1])\n" +
-          "  return score\n" +
-          "else return nil end\n"
-      ));
-
-      scriptShas.put(CONDITIONAL_SWAP_SET_SCRIPT, jedis.scriptLoad(
-          "local score = redis.call('zscore', KEYS[1], ARGV[1])\n" +
-          "if score == ARGV[3] then\n" +
-          "  redis.call('zrem', KEYS[1], ARGV[1])\n" +
-          "  redis.call('zadd', KEYS[2], ARGV[2], ARGV[1])\n" +
-          "  return score\n" +
-          "else return nil end\n"
-      ));
-
-      scriptShas.put(VALID_SCORE_SCRIPT, jedis.scriptLoad(
-          "local score = redis.call('zscore', KEYS[1], ARGV[1])\n" +
-          "if score == ARGV[2] then\n" +
-          "  return score\n" +
-          "else return nil end\n"
-      ));
-
-      // If the agent isn't present in either the WAITING or WORKING sets, it's safe to add. If it's present in either,
-      // it's being worked on or was recently run, so leave it be.
-      // KEYS[1] and KEYS[2] are checked for inclusion. If the agent is in neither ARGV[1] is added to KEYS[1] with score
-      // ARGV[2].
-      scriptShas.put(ADD_AGENT_SCRIPT, jedis.scriptLoad(
-          "if redis.call('zrank', KEYS[1], ARGV[1]) ~= nil then\n" +
-          "  if redis.call('zrank', KEYS[2], ARGV[1]) ~= nil then\n" +
-          "    return redis.call('zadd', KEYS[1], ARGV[2], ARGV[1])\n" +
-          "  else return nil end\n" +
-          "else return nil end\n"));
-
-      scriptShas.put(REMOVE_AGENT_SCRIPT, jedis.scriptLoad(
-          "redis.call('zrem', KEYS[1], ARGV[1])\n" +
-          "redis.call('zrem', KEYS[2], ARGV[1])\n"));
+  public interface SchedulerMetrics {
+    /**
+     * Reported once per scheduling tick.
+     *
+     * @param dueAgents      agents in the WAITING set whose interval had elapsed
+     * @param acquiredAgents agents acquired (and submitted) by this node
+     * @param releasedAgents agents moved back to the WAITING set after exceeding their timeout
+     * @param roundTrips     redis round trips made by the tick
+     */
+    default void tick(int dueAgents,
+                      int acquiredAgents,
+                      int releasedAgents,
+                      int roundTrips,
+                      long durationNanos) {
+      //noop
     }
-  }
 
-  private String getScriptSha(String scriptName, Jedis jedis) {
-    String scriptSha = scriptShas.get(scriptName);
-    if (scriptSha == null) {
-      storeScripts();
-      scriptSha = scriptShas.get(scriptName);
-      if (scriptSha == null) {
-        throw new RuntimeException("Failed to load caching scripts.");
-      }
+    class NOOP implements SchedulerMetrics {
     }
-
-    if (!jedis.scriptExists(scriptSha)) {
-      storeScripts();
-    }
-
-    return scriptShas.get(scriptName);
   }
 
   @Override
@@ -166,7 +208,7 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware implements Agen
 
     agents.put(agent.getAgentType(), new AgentWorker(agent, (CachingAgent.CacheExecution)agentExecution, executionInstrumentation, this));
     try (Jedis jedis = jedisSource.getJedis()) {
-      jedis.evalsha(getScriptSha(ADD_AGENT_SCRIPT, jedis), 2, WAITING_SET, WORKING_SET, agent.getAgentType(), score(jedis, NOW));
+      addAgentsScript.eval(jedis, Arrays.asList(WAITING_SET, WORKING_SET), Arrays.asList(score(jedis, NOW), agent.getAgentType()));
     }
   }
 
@@ -188,16 +230,15 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware implements Agen
   @Override
   public boolean lockValid(ClusteredSortAgentLock lock) {
     try (Jedis jedis = jedisSource.getJedis()) {
-      return jedis.evalsha(getScriptSha(VALID_SCORE_SCRIPT, jedis), 1, WORKING_SET,
-                           lock.getAgent().getAgentType(),
-                           lock.getAcquireScore()) != null;
+      return validScoreScript.eval(jedis, Collections.singletonList(WORKING_SET),
+                                   Arrays.asList(lock.getAgent().getAgentType(), lock.getAcquireScore())) != null;
     }
   }
 
   public void unschedule(Agent agent) {
     agents.remove(agent.getAgentType());
     try (Jedis jedis = jedisSource.getJedis()) {
-      jedis.evalsha(getScriptSha(REMOVE_AGENT_SCRIPT, jedis), 2, WAITING_SET, WORKING_SET, agent.getAgentType());
+      removeAgentScript.eval(jedis, Arrays.asList(WAITING_SET, WORKING_SET), Collections.singletonList(agent.getAgentType()));
     }
   }
 
@@ -220,13 +261,27 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware implements Agen
     }
   }
 
+  /**
+   * @param offset milliseconds from the current redis time
+   * @return the score, in seconds, of the current redis time plus offset
+   */
   private static String score(Jedis jedis, long offset) {
+    return score(redisTime(jedis), offset);
+  }
+
+  private static String score(long redisTime, long offset) {
+    return String.format("%d", redisTime + TimeUnit.MILLISECONDS.toSeconds(offset));
+  }
+
+  /**
+   * @return the current redis time in seconds
+   */
+  private static long redisTime(Jedis jedis) {
     List<String> times = jedis.time();
     if (times == null || times.size() != 2) {
       throw new IllegalStateException("Error retrieving time from Redis");
     }
-    int time = Integer.parseInt(jedis.time().get(0));
-    return String.format("%d", time + offset);
+    return Long.parseLong(times.get(0));
   }
 
   private String agentScore(Agent agent) {
@@ -248,7 +303,7 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware implements Agen
   private ScoreTuple acquireAgent(Agent agent) {
     try (Jedis jedis = jedisSource.getJedis()) {
       String acquireScore = score(jedis, intervalProvider.getInterval(agent).getTimeout());
-      Object releaseScore = jedis.evalsha(getScriptSha(SWAP_SET_SCRIPT, jedis),
+      Object releaseScore = swapSetScript.eval(jedis,
           Arrays.asList(WAITING_SET, WORKING_SET),
           Arrays.asList(agent.getAgentType(), acquireScore));
 
@@ -259,7 +314,7 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware implements Agen
   private ScoreTuple conditionalReleaseAgent(Agent agent, String acquireScore) {
     try (Jedis jedis = jedisSource.getJedis()) {
       String newAcquireScore = score(jedis, intervalProvider.getInterval(agent).getInterval());
-      Object releaseScore = jedis.evalsha(getScriptSha(CONDITIONAL_SWAP_SET_SCRIPT, jedis),
+      Object releaseScore = conditionalSwapSetScript.eval(jedis,
           Arrays.asList(WORKING_SET, WAITING_SET),
           Arrays.asList(agent.getAgentType(), newAcquireScore,
               acquireScore));
@@ -270,69 +325,149 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware implements Agen
 
   private ScoreTuple conditionalReleaseAgent(Agent agent, String acquireScore, String newAcquireScore) {
     try (Jedis jedis = jedisSource.getJedis()) {
-      Object releaseScore = jedis.evalsha(getScriptSha(CONDITIONAL_SWAP_SET_SCRIPT, jedis),
+      Object releaseScore = conditionalSwapSetScript.eval(jedis,
           Arrays.asList(WORKING_SET, WAITING_SET),
           Arrays.asList(agent.getAgentType(), newAcquireScore,
-              acquireScore)).toString();
+              acquireScore));
 
       return releaseScore != null ? new ScoreTuple(newAcquireScore, releaseScore.toString()) : null;
     }
   }
 
-  private ScoreTuple releaseAgent(Agent agent) {
-    try (Jedis jedis = jedisSource.getJedis()) {
-      String acquireScore = score(jedis, intervalProvider.getInterval(agent).getInterval());
-      Object releaseScore = jedis.evalsha(getScriptSha(SWAP_SET_SCRIPT, jedis),
-          Arrays.asList(WORKING_SET, WAITING_SET),
-          Arrays.asList(agent.getAgentType(), acquireScore)).toString();
-
-      return releaseScore != null ? new ScoreTuple(acquireScore, releaseScore.toString()) : null;
+  /**
+   * Atomically moves the agents in candidates (in order) that are still due in the from set to the to set.
+   *
+   * @param scores the score to move each candidate with
+   * @return the agent types that were moved
+   */
+  @SuppressWarnings("unchecked")
+  private List<String> moveDueAgents(Jedis jedis, String from, String to, long now, int limit, List<String> candidates, Map<String, String> scores) {
+    List<String> args = new ArrayList<>(2 + candidates.size() * 2);
+    args.add(Long.toString(now));
+    args.add(Integer.toString(limit));
+    for (String agentType : candidates) {
+      args.add(agentType);
+      args.add(scores.get(agentType));
     }
+    return (List<String>) moveDueAgentsScript.eval(jedis, Arrays.asList(from, to), args);
   }
 
   private void saturatePool() {
+    long startTime = System.nanoTime();
+    int roundTrips = 0;
+    int due;
+    int released = 0;
+    int acquired = 0;
     try (Jedis jedis = jedisSource.getJedis()) {
+      long now = redisTime(jedis);
+      roundTrips++;
+
       // Occasionally repopulate the agents in case redis went down. If they already exist, this is a NOOP
-      if (runCount % REDIS_REFRESH_PERIOD == 0) {
-        for (String agent : agents.keySet()) {
-          jedis.evalsha(getScriptSha(ADD_AGENT_SCRIPT, jedis), 2, WAITING_SET, WORKING_SET, agent, score(jedis, NOW));
-        }
+      if (runCount % REDIS_REFRESH_PERIOD == 0 && !agents.isEmpty()) {
+        List<String> args = new ArrayList<>(agents.size() + 1);
+        args.add(score(now, NOW));
+        args.addAll(agents.keySet());
+        addAgentsScript.eval(jedis, Arrays.asList(WAITING_SET, WORKING_SET), args);
+        roundTrips++;
       }
 
       // First cull threads in the WORKING set that have been there too long (TIMEOUT time).
-      Set<String> oldKeys = jedis.zrangeByScore(WORKING_SET, "-inf", score(jedis, NOW));
-      for (String key : oldKeys) {
-        // Ignore result, since if this agent was released between now and the above jedis call, our work was done
-        // for us.
+      List<String> oldKeys = new ArrayList<>();
+      Map<String, String> releaseScores = new HashMap<>();
+      for (String key : jedis.zrangeByScore(WORKING_SET, "-inf", score(now, NOW))) {
         AgentWorker worker = agents.get(key);
         if (worker != null) {
-          releaseAgent(worker.agent);
+          oldKeys.add(key);
+          releaseScores.put(key, score(now, intervalProvider.getInterval(worker.agent).getInterval()));
         }
       }
+      roundTrips++;
+      if (!oldKeys.isEmpty()) {
+        // Agents released by their worker since the above read are left alone, their work was done for us.
+        released = moveDueAgents(jedis, WORKING_SET, WAITING_SET, now, oldKeys.size(), oldKeys, releaseScores).size();
+        roundTrips++;
+      }
 
       // Now look for agents that have been in the queue for at least INTERVAL time.
-      List<String> keys = new ArrayList<>();
-      keys.addAll(jedis.zrangeByScore(WAITING_SET, "-inf", score(jedis, NOW)));
-      Set<AgentWorker> workers = new HashSet<>();
-
-      // Loop until we either run out of threads to use, or agents (which are keys) to run.
-      while (!keys.isEmpty() && runningAgents.map(Semaphore::tryAcquire).orElse(true)) {
-        String agent = keys.remove(0);
-
-        AgentWorker worker = agents.get(agent);
-        ScoreTuple score;
-        if (worker != null && (score = acquireAgent(worker.agent)) != null) {
-          // This score is used to determine if the worker thread running the agent is allowed to store its results.
-          // If on release of this agent, the scores don't match, this agent was rescheduled by a separate thread.
-          worker.setScore(score.acquireScore);
-          workers.add(worker);
+      List<String> keys;
+      if (intervalProvider instanceof AdaptiveAgentIntervalProvider) {
+        keys = prioritize((AdaptiveAgentIntervalProvider) intervalProvider, jedis, now);
+        if (((AdaptiveAgentIntervalProvider) intervalProvider).isShared() && !keys.isEmpty()) {
+          roundTrips++;
+        }
+      } else {
+        keys = new ArrayList<>(jedis.zrangeByScore(WAITING_SET, "-inf", score(now, NOW)));
+      }
+      roundTrips++;
+      due = keys.size();
+
+      List<Agent> dueAgents = new ArrayList<>();
+      for (String key : keys) {
+        AgentWorker worker = agents.get(key);
+        if (worker != null) {
+          dueAgents.add(worker.agent);
+        }
+      }
+
+      // Leave the agents the pool can't start right away for other nodes.
+      List<String> candidates = new ArrayList<>();
+      Map<String, String> acquireScores = new HashMap<>();
+      for (Agent agent : agentWorkPool.admissible(dueAgents)) {
+        candidates.add(agent.getAgentType());
+        acquireScores.put(agent.getAgentType(), score(now, intervalProvider.getInterval(agent).getTimeout()));
+      }
+
+      // Take every free thread up front, and give back the ones that aren't used.
+      int permits = runningAgents.map(Semaphore::drainPermits).orElse(candidates.size());
+      List<AgentWorker> workers = new ArrayList<>();
+      try {
+        if (permits > 0 && !candidates.isEmpty()) {
+          for (String agent : moveDueAgents(jedis, WAITING_SET, WORKING_SET, now, permits, candidates, acquireScores)) {
+            AgentWorker worker = agents.get(agent);
+            if (worker == null) {
+              // Unscheduled since it was read from WAITZ, unschedule removes it from WORKZ.
+              continue;
+            }
+            // This score is used to determine if the worker thread running the agent is allowed to store its results.
+            // If on release of this agent, the scores don't match, this agent was rescheduled by a separate thread.
+            worker.setScore(acquireScores.get(agent));
+            workers.add(worker);
+          }
+          roundTrips++;
         }
+      } finally {
+        int unused = permits - workers.size();
+        runningAgents.ifPresent(semaphore -> semaphore.release(unused));
       }
+      acquired = workers.size();
 
       for (AgentWorker worker : workers) {
-        agentWorkPool.submit(worker);
+        agentWorkPool.submit(worker.agent, worker);
       }
     }
+    schedulerMetrics.tick(due, acquired, released, roundTrips, System.nanoTime() - startTime);
+  }
+
+  /**
+   * @return the due agents, stalest relative to their freshness SLO first
+   */
+  private List<String> prioritize(AdaptiveAgentIntervalProvider adaptiveIntervalProvider, Jedis jedis, long now) {
+    Map<String, Double> priorities = new HashMap<>();
+    Set<Tuple> dueAgents = jedis.zrangeByScoreWithScores(WAITING_SET, "-inf", score(now, NOW));
+    // the agents may have last run on other nodes
+    List<String> dueAgentTypes = new ArrayList<>(dueAgents.size());
+    for (Tuple due : dueAgents) {
+      dueAgentTypes.add(due.getElement());
+    }
+    adaptiveIntervalProvider.refreshStats(jedis, dueAgentTypes);
+    for (Tuple due : dueAgents) {
+      AgentWorker worker = agents.get(due.getElement());
+      long overdueMs = TimeUnit.SECONDS.toMillis(now - (long) due.getScore());
+      priorities.put(due.getElement(), worker == null ? 0 : adaptiveIntervalProvider.getPriority(worker.agent, overdueMs));
+    }
+    List<String> keys = new ArrayList<>(priorities.keySet());
+    keys.sort((a, b) -> Double.compare(priorities.get(b), priorities.get(a)));
+    return keys;
   }
 
   private static class AgentWorker implements Runnable {
@@ -357,19 +492,44 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware implements Agen
     public void run() {
       assert acquireScore != null;
       CacheResult result = null;
+      ExecutionTelemetry telemetry = ExecutionTelemetry.begin();
       try {
         executionInstrumentation.executionStarted(agent);
         long startTime = System.nanoTime();
         result = agentExecution.executeAgentWithoutStore(agent);
-        executionInstrumentation.executionCompleted(agent, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        executionInstrumentation.executionCompleted(agent, elapsedMs);
+        if (scheduler.intervalProvider instanceof AdaptiveAgentIntervalProvider) {
+          ((AdaptiveAgentIntervalProvider) scheduler.intervalProvider).recordExecution(agent, elapsedMs, result);
+        }
       } catch (Throwable cause) {
         executionInstrumentation.executionFailed(agent, cause);
+        if (scheduler.intervalProvider instanceof AdaptiveAgentIntervalProvider) {
+          ((AdaptiveAgentIntervalProvider) scheduler.intervalProvider).recordFailure(agent);
+        }
       } finally {
         // Regardless of success or failure, we need to try and release this agent. If the release is successful (we
         // own this agent), and a result was created, we can store it.
         scheduler.runningAgents.ifPresent(Semaphore::release);
-        if (scheduler.conditionalReleaseAgent(agent, acquireScore) != null && result != null) {
-          agentExecution.storeAgentResult(agent, result);
+        if (scheduler.storeStage != null && result != null) {
+          // the release is checked right before the write lands, so a result is never stored once the agent was lost
+          final String score = acquireScore;
+          final CacheResult loaded = result;
+          telemetry.end();
+          scheduler.storeStage.submit(agent, () -> scheduler.conditionalReleaseAgent(agent, score) != null, () -> {
+            telemetry.attach();
+            agentExecution.storeAgentResult(agent, loaded);
+            executionInstrumentation.executionTelemetry(agent, telemetry);
+          }, telemetry::end);
+        } else {
+          try {
+            if (scheduler.conditionalReleaseAgent(agent, acquireScore) != null && result != null) {
+              agentExecution.storeAgentResult(agent, result);
+              executionInstrumentation.executionTelemetry(agent, telemetry);
+            }
+          } finally {
+            telemetry.end();
+          }
         }
       }
     }
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cluster;
+
+import com.netflix.spinnaker.cats.agent.Agent;
+import com.netflix.spinnaker.cats.agent.AgentExecution;
+import com.netflix.spinnaker.cats.agent.AgentExecutionPool;
+import com.netflix.spinnaker.cats.agent.AgentLock;
+import com.netflix.spinnaker.cats.agent.AgentScheduler;
+import com.netflix.spinnaker.cats.agent.AgentSchedulerAware;
+import com.netflix.spinnaker.cats.agent.CacheResultStoreStage;
+import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation;
+import com.netflix.spinnaker.cats.agent.ExecutorAgentExecutionPool;
+import com.netflix.spinnaker.cats.module.CatsModuleAware;
+import com.netflix.spinnaker.cats.redis.JedisSource;
+import com.netflix.spinnaker.cats.redis.RedisScript;
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An AgentScheduler that shards agents across the nodes of a cluster with a ConsistentHashRing.
+ * <p>
+ * Every second each enabled node heartbeats into a sorted set of members in redis (scored by when its membership
+ * expires) and reads the live members back. Agents are assigned to members by the hash of their agent type, and a
+ * node only attempts the locks of the agents in its own shard, so lock traffic is O(agents) rather than
+ * O(nodes * agents) and an agent stays on the same node while membership is stable.
+ * <p>
+ * A node that is disabled leaves the ring on its next tick, and a node that stops heartbeating is dropped once its
+ * membership expires; either way the remaining nodes take over its agents on their next tick. Agents are still run
+ * under the same locks as ClusteredAgentScheduler, so an agent is never run twice while nodes briefly disagree about
+ * membership, and nodes of both schedulers can run side by side while a cluster is switched over.
+ */
+public class ShardedAgentScheduler extends CatsModuleAware implements AgentScheduler<AgentLock>, Runnable {
+    private static final Logger log = LoggerFactory.getLogger(ShardedAgentScheduler.class);
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+    public static final long DEFAULT_MEMBER_TTL_MS = TimeUnit.SECONDS.toMillis(10);
+
+    static final String MEMBERS_KEY = "shardedAgentScheduler:members";
+
+    public interface ShardMetrics {
+        /**
+         * Called when the members of the ring change.
+         *
+         * @param shardSize the number of this node's agents in its shard after the rebalance
+         */
+        default void rebalanced(Set<String> members, Set<String> joined, Set<String> left, int shardSize) {
+            //noop
+        }
+
+        /**
+         * @param shardSize      the number of this node's agents in its shard
+         * @param acquiredAgents the agents whose locks were acquired in this tick
+         */
+        default void tick(int members, int shardSize, int acquiredAgents, long durationNanos) {
+            //noop
+        }
+
+        class NOOP implements ShardMetrics {
+        }
+    }
+
+    /**
+     * KEYS[1] members, ARGV now, expiry, member, enabled; drops expired members, then adds (or removes) this node
+     * and returns the live members.
+     */
+    private final RedisScript heartbeatScript = new RedisScript(
+        "redis.call('zremrangebyscore', KEYS[1], '-inf', ARGV[1])\n" +
+        "if ARGV[4] == '1' then\n" +
+        "  redis.call('zadd', KEYS[1], ARGV[2], ARGV[3])\n" +
+        "else\n" +
+        "  redis.call('zrem', KEYS[1], ARGV[3])\n" +
+        "end\n" +
+        "return redis.call('zrange', KEYS[1], 0, -1)\n");
+
+    private final JedisSource jedisSource;
+    private final NodeIdentity nodeIdentity;
+    private final AgentIntervalProvider intervalProvider;
+    private final NodeStatusProvider nodeStatusProvider;
+    private final AgentExecutionPool agentExecutionPool;
+    private final CacheResultStoreStage storeStage;
+    private final int virtualNodes;
+    private final long memberTtlMs;
+    private final ShardMetrics shardMetrics;
+    private final AgentRunKeyLock runKeyLock;
+    private final Map<String, AgentExecutionAction> agents = new ConcurrentHashMap<>();
+    private final Map<String, Long> activeAgents = new ConcurrentHashMap<>();
+
+    private volatile ConsistentHashRing ring;
+    private final AtomicLong rebalances = new AtomicLong();
+
+    public ShardedAgentScheduler(JedisSource jedisSource, NodeIdentity nodeIdentity, AgentIntervalProvider intervalProvider, NodeStatusProvider nodeStatusProvider, ShardMetrics shardMetrics) {
+        this(jedisSource, nodeIdentity, intervalProvider, nodeStatusProvider,
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(ShardedAgentScheduler.class.getSimpleName())),
+            new ExecutorAgentExecutionPool(Executors.newCachedThreadPool(new NamedThreadFactory(AgentExecutionAction.class.getSimpleName()))),
+            DEFAULT_VIRTUAL_NODES, DEFAULT_MEMBER_TTL_MS, shardMetrics);
+    }
+
+    /**
+     * @param agentExecutionPool the locks of agents the pool can't start right away are not acquired
+     * @param virtualNodes       the points each member is placed at on the ring
+     * @param memberTtlMs        how long a node stays a member of the ring after its last heartbeat
+     */
+    public ShardedAgentScheduler(JedisSource jedisSource,
+                                 NodeIdentity nodeIdentity,
+                                 AgentIntervalProvider intervalProvider,
+                                 NodeStatusProvider nodeStatusProvider,
+                                 ScheduledExecutorService lockPollingScheduler,
+                                 AgentExecutionPool agentExecutionPool,
+                                 int virtualNodes,
+                                 long memberTtlMs,
+                                 ShardMetrics shardMetrics) {
+        this(jedisSource, nodeIdentity, intervalProvider, nodeStatusProvider, lockPollingScheduler, agentExecutionPool, null, virtualNodes, memberTtlMs, shardMetrics);
+    }
+
+    /**
+     * @param storeStage stores the results of caching agents after their execution slot is freed, or null to store
+     *                   them on the execution slot; an agent's lock is held until its result is stored
+     */
+    public ShardedAgentScheduler(JedisSource jedisSource,
+                                 NodeIdentity nodeIdentity,
+                                 AgentIntervalProvider intervalProvider,
+                                 NodeStatusProvider nodeStatusProvider,
+                                 ScheduledExecutorService lockPollingScheduler,
+                                 AgentExecutionPool agentExecutionPool,
+                                 CacheResultStoreStage storeStage,
+                                 int virtualNodes,
+                                 long memberTtlMs,
+                                 ShardMetrics shardMetrics) {
+        this.jedisSource = jedisSource;
+        this.nodeIdentity = nodeIdentity;
+        this.intervalProvider = intervalProvider;
+        this.nodeStatusProvider = nodeStatusProvider;
+        this.agentExecutionPool = agentExecutionPool;
+        this.storeStage = storeStage;
+        this.virtualNodes = virtualNodes;
+        this.memberTtlMs = memberTtlMs;
+        this.shardMetrics = shardMetrics == null ? new ShardMetrics.NOOP() : shardMetrics;
+        this.ring = new ConsistentHashRing(Collections.emptySet(), virtualNodes);
+        this.runKeyLock = new AgentRunKeyLock(jedisSource, nodeIdentity);
+        lockPollingScheduler.scheduleAtFixedRate(this, 0, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void run() {
+        final long startTime = System.nanoTime();
+        try {
+            final boolean enabled = nodeStatusProvider.isNodeEnabled();
+            heartbeat(enabled);
+            if (!enabled) {
+                return;
+            }
+            final int acquired = runAgents();
+            shardMetrics.tick(ring.getMembers().size(), getShardSize(), acquired, System.nanoTime() - startTime);
+        } catch (Throwable t) {
+            log.error("Unable to run agents", t);
+        }
+    }
+
+    /**
+     * @return the live members of the ring, as of the last heartbeat
+     */
+    public Set<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    /**
+     * @return the number of scheduled agents assigned to this node
+     */
+    public int getShardSize() {
+        final ConsistentHashRing current = ring;
+        int shardSize = 0;
+        for (String agentType : agents.keySet()) {
+            if (isAssigned(current, agentType)) {
+                shardSize++;
+            }
+        }
+        return shardSize;
+    }
+
+    /**
+     * @return how many times the members of the ring have changed
+     */
+    public long getRebalances() {
+        return rebalances.get();
+    }
+
+    /**
+     * @return whether agent is in this node's shard
+     */
+    public boolean isAssigned(Agent agent) {
+        return isAssigned(ring, agent.getAgentType());
+    }
+
+    private boolean isAssigned(ConsistentHashRing current, String agentType) {
+        return nodeIdentity.getNodeIdentity().equals(current.getOwner(agentType));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void heartbeat(boolean enabled) {
+        final List<String> members;
+        try (Jedis jedis = jedisSource.getJedis()) {
+            final long now = redisTimeMillis(jedis);
+            members = (List<String>) heartbeatScript.eval(jedis, Collections.singletonList(MEMBERS_KEY), Arrays.asList(
+                Long.toString(now),
+                Long.toString(now + memberTtlMs),
+                nodeIdentity.getNodeIdentity(),
+                enabled ? "1" : "0"));
+        }
+
+        final Set<String> previous = ring.getMembers();
+        if (previous.size() == members.size() && previous.containsAll(members)) {
+            return;
+        }
+        ring = new ConsistentHashRing(members, virtualNodes);
+        rebalances.incrementAndGet();
+
+        final Set<String> joined = new HashSet<>(ring.getMembers());
+        joined.removeAll(previous);
+        final Set<String> left = new HashSet<>(previous);
+        left.removeAll(ring.getMembers());
+        final int shardSize = getShardSize();
+        log.info("Rebalanced agents across {} members (joined: {}, left: {}), {} of {} agents assigned to {}",
+            ring.getMembers().size(), joined, left, shardSize, agents.size(), nodeIdentity.getNodeIdentity());
+        shardMetrics.rebalanced(ring.getMembers(), joined, left, shardSize);
+    }
+
+    private int runAgents() {
+        final ConsistentHashRing current = ring;
+        int acquired = 0;
+        final List<Agent> assigned = new ArrayList<>();
+        for (AgentExecutionAction action : agents.values()) {
+            if (isAssigned(current, action.getAgent().getAgentType())) {
+                assigned.add(action.getAgent());
+            }
+        }
+        for (Agent agent : agentExecutionPool.prioritize(assigned)) {
+            final String agentType = agent.getAgentType();
+            final AgentExecutionAction action = agents.get(agentType);
+            if (action == null || activeAgents.containsKey(agentType) || !agentExecutionPool.hasCapacity(agent)) {
+                continue;
+            }
+            final AgentIntervalProvider.Interval interval = intervalProvider.getInterval(agent);
+            if (runKeyLock.acquire(agentType, interval.getTimeout())) {
+                final long lockReleaseTime = System.currentTimeMillis() + interval.getInterval();
+                activeAgents.put(agentType, lockReleaseTime);
+                agentExecutionPool.submit(agent, new AgentJob(lockReleaseTime, action, runKeyLock, storeStage, activeAgents));
+                acquired++;
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * @return the current redis time in milliseconds, so that member expiry doesn't depend on the clocks of the nodes
+     */
+    private static long redisTimeMillis(Jedis jedis) {
+        final List<String> times = jedis.time();
+        if (times == null || times.size() != 2) {
+            throw new IllegalStateException("Error retrieving time from Redis");
+        }
+        return TimeUnit.SECONDS.toMillis(Long.parseLong(times.get(0))) + TimeUnit.MICROSECONDS.toMillis(Long.parseLong(times.get(1)));
+    }
+
+    @Override
+    public void schedule(Agent agent, AgentExecution agentExecution, ExecutionInstrumentation executionInstrumentation) {
+        if (agent instanceof AgentSchedulerAware) {
+            ((AgentSchedulerAware) agent).setAgentScheduler(this);
+        }
+        agents.put(agent.getAgentType(), new AgentExecutionAction(agent, agentExecution, executionInstrumentation));
+    }
+
+    @Override
+    public void unschedule(Agent agent) {
+        agents.remove(agent.getAgentType());
+    }
+}
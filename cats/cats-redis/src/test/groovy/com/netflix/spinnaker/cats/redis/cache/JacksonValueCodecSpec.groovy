@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache
+
+import com.fasterxml.jackson.core.type.TypeReference
+import com.fasterxml.jackson.databind.ObjectMapper
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static com.netflix.spinnaker.cats.redis.cache.JacksonValueCodec.Compression.*
+import static com.netflix.spinnaker.cats.redis.cache.JacksonValueCodec.Format.*
+
+class JacksonValueCodecSpec extends Specification {
+
+    static final TypeReference<Map<String, Object>> ATTRIBUTES = new TypeReference<Map<String, Object>>() {}
+
+    ObjectMapper mapper = new ObjectMapper()
+    Map<String, Object> attributes = [name: 'app-main-v001', instances: (1..50).collect { "i-$it".toString() }, size: 3]
+
+    def 'json without compression matches the legacy encoding'() {
+        given:
+        def codec = new JacksonValueCodec(mapper, JSON, NONE)
+
+        expect:
+        codec.encode(attributes) == mapper.writeValueAsBytes(attributes)
+        codec.name == 'json'
+    }
+
+    @Unroll
+    def 'round trips values written as #writeFormat/#writeCompression when configured for #readFormat/#readCompression'() {
+        given:
+        def writer = new JacksonValueCodec(mapper, writeFormat, writeCompression)
+        def reader = new JacksonValueCodec(mapper, readFormat, readCompression)
+
+        expect:
+        reader.decode(writer.encode(attributes), ATTRIBUTES) == attributes
+
+        where:
+        writeFormat | writeCompression | readFormat | readCompression
+        JSON        | NONE             | SMILE      | LZ4
+        SMILE       | NONE             | JSON       | NONE
+        SMILE       | LZ4              | JSON       | NONE
+        JSON        | LZ4              | SMILE      | NONE
+        SMILE       | LZ4              | SMILE      | LZ4
+    }
+
+    def 'compact encodings are smaller than json'() {
+        given:
+        def json = new JacksonValueCodec(mapper, JSON, NONE).encode(attributes)
+
+        expect:
+        new JacksonValueCodec(mapper, SMILE, NONE).encode(attributes).length < json.length
+        new JacksonValueCodec(mapper, SMILE, LZ4).encode(attributes).length < json.length
+    }
+}
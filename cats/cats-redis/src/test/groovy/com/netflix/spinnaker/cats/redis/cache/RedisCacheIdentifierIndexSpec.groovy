@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.Cache
+import com.netflix.spinnaker.cats.cache.WriteableCacheSpec
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.LocalRedisCheck
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.JedisPool
+import spock.lang.IgnoreIf
+import spock.util.concurrent.PollingConditions
+
+@IgnoreIf({ LocalRedisCheck.redisUnavailable() })
+class RedisCacheIdentifierIndexSpec extends WriteableCacheSpec {
+
+    RedisCache.CacheMetrics cacheMetrics = Mock(RedisCache.CacheMetrics)
+    JedisPool pool
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    @Override
+    Cache getSubject() {
+        pool = new JedisPool("localhost", 6379)
+        pool.resource.withCloseable { Jedis j -> j.flushAll() }
+        return createCache(true)
+    }
+
+    def 'filters identifiers containing a substring with the index'() {
+        setup:
+        cache.mergeAll('serverGroups', (0..<100).collect { createData(serverGroupId(it)) })
+        def expected = (40..49).collect { serverGroupId(it) }.plus(serverGroupId(4)) as Set
+
+        when:
+        def built = cache.filterIdentifiers('serverGroups', '*:serverGroups:*app4*')
+
+        then:
+        built == expected
+        0 * cacheMetrics.filterIdentifiers(_, _, _, _)
+
+        when:
+        awaitIndex('serverGroups')
+        def indexed = cache.filterIdentifiers('serverGroups', '*:serverGroups:*app4*')
+
+        then:
+        indexed == expected
+        1 * cacheMetrics.filterIdentifiers('test', 'serverGroups', 11, 11)
+
+        when:
+        def none = cache.filterIdentifiers('serverGroups', '*:serverGroups:*zzz*')
+
+        then:
+        none.isEmpty()
+        1 * cacheMetrics.filterIdentifiers('test', 'serverGroups', 0, 0)
+    }
+
+    def 'scans the members if the index would not narrow the search'() {
+        setup:
+        cache.mergeAll('serverGroups', (0..<100).collect { createData(serverGroupId(it)) })
+        cache.filterIdentifiers('serverGroups', '*app1*')
+        awaitIndex('serverGroups')
+
+        when:
+        def matches = cache.filterIdentifiers('serverGroups', '*:serverGroups:*')
+
+        then:
+        matches.size() == 100
+        0 * cacheMetrics.filterIdentifiers(_, _, _, _)
+    }
+
+    def 'removes evicted identifiers from the index'() {
+        setup:
+        def ids = (0..<10).collect { serverGroupId(it) }
+        cache.mergeAll('serverGroups', ids.collect { createData(it) })
+
+        when:
+        cache.evictAll('serverGroups', ids.drop(1))
+
+        then:
+        pool.resource.withCloseable { Jedis j -> j.zcard('test:serverGroups:members.trigrams') } == ids[0].length() - 2
+
+        when:
+        cache.evict('serverGroups', ids[0])
+
+        then:
+        pool.resource.withCloseable { Jedis j -> j.zcard('test:serverGroups:members.trigrams') } == 0
+    }
+
+    def 'indexes the members written before the index was enabled'() {
+        setup:
+        createCache(false).mergeAll('serverGroups', (0..<100).collect { createData(serverGroupId(it)) })
+
+        expect:
+        cache.filterIdentifiers('serverGroups', '*app99*') == [serverGroupId(99)] as Set
+        awaitIndex('serverGroups')
+        cache.filterIdentifiers('serverGroups', '*app99*') == [serverGroupId(99)] as Set
+    }
+
+    def 'scans the members while another node holds the index build lock'() {
+        setup:
+        createCache(false).mergeAll('serverGroups', (0..<100).collect { createData(serverGroupId(it)) })
+        pool.resource.withCloseable { Jedis j -> j.set('test:serverGroups:members.trigrams.lock', 'other-node') }
+
+        when:
+        def matches = (0..<5).collect { cache.filterIdentifiers('serverGroups', '*app99*') }
+        Thread.sleep(200)
+
+        then:
+        matches.every { it == [serverGroupId(99)] as Set }
+        !pool.resource.withCloseable { Jedis j -> j.exists('test:serverGroups:members.trigrams.complete') }
+        0 * cacheMetrics.filterIdentifiers(_, _, _, _)
+
+        when:
+        pool.resource.withCloseable { Jedis j -> j.del('test:serverGroups:members.trigrams.lock') }
+        cache.filterIdentifiers('serverGroups', '*app99*')
+        awaitIndex('serverGroups')
+
+        then: 'the lock is released once the index is complete'
+        conditions.eventually {
+            assert !pool.resource.withCloseable { Jedis j -> j.exists('test:serverGroups:members.trigrams.lock') }
+        }
+        cache.filterIdentifiers('serverGroups', '*app99*') == [serverGroupId(99)] as Set
+    }
+
+    private void awaitIndex(String type) {
+        conditions.eventually {
+            assert pool.resource.withCloseable { Jedis j -> j.exists("test:${type}:members.trigrams.complete".toString()) }
+        }
+    }
+
+    private RedisCache createCache(boolean identifierIndexEnabled) {
+        new RedisCache('test', new JedisPoolSource(pool), new ObjectMapper(), RedisCacheOptions.builder().identifierIndex(identifierIndexEnabled).build(), cacheMetrics)
+    }
+
+    private static String serverGroupId(int index) {
+        "aws:serverGroups:app$index-v000:prod:us-west-2"
+    }
+}
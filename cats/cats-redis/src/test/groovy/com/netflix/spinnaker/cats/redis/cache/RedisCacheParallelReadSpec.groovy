@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.CacheData
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.RedisStandIn
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig
+import redis.clients.jedis.JedisPool
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+/**
+ * Runs against an in-process RedisStandIn; RedisCacheReadBenchmark (in the jmh source set)
+ * measures the effect of maxGetParallelism.
+ */
+class RedisCacheParallelReadSpec extends Specification {
+
+    @AutoCleanup
+    RedisStandIn redis
+
+    @AutoCleanup('destroy')
+    JedisPool pool
+
+    def 'parallel reads return items in the same order as sequential reads'() {
+        setup:
+        populate(2000)
+        def ids = (0..<2000).collect { "item-$it".toString() }.reverse()
+
+        when:
+        def sequential = cache(1).getAll('items', ids)
+        def parallel = cache(4).getAll('items', ids)
+
+        then:
+        sequential*.id == ids
+        parallel*.id == ids
+        parallel*.attributes == sequential*.attributes
+        parallel*.relationships == sequential*.relationships
+    }
+
+    private void populate(int count) {
+        redis = new RedisStandIn()
+        def poolConfig = new GenericObjectPoolConfig()
+        poolConfig.maxTotal = 16
+        pool = new JedisPool(poolConfig, 'localhost', redis.port)
+        cache(1).mergeAll('items', (0..<count).collect { int i ->
+            (CacheData) new DefaultCacheData("item-$i", [name: "item-$i", index: i, tags: ['a', 'b', 'c']], [instances: ["i-$i".toString()]])
+        })
+    }
+
+    private RedisCache cache(int parallelism) {
+        new RedisCache('test', new JedisPoolSource(pool), new ObjectMapper(), RedisCacheOptions.builder()
+            .maxGetBatch(100)
+            .maxGetParallelism(parallelism)
+            .hashing(false)
+            .build(), null)
+    }
+}
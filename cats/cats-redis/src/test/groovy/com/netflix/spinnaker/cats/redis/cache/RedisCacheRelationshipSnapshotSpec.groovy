@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.RedisStandIn
+import redis.clients.jedis.JedisPool
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+/**
+ * Runs against an in-process RedisStandIn.
+ */
+class RedisCacheRelationshipSnapshotSpec extends Specification {
+
+    @AutoCleanup
+    RedisStandIn redis = new RedisStandIn()
+
+    @AutoCleanup('destroy')
+    JedisPool pool = new JedisPool('localhost', redis.port)
+
+    RedisCacheOptions options = RedisCacheOptions.builder().relationshipSnapshotMaxAge(1).build()
+    RedisCache cache = new RedisCache('test', new JedisPoolSource(pool), new ObjectMapper(), options, null)
+    RedisCache otherNode = new RedisCache('test', new JedisPoolSource(pool), new ObjectMapper(), options, null)
+
+    def 'reloads relationship names that were added without a version increment once the snapshot is too old'() {
+        setup:
+        cache.merge('foo', new DefaultCacheData('bar', [id: 'bar'], [:]))
+
+        expect:
+        cache.get('foo', 'bar').relationships.isEmpty()
+
+        when: 'a relationship is added and the version counter is reset, as after a failover'
+        otherNode.merge('foo', new DefaultCacheData('bar', [id: 'bar'], [rel: ['baz']]))
+        redis.strings.remove('test:foo:relationships.version')
+
+        then:
+        cache.get('foo', 'bar').relationships.isEmpty()
+
+        when:
+        Thread.sleep(1100)
+
+        then:
+        cache.get('foo', 'bar').relationships.rel == ['baz']
+        cache.getAll('foo', ['bar'])*.relationships == [[rel: ['baz']]]
+    }
+
+    def 'rejects a non positive relationshipSnapshotMaxAge'() {
+        when:
+        RedisCacheOptions.builder().relationshipSnapshotMaxAge(0).build()
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
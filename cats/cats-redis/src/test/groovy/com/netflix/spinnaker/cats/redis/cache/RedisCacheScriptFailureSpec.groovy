@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.RedisStandIn
+import redis.clients.jedis.JedisPool
+import redis.clients.jedis.exceptions.JedisDataException
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Runs against an in-process RedisStandIn, which does not run scripts.
+ */
+class RedisCacheScriptFailureSpec extends Specification {
+
+    @AutoCleanup
+    RedisStandIn redis = new RedisStandIn()
+
+    @AutoCleanup('destroy')
+    JedisPool pool = new JedisPool('localhost', redis.port)
+
+    RedisCache cache = new RedisCache('test', new JedisPoolSource(pool), new ObjectMapper(), RedisCacheOptions.builder().scriptedMerge(true).build(), null)
+
+    def 'falls back to pipelined merges when scripting is not supported'() {
+        when:
+        cache.merge('foo', new DefaultCacheData('bar', [a: 'b'], [:]))
+
+        then:
+        cache.get('foo', 'bar').attributes.a == 'b'
+
+        when: 'scripts are no longer tried'
+        redis.errors.SCRIPT = 'BUSY Redis is busy running a script'
+        cache.merge('foo', new DefaultCacheData('baz', [a: 'c'], [:]))
+
+        then:
+        cache.get('foo', 'baz').attributes.a == 'c'
+    }
+
+    def 'rethrows other script failures and tries the script again on the next merge'() {
+        when:
+        redis.errors.SCRIPT = 'BUSY Redis is busy running a script'
+        cache.merge('foo', new DefaultCacheData('bar', [a: 'b'], [:]))
+
+        then:
+        thrown(JedisDataException)
+
+        when:
+        redis.errors.SCRIPT = 'LOADING Redis is loading the dataset in memory'
+        cache.merge('foo', new DefaultCacheData('bar', [a: 'b'], [:]))
+
+        then:
+        thrown(JedisDataException)
+
+        when:
+        redis.errors.remove('SCRIPT')
+        cache.merge('foo', new DefaultCacheData('bar', [a: 'b'], [:]))
+
+        then:
+        cache.get('foo', 'bar').attributes.a == 'b'
+    }
+
+    @Unroll
+    def 'scripting is unsupported for "#message": #unsupported'() {
+        expect:
+        RedisCache.isScriptingUnsupported(new JedisDataException(message)) == unsupported
+
+        where:
+        message                                                        || unsupported
+        "ERR unknown command 'EVALSHA'"                                || true
+        "ERR unknown command `SCRIPT`, with args beginning with: load" || true
+        'NOSCRIPT No matching script. Please use EVAL.'                || true
+        'BUSY Redis is busy running a script'                          || false
+        "OOM command not allowed when used memory > 'maxmemory'."      || false
+        'LOADING Redis is loading the dataset in memory'               || false
+    }
+}
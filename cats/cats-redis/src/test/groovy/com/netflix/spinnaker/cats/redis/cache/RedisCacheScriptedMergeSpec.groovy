@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.Cache
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.cache.WriteableCacheSpec
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.LocalRedisCheck
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.JedisPool
+import spock.lang.IgnoreIf
+
+import static com.netflix.spinnaker.cats.redis.cache.RedisCache.MergePath.SCRIPTED
+
+@IgnoreIf({ LocalRedisCheck.redisUnavailable() })
+class RedisCacheScriptedMergeSpec extends WriteableCacheSpec {
+
+    RedisCache.CacheMetrics cacheMetrics = Mock(RedisCache.CacheMetrics)
+    JedisPool pool
+
+    @Override
+    Cache getSubject() {
+        pool = new JedisPool("localhost", 6379)
+        def source = new JedisPoolSource(pool)
+        Jedis jedis
+        try {
+            jedis = source.jedis
+            jedis.flushAll()
+        } finally {
+            jedis?.close()
+        }
+
+        return new RedisCache('test', source, new ObjectMapper(), RedisCacheOptions.builder().scriptedMerge(true).build(), cacheMetrics)
+    }
+
+    def 'should not write an item if it is unchanged'() {
+        setup:
+        def data = createData('blerp', [a: 'b'])
+
+        when:
+        cache.merge('foo', data)
+
+        then:
+        1 * cacheMetrics.merge('test', 'foo', 1, 1, 0, 0, 1, 0, 0, 0, 0, 0)
+        1 * cacheMetrics.merge('test', 'foo', SCRIPTED, 1, 1, 1, _)
+
+        when:
+        cache.merge('foo', data)
+
+        then:
+        1 * cacheMetrics.merge('test', 'foo', 1, 0, 0, 1, 0, 0, 0, 0, 0, 0)
+        1 * cacheMetrics.merge('test', 'foo', SCRIPTED, 1, 0, 1, _)
+    }
+
+    def 'should write every value if hashes are disabled'() {
+        setup:
+        def data = createData('blerp', [a: 'b'])
+        cache.merge('foo', data)
+
+        when:
+        pool.resource.withCloseable { Jedis j -> j.set('test:foo:hashes.disabled', 'true') }
+        cache.merge('foo', data)
+
+        then:
+        1 * cacheMetrics.merge('test', 'foo', 1, 1, 0, 0, 1, 0, 0, 0, 0, 0)
+    }
+
+    def 'should expire values with a ttl'() {
+        when:
+        cache.merge('foo', new DefaultCacheData('bar', 600, [a: 'b'], [rel: ['baz']]))
+
+        then:
+        pool.resource.withCloseable { Jedis j -> j.ttl('test:foo:attributes:bar') } > 0
+        pool.resource.withCloseable { Jedis j -> j.ttl('test:foo:relationships:bar:rel') } > 0
+        1 * cacheMetrics.merge('test', 'foo', 1, 2, 1, 0, 2, 0, 0, 0, 0, 2)
+    }
+
+    def 'should reload the script if redis no longer has it'() {
+        setup:
+        cache.merge('foo', createData('bar'))
+        pool.resource.withCloseable { Jedis j -> j.scriptFlush() }
+
+        when:
+        cache.merge('foo', createData('baz'))
+
+        then:
+        cache.getIdentifiers('foo').sort() == ['bar', 'baz']
+    }
+}
@@ -162,6 +162,19 @@ class RedisCacheSpec extends WriteableCacheSpec {
         1 * cacheMetrics.merge('test', 'foo', 1, 0, 0, 1, 0, 0, 0, 0, 0, 0)
     }
 
+    def 'counts one round trip per HMGET of the stored hashes'() {
+        setup:
+        def cache = new RedisCache('test', new JedisPoolSource(pool), new ObjectMapper(), RedisCacheOptions.builder().maxHmget(1).build(), cacheMetrics)
+        def items = [createData('a'), createData('b'), createData('c')]
+        cache.mergeAll('foo', items)
+
+        when: // every item is unchanged, so the HMGETs are the only round trips
+        cache.mergeAll('foo', items)
+
+        then:
+        1 * cacheMetrics.merge('test', 'foo', RedisCache.MergePath.PIPELINED, 3, 0, 3, _)
+    }
+
     def 'should merge #mergeCount items at a time'() {
         setup:
         def cache = new RedisCache('test', new JedisPoolSource(pool), new ObjectMapper(), RedisCacheOptions.builder().maxMergeBatch(mergeCount).hashing(false).build(), cacheMetrics)
@@ -182,6 +195,38 @@ class RedisCacheSpec extends WriteableCacheSpec {
         finalMergeCount = finalMerge > 0 ? 1 : 0
     }
 
+    def 'refreshes relationship names when another node adds a relationship'() {
+        setup:
+        def otherNode = new RedisCache('test', new JedisPoolSource(pool), new ObjectMapper(), RedisCacheOptions.builder().build(), null)
+        populateOne('foo', 'bar')
+
+        when:
+        def item = cache.get('foo', 'bar')
+
+        then:
+        item.relationships.isEmpty()
+
+        when:
+        otherNode.merge('foo', createData('bar', [id: 'bar'], [rel: ['baz']]))
+        item = cache.get('foo', 'bar')
+
+        then:
+        item.relationships.rel == ['baz']
+        1 * cacheMetrics.refreshRelationships('test', 'foo', 1, 1)
+    }
+
+    def 'does not rescan relationship names when they are unchanged'() {
+        setup:
+        populateOne('foo', 'bar', createData('bar', [id: 'bar'], [rel: ['baz']]))
+
+        when:
+        cache.get('foo', 'bar')
+        cache.getAll('foo', ['bar'])
+
+        then:
+        0 * cacheMetrics.refreshRelationships(*_)
+    }
+
     private static class Bean {
         String key
         Integer key2
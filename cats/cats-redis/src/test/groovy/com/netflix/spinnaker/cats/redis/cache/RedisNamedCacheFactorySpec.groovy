@@ -76,4 +76,25 @@ class RedisNamedCacheFactorySpec extends Specification {
         barC1.attributes.bar == 'baz'
         barC2 == null
     }
+
+    def 'caches share the executors of the factory, which close shuts down'() {
+        setup:
+        def factory = new RedisNamedCacheFactory(new JedisPoolSource(new JedisPool("localhost", 6379)), new ObjectMapper(), RedisCacheOptions.builder()
+            .maxGetParallelism(4)
+            .identifierIndex(true)
+            .build(), null)
+        RedisCache c1 = (RedisCache) factory.getCache('foo')
+        RedisCache c2 = (RedisCache) factory.getCache('foo2')
+
+        expect:
+        c1.@readExecutor.is(c2.@readExecutor)
+        c1.@indexExecutor.is(c2.@indexExecutor)
+
+        when:
+        factory.close()
+
+        then:
+        c1.@readExecutor.isShutdown()
+        c1.@indexExecutor.isShutdown()
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.RedisStandIn
+import redis.clients.jedis.JedisPool
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+/**
+ * Runs against an in-process RedisStandIn, which expires strings but not the hashes RedisCache
+ * fingerprints items with.
+ */
+class RedisNearCacheExpirySpec extends Specification {
+
+    @AutoCleanup
+    RedisStandIn redis = new RedisStandIn()
+
+    @AutoCleanup('destroy')
+    JedisPool pool = new JedisPool('localhost', redis.port)
+
+    RedisCacheOptions options = RedisCacheOptions.builder().nearCache(true).build()
+    RedisCache redisCache = new RedisCache('test', new JedisPoolSource(pool), new ObjectMapper(), options, null)
+    RedisNearCache cache = new RedisNearCache('test', redisCache, options, null)
+
+    def 'does not serve an item after its ttl has expired'() {
+        setup:
+        cache.merge('foo', new DefaultCacheData('bar', 1, [a: 'b'], [:]))
+
+        expect:
+        cache.get('foo', 'bar').attributes.a == 'b'
+        redisCache.getFingerprints('foo', ['bar']).containsKey('bar')
+
+        when:
+        Thread.sleep(1100)
+
+        then:
+        redisCache.getFingerprints('foo', ['bar']).containsKey('bar')
+        cache.get('foo', 'bar') == null
+        cache.getAll('foo', ['bar']).isEmpty()
+    }
+
+    def 'serves an item without a ttl locally'() {
+        setup:
+        cache.merge('foo', new DefaultCacheData('bar', [a: 'b'], [:]))
+        cache.get('foo', 'bar')
+
+        when:
+        redis.strings.put('test:foo:attributes:bar', '{"a":"c"}'.bytes)
+
+        then:
+        cache.get('foo', 'bar').attributes.a == 'b'
+    }
+
+    def 'validates locally held items in a single round trip'() {
+        setup:
+        cache.merge('foo', new DefaultCacheData('bar', [a: 'b'], [baz: ['qux']]))
+        cache.get('foo', 'bar')
+
+        when:
+        int before = redis.flights.get()
+        def item = cache.get('foo', 'bar')
+
+        then:
+        item.attributes.a == 'b'
+        redis.flights.get() - before == 1
+    }
+
+    def 'streams all items of a type'() {
+        setup:
+        cache.mergeAll('foo', (1..5).collect { new DefaultCacheData("bar$it".toString(), [a: it], [:]) })
+
+        expect:
+        cache.streamAll('foo', null).collect { it.id }.sort() == (1..5).collect { "bar$it".toString() }
+    }
+}
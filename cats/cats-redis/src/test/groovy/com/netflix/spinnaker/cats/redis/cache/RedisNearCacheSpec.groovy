@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.Cache
+import com.netflix.spinnaker.cats.cache.WriteableCacheSpec
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.LocalRedisCheck
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.JedisPool
+import spock.lang.IgnoreIf
+
+@IgnoreIf({ LocalRedisCheck.redisUnavailable() })
+class RedisNearCacheSpec extends WriteableCacheSpec {
+
+    RedisCache.CacheMetrics cacheMetrics = Mock(RedisCache.CacheMetrics)
+    JedisPoolSource source
+    RedisCacheOptions options = RedisCacheOptions.builder().nearCache(true).build()
+
+    @Override
+    Cache getSubject() {
+        source = new JedisPoolSource(new JedisPool("localhost", 6379))
+        Jedis jedis
+        try {
+            jedis = source.jedis
+            jedis.flushAll()
+        } finally {
+            jedis?.close()
+        }
+
+        return new RedisNearCache('test', redisCache(), options, cacheMetrics)
+    }
+
+    RedisCache redisCache() {
+        new RedisCache('test', source, new ObjectMapper(), options, cacheMetrics)
+    }
+
+    def 'serves unchanged items locally'() {
+        setup:
+        populateOne('foo', 'bar')
+        cache.get('foo', 'bar')
+
+        when:
+        def item = cache.get('foo', 'bar')
+
+        then:
+        item.attributes.id == 'bar'
+        1 * cacheMetrics.nearCacheGet('test', 'foo', 1, 1, 0)
+        0 * cacheMetrics.get(*_)
+    }
+
+    def 'rereads items written by another node'() {
+        setup:
+        populateOne('foo', 'bar', createData('bar', [a: 'b']))
+        cache.get('foo', 'bar')
+
+        when:
+        redisCache().merge('foo', createData('bar', [a: 'c']))
+        def item = cache.get('foo', 'bar')
+
+        then:
+        item.attributes.a == 'c'
+        1 * cacheMetrics.nearCacheGet('test', 'foo', 1, 0, 1)
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cluster
+
+import com.netflix.spinnaker.cats.agent.Agent
+import com.netflix.spinnaker.cats.agent.DefaultCacheResult
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.LocalRedisCheck
+import redis.clients.jedis.JedisPool
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+import spock.lang.Subject
+
+class AdaptiveAgentIntervalProviderSpec extends Specification {
+
+    def agent = Stub(Agent) {
+        getAgentType() >> 'agent'
+        getProviderName() >> 'provider'
+    }
+
+    @Subject
+    def provider = new AdaptiveAgentIntervalProvider(new DefaultAgentIntervalProvider(1000, 5000), 500, 4000, [:])
+
+    def 'should use the delegate interval before the first run'() {
+        expect:
+        provider.getInterval(agent).interval == 1000
+        provider.getInterval(agent).timeout == 5000
+    }
+
+    def 'should back off agents whose results do not change'() {
+        given:
+        def result = result('a')
+
+        when:
+        10.times { provider.recordExecution(agent, 10, result) }
+
+        then:
+        provider.getStats('agent').changeRate < 0.05
+        provider.getInterval(agent).interval > 3800
+        provider.getInterval(agent).interval <= 4000
+        provider.getInterval(agent).timeout == 5000
+    }
+
+    def 'should poll agents whose results change every run at the minimum interval'() {
+        when:
+        10.times { provider.recordExecution(agent, 10, result("a$it")) }
+
+        then:
+        provider.getStats('agent').changeRate == 1
+        provider.getInterval(agent).interval == 500
+    }
+
+    def 'should not poll an agent more often than its execution time allows'() {
+        when:
+        10.times { provider.recordExecution(agent, 300, result("a$it")) }
+
+        then:
+        provider.getStats('agent').executionTimeMs == 300
+        provider.getInterval(agent).interval == 300 * AdaptiveAgentIntervalProvider.DUTY_CYCLE_MULTIPLIER
+    }
+
+    def 'should use the delegate interval after a failure'() {
+        given:
+        10.times { provider.recordExecution(agent, 10, result('a')) }
+
+        when:
+        provider.recordFailure(agent)
+
+        then:
+        provider.getInterval(agent).interval == 1000
+
+        when:
+        provider.recordExecution(agent, 10, result('a'))
+
+        then:
+        provider.getInterval(agent).interval < 4000
+        !provider.getStats('agent').lastRunFailed
+    }
+
+    def 'should use the freshness of the agent provider'() {
+        given:
+        def adaptive = new AdaptiveAgentIntervalProvider(new DefaultAgentIntervalProvider(1000, 5000), -1, -1, [provider: 2000L])
+        def other = Stub(Agent) {
+            getAgentType() >> 'other'
+            getProviderName() >> 'other'
+        }
+
+        when:
+        20.times {
+            adaptive.recordExecution(agent, 10, result('a'))
+            adaptive.recordExecution(other, 10, result('a'))
+        }
+
+        then:
+        adaptive.getInterval(agent).interval <= 2000
+        adaptive.getInterval(other).interval > 2000
+        adaptive.getInterval(other).interval <= 1000 * AdaptiveAgentIntervalProvider.DEFAULT_FRESHNESS_MULTIPLIER
+    }
+
+    def 'should prioritize agents that are stale relative to their freshness'() {
+        expect:
+        provider.getPriority(agent, 3000) > provider.getPriority(agent, 0)
+        provider.getPriority(agent, 3000) == 1d
+    }
+
+    @IgnoreIf({ LocalRedisCheck.redisUnavailable() })
+    def 'should continue from the runs of an agent on other nodes'() {
+        setup:
+        def pool = new JedisPool('localhost', 6379)
+        pool.resource.withCloseable { it.del(AdaptiveAgentIntervalProvider.STATS_KEY) }
+        def node = { new AdaptiveAgentIntervalProvider(new DefaultAgentIntervalProvider(1000, 5000), 500, 4000, [:], new JedisPoolSource(pool)) }
+        def first = node()
+        def second = node()
+
+        when:
+        10.times { first.recordExecution(agent, 10, result('a')) }
+        second.recordExecution(agent, 10, result('a'))
+
+        then: 'the unchanged result is not seen as a change on the second node'
+        second.getStats('agent').changeRate < 0.05
+        second.getInterval(agent).interval > 3800
+
+        when:
+        def third = node()
+        pool.resource.withCloseable { third.refreshStats(it, ['agent', 'unknown']) }
+
+        then:
+        third.getStats('agent').changeRate == second.getStats('agent').changeRate
+        third.getStats('unknown') == null
+
+        cleanup:
+        pool?.resource?.withCloseable { it.del(AdaptiveAgentIntervalProvider.STATS_KEY) }
+        pool?.destroy()
+    }
+
+    def 'should fingerprint results independently of order'() {
+        expect:
+        AdaptiveAgentIntervalProvider.fingerprint(result('a', 'b')) == AdaptiveAgentIntervalProvider.fingerprint(result('b', 'a'))
+        AdaptiveAgentIntervalProvider.fingerprint(result('a', 'b')) != AdaptiveAgentIntervalProvider.fingerprint(result('a', 'c'))
+    }
+
+    private static DefaultCacheResult result(String... ids) {
+        new DefaultCacheResult([serverGroups: ids.collect { new DefaultCacheData(it, [name: it], [:]) }])
+    }
+}
@@ -17,8 +17,12 @@
 package com.netflix.spinnaker.cats.redis.cluster
 
 import com.netflix.spinnaker.cats.agent.AgentExecution
+import com.netflix.spinnaker.cats.agent.CacheResultStoreStage
 import com.netflix.spinnaker.cats.agent.CachingAgent
 import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.agent.ExecutorAgentExecutionPool
+import com.netflix.spinnaker.cats.provider.ProviderCache
+import com.netflix.spinnaker.cats.provider.ProviderRegistry
 import com.netflix.spinnaker.cats.redis.JedisSource
 import com.netflix.spinnaker.cats.test.ManualRunnableScheduler
 import com.netflix.spinnaker.cats.test.TestAgent
@@ -26,6 +30,9 @@ import redis.clients.jedis.Jedis
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 class ClusteredAgentSchedulerSpec extends Specification {
 
     @Subject
@@ -74,6 +81,7 @@ class ClusteredAgentSchedulerSpec extends Specification {
         1 * inst.executionStarted(agent)
         1 * exec.executeAgent(agent)
         1 * inst.executionCompleted(agent, _)
+        1 * inst.executionTelemetry(agent, _)
         1 * jedis.eval(_ as String, _ as List, _ as List)
         2 * jedis.close()
         0 * _
@@ -97,4 +105,33 @@ class ClusteredAgentSchedulerSpec extends Specification {
         2 * jedis.close()
         0 * _
     }
+
+    def 'a result stored after the execution slot is freed is discarded if the execution token was lost'() {
+        setup:
+        def source = Stub(JedisSource) {
+            getJedis() >> jedis
+        }
+        def providerCache = Mock(ProviderCache)
+        def execution = new CachingAgent.CacheExecution(Stub(ProviderRegistry) { getProviderCache(_) >> providerCache })
+        def stage = new CacheResultStoreStage(1, 1, null)
+        def completed = new CountDownLatch(1)
+        scheduler = new ClusteredAgentScheduler(source, new DefaultNodeIdentity(), new DefaultAgentIntervalProvider(6000000), new DefaultNodeStatusProvider(),
+            lockPollingScheduler, new ExecutorAgentExecutionPool(agentExecutionScheduler), stage)
+
+        when:
+        scheduler.schedule(agent, execution, inst)
+        lockPollingScheduler.runAll()
+        agentExecutionScheduler.runAll()
+        completed.await(10, TimeUnit.SECONDS)
+        stage.shutdown()
+
+        then:
+        1 * jedis.set(_ as String, _ as String, 'NX', 'PX', _ as Long) >> 'OK'
+        1 * inst.executionStarted(agent)
+        1 * jedis.get(agent.agentType) >> 'another node'
+        0 * providerCache.putCacheResult(_, _, _)
+        0 * inst.executionCompleted(_, _)
+        1 * inst.executionDiscarded(agent, _)
+        1 * jedis.eval(_ as String, _ as List, _ as List) >> { completed.countDown(); 0 }
+    }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cluster
+
+import com.netflix.spinnaker.cats.agent.Agent
+import com.netflix.spinnaker.cats.agent.CacheResult
+import com.netflix.spinnaker.cats.agent.CachingAgent
+import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.LocalRedisCheck
+import com.netflix.spinnaker.cats.test.TestAgent
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.JedisPool
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+@IgnoreIf({ LocalRedisCheck.redisUnavailable() })
+class ClusteredSortAgentSchedulerSpec extends Specification {
+
+    JedisPool pool
+    Jedis jedis
+    CountDownLatch executing = new CountDownLatch(1)
+    ClusteredSortAgentScheduler.SchedulerMetrics schedulerMetrics = Mock(ClusteredSortAgentScheduler.SchedulerMetrics)
+    ExecutionInstrumentation instrumentation = Mock(ExecutionInstrumentation)
+    CachingAgent.CacheExecution execution = new BlockingExecution(executing)
+
+    @Subject
+    ClusteredSortAgentScheduler scheduler
+
+    def setup() {
+        pool = new JedisPool('localhost', 6379)
+        jedis = pool.resource
+        jedis.flushAll()
+    }
+
+    def cleanup() {
+        executing.countDown()
+        jedis?.close()
+        pool?.destroy()
+    }
+
+    def 'acquires every due agent with a constant number of round trips'() {
+        setup:
+        scheduler = createScheduler(-1)
+        def agents = (0..<20).collect { new TestAgent() }
+        agents.each { scheduler.schedule(it, execution, instrumentation) }
+
+        when:
+        scheduler.saturatePool()
+
+        then:
+        1 * schedulerMetrics.tick(20, 20, 0, 5, _)
+        jedis.zcard('WORKZ') == 20
+        jedis.zcard('WAITZ') == 0
+
+        when:
+        executing.countDown()
+
+        then:
+        waitFor { jedis.zcard('WAITZ') == 20 }
+        jedis.zcard('WORKZ') == 0
+    }
+
+    def 'does not acquire more agents than there are free threads'() {
+        setup:
+        scheduler = createScheduler(2)
+        (0..<5).each { scheduler.schedule(new TestAgent(), execution, instrumentation) }
+
+        when:
+        scheduler.saturatePool()
+
+        then:
+        1 * schedulerMetrics.tick(5, 2, 0, 5, _)
+        jedis.zcard('WORKZ') == 2
+        scheduler.runningAgents.get().availablePermits() == 0
+
+        when:
+        executing.countDown()
+
+        then:
+        waitFor { scheduler.runningAgents.get().availablePermits() == 2 }
+    }
+
+    def 'skips agents that are unscheduled while they are acquired'() {
+        setup:
+        scheduler = createScheduler(-1)
+        def kept = new TestAgent()
+        def unscheduled = new TestAgent()
+        scheduler.schedule(kept, execution, instrumentation)
+        scheduler.schedule(unscheduled, execution, instrumentation)
+        // the second read of the unscheduled agent's worker follows its removal
+        scheduler.@agents = new ConcurrentHashMap(scheduler.@agents) {
+            int reads = 0
+
+            @Override
+            Object get(Object key) {
+                key == unscheduled.agentType && reads++ > 0 ? null : super.get(key)
+            }
+        }
+
+        when:
+        scheduler.saturatePool()
+
+        then:
+        notThrown(NullPointerException)
+        1 * schedulerMetrics.tick(2, 1, 0, 5, _)
+        jedis.zcard('WORKZ') == 2
+    }
+
+    def 'releases agents that exceeded their timeout'() {
+        setup:
+        scheduler = createScheduler(-1)
+        def agent = new TestAgent()
+        scheduler.schedule(agent, execution, instrumentation)
+        scheduler.runCount = 1
+        def now = Long.parseLong(jedis.time()[0])
+        jedis.zrem('WAITZ', agent.agentType)
+        jedis.zadd('WORKZ', now - 10, agent.agentType)
+
+        when:
+        scheduler.saturatePool()
+
+        then:
+        1 * schedulerMetrics.tick(0, 0, 1, 4, _)
+        jedis.zscore('WAITZ', agent.agentType) >= now + 60
+        jedis.zcard('WORKZ') == 0
+    }
+
+    def 'does not add agents that are being worked on'() {
+        setup:
+        scheduler = createScheduler(-1)
+        def agent = new TestAgent()
+        def now = Long.parseLong(jedis.time()[0])
+        jedis.zadd('WORKZ', now + 300, agent.agentType)
+
+        when:
+        scheduler.schedule(agent, execution, instrumentation)
+
+        then:
+        jedis.zscore('WAITZ', agent.agentType) == null
+        jedis.zscore('WORKZ', agent.agentType) == now + 300
+    }
+
+    def 'does not take agents that are not due'() {
+        setup:
+        scheduler = createScheduler(-1)
+        def agent = new TestAgent()
+        scheduler.schedule(agent, execution, instrumentation)
+        def now = Long.parseLong(jedis.time()[0])
+        jedis.zadd('WAITZ', now + 300, agent.agentType)
+
+        when:
+        scheduler.saturatePool()
+
+        then:
+        1 * schedulerMetrics.tick(0, 0, 0, 4, _)
+        jedis.zscore('WAITZ', agent.agentType) == now + 300
+        jedis.zcard('WORKZ') == 0
+    }
+
+    private ClusteredSortAgentScheduler createScheduler(int parallelism) {
+        // the node is disabled so that only the test ticks the scheduler
+        new ClusteredSortAgentScheduler(new JedisPoolSource(pool), Stub(NodeStatusProvider) {
+            isNodeEnabled() >> false
+        }, new DefaultAgentIntervalProvider(60000, 120000), parallelism, schedulerMetrics)
+    }
+
+    // a mocked execution would block the mock controller that the test thread verifies interactions with
+    private static class BlockingExecution extends CachingAgent.CacheExecution {
+        private final CountDownLatch executing
+
+        BlockingExecution(CountDownLatch executing) {
+            super(null)
+            this.executing = executing
+        }
+
+        @Override
+        CacheResult executeAgentWithoutStore(Agent agent) {
+            executing.await(10, TimeUnit.SECONDS)
+            null
+        }
+    }
+
+    private static boolean waitFor(Closure<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + 10000
+        while (!condition.call() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        condition.call()
+    }
+}
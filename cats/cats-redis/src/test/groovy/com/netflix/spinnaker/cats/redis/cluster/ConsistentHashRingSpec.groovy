@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cluster
+
+import spock.lang.Specification
+
+class ConsistentHashRingSpec extends Specification {
+
+    def keys = (0..<10000).collect { "aws/ClusterCachingAgent/account-${it % 50}/region-${it % 7}/$it".toString() }
+
+    def 'assigns keys evenly across members'() {
+        given:
+        def ring = new ConsistentHashRing(['node-a', 'node-b', 'node-c', 'node-d'], ShardedAgentScheduler.DEFAULT_VIRTUAL_NODES)
+
+        when:
+        def shards = keys.countBy { ring.getOwner(it) }
+
+        then:
+        shards.keySet() == ['node-a', 'node-b', 'node-c', 'node-d'] as Set
+        shards.values().every { Math.abs(it - 2500) < 500 }
+    }
+
+    def 'only moves the keys of a member that joins or leaves'() {
+        given:
+        def before = new ConsistentHashRing(['node-a', 'node-b', 'node-c'], ShardedAgentScheduler.DEFAULT_VIRTUAL_NODES)
+        def after = new ConsistentHashRing(['node-a', 'node-b', 'node-c', 'node-d'], ShardedAgentScheduler.DEFAULT_VIRTUAL_NODES)
+
+        when:
+        def moved = keys.findAll { before.getOwner(it) != after.getOwner(it) }
+
+        then:
+        moved.every { after.getOwner(it) == 'node-d' }
+        moved.size() < keys.size() / 3
+
+        and: 'removing the member restores the previous owners'
+        keys.every { before.getOwner(it) == new ConsistentHashRing(['node-c', 'node-a', 'node-b'], ShardedAgentScheduler.DEFAULT_VIRTUAL_NODES).getOwner(it) }
+    }
+
+    def 'an empty ring has no owners'() {
+        expect:
+        new ConsistentHashRing([], 1).getOwner('agent') == null
+    }
+}
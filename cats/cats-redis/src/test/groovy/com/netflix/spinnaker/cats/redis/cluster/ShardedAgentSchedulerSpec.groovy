@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.cluster
+
+import com.netflix.spinnaker.cats.agent.Agent
+import com.netflix.spinnaker.cats.agent.AgentExecution
+import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.agent.ExecutorAgentExecutionPool
+import com.netflix.spinnaker.cats.redis.JedisPoolSource
+import com.netflix.spinnaker.cats.redis.test.LocalRedisCheck
+import com.netflix.spinnaker.cats.test.ManualRunnableScheduler
+import com.netflix.spinnaker.cats.test.TestAgent
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.JedisPool
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+
+@IgnoreIf({ LocalRedisCheck.redisUnavailable() })
+class ShardedAgentSchedulerSpec extends Specification {
+
+    JedisPool pool
+    Jedis jedis
+    List<Agent> agents = (0..<20).collect { new TestAgent() }
+    ExecutionInstrumentation instrumentation = Mock(ExecutionInstrumentation)
+
+    def setup() {
+        pool = new JedisPool('localhost', 6379)
+        jedis = pool.resource
+        jedis.flushAll()
+    }
+
+    def cleanup() {
+        jedis?.close()
+        pool?.destroy()
+    }
+
+    def 'each node only runs the agents of its own shard'() {
+        setup:
+        def nodeA = new Node('node-a')
+        def nodeB = new Node('node-b')
+
+        when: 'node-a runs every agent until node-b has joined'
+        nodeA.scheduler.run()
+        nodeB.scheduler.run()
+        nodeA.scheduler.run()
+
+        then:
+        nodeA.executed.size() == 20 + nodeA.scheduler.shardSize
+        nodeB.executed.size() == nodeB.scheduler.shardSize
+
+        when:
+        nodeA.executed.clear()
+        nodeB.executed.clear()
+        nodeA.scheduler.run()
+        nodeB.scheduler.run()
+
+        then:
+        nodeA.scheduler.members == ['node-a', 'node-b'] as Set
+        nodeA.executed.size() > 0
+        nodeB.executed.size() > 0
+        (nodeA.executed + nodeB.executed) as Set == agents.collect { it.agentType } as Set
+        nodeA.executed.every { nodeA.scheduler.isAssigned(agents.find { agent -> agent.agentType == it }) }
+    }
+
+    def 'the agents of a disabled node are rebalanced to the remaining nodes'() {
+        setup:
+        def metrics = Mock(ShardedAgentScheduler.ShardMetrics)
+        def nodeA = new Node('node-a', metrics)
+        def nodeB = new Node('node-b')
+        nodeA.scheduler.run()
+        nodeB.scheduler.run()
+        nodeA.scheduler.run()
+        nodeA.executed.clear()
+
+        when:
+        nodeB.enabled = false
+        nodeB.scheduler.run()
+        nodeA.scheduler.run()
+
+        then:
+        1 * metrics.rebalanced({ it == ['node-a'] as Set }, { it.empty }, { it == ['node-b'] as Set }, 20)
+        nodeA.executed.size() == 20
+        nodeA.scheduler.rebalances == 3
+    }
+
+    private class Node implements NodeIdentity, NodeStatusProvider, AgentExecution {
+        final String identity
+        final List<String> executed = []
+        final ShardedAgentScheduler scheduler
+        boolean enabled = true
+
+        Node(String identity, ShardedAgentScheduler.ShardMetrics metrics = null) {
+            this.identity = identity
+            // an interval of 0 releases each lock as soon as its agent completes
+            scheduler = new ShardedAgentScheduler(new JedisPoolSource(pool), this, new DefaultAgentIntervalProvider(0, 60000), this,
+                new ManualRunnableScheduler(), new ExecutorAgentExecutionPool({ it.run() }), ShardedAgentScheduler.DEFAULT_VIRTUAL_NODES,
+                ShardedAgentScheduler.DEFAULT_MEMBER_TTL_MS, metrics)
+            agents.each { scheduler.schedule(it, this, instrumentation) }
+        }
+
+        @Override
+        String getNodeIdentity() {
+            identity
+        }
+
+        @Override
+        boolean isNodeEnabled() {
+            enabled
+        }
+
+        @Override
+        void executeAgent(Agent agent) {
+            executed << agent.agentType
+        }
+    }
+}
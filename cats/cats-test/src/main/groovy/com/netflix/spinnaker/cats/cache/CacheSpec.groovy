@@ -20,6 +20,8 @@ import spock.lang.Specification
 import spock.lang.Subject
 import spock.lang.Unroll
 
+import java.util.stream.Collectors
+
 abstract class CacheSpec extends Specification {
 
     @Subject
@@ -117,6 +119,22 @@ abstract class CacheSpec extends Specification {
         results.find { it.id == 'baz' }
     }
 
+    def 'streamAll behaviour'() {
+        setup:
+        populateOne('foo', 'bar', createData('bar', [bar: 'bar'], [rel1: ['rel1'], rel2: ['rel2']]))
+        populateOne('foo', 'baz')
+
+        when:
+        def results = cache.streamAll('foo', RelationshipCacheFilter.include('rel1')).collect(Collectors.toList())
+
+        then:
+        results*.id.sort() == ['bar', 'baz']
+        results.find { it.id == 'bar' }.relationships.keySet() == ['rel1'] as Set
+
+        expect:
+        cache.streamAll('doesntexist', null).count() == 0
+    }
+
     @Unroll
     def 'relationship filtering behaviour'() {
         setup:
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.redis.test
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A minimal in-process stand-in for a redis server that speaks enough of the RESP
+ * protocol to exercise RedisCache reads and writes without an external redis.
+ *
+ * Each flight of (possibly pipelined) commands on a connection incurs a fixed
+ * latency, approximating a network round trip. Expired strings are removed before
+ * each command is handled.
+ */
+class RedisStandIn implements Closeable {
+
+    final long roundTripMillis
+    final ServerSocket serverSocket = new ServerSocket(0)
+    final ExecutorService connections = Executors.newCachedThreadPool()
+
+    final Map<String, byte[]> strings = new ConcurrentHashMap<>()
+    final Map<String, Set<String>> sets = new ConcurrentHashMap<>()
+    final Map<String, Map<String, byte[]>> hashes = new ConcurrentHashMap<>()
+    final Map<String, Long> expirations = new ConcurrentHashMap<>()
+    // an error reply to return for a command, by command name
+    final Map<String, String> errors = new ConcurrentHashMap<>()
+    // the number of flights (round trips) of commands served
+    final AtomicInteger flights = new AtomicInteger()
+
+    RedisStandIn(long roundTripMillis = 0) {
+        this.roundTripMillis = roundTripMillis
+        connections.submit {
+            while (!serverSocket.closed) {
+                try {
+                    Socket socket = serverSocket.accept()
+                    connections.submit { serve(socket) }
+                } catch (SocketException ignored) {
+                }
+            }
+        }
+    }
+
+    int getPort() {
+        serverSocket.localPort
+    }
+
+    @Override
+    void close() {
+        serverSocket.close()
+        connections.shutdownNow()
+    }
+
+    private void serve(Socket socket) {
+        socket.withCloseable {
+            def input = new BufferedInputStream(socket.inputStream)
+            def output = new BufferedOutputStream(socket.outputStream)
+            boolean newFlight = true
+            while (true) {
+                List<byte[]> command = readCommand(input)
+                if (command == null) {
+                    return
+                }
+                if (newFlight) {
+                    flights.incrementAndGet()
+                    if (roundTripMillis > 0) {
+                        Thread.sleep(roundTripMillis)
+                    }
+                }
+                String name = str(command[0]).toUpperCase()
+                handle(name, command.subList(1, command.size()), output)
+                if (name == 'QUIT') {
+                    output.flush()
+                    return
+                }
+                newFlight = input.available() == 0
+                if (newFlight) {
+                    output.flush()
+                }
+            }
+        }
+    }
+
+    private void handle(String name, List<byte[]> args, OutputStream out) {
+        removeExpired()
+        if (errors.containsKey(name)) {
+            out.write(bytes("-${errors.get(name)}\r\n"))
+            return
+        }
+        switch (name) {
+            case 'PING':
+                simple(out, 'PONG')
+                break
+            case 'QUIT':
+            case 'SELECT':
+                simple(out, 'OK')
+                break
+            case 'GET':
+                bulk(out, strings.get(str(args[0])))
+                break
+            case 'SET':
+                strings.put(str(args[0]), args[1])
+                expirations.remove(str(args[0]))
+                simple(out, 'OK')
+                break
+            case 'MGET':
+                array(out, args.collect { strings.get(str(it)) })
+                break
+            case 'MSET':
+                for (int i = 0; i < args.size(); i += 2) {
+                    strings.put(str(args[i]), args[i + 1])
+                    expirations.remove(str(args[i]))
+                }
+                simple(out, 'OK')
+                break
+            case 'INCR':
+                synchronized (strings) {
+                    long value = (strings.get(str(args[0])) ? Long.parseLong(str(strings.get(str(args[0])))) : 0) + 1
+                    strings.put(str(args[0]), bytes(value.toString()))
+                    integer(out, value)
+                }
+                break
+            case 'EXISTS':
+                String key = str(args[0])
+                integer(out, strings.containsKey(key) || sets.containsKey(key) || hashes.containsKey(key) ? 1 : 0)
+                break
+            case 'DEL':
+                integer(out, args.count { byte[] key -> [strings, sets, hashes].any { it.remove(str(key)) != null } })
+                break
+            case 'EXPIRE':
+                if (strings.containsKey(str(args[0]))) {
+                    expirations.put(str(args[0]), System.currentTimeMillis() + Long.parseLong(str(args[1])) * 1000)
+                    integer(out, 1)
+                } else {
+                    integer(out, 0)
+                }
+                break
+            case 'PTTL':
+                String ttlKey = str(args[0])
+                Long expiresAt = expirations.get(ttlKey)
+                integer(out, !strings.containsKey(ttlKey) ? -2 : expiresAt == null ? -1 : Math.max(expiresAt - System.currentTimeMillis(), 0))
+                break
+            case 'SADD':
+                Set<String> set = sets.computeIfAbsent(str(args[0])) { ConcurrentHashMap.newKeySet() }
+                integer(out, args.subList(1, args.size()).count { set.add(str(it)) })
+                break
+            case 'SREM':
+                Set<String> existing = sets.get(str(args[0])) ?: [] as Set
+                integer(out, args.subList(1, args.size()).count { existing.remove(str(it)) })
+                break
+            case 'SMEMBERS':
+                array(out, (sets.get(str(args[0])) ?: []).collect { bytes(it) })
+                break
+            case 'SSCAN':
+                // a single page containing every member; MATCH is not supported
+                out.write(bytes('*2\r\n'))
+                bulk(out, bytes('0'))
+                array(out, (sets.get(str(args[0])) ?: []).collect { bytes(it) })
+                break
+            case 'HMGET':
+                Map<String, byte[]> hash = hashes.get(str(args[0])) ?: [:]
+                array(out, args.subList(1, args.size()).collect { hash.get(str(it)) })
+                break
+            case 'HMSET':
+                Map<String, byte[]> target = hashes.computeIfAbsent(str(args[0])) { new ConcurrentHashMap<>() }
+                for (int i = 1; i < args.size(); i += 2) {
+                    target.put(str(args[i]), args[i + 1])
+                }
+                simple(out, 'OK')
+                break
+            case 'HDEL':
+                Map<String, byte[]> fields = hashes.get(str(args[0])) ?: [:]
+                integer(out, args.subList(1, args.size()).count { fields.remove(str(it)) != null })
+                break
+            default:
+                out.write(bytes("-ERR unknown command '${name}'\r\n"))
+        }
+    }
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis()
+        expirations.findAll { it.value <= now }.each { key, expiresAt ->
+            expirations.remove(key)
+            strings.remove(key)
+        }
+    }
+
+    private static List<byte[]> readCommand(InputStream input) {
+        String header = readLine(input)
+        if (header == null) {
+            return null
+        }
+        if (!header.startsWith('*')) {
+            throw new IllegalStateException("Unexpected request: $header")
+        }
+        int count = Integer.parseInt(header.substring(1))
+        List<byte[]> command = new ArrayList<>(count)
+        count.times {
+            int length = Integer.parseInt(readLine(input).substring(1))
+            byte[] value = new byte[length]
+            int read = 0
+            while (read < length) {
+                read += input.read(value, read, length - read)
+            }
+            input.read()
+            input.read()
+            command.add(value)
+        }
+        return command
+    }
+
+    private static String readLine(InputStream input) {
+        StringBuilder line = new StringBuilder()
+        int c
+        while ((c = input.read()) != 13) {
+            if (c == -1) {
+                return null
+            }
+            line.append((char) c)
+        }
+        input.read()
+        return line.toString()
+    }
+
+    private static void simple(OutputStream out, String value) {
+        out.write(bytes("+$value\r\n"))
+    }
+
+    private static void integer(OutputStream out, long value) {
+        out.write(bytes(":$value\r\n"))
+    }
+
+    private static void bulk(OutputStream out, byte[] value) {
+        if (value == null) {
+            out.write(bytes('$-1\r\n'))
+        } else {
+            out.write(bytes("\$${value.length}\r\n"))
+            out.write(value)
+            out.write(bytes('\r\n'))
+        }
+    }
+
+    private static void array(OutputStream out, List<byte[]> values) {
+        out.write(bytes("*${values.size()}\r\n"))
+        values.each { bulk(out, it) }
+    }
+
+    private static String str(byte[] value) {
+        new String(value, StandardCharsets.UTF_8)
+    }
+
+    private static byte[] bytes(String value) {
+        value.getBytes(StandardCharsets.UTF_8)
+    }
+}
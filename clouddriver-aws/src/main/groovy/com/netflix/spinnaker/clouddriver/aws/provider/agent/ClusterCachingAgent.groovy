@@ -56,6 +56,7 @@ import static com.netflix.spinnaker.cats.agent.AgentDataType.Authority.*
 import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.*
 import com.netflix.spinnaker.cats.agent.CacheResult
 import com.netflix.spinnaker.cats.agent.DefaultCacheResult
+import com.netflix.spinnaker.cats.agent.ExecutionTelemetry
 import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.clouddriver.aws.provider.AwsProvider
 
@@ -247,7 +248,8 @@ class ClusterCachingAgent implements CachingAgent, OnDemandAgent, AccountAware,
     if (subnetIds.length > 0) {
       request.withSubnetIds(subnetIds)
     }
-    for (Subnet subnet : clients.amazonEC2.describeSubnets(request).subnets) {
+    def subnets = ExecutionTelemetry.fetch { clients.amazonEC2.describeSubnets(request).subnets }
+    for (Subnet subnet : subnets) {
       String existing = subnetMap.put(subnet.subnetId, subnet.vpcId)
       if (existing != null && existing != subnet.vpcId) {
         throw new RuntimeException("Unexpected non unique subnetId to vpcId mapping")
@@ -264,7 +266,7 @@ class ClusterCachingAgent implements CachingAgent, OnDemandAgent, AccountAware,
 
     List<AutoScalingGroup> asgs = []
     while (true) {
-      def resp = clients.autoScaling.describeAutoScalingGroups(request)
+      def resp = ExecutionTelemetry.fetch { clients.autoScaling.describeAutoScalingGroups(request) }
       if (account.eddaEnabled) {
         start = amazonClientProvider.lastModified ?: 0
       }
@@ -302,7 +304,7 @@ class ClusterCachingAgent implements CachingAgent, OnDemandAgent, AccountAware,
     }
     List<ScalingPolicy> scalingPolicies = []
     while (true) {
-      def resp = clients.autoScaling.describePolicies(request)
+      def resp = ExecutionTelemetry.fetch { clients.autoScaling.describePolicies(request) }
       scalingPolicies.addAll(resp.scalingPolicies)
       if (resp.nextToken) {
         request.withNextToken(resp.nextToken)
@@ -338,7 +340,7 @@ class ClusterCachingAgent implements CachingAgent, OnDemandAgent, AccountAware,
     }
     List<ScheduledUpdateGroupAction> scheduledActions = []
     while (true) {
-      def resp = clients.autoScaling.describeScheduledActions(request)
+      def resp = ExecutionTelemetry.fetch { clients.autoScaling.describeScheduledActions(request) }
       scheduledActions.addAll(resp.scheduledUpdateGroupActions)
       if (resp.nextToken) {
         request.withNextToken(resp.nextToken)
@@ -364,7 +366,7 @@ class ClusterCachingAgent implements CachingAgent, OnDemandAgent, AccountAware,
     }
     List<MetricAlarm> alarms = []
     while (true) {
-      def resp = clients.amazonCloudWatch.describeAlarms(request)
+      def resp = ExecutionTelemetry.fetch { clients.amazonCloudWatch.describeAlarms(request) }
       alarms.addAll(resp.metricAlarms)
       if (resp.nextToken) {
         request.withNextToken(resp.nextToken)
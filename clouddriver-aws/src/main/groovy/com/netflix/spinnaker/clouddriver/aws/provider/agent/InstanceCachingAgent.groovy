@@ -29,6 +29,7 @@ import com.netflix.spinnaker.cats.agent.AgentDataType
 import com.netflix.spinnaker.cats.agent.CacheResult
 import com.netflix.spinnaker.cats.agent.CachingAgent
 import com.netflix.spinnaker.cats.agent.DefaultCacheResult
+import com.netflix.spinnaker.cats.agent.ExecutionTelemetry
 import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.clouddriver.aws.security.AmazonClientProvider
@@ -110,7 +111,7 @@ class InstanceCachingAgent implements CachingAgent, AccountAware, DriftMetric {
     def request = new DescribeInstancesRequest()
     List<Instance> awsInstances = []
     while (true) {
-      def resp = amazonEC2.describeInstances(request)
+      def resp = ExecutionTelemetry.fetch { amazonEC2.describeInstances(request) }
       if (account.eddaEnabled) {
         start = amazonClientProvider.lastModified ?: 0
       }
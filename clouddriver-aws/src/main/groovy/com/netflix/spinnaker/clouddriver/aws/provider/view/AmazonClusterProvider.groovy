@@ -55,9 +55,19 @@ class AmazonClusterProvider implements ClusterProvider<AmazonCluster> {
 
   @Override
   Map<String, Set<AmazonCluster>> getClusters() {
-    Collection<CacheData> clusterData = cacheView.getAll(CLUSTERS.ns)
-    Collection<AmazonCluster> clusters = translateClusters(clusterData, false)
-    mapResponse(clusters)
+    // clusters are translated one at a time as they are streamed so the cache data is never held in full
+    Map<String, Set<AmazonCluster>> clustersByAccount = [:]
+    cacheView.streamAll(CLUSTERS.ns, null).forEach { CacheData clusterData ->
+      translateClusters([clusterData], false).each { AmazonCluster cluster ->
+        Set<AmazonCluster> accountClusters = clustersByAccount[cluster.accountName]
+        if (accountClusters == null) {
+          accountClusters = new HashSet<AmazonCluster>()
+          clustersByAccount[cluster.accountName] = accountClusters
+        }
+        accountClusters.add(cluster)
+      }
+    }
+    clustersByAccount
   }
 
   @Override
@@ -109,7 +109,7 @@ class AmazonCredentialsInitializer implements CredentialsInitializerSynchronizab
     ProviderUtils.unscheduleAndDeregisterAgents(namesOfDeletedAccounts, catsModule)
 
     if ((namesOfDeletedAccounts || accountsToAdd) && catsModule) {
-      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers)
+      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers, catsModule)
     }
 
     accountCredentialsRepository.all.findAll {
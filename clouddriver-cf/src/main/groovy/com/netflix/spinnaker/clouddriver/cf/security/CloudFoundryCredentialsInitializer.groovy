@@ -66,7 +66,7 @@ class CloudFoundryCredentialsInitializer implements CredentialsInitializerSynchr
     ProviderUtils.unscheduleAndDeregisterAgents(namesOfDeletedAccounts, catsModule)
 
     if (accountsToAdd && catsModule) {
-      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers)
+      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers, catsModule)
     }
 
     accountCredentialsRepository.all.findAll {
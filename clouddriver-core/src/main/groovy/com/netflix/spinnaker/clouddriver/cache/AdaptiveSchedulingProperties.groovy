@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+/**
+ * Configures adaptive agent intervals. Only redis.scheduler=sort reports executions, so enabling it with another
+ * scheduler fails at startup. The statistics of each agent are kept in redis and shared by every node.
+ *
+ * Agents whose results rarely change back off from redis.poll.intervalSeconds towards the freshness SLO of
+ * their provider, and agents whose results change every run are polled down to minIntervalSeconds.
+ */
+class AdaptiveSchedulingProperties {
+  boolean enabled = false
+
+  /**
+   * The shortest interval an agent is run at, -1 for half of redis.poll.intervalSeconds.
+   */
+  long minIntervalSeconds = -1
+
+  /**
+   * The longest interval an agent is run at, -1 for four times redis.poll.intervalSeconds.
+   */
+  long freshnessSeconds = -1
+
+  /**
+   * Overrides freshnessSeconds for the agents of a provider, keyed by provider name.
+   */
+  Map<String, Long> providerFreshnessSeconds = [:]
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spinnaker.cats.agent.AdmissionController
+import com.netflix.spinnaker.cats.redis.cache.RedisCache
+
+/**
+ * Reports the latency of redis merges to the admission controller.
+ */
+class AdmissionControlCacheMetrics implements RedisCache.CacheMetrics {
+  private final AdmissionController admissionController
+
+  AdmissionControlCacheMetrics(AdmissionController admissionController) {
+    this.admissionController = admissionController
+  }
+
+  @Override
+  void merge(String prefix, String type, RedisCache.MergePath path, int itemCount, int keysWritten, int roundTrips, long durationNanos) {
+    admissionController.recordRedisLatency(roundTrips, durationNanos)
+  }
+}
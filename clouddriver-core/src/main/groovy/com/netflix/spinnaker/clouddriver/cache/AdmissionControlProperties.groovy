@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+/**
+ * Configures the admission controller that limits how many caching agents run at once while redis or a cloud
+ * provider is under pressure (caching.admission).
+ *
+ * Agents whose type matches highPriorityAgents are started before other agents, and agents whose type matches
+ * lowPriorityAgents after them.
+ */
+class AdmissionControlProperties {
+  boolean enabled = false
+
+  int minConcurrency = 4
+
+  int maxConcurrency = 64
+
+  /**
+   * The factor the limit is multiplied by after a window with a sign of pressure.
+   */
+  double decreaseFactor = 0.5
+
+  /**
+   * The average redis round trip time above which redis is considered under pressure.
+   */
+  long redisLatencyThresholdMs = 50
+
+  /**
+   * The fraction of failed executions above which the cloud providers are considered under pressure.
+   */
+  double errorRateThreshold = 0.5
+
+  int windowSeconds = 10
+
+  String highPriorityAgents = '.*(Health|InstanceState|Discovery).*'
+
+  String lowPriorityAgents = '.*Reservation.*'
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.agent.AdmissionController
+import com.netflix.spinnaker.cats.agent.Agent
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class AdmissionControllerMetrics implements AdmissionController.AdmissionMetrics {
+  private final Registry registry
+
+  private final Id adjustmentsId
+  private final Id shedId
+  private final AtomicInteger limit = new AtomicInteger()
+  private final AtomicInteger running = new AtomicInteger()
+
+  AdmissionControllerMetrics(Registry registry) {
+    this.registry = registry
+    adjustmentsId = registry.createId('admission.adjustments')
+    shedId = registry.createId('admission.shed')
+    registry.gauge(registry.createId('admission.limit'), limit)
+    registry.gauge(registry.createId('admission.running'), running)
+  }
+
+  @Override
+  void adjusted(int limit, int running, String reason) {
+    registry.counter(adjustmentsId.withTag('reason', reason)).increment()
+    this.limit.set(limit)
+    this.running.set(running)
+  }
+
+  @Override
+  void shed(Agent agent, AdmissionController.Lane lane) {
+    registry.counter(shedId.withTag('provider', agent.providerName).withTag('lane', lane.name())).increment()
+  }
+}
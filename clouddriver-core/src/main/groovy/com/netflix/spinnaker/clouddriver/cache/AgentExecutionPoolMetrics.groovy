@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.agent.PartitionedAgentExecutionPool
+
+import java.util.concurrent.TimeUnit
+
+class AgentExecutionPoolMetrics implements PartitionedAgentExecutionPool.PartitionMetrics {
+  private final Registry registry
+
+  private final Id queueDepthId
+  private final Id waitTimeId
+
+  AgentExecutionPoolMetrics(Registry registry) {
+    this.registry = registry
+    queueDepthId = registry.createId('executionPool.queueDepth')
+    waitTimeId = registry.createId('executionPool.waitTime')
+  }
+
+  @Override
+  void executionQueued(String partition, int queueDepth) {
+    registry.distributionSummary(queueDepthId.withTag('partition', partition)).record(queueDepth)
+  }
+
+  @Override
+  void executionStarted(String partition, long waitMs, boolean stolen) {
+    registry.timer(waitTimeId.withTag('partition', partition).withTag('stolen', Boolean.toString(stolen))).record(waitMs, TimeUnit.MILLISECONDS)
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+/**
+ * Configures a bounded pool shared by the caching agents of every provider (caching.executionPool).
+ *
+ * Agents are partitioned by provider and account; a limit of -1 is unlimited.
+ *
+ * With virtualThreads agents run on virtual threads when the runtime supports them (Java 21 and later), and on
+ * platform threads otherwise. It can be enabled on its own, in which case agents are not bounded.
+ */
+class AgentExecutionPoolProperties {
+  boolean enabled = false
+
+  int threads = 64
+
+  /**
+   * The most agents of a provider that run at once.
+   */
+  int defaultProviderConcurrency = -1
+
+  /**
+   * Overrides defaultProviderConcurrency, keyed by provider name.
+   */
+  Map<String, Integer> providerConcurrency = [:]
+
+  /**
+   * The most agents of a single account of a provider that run at once.
+   */
+  int accountConcurrency = -1
+
+  boolean virtualThreads = false
+}
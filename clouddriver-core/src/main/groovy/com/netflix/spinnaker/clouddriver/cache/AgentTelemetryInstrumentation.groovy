@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spinnaker.cats.agent.Agent
+import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.agent.ExecutionTelemetry
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+
+/**
+ * Keeps the latest execution telemetry of each agent on this node, for /cache/agents.
+ */
+class AgentTelemetryInstrumentation implements ExecutionInstrumentation {
+  static final double SMOOTHING = 0.3
+
+  private final ConcurrentMap<String, AgentSummary> agents = new ConcurrentHashMap<>()
+
+  @Override
+  void executionStarted(Agent agent) {
+    // do nothing
+  }
+
+  @Override
+  void executionCompleted(Agent agent, long elapsedMs) {
+    summary(agent).completed(elapsedMs)
+  }
+
+  @Override
+  void executionFailed(Agent agent, Throwable cause) {
+    summary(agent).failed(cause)
+  }
+
+  @Override
+  void executionTelemetry(Agent agent, ExecutionTelemetry telemetry) {
+    summary(agent).telemetry(telemetry)
+  }
+
+  /**
+   * @return the agents with the longest average execution time, slowest first
+   */
+  List<Map> getSlowestAgents(int limit) {
+    agents.values()*.toMap().sort { -it.averageExecutionMs }.take(limit)
+  }
+
+  private AgentSummary summary(Agent agent) {
+    agents.computeIfAbsent("${agent.providerName}/${agent.agentType}".toString()) {
+      new AgentSummary(provider: agent.providerName, agentType: agent.agentType)
+    }
+  }
+
+  private static class AgentSummary {
+    String provider
+    String agentType
+    long executions
+    long failures
+    long lastExecutionMs
+    double averageExecutionMs
+    Long lastCompletedAt
+    String lastFailure
+    Map<ExecutionTelemetry.Phase, Long> phaseTimes = [:]
+    Map<String, ExecutionTelemetry.TypeTelemetry> types = [:]
+
+    synchronized void completed(long elapsedMs) {
+      averageExecutionMs = executions == 0 ? elapsedMs : averageExecutionMs + SMOOTHING * (elapsedMs - averageExecutionMs)
+      executions++
+      lastExecutionMs = elapsedMs
+      lastCompletedAt = System.currentTimeMillis()
+    }
+
+    synchronized void failed(Throwable cause) {
+      failures++
+      lastFailure = cause.toString()
+    }
+
+    synchronized void telemetry(ExecutionTelemetry telemetry) {
+      phaseTimes = telemetry.phaseTimes
+      types = telemetry.types
+    }
+
+    synchronized Map toMap() {
+      [
+        provider          : provider,
+        agentType         : agentType,
+        executions        : executions,
+        failures          : failures,
+        lastExecutionMs   : lastExecutionMs,
+        averageExecutionMs: Math.round(averageExecutionMs),
+        lastCompletedAt   : lastCompletedAt,
+        lastFailure       : lastFailure,
+        phaseTimes        : phaseTimes.collectEntries { phase, elapsedMs -> [(phase.name()): elapsedMs] },
+        types             : types.collectEntries { type, stats ->
+          [(type): [items: stats.items, bytes: stats.bytes, keysWritten: stats.keysWritten, keysSkipped: stats.keysSkipped]]
+        }
+      ]
+    }
+  }
+}
@@ -17,45 +17,134 @@
 package com.netflix.spinnaker.clouddriver.cache
 
 import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.agent.AdmissionController
 import com.netflix.spinnaker.cats.agent.Agent
 import com.netflix.spinnaker.cats.agent.AgentExecution
+import com.netflix.spinnaker.cats.agent.AgentExecutionPool
 import com.netflix.spinnaker.cats.agent.AgentLock
 import com.netflix.spinnaker.cats.agent.AgentScheduler
+import com.netflix.spinnaker.cats.agent.CacheResultStoreStage
 import com.netflix.spinnaker.cats.agent.CachingAgent
 import com.netflix.spinnaker.cats.agent.DefaultAgentScheduler
 import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.agent.ExecutorAgentExecutionPool
+import com.netflix.spinnaker.cats.agent.PartitionedAgentExecutionPool
 import com.netflix.spinnaker.cats.cache.Cache
 import com.netflix.spinnaker.cats.cache.NamedCacheFactory
 import com.netflix.spinnaker.cats.mem.InMemoryNamedCacheFactory
 import com.netflix.spinnaker.cats.module.CatsModule
 import com.netflix.spinnaker.cats.provider.Provider
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory
+import com.netflix.spinnaker.cats.thread.VirtualThreads
 import com.netflix.spinnaker.clouddriver.search.SearchProvider
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
+import org.springframework.boot.context.properties.ConfigurationProperties
 import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
 import org.springframework.context.annotation.Import
 
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
 
 @Configuration
 @Import([
-  RedisCacheConfig
+  RedisCacheConfig,
+  OffHeapCacheConfig
 ])
 class CacheConfig {
+  @Autowired(required = false)
+  @Qualifier('agentExecutionPool')
+  AgentExecutionPool agentExecutionPool
+
   @Bean
   @ConditionalOnMissingBean(NamedCacheFactory)
-  NamedCacheFactory namedCacheFactory() {
-    new InMemoryNamedCacheFactory()
+  NamedCacheFactory namedCacheFactory(@Value('${caching.identifierIndexEnabled:false}') boolean identifierIndexEnabled) {
+    new InMemoryNamedCacheFactory(identifierIndexEnabled)
   }
 
   @Bean
   @ConditionalOnMissingBean(AgentScheduler)
   @ConditionalOnProperty(value = 'caching.writeEnabled', matchIfMissing = true)
-  AgentScheduler agentScheduler() {
+  AgentScheduler agentScheduler(Optional<AdmissionController> admissionController) {
+    if (admissionController.isPresent()) {
+      // the admission controller runs admitted agents on the execution pool, and agents over its limit wait for their
+      // next interval
+      return new DefaultAgentScheduler(60, TimeUnit.SECONDS, admissionController.get(), true)
+    }
+    if (agentExecutionPool) {
+      return new DefaultAgentScheduler(60, TimeUnit.SECONDS, agentExecutionPool)
+    }
     new DefaultAgentScheduler(60, TimeUnit.SECONDS)
   }
 
+  @Bean
+  @ConfigurationProperties('caching.executionPool')
+  AgentExecutionPoolProperties agentExecutionPoolProperties() {
+    new AgentExecutionPoolProperties()
+  }
+
+  @Bean
+  @ConditionalOnExpression('${caching.executionPool.enabled:false} || ${caching.executionPool.virtualThreads:false}')
+  AgentExecutionPool agentExecutionPool(AgentExecutionPoolProperties agentExecutionPoolProperties, Registry registry) {
+    if (!agentExecutionPoolProperties.enabled) {
+      return new ExecutorAgentExecutionPool(VirtualThreads.newThreadPerTaskExecutor('AgentExecution'))
+    }
+
+    String threadName = PartitionedAgentExecutionPool.simpleName
+    new PartitionedAgentExecutionPool(
+      agentExecutionPoolProperties.threads,
+      agentExecutionPoolProperties.defaultProviderConcurrency,
+      agentExecutionPoolProperties.providerConcurrency,
+      agentExecutionPoolProperties.accountConcurrency,
+      new AgentExecutionPoolMetrics(registry),
+      agentExecutionPoolProperties.virtualThreads ? VirtualThreads.newThreadFactory(threadName) : new NamedThreadFactory(threadName)
+    )
+  }
+
+  @Bean
+  @ConfigurationProperties('caching.admission')
+  AdmissionControlProperties admissionControlProperties() {
+    new AdmissionControlProperties()
+  }
+
+  @Bean
+  @ConditionalOnProperty('caching.admission.enabled')
+  AdmissionController admissionController(AdmissionControlProperties admissionControlProperties, Registry registry) {
+    new AdmissionController(
+      agentExecutionPool ?: new ExecutorAgentExecutionPool(Executors.newCachedThreadPool(new NamedThreadFactory('AgentExecutionAction'))),
+      admissionControlProperties.minConcurrency,
+      admissionControlProperties.maxConcurrency,
+      admissionControlProperties.decreaseFactor,
+      admissionControlProperties.redisLatencyThresholdMs,
+      admissionControlProperties.errorRateThreshold,
+      TimeUnit.SECONDS.toMillis(admissionControlProperties.windowSeconds),
+      admissionControlProperties.highPriorityAgents,
+      admissionControlProperties.lowPriorityAgents,
+      new AdmissionControllerMetrics(registry)
+    )
+  }
+
+  @Bean
+  @ConfigurationProperties('caching.storeStage')
+  CacheResultStoreStageProperties cacheResultStoreStageProperties() {
+    new CacheResultStoreStageProperties()
+  }
+
+  @Bean
+  @ConditionalOnProperty('caching.storeStage.enabled')
+  CacheResultStoreStage cacheResultStoreStage(CacheResultStoreStageProperties cacheResultStoreStageProperties, Registry registry) {
+    new CacheResultStoreStage(
+      cacheResultStoreStageProperties.writerThreads,
+      cacheResultStoreStageProperties.queueCapacity,
+      new CacheResultStoreStageMetrics(registry)
+    )
+  }
+
   @Bean
   @ConditionalOnProperty(value = 'caching.writeEnabled', havingValue = 'false')
   @ConditionalOnMissingBean(AgentScheduler)
@@ -125,6 +214,16 @@ class CacheConfig {
     new MetricInstrumentation(registry)
   }
 
+  @Bean
+  AgentTelemetryInstrumentation agentTelemetryInstrumentation() {
+    new AgentTelemetryInstrumentation()
+  }
+
+  @Bean
+  OnDemandRequestCoalescer onDemandRequestCoalescer(Registry registry, @Value('${caching.onDemand.permitsPerSecond:-1}') double permitsPerSecond) {
+    new OnDemandRequestCoalescer(registry, permitsPerSecond)
+  }
+
   @Bean
   OnDemandCacheUpdater catsOnDemandCacheUpdater(List<Provider> providers, CatsModule catsModule) {
     new CatsOnDemandCacheUpdater(providers, catsModule)
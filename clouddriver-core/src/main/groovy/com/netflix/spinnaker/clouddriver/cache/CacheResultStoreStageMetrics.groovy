@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.agent.Agent
+import com.netflix.spinnaker.cats.agent.CacheResultStoreStage
+
+import java.util.concurrent.TimeUnit
+
+class CacheResultStoreStageMetrics implements CacheResultStoreStage.StoreMetrics {
+  private final Registry registry
+
+  private final Id queueDepthId
+  private final Id waitTimeId
+  private final Id discardedId
+  private final Id backpressureId
+
+  CacheResultStoreStageMetrics(Registry registry) {
+    this.registry = registry
+    queueDepthId = registry.createId('storeStage.queueDepth')
+    waitTimeId = registry.createId('storeStage.waitTime')
+    discardedId = registry.createId('storeStage.discarded')
+    backpressureId = registry.createId('storeStage.backpressure')
+  }
+
+  @Override
+  void queued(Agent agent, int queueDepth) {
+    registry.distributionSummary(queueDepthId).record(queueDepth)
+  }
+
+  @Override
+  void stored(Agent agent, long queuedMs) {
+    registry.timer(waitTimeId.withTag('provider', agent.providerName)).record(queuedMs, TimeUnit.MILLISECONDS)
+  }
+
+  @Override
+  void discarded(Agent agent) {
+    registry.counter(discardedId.withTag('provider', agent.providerName)).increment()
+  }
+
+  @Override
+  void backpressure(Agent agent) {
+    registry.counter(backpressureId.withTag('provider', agent.providerName)).increment()
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+/**
+ * Configures the stage that stores the results of caching agents off their execution slot (caching.storeStage).
+ *
+ * When the queue is full a result is stored on the thread that loaded it, which holds that agent's slot until the
+ * writers catch up.
+ */
+class CacheResultStoreStageProperties {
+  boolean enabled = false
+
+  int writerThreads = 8
+
+  /**
+   * The most loaded results that may wait for a writer.
+   */
+  int queueCapacity = 32
+}
@@ -22,10 +22,15 @@ import com.netflix.spinnaker.cats.agent.AgentScheduler
 import com.netflix.spinnaker.cats.agent.AgentSchedulerAware
 import com.netflix.spinnaker.cats.module.CatsModule
 import com.netflix.spinnaker.cats.provider.Provider
+import com.netflix.spinnaker.cats.thread.TaskScope
 import groovy.util.logging.Slf4j
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
 import org.springframework.stereotype.Component
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
 import java.util.concurrent.TimeUnit
 
 @Component
@@ -38,6 +43,18 @@ class CatsOnDemandCacheUpdater implements OnDemandCacheUpdater {
   @Autowired
   AgentScheduler agentScheduler
 
+  /**
+   * Handle a request with every agent that handles it at once, rather than one agent at a time. The request is then
+   * pending if any agent has results that are not yet cached.
+   */
+  @Value('${caching.onDemand.fanOut:false}')
+  boolean fanOut
+
+  @Autowired(required = false)
+  OnDemandRequestCoalescer onDemandRequestCoalescer
+
+  private volatile OnDemandAgentIndex onDemandAgentIndex
+
   @Autowired
   public CatsOnDemandCacheUpdater(List<Provider> providers, CatsModule catsModule) {
     this.providers = providers
@@ -50,61 +67,97 @@ class CatsOnDemandCacheUpdater implements OnDemandCacheUpdater {
     }.flatten()
   }
 
+  /**
+   * @return the agents that handle type for cloudProvider, from an index that is rebuilt once agents are registered
+   * with or deregistered from the providers (see CatsModule.agentsChanged())
+   */
+  private Collection<OnDemandAgent> getOnDemandAgents(OnDemandAgent.OnDemandType type, String cloudProvider) {
+    OnDemandAgentIndex index = onDemandAgentIndex
+    long agentsVersion = catsModule.agentsVersion
+    if (index == null || index.agentsVersion != agentsVersion) {
+      index = new OnDemandAgentIndex(agentsVersion, onDemandAgents)
+      onDemandAgentIndex = index
+    }
+    return index.getAgents(type, cloudProvider)
+  }
+
   @Override
   boolean handles(OnDemandAgent.OnDemandType type, String cloudProvider) {
-    onDemandAgents.any { it.handles(type, cloudProvider) }
+    !getOnDemandAgents(type, cloudProvider).isEmpty()
   }
 
   @Override
   OnDemandCacheUpdater.OnDemandCacheStatus handle(OnDemandAgent.OnDemandType type, String cloudProvider, Map<String, ? extends Object> data) {
-    Collection<OnDemandAgent> onDemandAgents = onDemandAgents.findAll { it.handles(type, cloudProvider) }
+    Collection<OnDemandAgent> onDemandAgents = getOnDemandAgents(type, cloudProvider)
+    if (onDemandRequestCoalescer) {
+      return onDemandRequestCoalescer.handle(cloudProvider, type, data) { handle(type, onDemandAgents, data) }
+    }
     return handle(type, onDemandAgents, data)
   }
 
   OnDemandCacheUpdater.OnDemandCacheStatus handle(OnDemandAgent.OnDemandType type, Collection<OnDemandAgent> onDemandAgents, Map<String, ? extends Object> data) {
     boolean hasOnDemandResults = false
-    for (OnDemandAgent agent : onDemandAgents) {
-      try {
-        AgentLock lock = null;
-        if (agentScheduler.atomic && !(lock = agentScheduler.tryLock((Agent) agent))) {
-          hasOnDemandResults = true // force Orca to retry
-          continue;
+    if (fanOut && onDemandAgents.size() > 1) {
+      // agents block on their cloud provider, so each is handled on its own (virtual) thread
+      hasOnDemandResults = TaskScope.invokeAll(onDemandAgents.collect { OnDemandAgent agent ->
+        ({ handleAgent(type, agent, data) } as Callable<Boolean>)
+      }).any()
+    } else {
+      // the last agent that reports on the request decides its status
+      for (OnDemandAgent agent : onDemandAgents) {
+        Boolean agentHasOnDemandResults = handleAgent(type, agent, data)
+        if (agentHasOnDemandResults != null) {
+          hasOnDemandResults = agentHasOnDemandResults
         }
-        final long startTime = System.nanoTime()
-        def providerCache = catsModule.getProviderRegistry().getProviderCache(agent.providerName)
-        OnDemandAgent.OnDemandResult result = agent.handle(providerCache, data)
-        if (result) {
-          if (agentScheduler.atomic && !(agentScheduler.lockValid(lock))) {
-            hasOnDemandResults = true // force Orca to retry
-            continue;
-          }
-          if (result.cacheResult) {
-            hasOnDemandResults = !(result.cacheResult.cacheResults ?: [:]).values().flatten().isEmpty() && !agentScheduler.atomic
-            agent.metricsSupport.cacheWrite {
-              providerCache.putCacheResult(result.sourceAgentType, result.authoritativeTypes, result.cacheResult)
-            }
+      }
+    }
+
+    return hasOnDemandResults ? OnDemandCacheUpdater.OnDemandCacheStatus.PENDING : OnDemandCacheUpdater.OnDemandCacheStatus.SUCCESSFUL
+  }
+
+  /**
+   * @return whether the request has results that are not yet cached, or the agent could not be locked (in which case
+   * the caller should retry), or null if the agent cached no result
+   */
+  private Boolean handleAgent(OnDemandAgent.OnDemandType type, OnDemandAgent agent, Map<String, ? extends Object> data) {
+    Boolean hasOnDemandResults = null
+    try {
+      AgentLock lock = null;
+      if (agentScheduler.atomic && !(lock = agentScheduler.tryLock((Agent) agent))) {
+        return true // force Orca to retry
+      }
+      final long startTime = System.nanoTime()
+      def providerCache = catsModule.getProviderRegistry().getProviderCache(agent.providerName)
+      OnDemandAgent.OnDemandResult result = agent.handle(providerCache, data)
+      if (result) {
+        if (agentScheduler.atomic && !(agentScheduler.lockValid(lock))) {
+          return true // force Orca to retry
+        }
+        if (result.cacheResult) {
+          hasOnDemandResults = !(result.cacheResult.cacheResults ?: [:]).values().flatten().isEmpty() && !agentScheduler.atomic
+          agent.metricsSupport.cacheWrite {
+            providerCache.putCacheResult(result.sourceAgentType, result.authoritativeTypes, result.cacheResult)
           }
-          if (result.evictions) {
-            agent.metricsSupport.cacheEvict {
-              result.evictions.each { String evictType, Collection<String> ids ->
-                providerCache.evictDeletedItems(evictType, ids)
-              }
+        }
+        if (result.evictions) {
+          agent.metricsSupport.cacheEvict {
+            result.evictions.each { String evictType, Collection<String> ids ->
+              providerCache.evictDeletedItems(evictType, ids)
             }
           }
-          if (agentScheduler.atomic && !(agentScheduler.tryRelease(lock))) {
-            throw new IllegalStateException("We likely just wrote stale data. If you're seeing this, file a github issue: https://github.com/spinnaker/spinnaker/issues")
-          }
-          final long elapsed = System.nanoTime() - startTime
-          agent.metricsSupport.recordTotalRunTimeNanos(elapsed)
-          log.info("$agent.providerName/$agent.onDemandAgentType handled $type in ${TimeUnit.NANOSECONDS.toMillis(elapsed)} millis. Payload: $data")
         }
-      } catch (e) {
-        agent.metricsSupport.countError()
-        log.warn("$agent.providerName/$agent.onDemandAgentType failed to handle on demand update for $type", e)
+        if (agentScheduler.atomic && !(agentScheduler.tryRelease(lock))) {
+          throw new IllegalStateException("We likely just wrote stale data. If you're seeing this, file a github issue: https://github.com/spinnaker/spinnaker/issues")
+        }
+        final long elapsed = System.nanoTime() - startTime
+        agent.metricsSupport.recordTotalRunTimeNanos(elapsed)
+        log.info("$agent.providerName/$agent.onDemandAgentType handled $type in ${TimeUnit.NANOSECONDS.toMillis(elapsed)} millis. Payload: $data")
       }
+    } catch (e) {
+      agent.metricsSupport.countError()
+      log.warn("$agent.providerName/$agent.onDemandAgentType failed to handle on demand update for $type", e)
     }
-
-    return hasOnDemandResults ? OnDemandCacheUpdater.OnDemandCacheStatus.PENDING : OnDemandCacheUpdater.OnDemandCacheStatus.SUCCESSFUL
+    return hasOnDemandResults
   }
 
   @Override
@@ -113,10 +166,27 @@ class CatsOnDemandCacheUpdater implements OnDemandCacheUpdater {
       return []
     }
 
-    Collection<OnDemandAgent> onDemandAgents = onDemandAgents.findAll { it.handles(type, cloudProvider) }
+    Collection<OnDemandAgent> onDemandAgents = getOnDemandAgents(type, cloudProvider)
     return onDemandAgents.collect {
       def providerCache = catsModule.getProviderRegistry().getProviderCache(it.providerName)
       it.pendingOnDemandRequests(providerCache)
     }.flatten()
   }
+
+  private static class OnDemandAgentIndex {
+    final long agentsVersion
+    private final Collection<OnDemandAgent> onDemandAgents
+    private final ConcurrentMap<String, Collection<OnDemandAgent>> routes = new ConcurrentHashMap<>()
+
+    OnDemandAgentIndex(long agentsVersion, Collection<OnDemandAgent> onDemandAgents) {
+      this.agentsVersion = agentsVersion
+      this.onDemandAgents = onDemandAgents
+    }
+
+    Collection<OnDemandAgent> getAgents(OnDemandAgent.OnDemandType type, String cloudProvider) {
+      routes.computeIfAbsent("$type:$cloudProvider".toString()) {
+        onDemandAgents.findAll { it.handles(type, cloudProvider) }.asImmutable()
+      }
+    }
+  }
 }
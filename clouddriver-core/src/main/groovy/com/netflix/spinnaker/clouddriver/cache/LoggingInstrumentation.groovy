@@ -36,6 +36,11 @@ class LoggingInstrumentation implements ExecutionInstrumentation {
     logger.info("${agent.providerName}:${agent.agentType} completed in ${durationMs / 1000}s")
   }
 
+  @Override
+  void executionDiscarded(Agent agent, long durationMs) {
+    logger.warn("${agent.providerName}:${agent.agentType} completed in ${durationMs / 1000}s, but its result was discarded because its lock was lost")
+  }
+
   @Override
   void executionFailed(Agent agent, Throwable cause) {
     logger.warn("${agent.providerName}:${agent.agentType} completed", cause)
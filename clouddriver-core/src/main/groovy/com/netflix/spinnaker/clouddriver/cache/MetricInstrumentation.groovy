@@ -20,6 +20,7 @@ import com.netflix.spectator.api.Id
 import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.cats.agent.Agent
 import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.agent.ExecutionTelemetry
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
@@ -35,12 +36,20 @@ class MetricInstrumentation implements ExecutionInstrumentation {
 
   private final Id timingId
   private final Id counterId
+  private final Id phaseTimingId
+  private final Id resultItemsId
+  private final Id resultBytesId
+  private final Id keysId
 
   @Autowired
   public MetricInstrumentation(Registry registry) {
     this.registry = registry
     timingId = registry.createId('executionTime').withTag('className', MetricInstrumentation.simpleName)
     counterId = registry.createId('executionCount').withTag('className', MetricInstrumentation.simpleName)
+    phaseTimingId = registry.createId('executionPhaseTime').withTag('className', MetricInstrumentation.simpleName)
+    resultItemsId = registry.createId('cacheResult.items').withTag('className', MetricInstrumentation.simpleName)
+    resultBytesId = registry.createId('cacheResult.bytes').withTag('className', MetricInstrumentation.simpleName)
+    keysId = registry.createId('cacheResult.keys').withTag('className', MetricInstrumentation.simpleName)
   }
 
   private static String agentName(Agent agent) {
@@ -62,5 +71,23 @@ class MetricInstrumentation implements ExecutionInstrumentation {
   void executionFailed(Agent agent, Throwable cause) {
     registry.counter(counterId.withTag('agent', agentName(agent)).withTag('status', 'failure')).increment()
   }
-}
 
+  @Override
+  void executionDiscarded(Agent agent, long elapsedMs) {
+    registry.counter(counterId.withTag('agent', agentName(agent)).withTag('status', 'discarded')).increment()
+  }
+
+  @Override
+  void executionTelemetry(Agent agent, ExecutionTelemetry telemetry) {
+    def agentName = agentName(agent)
+    telemetry.phaseTimes.each { ExecutionTelemetry.Phase phase, Long elapsedMs ->
+      registry.timer(phaseTimingId.withTag('agent', agentName).withTag('phase', phase.name())).record(elapsedMs, TimeUnit.MILLISECONDS)
+    }
+    telemetry.types.each { String type, ExecutionTelemetry.TypeTelemetry stats ->
+      registry.distributionSummary(resultItemsId.withTag('agent', agentName).withTag('type', type)).record(stats.items)
+      registry.distributionSummary(resultBytesId.withTag('agent', agentName).withTag('type', type)).record(stats.bytes)
+      registry.counter(keysId.withTag('agent', agentName).withTag('type', type).withTag('status', 'written')).increment(stats.keysWritten)
+      registry.counter(keysId.withTag('agent', agentName).withTag('type', type).withTag('status', 'skipped')).increment(stats.keysSkipped)
+    }
+  }
+}
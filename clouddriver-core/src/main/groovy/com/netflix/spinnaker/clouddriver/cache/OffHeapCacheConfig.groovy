@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.NamedCacheFactory
+import com.netflix.spinnaker.cats.offheap.OffHeapCacheOptions
+import com.netflix.spinnaker.cats.offheap.OffHeapNamedCacheFactory
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
+import org.springframework.boot.context.properties.ConfigurationProperties
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+
+/**
+ * Keeps the cache off heap on nodes that don't use redis.
+ *
+ * With caching.offHeap.directory and caching.offHeap.persistent set the cache is kept on local disk
+ * and recovered when the node restarts.
+ */
+@Configuration
+@ConditionalOnProperty('caching.offHeap.enabled')
+class OffHeapCacheConfig {
+
+  @Bean
+  @ConfigurationProperties("caching.offHeap")
+  OffHeapCacheOptions.Builder offHeapCacheOptionsBuilder() {
+    return OffHeapCacheOptions.builder()
+  }
+
+  @Bean
+  @ConditionalOnMissingBean(NamedCacheFactory)
+  NamedCacheFactory offHeapCacheFactory(ObjectMapper objectMapper, OffHeapCacheOptions.Builder offHeapCacheOptionsBuilder) {
+    new OffHeapNamedCacheFactory(objectMapper, offHeapCacheOptionsBuilder.build())
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.Registry
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Collapses concurrent identical on demand requests into a single execution.
+ *
+ * Requests are identical when they have the same cloud provider, type and payload (regardless of the order of the
+ * payload's keys). A request that arrives before an identical execution has started waits for that execution and
+ * shares its status, rather than describing the same resources again. A request that arrives once it has started runs
+ * again after it, so a change made after the execution described the resources is not missed; any number of such
+ * requests share that one execution.
+ *
+ * Executions are also rate limited per account and region (caching.onDemand.permitsPerSecond, unlimited by default).
+ * A request over the limit is not handled and is reported as PENDING, so the caller retries it.
+ *
+ * Requests are counted by outcome (onDemand.requests, tagged executed, coalesced or throttled), and the number of
+ * requests each execution served is recorded as onDemand.requestsPerExecution.
+ */
+class OnDemandRequestCoalescer {
+  private final Registry registry
+  private final double permitsPerSecond
+
+  private final Id requestsId
+  private final Id requestsPerExecutionId
+  private final ConcurrentMap<String, InFlightRequest> inFlight = new ConcurrentHashMap<>()
+  private final ConcurrentMap<String, TokenBucket> rateLimits = new ConcurrentHashMap<>()
+
+  /**
+   * @param permitsPerSecond the executions allowed a second for each account and region, or -1 for unlimited
+   */
+  OnDemandRequestCoalescer(Registry registry, double permitsPerSecond) {
+    this.registry = registry
+    this.permitsPerSecond = permitsPerSecond
+    requestsId = registry.createId('onDemand.requests')
+    requestsPerExecutionId = registry.createId('onDemand.requestsPerExecution')
+  }
+
+  OnDemandCacheUpdater.OnDemandCacheStatus handle(String cloudProvider,
+                                                  OnDemandAgent.OnDemandType type,
+                                                  Map<String, ? extends Object> data,
+                                                  Closure<OnDemandCacheUpdater.OnDemandCacheStatus> execution) {
+    String key = "$cloudProvider:$type:${normalize(data)}"
+    InFlightRequest request = new InFlightRequest()
+    while (true) {
+      InFlightRequest existing = inFlight.putIfAbsent(key, request)
+      if (!existing) {
+        return execute(key, request, cloudProvider, type, data, execution)
+      }
+
+      InFlightRequest joined = existing.join(request)
+      if (joined.is(request)) {
+        // the existing execution may have described the resources before this request's change, so run again after it
+        existing.awaitCompletion()
+        return execute(key, request, cloudProvider, type, data, execution)
+      }
+      if (joined) {
+        count(cloudProvider, type, 'coalesced')
+        return joined.awaitStatus()
+      }
+      // the existing execution completed while joining it
+    }
+  }
+
+  private OnDemandCacheUpdater.OnDemandCacheStatus execute(String key,
+                                                           InFlightRequest request,
+                                                           String cloudProvider,
+                                                           OnDemandAgent.OnDemandType type,
+                                                           Map<String, ? extends Object> data,
+                                                           Closure<OnDemandCacheUpdater.OnDemandCacheStatus> execution) {
+    request.start()
+    OnDemandCacheUpdater.OnDemandCacheStatus status = null
+    Throwable failure = null
+    try {
+      if (!acquire(cloudProvider, data)) {
+        count(cloudProvider, type, 'throttled')
+        status = OnDemandCacheUpdater.OnDemandCacheStatus.PENDING
+      } else {
+        count(cloudProvider, type, 'executed')
+        status = execution.call()
+      }
+      return status
+    } catch (e) {
+      failure = e
+      throw e
+    } finally {
+      // the next request is in flight before anyone waiting on this one is released
+      int requests = request.complete(key, inFlight)
+      if (failure) {
+        request.status.completeExceptionally(failure)
+      } else {
+        request.status.complete(status)
+      }
+      registry.distributionSummary(requestsPerExecutionId.withTag('cloudProvider', cloudProvider).withTag('type', type.toString())).record(requests)
+    }
+  }
+
+  private void count(String cloudProvider, OnDemandAgent.OnDemandType type, String status) {
+    registry.counter(requestsId.withTag('cloudProvider', cloudProvider).withTag('type', type.toString()).withTag('status', status)).increment()
+  }
+
+  private boolean acquire(String cloudProvider, Map<String, ? extends Object> data) {
+    def account = data?.account ?: data?.credentials
+    if (permitsPerSecond <= 0 || !account) {
+      return true
+    }
+    String key = "$cloudProvider:$account:${data.region ?: ''}"
+    rateLimits.computeIfAbsent(key, { new TokenBucket(permitsPerSecond) }).tryAcquire()
+  }
+
+  /**
+   * @return a representation of value in which maps are ordered by key, so equal payloads are equal strings
+   */
+  static String normalize(Object value) {
+    if (value instanceof Map) {
+      return '{' + new TreeMap(value.collectEntries { k, v -> [(k.toString()): v] }).collect { k, v -> "$k=${normalize(v)}" }.join(',') + '}'
+    }
+    if (value instanceof Collection) {
+      return '[' + value.collect { normalize(it) }.join(',') + ']'
+    }
+    return String.valueOf(value)
+  }
+
+  /**
+   * An execution, and the requests that share its status.
+   *
+   * Requests only join an execution that has not started. Requests that arrive once it has started share the next
+   * execution, which runs after it completes.
+   */
+  private static class InFlightRequest {
+    final CompletableFuture<OnDemandCacheUpdater.OnDemandCacheStatus> status = new CompletableFuture<>()
+    private int requests = 1
+    private boolean started
+    private boolean completed
+    private InFlightRequest next
+
+    /**
+     * @return the request that candidate shares the status of, candidate if it is to run after this execution, or
+     *         null if this execution has completed
+     */
+    synchronized InFlightRequest join(InFlightRequest candidate) {
+      if (completed) {
+        return null
+      }
+      if (!started) {
+        requests++
+        return this
+      }
+      if (!next) {
+        next = candidate
+        return candidate
+      }
+      return next.join(candidate)
+    }
+
+    synchronized void start() {
+      started = true
+    }
+
+    /**
+     * Replaces this request with the next one in inFlight, if any.
+     *
+     * @return the number of requests that shared this execution
+     */
+    synchronized int complete(String key, ConcurrentMap<String, InFlightRequest> inFlight) {
+      completed = true
+      if (next) {
+        inFlight.replace(key, this, next)
+      } else {
+        inFlight.remove(key, this)
+      }
+      return requests
+    }
+
+    void awaitCompletion() {
+      try {
+        status.join()
+      } catch (CompletionException ignored) {
+        // the next execution runs however this one ended
+      }
+    }
+
+    OnDemandCacheUpdater.OnDemandCacheStatus awaitStatus() {
+      try {
+        return status.join()
+      } catch (CompletionException e) {
+        throw e.cause ?: e
+      }
+    }
+  }
+
+  /**
+   * Allows permitsPerSecond executions a second, with bursts of up to permitsPerSecond executions.
+   */
+  private static class TokenBucket {
+    private final double permitsPerSecond
+    private double permits
+    private long lastRefillNanos = System.nanoTime()
+
+    TokenBucket(double permitsPerSecond) {
+      this.permitsPerSecond = permitsPerSecond
+      this.permits = Math.max(permitsPerSecond, 1)
+    }
+
+    synchronized boolean tryAcquire() {
+      long now = System.nanoTime()
+      permits = Math.min(Math.max(permitsPerSecond, 1), permits + (now - lastRefillNanos) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1))
+      lastRefillNanos = now
+      if (permits < 1) {
+        return false
+      }
+      permits--
+      return true
+    }
+  }
+}
@@ -18,18 +18,28 @@ package com.netflix.spinnaker.clouddriver.cache
 
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.discovery.DiscoveryClient
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.agent.AdmissionController
+import com.netflix.spinnaker.cats.agent.AgentExecutionPool
 import com.netflix.spinnaker.cats.agent.AgentScheduler
+import com.netflix.spinnaker.cats.agent.CacheResultStoreStage
+import com.netflix.spinnaker.cats.agent.ExecutorAgentExecutionPool
 import com.netflix.spinnaker.cats.cache.NamedCacheFactory
 import com.netflix.spinnaker.cats.redis.JedisPoolSource
 import com.netflix.spinnaker.cats.redis.JedisSource
 import com.netflix.spinnaker.cats.redis.cache.RedisCacheOptions
 import com.netflix.spinnaker.cats.redis.cache.RedisNamedCacheFactory
+import com.netflix.spinnaker.cats.redis.cluster.AdaptiveAgentIntervalProvider
 import com.netflix.spinnaker.cats.redis.cluster.AgentIntervalProvider
 import com.netflix.spinnaker.cats.redis.cluster.ClusteredAgentScheduler
 import com.netflix.spinnaker.cats.redis.cluster.ClusteredSortAgentScheduler
 import com.netflix.spinnaker.cats.redis.cluster.DefaultNodeIdentity
 import com.netflix.spinnaker.cats.redis.cluster.DefaultNodeStatusProvider
 import com.netflix.spinnaker.cats.redis.cluster.NodeStatusProvider
+import com.netflix.spinnaker.cats.redis.cluster.ShardedAgentScheduler
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean
@@ -39,6 +49,7 @@ import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
 import redis.clients.jedis.JedisPool
 
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
 
 @Configuration
@@ -50,6 +61,22 @@ class RedisCacheConfig {
   @Value('${redis.parallelism:-1}')
   Integer parallelism
 
+  @Value('${redis.sharding.virtualNodes:128}')
+  int shardingVirtualNodes
+
+  @Value('${redis.sharding.memberTtlSeconds:10}')
+  long shardingMemberTtlSeconds
+
+  @Autowired(required = false)
+  @Qualifier('agentExecutionPool')
+  AgentExecutionPool agentExecutionPool
+
+  @Autowired(required = false)
+  CacheResultStoreStage cacheResultStoreStage
+
+  @Autowired(required = false)
+  AdmissionController admissionController
+
   @Bean
   JedisSource jedisSource(JedisPool jedisPool) {
     new JedisPoolSource(jedisPool)
@@ -71,12 +98,37 @@ class RedisCacheConfig {
     JedisSource jedisSource,
     ObjectMapper objectMapper,
     RedisCacheOptions redisCacheOptions) {
-    new RedisNamedCacheFactory(jedisSource, objectMapper, redisCacheOptions, null)
+    new RedisNamedCacheFactory(jedisSource, objectMapper, redisCacheOptions, admissionController ? new AdmissionControlCacheMetrics(admissionController) : null)
   }
 
   @Bean
-  AgentIntervalProvider agentIntervalProvider(@Value('${redis.poll.intervalSeconds:30}') int pollIntervalSeconds, @Value('${redis.poll.timeoutSeconds:300}') int pollTimeoutSeconds) {
-    new CustomSchedulableAgentIntervalProvider(TimeUnit.SECONDS.toMillis(pollIntervalSeconds), TimeUnit.SECONDS.toMillis(pollTimeoutSeconds))
+  @ConfigurationProperties("redis.adaptiveScheduling")
+  AdaptiveSchedulingProperties adaptiveSchedulingProperties() {
+    new AdaptiveSchedulingProperties()
+  }
+
+  @Bean
+  AgentIntervalProvider agentIntervalProvider(@Value('${redis.poll.intervalSeconds:30}') int pollIntervalSeconds,
+                                              @Value('${redis.poll.timeoutSeconds:300}') int pollTimeoutSeconds,
+                                              AdaptiveSchedulingProperties adaptiveSchedulingProperties,
+                                              JedisSource jedisSource) {
+    def intervalProvider = new CustomSchedulableAgentIntervalProvider(TimeUnit.SECONDS.toMillis(pollIntervalSeconds), TimeUnit.SECONDS.toMillis(pollTimeoutSeconds))
+    if (!adaptiveSchedulingProperties.enabled) {
+      return intervalProvider
+    }
+    if (!schedulerType.equalsIgnoreCase('sort')) {
+      // only the sort scheduler reports executions to the adaptive provider, the others would never adapt
+      throw new IllegalStateException("redis.adaptiveScheduling.enabled requires redis.scheduler=sort, not ${schedulerType}")
+    }
+
+    def toMillis = { long seconds -> seconds < 0 ? -1L : TimeUnit.SECONDS.toMillis(seconds) }
+    new AdaptiveAgentIntervalProvider(
+      intervalProvider,
+      toMillis(adaptiveSchedulingProperties.minIntervalSeconds),
+      toMillis(adaptiveSchedulingProperties.freshnessSeconds),
+      adaptiveSchedulingProperties.providerFreshnessSeconds.collectEntries { provider, seconds -> [(provider): toMillis(seconds)] } as Map<String, Long>,
+      jedisSource
+    )
   }
 
   @Bean
@@ -93,19 +145,46 @@ class RedisCacheConfig {
 
   @Bean
   @ConditionalOnProperty(value = 'caching.writeEnabled', matchIfMissing = true)
-  AgentScheduler agentScheduler(JedisSource jedisSource, @Value('${redis.connection:redis://localhost:6379}') String redisConnection, AgentIntervalProvider agentIntervalProvider, NodeStatusProvider nodeStatusProvider) {
-    if (schedulerType.equalsIgnoreCase('default')) {
+  AgentScheduler agentScheduler(JedisSource jedisSource, @Value('${redis.connection:redis://localhost:6379}') String redisConnection, AgentIntervalProvider agentIntervalProvider, NodeStatusProvider nodeStatusProvider, Registry registry) {
+    // the admission controller runs admitted agents on the execution pool
+    AgentExecutionPool executionPool = admissionController ?: agentExecutionPool
+    if (schedulerType.equalsIgnoreCase('default') || schedulerType.equalsIgnoreCase('sharded')) {
       URI redisUri = URI.create(redisConnection)
       String redisHost = redisUri.getHost()
       int redisPort = redisUri.getPort()
       if (redisPort == -1) {
         redisPort = 6379
       }
+      if (schedulerType.equalsIgnoreCase('sharded')) {
+        return new ShardedAgentScheduler(
+          jedisSource,
+          new DefaultNodeIdentity(redisHost, redisPort),
+          agentIntervalProvider,
+          nodeStatusProvider,
+          Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(ShardedAgentScheduler.simpleName)),
+          executionPool ?: new ExecutorAgentExecutionPool(Executors.newCachedThreadPool(new NamedThreadFactory('AgentExecutionAction'))),
+          cacheResultStoreStage,
+          shardingVirtualNodes,
+          TimeUnit.SECONDS.toMillis(shardingMemberTtlSeconds),
+          new ShardedAgentSchedulerMetrics(registry)
+        )
+      }
+      if (executionPool || cacheResultStoreStage) {
+        return new ClusteredAgentScheduler(
+          jedisSource,
+          new DefaultNodeIdentity(redisHost, redisPort),
+          agentIntervalProvider,
+          nodeStatusProvider,
+          Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(ClusteredAgentScheduler.simpleName)),
+          executionPool ?: new ExecutorAgentExecutionPool(Executors.newCachedThreadPool(new NamedThreadFactory('AgentExecutionAction'))),
+          cacheResultStoreStage
+        )
+      }
       new ClusteredAgentScheduler(jedisSource, new DefaultNodeIdentity(redisHost, redisPort), agentIntervalProvider, nodeStatusProvider)
     } else if (schedulerType.equalsIgnoreCase('sort')) {
-      new ClusteredSortAgentScheduler(jedisSource, nodeStatusProvider, agentIntervalProvider, parallelism ?: -1);
+      new ClusteredSortAgentScheduler(jedisSource, nodeStatusProvider, agentIntervalProvider, parallelism ?: -1, new SortAgentSchedulerMetrics(registry), executionPool, cacheResultStoreStage);
     } else {
-      throw new IllegalStateException("redis.scheduler must be one of 'default', 'sort', or ''.");
+      throw new IllegalStateException("redis.scheduler must be one of 'default', 'sort', 'sharded', or ''.");
     }
   }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.redis.cluster.ShardedAgentScheduler
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ShardedAgentSchedulerMetrics implements ShardedAgentScheduler.ShardMetrics {
+  private final Registry registry
+
+  private final Id tickTimingId
+  private final Id rebalancesId
+  private final Id acquiredId
+  private final AtomicInteger members = new AtomicInteger()
+  private final AtomicInteger shardSize = new AtomicInteger()
+
+  ShardedAgentSchedulerMetrics(Registry registry) {
+    this.registry = registry
+    tickTimingId = registry.createId('shardedScheduler.tickTime')
+    rebalancesId = registry.createId('shardedScheduler.rebalances')
+    acquiredId = registry.createId('shardedScheduler.acquired')
+    registry.gauge(registry.createId('shardedScheduler.members'), members)
+    registry.gauge(registry.createId('shardedScheduler.shardSize'), shardSize)
+  }
+
+  @Override
+  void rebalanced(Set<String> members, Set<String> joined, Set<String> left, int shardSize) {
+    registry.counter(rebalancesId).increment()
+    this.members.set(members.size())
+    this.shardSize.set(shardSize)
+  }
+
+  @Override
+  void tick(int members, int shardSize, int acquiredAgents, long durationNanos) {
+    registry.timer(tickTimingId).record(durationNanos, TimeUnit.NANOSECONDS)
+    registry.counter(acquiredId).increment(acquiredAgents)
+    this.members.set(members)
+    this.shardSize.set(shardSize)
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.redis.cluster.ClusteredSortAgentScheduler
+
+import java.util.concurrent.TimeUnit
+
+class SortAgentSchedulerMetrics implements ClusteredSortAgentScheduler.SchedulerMetrics {
+  private final Registry registry
+
+  private final Id tickTimingId
+  private final Id roundTripsId
+  private final Id agentsId
+
+  SortAgentSchedulerMetrics(Registry registry) {
+    this.registry = registry
+    tickTimingId = registry.createId('sortScheduler.tickTime')
+    roundTripsId = registry.createId('sortScheduler.roundTrips')
+    agentsId = registry.createId('sortScheduler.agents')
+  }
+
+  @Override
+  void tick(int dueAgents, int acquiredAgents, int releasedAgents, int roundTrips, long durationNanos) {
+    registry.timer(tickTimingId).record(durationNanos, TimeUnit.NANOSECONDS)
+    registry.distributionSummary(roundTripsId).record(roundTrips)
+    registry.counter(agentsId.withTag('state', 'due')).increment(dueAgents)
+    registry.counter(agentsId.withTag('state', 'acquired')).increment(acquiredAgents)
+    registry.counter(agentsId.withTag('state', 'released')).increment(releasedAgents)
+  }
+}
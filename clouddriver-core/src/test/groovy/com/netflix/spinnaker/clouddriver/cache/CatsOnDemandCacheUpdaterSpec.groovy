@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spinnaker.cats.agent.AgentScheduler
+import com.netflix.spinnaker.cats.agent.DefaultCacheResult
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.module.CatsModule
+import com.netflix.spinnaker.cats.provider.Provider
+import com.netflix.spinnaker.cats.provider.ProviderRegistry
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+import static com.netflix.spinnaker.clouddriver.cache.OnDemandAgent.OnDemandType.Job
+import static com.netflix.spinnaker.clouddriver.cache.OnDemandAgent.OnDemandType.LoadBalancer
+import static com.netflix.spinnaker.clouddriver.cache.OnDemandAgent.OnDemandType.ServerGroup
+import static com.netflix.spinnaker.clouddriver.cache.OnDemandCacheUpdater.OnDemandCacheStatus.PENDING
+import static com.netflix.spinnaker.clouddriver.cache.OnDemandCacheUpdater.OnDemandCacheStatus.SUCCESSFUL
+
+class CatsOnDemandCacheUpdaterSpec extends Specification {
+  long agentsVersion = 0
+  List awsAgents = []
+  List gceAgents = []
+
+  CatsModule catsModule = Stub(CatsModule) {
+    getAgentsVersion() >> { agentsVersion }
+    getProviderRegistry() >> Stub(ProviderRegistry)
+  }
+
+  @Subject
+  CatsOnDemandCacheUpdater updater = new CatsOnDemandCacheUpdater([provider('aws', awsAgents), provider('gce', gceAgents)], catsModule)
+
+  def setup() {
+    updater.agentScheduler = Stub(AgentScheduler) {
+      isAtomic() >> false
+    }
+  }
+
+  void "routes requests to the agents that handle their type and cloud provider"() {
+    given:
+    awsAgents << agent('awsServerGroups', 'aws', ServerGroup) << agent('awsLoadBalancers', 'aws', LoadBalancer)
+    gceAgents << agent('gceServerGroups', 'gce', ServerGroup)
+
+    expect:
+    updater.handles(ServerGroup, 'aws')
+    updater.handles(LoadBalancer, 'aws')
+    updater.handles(ServerGroup, 'gce')
+    !updater.handles(LoadBalancer, 'gce')
+    !updater.handles(Job, 'aws')
+    !updater.handles(ServerGroup, 'titus')
+
+    updater.pendingOnDemandRequests(ServerGroup, 'aws')*.agent == ['awsServerGroups']
+    updater.pendingOnDemandRequests(LoadBalancer, 'aws')*.agent == ['awsLoadBalancers']
+    updater.pendingOnDemandRequests(ServerGroup, 'gce')*.agent == ['gceServerGroups']
+  }
+
+  void "asks each agent whether it handles a route once"() {
+    given:
+    def onDemandAgent = Mock(OnDemandAgent)
+    awsAgents << onDemandAgent
+
+    when:
+    3.times {
+      updater.handles(ServerGroup, 'aws')
+      updater.handles(Job, 'aws')
+    }
+
+    then:
+    1 * onDemandAgent.handles(ServerGroup, 'aws') >> true
+    1 * onDemandAgent.handles(Job, 'aws') >> false
+    0 * onDemandAgent.handles(_, _)
+  }
+
+  void "rebuilds its index once agents are registered or deregistered"() {
+    given:
+    def serverGroups = agent('awsServerGroups', 'aws', ServerGroup)
+
+    expect:
+    !updater.handles(ServerGroup, 'aws')
+
+    when: 'an agent is added to a provider'
+    awsAgents << serverGroups
+
+    then: 'the providers are not walked again until the agents are registered'
+    !updater.handles(ServerGroup, 'aws')
+
+    when:
+    agentsVersion++
+
+    then:
+    updater.handles(ServerGroup, 'aws')
+
+    when:
+    awsAgents.remove(serverGroups)
+    agentsVersion++
+
+    then:
+    !updater.handles(ServerGroup, 'aws')
+  }
+
+  @Unroll
+  void "reports #status when an earlier agent has uncached results and the last has none, with fanOut #fanOut"() {
+    given:
+    updater.fanOut = fanOut
+    def pending = agent('awsServerGroups', 'aws', ServerGroup, [serverGroups: [new DefaultCacheData('sg-v001', [:], [:])]])
+    def cached = agent('awsClusters', 'aws', ServerGroup, [serverGroups: []])
+    def noResult = agent('awsInstances', 'aws', ServerGroup, null)
+
+    expect:
+    updater.handle(ServerGroup, [pending, cached, noResult], [:]) == status
+
+    where:
+    fanOut || status
+    false  || SUCCESSFUL
+    true   || PENDING
+  }
+
+  private Provider provider(String name, List agents) {
+    Stub(Provider) {
+      getProviderName() >> name
+      getAgents() >> agents
+    }
+  }
+
+  private OnDemandAgent agent(String name, String cloudProvider, OnDemandAgent.OnDemandType type, Map cacheResults = null) {
+    Stub(OnDemandAgent) {
+      getProviderName() >> cloudProvider
+      getOnDemandAgentType() >> name
+      handles(_, _) >> { OnDemandAgent.OnDemandType requestedType, String requestedCloudProvider ->
+        requestedType == type && requestedCloudProvider == cloudProvider
+      }
+      pendingOnDemandRequests(_) >> [[agent: name]]
+      getMetricsSupport() >> Stub(OnDemandMetricsSupport)
+      handle(_, _) >> (cacheResults == null ? null : new OnDemandAgent.OnDemandResult(
+        sourceAgentType: name, cacheResult: new DefaultCacheResult(cacheResults)))
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spectator.api.DefaultRegistry
+import com.netflix.spectator.api.Registry
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import static com.netflix.spinnaker.clouddriver.cache.OnDemandAgent.OnDemandType.ServerGroup
+import static com.netflix.spinnaker.clouddriver.cache.OnDemandCacheUpdater.OnDemandCacheStatus.PENDING
+import static com.netflix.spinnaker.clouddriver.cache.OnDemandCacheUpdater.OnDemandCacheStatus.SUCCESSFUL
+
+class OnDemandRequestCoalescerSpec extends Specification {
+  static final Map DATA = [account: 'test', region: 'us-east-1', serverGroupName: 'app-v001']
+
+  Registry registry = new DefaultRegistry()
+  ExecutorService executor = Executors.newCachedThreadPool()
+  PollingConditions conditions = new PollingConditions(timeout: 5)
+
+  @Subject
+  OnDemandRequestCoalescer coalescer = new OnDemandRequestCoalescer(registry, -1)
+
+  def cleanup() {
+    executor.shutdownNow()
+  }
+
+  void "identical requests that arrive before an execution starts share it"() {
+    given:
+    def started = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    def executions = new AtomicInteger()
+
+    when: 'the second and third requests arrive while the first is being executed'
+    def first = submit { executions.incrementAndGet(); started.countDown(); release.await(); SUCCESSFUL }
+    started.await(5, TimeUnit.SECONDS)
+    def second = submit { executions.incrementAndGet(); SUCCESSFUL }
+    def third = submit { executions.incrementAndGet(); SUCCESSFUL }
+    conditions.eventually {
+      assert count('coalesced') == 1
+    }
+    release.countDown()
+
+    then: 'they share one execution that runs after the first'
+    [first, second, third]*.get(5, TimeUnit.SECONDS) == [SUCCESSFUL, SUCCESSFUL, SUCCESSFUL]
+    executions.get() == 2
+    count('executed') == 2
+    count('coalesced') == 1
+  }
+
+  void "a late request is run again rather than sharing the status of an execution that has already started"() {
+    given:
+    def started = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    def events = Collections.synchronizedList([])
+
+    when:
+    def first = submit { events << 'first started'; started.countDown(); release.await(); events << 'first completed'; PENDING }
+    started.await(5, TimeUnit.SECONDS)
+    def late = submit { events << 'late started'; SUCCESSFUL }
+    conditions.eventually {
+      assert coalescer.inFlight.values()*.next.findAll().size() == 1
+    }
+    release.countDown()
+
+    then:
+    first.get(5, TimeUnit.SECONDS) == PENDING
+    late.get(5, TimeUnit.SECONDS) == SUCCESSFUL
+    events == ['first started', 'first completed', 'late started']
+    coalescer.inFlight.isEmpty()
+  }
+
+  void "requests that share a failed execution fail with its error"() {
+    given:
+    def started = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+
+    when:
+    def first = submit { started.countDown(); release.await(); SUCCESSFUL }
+    started.await(5, TimeUnit.SECONDS)
+    def second = submit { throw new IllegalStateException('boom') }
+    def third = submit { throw new IllegalStateException('boom') }
+    conditions.eventually {
+      assert count('coalesced') == 1
+    }
+    release.countDown()
+
+    then:
+    first.get(5, TimeUnit.SECONDS) == SUCCESSFUL
+    [second, third].each {
+      def failure = it.get(5, TimeUnit.SECONDS)
+      assert failure instanceof IllegalStateException
+      assert failure.message == 'boom'
+    }
+    coalescer.inFlight.isEmpty()
+  }
+
+  void "a request after a failed execution is executed"() {
+    when:
+    coalescer.handle('aws', ServerGroup, DATA) { throw new IllegalStateException('boom') }
+
+    then:
+    thrown(IllegalStateException)
+    coalescer.inFlight.isEmpty()
+
+    when:
+    def status = coalescer.handle('aws', ServerGroup, DATA) { SUCCESSFUL }
+
+    then:
+    status == SUCCESSFUL
+    count('executed') == 2
+  }
+
+  void "requests for different resources are not coalesced"() {
+    given:
+    def started = new CountDownLatch(2)
+    def release = new CountDownLatch(1)
+
+    when:
+    def first = submit(DATA) { started.countDown(); release.await(); SUCCESSFUL }
+    def second = submit(DATA + [serverGroupName: 'app-v002']) { started.countDown(); release.await(); SUCCESSFUL }
+
+    then:
+    started.await(5, TimeUnit.SECONDS)
+
+    when:
+    release.countDown()
+
+    then:
+    [first, second]*.get(5, TimeUnit.SECONDS) == [SUCCESSFUL, SUCCESSFUL]
+    count('executed') == 2
+    count('coalesced') == 0
+  }
+
+  void "payloads are normalized regardless of key order"() {
+    expect:
+    OnDemandRequestCoalescer.normalize([b: 1, a: [d: 2, c: [3, [f: 4, e: 5]]]]) ==
+      OnDemandRequestCoalescer.normalize([a: [c: [3, [e: 5, f: 4]], d: 2], b: 1])
+  }
+
+  /**
+   * @return a future of the status of the request, or of the exception it threw
+   */
+  private Future<Object> submit(Map data = DATA, Closure<OnDemandCacheUpdater.OnDemandCacheStatus> execution) {
+    executor.submit({
+      try {
+        return coalescer.handle('aws', ServerGroup, data, execution)
+      } catch (Throwable t) {
+        return t
+      }
+    } as java.util.concurrent.Callable<Object>)
+  }
+
+  private long count(String status) {
+    registry.counter(registry.createId('onDemand.requests')
+      .withTag('cloudProvider', 'aws')
+      .withTag('type', ServerGroup.toString())
+      .withTag('status', status)).count()
+  }
+}
@@ -26,6 +26,8 @@ import retrofit.http.Headers
 import retrofit.http.Path
 import retrofit.http.Query
 
+import java.util.concurrent.ConcurrentHashMap
+
 class DockerBearerTokenService {
   private Map<String, TokenService> realmToService
   private Map<String, DockerBearerToken> cachedTokens
@@ -36,8 +38,9 @@ class DockerBearerTokenService {
   String dockerApplicationName
 
   DockerBearerTokenService(String username, String password) {
-    realmToService = new HashMap<String, TokenService>()
-    cachedTokens = new HashMap<String, DockerBearerToken>()
+    // Shared by the concurrent requests of a DockerRegistryClient.
+    realmToService = new ConcurrentHashMap<String, TokenService>()
+    cachedTokens = new ConcurrentHashMap<String, DockerBearerToken>()
     if (username || password) {
       basicAuth = new String(Base64.encoder.encode(("${username}:${password}").bytes))
       basicAuthHeader = "Basic $basicAuth"
@@ -179,7 +182,9 @@ class DockerBearerTokenService {
       token = tokenService.getToken(authenticateDetails.path, authenticateDetails.service, authenticateDetails.scope, dockerApplicationName)
     }
 
-    cachedTokens[repository] = token
+    if (token) {
+      cachedTokens[repository] = token
+    }
     return token
   }
 
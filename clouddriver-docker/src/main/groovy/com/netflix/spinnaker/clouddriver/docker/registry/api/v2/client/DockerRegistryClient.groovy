@@ -17,6 +17,7 @@
 package com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client
 
 import com.google.gson.GsonBuilder
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory
 import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.auth.DockerBearerToken
 import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.auth.DockerBearerTokenService
 import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.exception.DockerRegistryOperationException
@@ -32,6 +33,13 @@ import retrofit.client.Response
 import retrofit.converter.GsonConverter
 import retrofit.http.*
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
 import java.util.concurrent.TimeUnit
 
 @Slf4j
@@ -39,6 +47,10 @@ class DockerRegistryClient {
 
   private static final Logger LOG = LoggerFactory.getLogger(DockerRegistryClient)
 
+  static final int DEFAULT_TAG_THREADS = 1
+
+  static final int DEFAULT_DIGEST_THREADS = 4
+
   private DockerBearerTokenService tokenService
 
   public String address
@@ -51,12 +63,34 @@ class DockerRegistryClient {
 
   final int paginateSize
 
+  final int tagThreads
+
+  final int digestThreads
+
+  // Shared by every getTags(repositories) and getDigests call respectively, rather than a pool per caching cycle.
+  private final ExecutorService tagExecutor
+  private final ExecutorService digestExecutor
+
+  // The last digest and ETag of each tag, by repository and tag.
+  private final Map<String, Map<String, CachedDigest>> digestCache = new ConcurrentHashMap<>()
+
+  // The number of tags of each repository when it was last listed.
+  private final Map<String, Integer> tagCounts = new ConcurrentHashMap<>()
+
   public getBasicAuth() {
     return basicAuth
   }
 
   DockerRegistryClient(String address, String email, String username, String password, long clientTimeoutMillis, int paginateSize) {
+    this(address, email, username, password, clientTimeoutMillis, paginateSize, DEFAULT_TAG_THREADS, DEFAULT_DIGEST_THREADS)
+  }
+
+  DockerRegistryClient(String address, String email, String username, String password, long clientTimeoutMillis, int paginateSize, int tagThreads, int digestThreads) {
     this.paginateSize = paginateSize
+    this.tagThreads = tagThreads ?: DEFAULT_TAG_THREADS
+    this.tagExecutor = newExecutor("${DockerRegistryClient.simpleName}-tags", this.tagThreads)
+    this.digestThreads = digestThreads ?: DEFAULT_DIGEST_THREADS
+    this.digestExecutor = newExecutor("${DockerRegistryClient.simpleName}-digests", this.digestThreads)
     this.tokenService = new DockerBearerTokenService(username, password)
     this.basicAuth = this.tokenService.basicAuth
     OkHttpClient client = new OkHttpClient()
@@ -71,6 +105,16 @@ class DockerRegistryClient {
     this.address = address
   }
 
+  /*
+   * A pool of up to threads threads whose idle threads exit, so a client that is replaced (when its account is
+   * reloaded) leaves no threads behind without having to be shut down.
+   */
+  private static ExecutorService newExecutor(String name, int threads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name))
+    executor.allowCoreThreadTimeOut(true)
+    return executor
+  }
+
   interface DockerRegistryService {
     @GET("/v2/{repository}/tags/list")
     @Headers([
@@ -84,6 +128,12 @@ class DockerRegistryClient {
     ])
     Response getManifest(@Path(value="name", encode=false) String name, @Path(value="reference", encode=false) String reference, @Header("Authorization") String token, @Header("User-Agent") String agent)
 
+    @HEAD("/v2/{name}/manifests/{reference}")
+    @Headers([
+      "Docker-Distribution-API-Version: registry/2.0"
+    ])
+    Response headManifest(@Path(value="name", encode=false) String name, @Path(value="reference", encode=false) String reference, @Header("If-None-Match") String etag, @Header("Authorization") String token, @Header("User-Agent") String agent)
+
     @GET("/v2/_catalog")
     @Headers([
         "Docker-Distribution-API-Version: registry/2.0"
@@ -104,6 +154,9 @@ class DockerRegistryClient {
     Response checkVersion(@Header("Authorization") String token, @Header("User-Agent") String agent)
   }
 
+  /*
+   * Lists the tags of repository, following the Link header of each page of tags (if the registry paginates them).
+   */
   public DockerRegistryTags getTags(String repository) {
     def response = request({
       registryService.getTags(repository, tokenService.basicAuthHeader, dockerApplicationName)
@@ -111,7 +164,59 @@ class DockerRegistryClient {
       registryService.getTags(repository, token, dockerApplicationName)
     }, repository)
 
-    (DockerRegistryTags) converter.fromBody(response.body, DockerRegistryTags)
+    def tags = (DockerRegistryTags) converter.fromBody(response.body, DockerRegistryTags)
+    def nextPath = findNextLink(response?.headers)
+    while (nextPath && tags.tags != null) {
+      def path = nextPath
+      response = request({
+        registryService.get(path, tokenService.basicAuthHeader, dockerApplicationName)
+      }, { token ->
+        registryService.get(path, token, dockerApplicationName)
+      }, repository)
+
+      def page = (DockerRegistryTags) converter.fromBody(response.body, DockerRegistryTags)
+      tags.tags.addAll(page.tags ?: [])
+      nextPath = findNextLink(response?.headers)
+    }
+
+    return tags
+  }
+
+  /*
+   * Lists the tags of each repository with up to tagThreads repositories listed at once. Repositories are taken
+   * from a shared queue, largest (by their tag count when last listed) first, so a large repository is started
+   * early rather than holding up the end of the listing while the other threads sit idle.
+   */
+  public DockerRegistryTagListing getTags(Collection<String> repositories) {
+    DockerRegistryTagListing result = new DockerRegistryTagListing()
+    List<String> bySize = repositories.sort(false) { String repository -> -(tagCounts.get(repository) ?: 0) }
+    Map<String, Future<TagLookup>> lookups = [:]
+    try {
+      bySize.each { String repository ->
+        lookups[repository] = tagExecutor.submit({
+          long startTime = System.nanoTime()
+          DockerRegistryTags tags = getTags(repository)
+          new TagLookup(tags, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime))
+        } as Callable<TagLookup>)
+      }
+
+      lookups.each { String repository, Future<TagLookup> lookup ->
+        try {
+          TagLookup tags = lookup.get()
+          result.tags[repository] = tags.tags
+          result.latencyMs[repository] = tags.latencyMs
+          tagCounts.put(repository, tags.tags?.tags?.size() ?: 0)
+        } catch (ExecutionException e) {
+          result.failures[repository] = e.cause instanceof Exception ? (Exception) e.cause : e
+        }
+      }
+    } finally {
+      // stop any listings left running if this call was interrupted
+      lookups.values()*.cancel(true)
+    }
+    tagCounts.keySet().retainAll(repositories)
+
+    return result
   }
 
   public String getDigest(String name, String tag) {
@@ -130,6 +235,104 @@ class DockerRegistryClient {
     return digest?.value
   }
 
+  /*
+   * Looks up the digest of each tag of each repository, with up to digestThreads manifest requests at once.
+   * Manifests are requested with HEAD and, for tags looked up before, with the ETag of the last response in
+   * If-None-Match, so a registry answers an unchanged tag with a 304 and the last digest is reused.
+   */
+  public DockerRegistryDigests getDigests(Map<String, ? extends Collection<String>> tagsByRepository) {
+    DockerRegistryDigests result = new DockerRegistryDigests()
+    Map<String, Map<String, Future<DigestLookup>>> lookups = [:].withDefault { [:] }
+    try {
+      tagsByRepository.each { String repository, Collection<String> tags ->
+        // forget the digests of tags that no longer exist
+        digestCache.get(repository)?.keySet()?.retainAll(tags)
+        tags.each { String tag ->
+          lookups[repository][tag] = digestExecutor.submit({ lookupDigest(repository, tag) } as Callable<DigestLookup>)
+        }
+      }
+
+      lookups.each { String repository, Map<String, Future<DigestLookup>> tagLookups ->
+        tagLookups.each { String tag, Future<DigestLookup> lookup ->
+          try {
+            DigestLookup digest = lookup.get()
+            result.digests[repository][tag] = digest.digest
+            if (digest.unchanged) {
+              result.unchanged++
+            } else {
+              result.changed++
+            }
+          } catch (ExecutionException e) {
+            result.failures[repository][tag] = e.cause instanceof Exception ? (Exception) e.cause : e
+          }
+        }
+      }
+    } finally {
+      // stop any lookups left running if this call was interrupted
+      lookups.values().each { Map<String, Future<DigestLookup>> tagLookups -> tagLookups.values()*.cancel(true) }
+    }
+
+    return result
+  }
+
+  private DigestLookup lookupDigest(String name, String tag) {
+    CachedDigest cached = digestCache.get(name)?.get(tag)
+    Response response
+    try {
+      response = request({
+        registryService.headManifest(name, tag, cached?.etag, tokenService.basicAuthHeader, dockerApplicationName)
+      }, { token ->
+        registryService.headManifest(name, tag, cached?.etag, token, dockerApplicationName)
+      }, name)
+    } catch (RetrofitError error) {
+      if (cached && error.response?.status == 304) {
+        return new DigestLookup(cached.digest, true)
+      }
+      digestCache.get(name)?.remove(tag)
+      throw error
+    }
+
+    String digest = response.headers?.find { it.name.equalsIgnoreCase("Docker-Content-Digest") }?.value
+    String etag = response.headers?.find { it.name.equalsIgnoreCase("ETag") }?.value
+    if (etag) {
+      digestCache.computeIfAbsent(name, { new ConcurrentHashMap<String, CachedDigest>() }).put(tag, new CachedDigest(digest, etag))
+    } else {
+      digestCache.get(name)?.remove(tag)
+    }
+    return new DigestLookup(digest, false)
+  }
+
+  private static class TagLookup {
+    final DockerRegistryTags tags
+    final long latencyMs
+
+    TagLookup(DockerRegistryTags tags, long latencyMs) {
+      this.tags = tags
+      this.latencyMs = latencyMs
+    }
+  }
+
+  private static class CachedDigest {
+    final String digest
+    final String etag
+
+    CachedDigest(String digest, String etag) {
+      this.digest = digest
+      this.etag = etag
+    }
+  }
+
+  private static class DigestLookup {
+    final String digest
+    // whether the registry reported the manifest as unchanged since the cached lookup
+    final boolean unchanged
+
+    DigestLookup(String digest, boolean unchanged) {
+      this.digest = digest
+      this.unchanged = unchanged
+    }
+  }
+
   private static String parseLink(retrofit.client.Header header) {
     if (!header.name.equalsIgnoreCase("link")) {
       return null
@@ -246,7 +449,9 @@ class DockerRegistryClient {
       }
     } catch (RetrofitError error) {
       if (error.response?.status == 401) {
-        dockerToken = tokenService.getToken(target, error.response.headers)
+        // Reuse a token another request to this target has fetched since, rather than fetching one for each request.
+        DockerBearerToken cachedToken = tokenService.getToken(target)
+        dockerToken = cachedToken && !cachedToken.is(dockerToken) ? cachedToken : tokenService.getToken(target, error.response.headers)
         token = "Bearer ${dockerToken.bearer_token ?: dockerToken.token}"
         response = withToken(token)
       } else {
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client
+
+/**
+ * The digests of the tags looked up by DockerRegistryClient.getDigests, by repository and tag, and the
+ * failure of each tag that could not be looked up.
+ */
+class DockerRegistryDigests {
+  final Map<String, Map<String, String>> digests = [:].withDefault { [:] }
+  final Map<String, Map<String, Exception>> failures = [:].withDefault { [:] }
+
+  // Tags whose manifest was requested and had changed (or was not known yet).
+  int changed
+  // Tags whose manifest was unchanged since the last lookup, so their manifest was not transferred again.
+  int unchanged
+
+  String getDigest(String repository, String tag) {
+    digests.get(repository)?.get(tag)
+  }
+
+  Exception getFailure(String repository, String tag) {
+    failures.get(repository)?.get(tag)
+  }
+
+  int getFailed() {
+    failures.values().sum(0) { it.size() } as int
+  }
+}
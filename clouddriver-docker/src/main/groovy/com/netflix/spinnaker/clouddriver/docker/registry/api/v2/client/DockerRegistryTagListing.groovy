@@ -0,0 +1,27 @@
+/*
+ * Copyright 2016 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client
+
+/**
+ * The tags of the repositories listed by DockerRegistryClient.getTags, how long listing each repository
+ * took, and the failure of each repository that could not be listed.
+ */
+class DockerRegistryTagListing {
+  final Map<String, DockerRegistryTags> tags = [:]
+  final Map<String, Long> latencyMs = [:]
+  final Map<String, Exception> failures = [:]
+}
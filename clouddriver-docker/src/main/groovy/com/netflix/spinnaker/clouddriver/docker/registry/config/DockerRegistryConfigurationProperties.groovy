@@ -35,7 +35,7 @@ class DockerRegistryConfigurationProperties {
     String email
     // Address of the registry.
     String address
-    // How many threads to cache all provided repos on. Really only useful if you have a ton of repos.
+    // How many repos to list the tags of at once. Really only useful if you have a ton of repos.
     int cacheThreads
     // Timeout time in milliseconds for this repository. Default is 60,000 (1 minute).
     long clientTimeoutMillis
@@ -43,6 +43,8 @@ class DockerRegistryConfigurationProperties {
     int paginateSize
     // Track digest changes. This is _not_ recommended as it consumes a high QPM, and most registries are flaky.
     boolean trackDigests
+    // How many manifest requests to make at once when tracking digests. Default is 4.
+    int digestThreads
     // List of all repositories to index. Can be of the form <user>/<repo>,
     // or <library> for repositories like 'ubuntu'.
     List<String> repositories
@@ -16,10 +16,14 @@
 
 package com.netflix.spinnaker.clouddriver.docker.registry.provider.agent
 
+import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.cats.agent.*
+import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.clouddriver.docker.registry.DockerRegistryCloudProvider
-import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client.DockerRegistryTags
+import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client.DockerRegistryDigests
+import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client.DockerRegistryTagListing
 import com.netflix.spinnaker.clouddriver.docker.registry.cache.DefaultCacheDataBuilder
 import com.netflix.spinnaker.clouddriver.docker.registry.cache.Keys
 import com.netflix.spinnaker.clouddriver.docker.registry.provider.DockerRegistryProvider
@@ -28,6 +32,8 @@ import com.netflix.spinnaker.clouddriver.docker.registry.security.DockerRegistry
 import groovy.util.logging.Slf4j
 import retrofit.RetrofitError
 
+import java.util.concurrent.TimeUnit
+
 import static java.util.Collections.unmodifiableSet
 
 @Slf4j
@@ -37,25 +43,41 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware {
     AgentDataType.Authority.AUTHORITATIVE.forType(Keys.Namespace.IMAGE_ID.ns)
   ] as Set)
 
+  // Repositories taking longer than this to list are logged (the latency timer is per account, not per repository).
+  static final long SLOW_TAG_LISTING_MILLIS = TimeUnit.SECONDS.toMillis(30)
+
+  // Every this many results is complete, even when the changes since the last result could be returned instead.
+  static final int COMPLETE_RESULT_INTERVAL = 10
+
   private DockerRegistryCredentials credentials
   private DockerRegistryCloudProvider dockerRegistryCloudProvider
   private String accountName
-  private final int index
-  private final int threadCount
   private String registry
+  private final Registry metricsRegistry
+  private final Id digestRequestsId
+  private final Id digestDurationId
+  private final Id tagLatencyId
+
+  // Whether this agent has evicted the entries of its account cached by the agents it replaced (see legacyEvictions).
+  private boolean legacyEvicted
+
+  // The tagged images of the last result (null before the first one), which the next delta result is computed against.
+  private Map<String, CacheData> lastTaggedImages
+  private int resultsSinceComplete
 
   DockerRegistryImageCachingAgent(DockerRegistryCloudProvider dockerRegistryCloudProvider,
                                   String accountName,
                                   DockerRegistryCredentials credentials,
-                                  int index,
-                                  int threadCount,
-                                  String registry) {
+                                  String registry,
+                                  Registry metricsRegistry) {
     this.dockerRegistryCloudProvider = dockerRegistryCloudProvider
     this.accountName = accountName
     this.credentials = credentials
-    this.index = index
-    this.threadCount = threadCount
     this.registry = registry
+    this.metricsRegistry = metricsRegistry
+    this.digestRequestsId = metricsRegistry.createId('dockerRegistry.digests.requests').withTag('account', accountName)
+    this.digestDurationId = metricsRegistry.createId('dockerRegistry.digests.duration').withTag('account', accountName)
+    this.tagLatencyId = metricsRegistry.createId('dockerRegistry.tags.latency').withTag('account', accountName)
   }
 
   @Override
@@ -65,14 +87,79 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware {
 
   @Override
   CacheResult loadData(ProviderCache providerCache) {
-    Map<String, Set<String>> tags = loadTags()
+    DockerRegistryTagListing listing = loadTags()
+    Map<String, Set<String>> tags = listing.tags.values().collectEntries { repositoryTags ->
+      repositoryTags?.tags && repositoryTags?.name ? [(repositoryTags.name): repositoryTags.tags] : [:]
+    }
+    DockerRegistryDigests digests = credentials.trackDigests ? loadDigests(tags) : null
+
+    CacheResult result = buildCacheResult(tags, digests)
+    if (!legacyEvicted) {
+      result = new DefaultCacheResult(result.cacheResults, legacyEvictions(providerCache, result))
+      legacyEvicted = true
+    }
+    changesSinceLastResult(result, !listing.failures && !digests?.failed)
+  }
+
+  /*
+   * Returns only the tagged images (and their image ids) added or changed since the last result, and those deleted
+   * since, rather than every tagged image of the account, unless this is the first result or some tags could not be
+   * listed or looked up (as a complete result evicts those). Every COMPLETE_RESULT_INTERVAL-th result is complete,
+   * which bounds how long a delta that was not stored (or one computed against a result stored before this agent ran
+   * on another node) leaves stale images in the cache.
+   */
+  private CacheResult changesSinceLastResult(CacheResult result, boolean succeeded) {
+    Map<String, CacheData> previous = lastTaggedImages
+    lastTaggedImages = result.cacheResults[Keys.Namespace.TAGGED_IMAGE.ns].collectEntries { [(it.id): it] }
+    if (previous == null || !succeeded || ++resultsSinceComplete >= COMPLETE_RESULT_INTERVAL) {
+      resultsSinceComplete = 0
+      return result
+    }
+
+    Collection<CacheData> changedTags = lastTaggedImages.values().findAll { previous[it.id]?.attributes != it.attributes }
+    Collection<String> deletedTagKeys = previous.keySet().findAll { !lastTaggedImages.containsKey(it) }
+    Set<String> changedTagKeys = changedTags*.id as Set
+    Collection<CacheData> changedImageIds = result.cacheResults[Keys.Namespace.IMAGE_ID.ns].findAll {
+      changedTagKeys.contains(it.attributes.tagKey)
+    }
+
+    log.info("Caching ${changedTags.size()} changed and evicting ${deletedTagKeys.size()} deleted tagged images in ${agentType}")
+    new DefaultCacheResult([
+      (Keys.Namespace.TAGGED_IMAGE.ns): changedTags,
+      (Keys.Namespace.IMAGE_ID.ns): changedImageIds,
+    ], [
+      (Keys.Namespace.TAGGED_IMAGE.ns): deletedTagKeys,
+      (Keys.Namespace.IMAGE_ID.ns): deletedTagKeys.findResults { imageIdKey(it) },
+    ], false)
+  }
+
+  /*
+   * Repositories used to be sharded between agents of type "<account>/DockerRegistryImageCachingAgent[k/N]". What
+   * those agents cached is owned by agent types that no longer run, so it is never evicted as tags are deleted: the
+   * first result of this agent evicts every tagged image of the account (and its image id) that it did not cache.
+   */
+  private Map<String, Collection<String>> legacyEvictions(ProviderCache providerCache, CacheResult result) {
+    Set<String> cachedTagKeys = result.cacheResults[Keys.Namespace.TAGGED_IMAGE.ns]*.id as Set
+    Collection<String> staleTagKeys = providerCache.filterIdentifiers(Keys.Namespace.TAGGED_IMAGE.ns, Keys.getTaggedImageKey(accountName, '*', '*'))
+      .findAll { !cachedTagKeys.contains(it) }
+    Collection<String> staleImageIdKeys = staleTagKeys.findResults { imageIdKey(it) }
+
+    log.info("Evicting ${staleTagKeys.size()} tagged images in ${agentType} not cached by it")
+    [
+      (Keys.Namespace.TAGGED_IMAGE.ns): staleTagKeys,
+      (Keys.Namespace.IMAGE_ID.ns): staleImageIdKeys,
+    ]
+  }
 
-    buildCacheResult(tags)
+  private String imageIdKey(String tagKey) {
+    Map<String, String> parts = Keys.parse(tagKey)
+    parts ? Keys.getImageIdKey(DockerRegistryProviderUtils.imageId(registry, parts.repository, parts.tag)) : null
   }
 
   @Override
   String getAgentType() {
-    "${accountName}/${DockerRegistryImageCachingAgent.simpleName}[${index + 1}/$threadCount]"
+    // A single agent lists all repositories of an account; the suffix is kept from when repositories were sharded between agents.
+    "${accountName}/${DockerRegistryImageCachingAgent.simpleName}[1/1]"
   }
 
   @Override
@@ -80,21 +167,21 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware {
     DockerRegistryProvider.PROVIDER_NAME
   }
 
-  private Map<String, Set<String>> loadTags() {
-    credentials.repositories.findAll { it ->
-      threadCount == 1 || (it.hashCode() % threadCount).abs() == index
-    }.collectEntries {
-      if(credentials.skip?.contains(it)) {
-          return [:]
-      }
-      DockerRegistryTags tags = null
-      try {
-        tags = credentials.client.getTags(it)
-      } catch (e) {
-        log.error("Could not load tags for ${it}")
+  private DockerRegistryTagListing loadTags() {
+    def repositories = credentials.repositories.findAll { !credentials.skip?.contains(it) }
+    DockerRegistryTagListing listing = credentials.client.getTags(repositories)
+
+    listing.failures.each { repository, e ->
+      log.error("Could not load tags for ${repository}")
+    }
+    listing.latencyMs.each { repository, latencyMs ->
+      metricsRegistry.timer(tagLatencyId).record(latencyMs, TimeUnit.MILLISECONDS)
+      if (latencyMs > SLOW_TAG_LISTING_MILLIS) {
+        log.warn("Listing the tags of ${repository} in ${agentType} took ${latencyMs}ms")
       }
-      tags?.tags && tags?.name ? [(tags.name): tags.tags] : [:]
     }
+
+    listing
   }
 
   @Override
@@ -102,7 +189,7 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware {
     return accountName
   }
 
-  private CacheResult buildCacheResult(Map<String, Set<String>> tagMap) {
+  private CacheResult buildCacheResult(Map<String, Set<String>> tagMap, DockerRegistryDigests digests) {
     log.info("Describing items in ${agentType}")
 
     Map<String, DefaultCacheDataBuilder> cachedTags = DefaultCacheDataBuilder.defaultCacheDataBuilderMap()
@@ -115,9 +202,8 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware {
         def digest = null
 
         if (credentials.trackDigests) {
-          try {
-            digest = credentials.client.getDigest(repository, tag)
-          } catch (Exception e) {
+          Exception e = digests.getFailure(repository, tag)
+          if (e) {
             if (e instanceof RetrofitError && ((RetrofitError) e).response?.status == 404) {
               // Indicates inconsistency in registry, or deletion between call for all tags and manifest retrieval.
               // In either case, we need to trust that this tag no longer exists.
@@ -129,6 +215,7 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware {
               return
             }
           }
+          digest = digests.getDigest(repository, tag)
         }
 
         cachedTags[tagKey].with {
@@ -154,4 +241,15 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware {
       (Keys.Namespace.IMAGE_ID.ns): cachedIds.values().collect({ builder -> builder.build() }),
     ])
   }
+
+  private DockerRegistryDigests loadDigests(Map<String, Set<String>> tagMap) {
+    long startTime = System.nanoTime()
+    DockerRegistryDigests digests = credentials.client.getDigests(tagMap)
+    metricsRegistry.timer(digestDurationId).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS)
+    metricsRegistry.counter(digestRequestsId.withTag('result', 'changed')).increment(digests.changed)
+    metricsRegistry.counter(digestRequestsId.withTag('result', 'unchanged')).increment(digests.unchanged)
+    metricsRegistry.counter(digestRequestsId.withTag('result', 'failed')).increment(digests.failed)
+    log.info("Looked up ${digests.changed + digests.unchanged + digests.failed} digests in ${agentType}, ${digests.unchanged} unchanged")
+    digests
+  }
 }
@@ -71,7 +71,7 @@ class DockerRegistryCredentialsInitializer implements CredentialsInitializerSync
           managedAccount.address, managedAccount.username,
           managedAccount.password, managedAccount.passwordFile, managedAccount.email,
           managedAccount.cacheThreads, managedAccount.clientTimeoutMillis,
-          managedAccount.paginateSize, managedAccount.trackDigests,
+          managedAccount.paginateSize, managedAccount.trackDigests, managedAccount.digestThreads,
           managedAccount.repositories, managedAccount.skip)
 
         accountCredentialsRepository.save(managedAccount.name, dockerRegistryAccount)
@@ -83,7 +83,7 @@ class DockerRegistryCredentialsInitializer implements CredentialsInitializerSync
     ProviderUtils.unscheduleAndDeregisterAgents(namesOfDeletedAccounts, catsModule)
 
     if (accountsToAdd && catsModule) {
-      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers)
+      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers, catsModule)
     }
 
     accountCredentialsRepository.all.findAll {
@@ -30,15 +30,15 @@ import java.util.concurrent.TimeUnit
 class DockerRegistryNamedAccountCredentials implements AccountCredentials<DockerRegistryCredentials> {
   DockerRegistryNamedAccountCredentials(String accountName, String environment, String accountType,
                                                String address, String username, String password, String passwordFile, String email,
-                                               int cacheThreads, long clientTimeoutMillis, int paginateSize, boolean trackDigests,
+                                               int cacheThreads, long clientTimeoutMillis, int paginateSize, boolean trackDigests, int digestThreads,
                                                List<String> repositories, List<String> skip) {
-    this(accountName, environment, accountType, address, username, password, passwordFile, email, repositories, cacheThreads, clientTimeoutMillis, paginateSize, trackDigests, null, skip)
+    this(accountName, environment, accountType, address, username, password, passwordFile, email, repositories, cacheThreads, clientTimeoutMillis, paginateSize, trackDigests, digestThreads, null, skip)
   }
 
   DockerRegistryNamedAccountCredentials(String accountName, String environment, String accountType,
                                                String address, String username, String password, String passwordFile, String email,
                                                List<String> repositories, int cacheThreads, long clientTimeoutMillis,
-                                               int paginateSize, boolean trackDigests, List<String> requiredGroupMembership, List<String> skip) {
+                                               int paginateSize, boolean trackDigests, int digestThreads, List<String> requiredGroupMembership, List<String> skip) {
     if (!accountName) {
       throw new IllegalArgumentException("Docker Registry account must be provided with a name.")
     }
@@ -48,6 +48,7 @@ class DockerRegistryNamedAccountCredentials implements AccountCredentials<Docker
     this.cacheThreads = cacheThreads ?: 1
     this.paginateSize = paginateSize ?: 100
     this.clientTimeoutMillis = clientTimeoutMillis ?: TimeUnit.MINUTES.toMillis(1)
+    this.digestThreads = digestThreads ?: DockerRegistryClient.DEFAULT_DIGEST_THREADS
 
     if (!address) {
       throw new IllegalArgumentException("Docker Registry account $accountName must provide an endpoint address.");
@@ -115,7 +116,7 @@ class DockerRegistryNamedAccountCredentials implements AccountCredentials<Docker
 
   private DockerRegistryCredentials buildCredentials(List<String> repositories) {
     try {
-      DockerRegistryClient client = new DockerRegistryClient(address, email, username, password, clientTimeoutMillis, paginateSize)
+      DockerRegistryClient client = new DockerRegistryClient(address, email, username, password, clientTimeoutMillis, paginateSize, cacheThreads, digestThreads)
       return new DockerRegistryCredentials(client, repositories, trackDigests, skip)
     } catch (RetrofitError e) {
       if (e.response?.status == 404) {
@@ -139,6 +140,7 @@ class DockerRegistryNamedAccountCredentials implements AccountCredentials<Docker
   final int cacheThreads
   final long clientTimeoutMillis
   final int paginateSize
+  final int digestThreads
   @JsonIgnore
   final DockerRegistryCredentials credentials
   final List<String> requiredGroupMembership
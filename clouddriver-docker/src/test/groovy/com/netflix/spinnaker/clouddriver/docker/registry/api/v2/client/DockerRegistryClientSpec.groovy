@@ -16,24 +16,29 @@
 
 package com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client
 
+import retrofit.RetrofitError
+import retrofit.client.Header
+import retrofit.client.Response
+import retrofit.mime.TypedByteArray
 import spock.lang.Shared
 import spock.lang.Specification
 
 import java.util.concurrent.TimeUnit
 
 /*
- * These tests all communicate with dockerhub (index.docker.io), and will either fail
- * with an exception indicating a network or HTTP error, or will fail to load data
- * from dockerhub.
+ * These tests (other than the tag pagination and digest lookup, which stub the registry) all communicate with
+ * dockerhub (index.docker.io), and will either fail with an exception indicating a network
+ * or HTTP error, or will fail to load data from dockerhub.
  */
 class DockerRegistryClientSpec extends Specification {
   private static final REPOSITORY1 = "library/ubuntu"
+  private static final REPOSITORY2 = "library/busybox"
 
   @Shared
   DockerRegistryClient client
 
   def setupSpec() {
-    client = new DockerRegistryClient("https://index.docker.io", "", "", "", TimeUnit.MINUTES.toMillis(1), 100)
+    client = new DockerRegistryClient("https://index.docker.io", "", "", "", TimeUnit.MINUTES.toMillis(1), 100, 2, DockerRegistryClient.DEFAULT_DIGEST_THREADS)
   }
 
   void "DockerRegistryClient should request a real set of tags."() {
@@ -45,6 +50,66 @@ class DockerRegistryClientSpec extends Specification {
       result.tags.size() > 0
   }
 
+  void "DockerRegistryClient should list the tags of several repositories at once."() {
+    when:
+      DockerRegistryTagListing result = client.getTags([REPOSITORY1, REPOSITORY2])
+
+    then:
+      result.failures.isEmpty()
+      result.tags[REPOSITORY1].tags.size() > 0
+      result.tags[REPOSITORY2].tags.size() > 0
+      result.latencyMs.keySet() == [REPOSITORY1, REPOSITORY2] as Set
+  }
+
+  void "DockerRegistryClient should follow the Link header of each page of tags."() {
+    setup:
+      def registryService = Mock(DockerRegistryClient.DockerRegistryService)
+      def pagingClient = new DockerRegistryClient("https://registry.example.com", "", "", "", TimeUnit.MINUTES.toMillis(1), 100)
+      pagingClient.registryService = registryService
+
+    when:
+      DockerRegistryTags result = pagingClient.getTags(REPOSITORY1)
+
+    then:
+      1 * registryService.getTags(REPOSITORY1, _, _) >> tags(["1.0", "2.0"], "/v2/${REPOSITORY1}/tags/list?n=2&last=2.0")
+      1 * registryService.get("/v2/${REPOSITORY1}/tags/list?n=2&last=2.0", _, _) >> tags(["3.0", "4.0"], "/v2/${REPOSITORY1}/tags/list?n=2&last=4.0")
+      1 * registryService.get("/v2/${REPOSITORY1}/tags/list?n=2&last=4.0", _, _) >> tags(["5.0"], null)
+      0 * registryService._
+      result.name == REPOSITORY1
+      result.tags == ["1.0", "2.0", "3.0", "4.0", "5.0"]
+  }
+
+  void "DockerRegistryClient should look up digests with HEAD, and reuse the digests of unchanged manifests."() {
+    setup:
+      def registryService = Mock(DockerRegistryClient.DockerRegistryService)
+      def digestClient = new DockerRegistryClient("https://registry.example.com", "", "", "", TimeUnit.MINUTES.toMillis(1), 100)
+      digestClient.registryService = registryService
+
+    when:
+      DockerRegistryDigests first = digestClient.getDigests([(REPOSITORY1): ["1.0", "2.0"]])
+
+    then:
+      1 * registryService.headManifest(REPOSITORY1, "1.0", null, _, _) >> manifest("sha256:1", '"e1"')
+      1 * registryService.headManifest(REPOSITORY1, "2.0", null, _, _) >> manifest("sha256:2", '"e2"')
+      0 * registryService._
+      first.changed == 2
+      first.unchanged == 0
+      first.failed == 0
+
+    when:
+      DockerRegistryDigests second = digestClient.getDigests([(REPOSITORY1): ["1.0", "2.0"]])
+
+    then:
+      1 * registryService.headManifest(REPOSITORY1, "1.0", '"e1"', _, _) >> { throw notModified() }
+      1 * registryService.headManifest(REPOSITORY1, "2.0", '"e2"', _, _) >> manifest("sha256:3", '"e3"')
+      0 * registryService._
+      second.unchanged == 1
+      second.changed == 1
+      second.failed == 0
+      second.getDigest(REPOSITORY1, "1.0") == "sha256:1"
+      second.getDigest(REPOSITORY1, "2.0") == "sha256:3"
+  }
+
   void "DockerRegistryClient should validate that it is pointing at a v2 endpoint."() {
     when:
       // Can only fail due to an exception thrown here.
@@ -53,4 +118,19 @@ class DockerRegistryClientSpec extends Specification {
     then:
       true
   }
+
+  private static Response tags(List<String> tags, String next) {
+    String body = """{"name": "${REPOSITORY1}", "tags": [${tags.collect { "\"$it\"" }.join(", ")}]}"""
+    List<Header> headers = next ? [new Header("Link", "<${next}>; rel=\"next\"")] : []
+    new Response("https://registry.example.com", 200, "OK", headers, new TypedByteArray("application/json", body.bytes))
+  }
+
+  private static Response manifest(String digest, String etag) {
+    new Response("https://registry.example.com", 200, "OK", [new Header("Docker-Content-Digest", digest), new Header("ETag", etag)], null)
+  }
+
+  private static RetrofitError notModified() {
+    String url = "https://registry.example.com"
+    RetrofitError.httpError(url, new Response(url, 304, "Not Modified", [], null), null, null)
+  }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.docker.registry.provider.agent
+
+import com.netflix.spectator.api.DefaultRegistry
+import com.netflix.spinnaker.cats.agent.CacheResult
+import com.netflix.spinnaker.cats.provider.ProviderCache
+import com.netflix.spinnaker.clouddriver.docker.registry.DockerRegistryCloudProvider
+import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client.DockerRegistryClient
+import com.netflix.spinnaker.clouddriver.docker.registry.cache.Keys
+import com.netflix.spinnaker.clouddriver.docker.registry.security.DockerRegistryCredentials
+import retrofit.client.Response
+import retrofit.mime.TypedByteArray
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class DockerRegistryImageCachingAgentSpec extends Specification {
+  private static final ACCOUNT = "docker"
+  private static final REGISTRY = "registry.example.com"
+  private static final REPOSITORY = "library/ubuntu"
+
+  DockerRegistryClient.DockerRegistryService registryService = Mock(DockerRegistryClient.DockerRegistryService)
+  ProviderCache providerCache = Mock(ProviderCache)
+  DockerRegistryImageCachingAgent agent
+
+  def setup() {
+    def client = new DockerRegistryClient("https://${REGISTRY}", "", "", "", TimeUnit.MINUTES.toMillis(1), 100)
+    client.registryService = registryService
+    def credentials = new DockerRegistryCredentials(client, [REPOSITORY], false, [])
+    agent = new DockerRegistryImageCachingAgent(new DockerRegistryCloudProvider(), ACCOUNT, credentials, REGISTRY, new DefaultRegistry())
+  }
+
+  void "should evict the tagged images of the account it did not cache in its first result only"() {
+    setup:
+      def cachedTagKey = Keys.getTaggedImageKey(ACCOUNT, REPOSITORY, "1.0")
+      def staleTagKey = Keys.getTaggedImageKey(ACCOUNT, "library/legacy", "2.0")
+
+    when:
+      CacheResult first = agent.loadData(providerCache)
+
+    then:
+      1 * registryService.getTags(REPOSITORY, _, _) >> tags(["1.0"])
+      1 * providerCache.filterIdentifiers(Keys.Namespace.TAGGED_IMAGE.ns, Keys.getTaggedImageKey(ACCOUNT, '*', '*')) >> [cachedTagKey, staleTagKey]
+      first.complete
+      first.cacheResults[Keys.Namespace.TAGGED_IMAGE.ns]*.id == [cachedTagKey]
+      first.evictions[Keys.Namespace.TAGGED_IMAGE.ns] == [staleTagKey]
+      first.evictions[Keys.Namespace.IMAGE_ID.ns] == [Keys.getImageIdKey("${REGISTRY}/library/legacy:2.0")]
+
+    when:
+      CacheResult second = agent.loadData(providerCache)
+
+    then:
+      1 * registryService.getTags(REPOSITORY, _, _) >> tags(["1.0"])
+      0 * providerCache._
+      !second.complete
+      second.cacheResults[Keys.Namespace.TAGGED_IMAGE.ns].isEmpty()
+      second.evictions[Keys.Namespace.TAGGED_IMAGE.ns].isEmpty()
+  }
+
+  void "should return the tagged images added and deleted since its last result, and a complete result periodically"() {
+    setup:
+      providerCache.filterIdentifiers(_, _) >> []
+      registryService.getTags(REPOSITORY, _, _) >>> [tags(["1.0", "2.0"]), tags(["2.0", "3.0"])] >> tags(["2.0", "3.0"])
+      agent.loadData(providerCache)
+
+    when:
+      CacheResult delta = agent.loadData(providerCache)
+
+    then:
+      !delta.complete
+      delta.cacheResults[Keys.Namespace.TAGGED_IMAGE.ns]*.id == [Keys.getTaggedImageKey(ACCOUNT, REPOSITORY, "3.0")]
+      delta.cacheResults[Keys.Namespace.IMAGE_ID.ns]*.id == [Keys.getImageIdKey("${REGISTRY}/${REPOSITORY}:3.0")]
+      delta.evictions[Keys.Namespace.TAGGED_IMAGE.ns] == [Keys.getTaggedImageKey(ACCOUNT, REPOSITORY, "1.0")]
+      delta.evictions[Keys.Namespace.IMAGE_ID.ns] == [Keys.getImageIdKey("${REGISTRY}/${REPOSITORY}:1.0")]
+
+    when:
+      List<CacheResult> results = (2..DockerRegistryImageCachingAgent.COMPLETE_RESULT_INTERVAL).collect { agent.loadData(providerCache) }
+
+    then:
+      results*.complete == [false] * (DockerRegistryImageCachingAgent.COMPLETE_RESULT_INTERVAL - 2) + [true]
+      results.last().cacheResults[Keys.Namespace.TAGGED_IMAGE.ns].size() == 2
+  }
+
+  void "should return a complete result when the tags of a repository could not be listed"() {
+    setup:
+      providerCache.filterIdentifiers(_, _) >> []
+      registryService.getTags(REPOSITORY, _, _) >> tags(["1.0"]) >> { throw new IllegalStateException("unavailable") }
+      agent.loadData(providerCache)
+
+    when:
+      CacheResult result = agent.loadData(providerCache)
+
+    then:
+      result.complete
+      result.cacheResults[Keys.Namespace.TAGGED_IMAGE.ns].isEmpty()
+  }
+
+  private static Response tags(List<String> tags) {
+    String body = """{"name": "${REPOSITORY}", "tags": [${tags.collect { "\"$it\"" }.join(", ")}]}"""
+    new Response("https://${REGISTRY}", 200, "OK", [], new TypedByteArray("application/json", body.bytes))
+  }
+}
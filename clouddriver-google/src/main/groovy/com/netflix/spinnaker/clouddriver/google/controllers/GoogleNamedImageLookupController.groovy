@@ -17,7 +17,7 @@
 package com.netflix.spinnaker.clouddriver.google.controllers
 
 import com.google.api.services.compute.model.Image
-import com.netflix.spinnaker.cats.mem.InMemoryCache
+import com.netflix.spinnaker.cats.cache.Glob
 import com.netflix.spinnaker.clouddriver.security.AccountCredentialsProvider
 import groovy.util.logging.Slf4j
 import org.springframework.beans.factory.annotation.Autowired
@@ -63,7 +63,7 @@ class GoogleNamedImageLookupController {
       glob = "*${glob}*"
     }
 
-    def pattern = new InMemoryCache.Glob(glob).toPattern()
+    def pattern = new Glob(glob).toPattern()
 
     return results.findAll { pattern.matcher(it.imageName).matches() }
   }
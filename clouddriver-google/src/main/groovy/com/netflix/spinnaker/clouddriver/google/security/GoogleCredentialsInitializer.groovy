@@ -97,7 +97,7 @@ class GoogleCredentialsInitializer implements CredentialsInitializerSynchronizab
     ProviderUtils.unscheduleAndDeregisterAgents(namesOfDeletedAccounts, catsModule)
 
     if (accountsToAdd && catsModule) {
-      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers)
+      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers, catsModule)
     }
 
     accountCredentialsRepository.all.findAll {
@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.kubernetes.api
 
 import com.netflix.spinnaker.clouddriver.kubernetes.deploy.KubernetesUtil
 import com.netflix.spinnaker.clouddriver.kubernetes.deploy.exception.KubernetesOperationException
+import groovy.transform.PackageScope
 import groovy.util.logging.Slf4j
 import io.fabric8.kubernetes.api.model.*
 import io.fabric8.kubernetes.api.model.extensions.HorizontalPodAutoscaler
@@ -28,6 +29,7 @@ import io.fabric8.kubernetes.client.DefaultKubernetesClient
 import io.fabric8.kubernetes.client.KubernetesClient
 import io.fabric8.kubernetes.client.KubernetesClientException
 
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 
 @Slf4j
@@ -38,15 +40,47 @@ class KubernetesApiAdaptor {
   static final int RETRY_COUNT = 20
   static final long RETRY_MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(10)
   static final long RETRY_INITIAL_WAIT_MILLIS = 100
+  static final long DEFAULT_RESYNC_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(5)
   final KubernetesClient client
 
+  // Whether caching agents read from watch fed mirrors of each namespace rather than listing resources every cycle.
+  final boolean watchResources
+  final long resyncPeriodMillis
+  private final Map<String, KubernetesNamespaceMirror> namespaceMirrors = new ConcurrentHashMap<>()
+  private boolean namespaceMirrorsClosed = false
+
   KubernetesApiAdaptor(String account, io.fabric8.kubernetes.client.Config config) {
+    this(account, config, false, DEFAULT_RESYNC_PERIOD_MILLIS)
+  }
+
+  KubernetesApiAdaptor(String account, io.fabric8.kubernetes.client.Config config, boolean watchResources, long resyncPeriodMillis) {
     if (!config) {
       throw new IllegalArgumentException("Config may not be null.")
     }
     this.config = config
     this.account = account
     this.client = new DefaultKubernetesClient(this.config)
+    this.watchResources = watchResources
+    this.resyncPeriodMillis = resyncPeriodMillis ?: DEFAULT_RESYNC_PERIOD_MILLIS
+  }
+
+  /*
+   * The watch fed mirror of the resources the caching agents read in namespace, created (and listed) on first use.
+   */
+  synchronized KubernetesNamespaceMirror getNamespaceMirror(String namespace) {
+    if (namespaceMirrorsClosed) {
+      throw new IllegalStateException("The namespace mirrors of $account have been closed")
+    }
+    namespaceMirrors.computeIfAbsent(namespace, { new KubernetesNamespaceMirror(this, namespace, resyncPeriodMillis) })
+  }
+
+  /*
+   * Stops the watches of the namespace mirrors, once this account is no longer cached (or clouddriver shuts down).
+   */
+  synchronized void closeNamespaceMirrors() {
+    namespaceMirrorsClosed = true
+    namespaceMirrors.values()*.close()
+    namespaceMirrors.clear()
   }
 
   KubernetesOperationException formatException(String operation, String namespace, KubernetesClientException e) {
@@ -82,7 +116,8 @@ class KubernetesApiAdaptor {
   /*
    * Atomically create a new client, and pass it to the given doOperation closure to operate against the kubernetes API
    */
-  private <T> T exceptionWrapper(String operationMessage, String namespace, Closure<T> doOperation) {
+  @PackageScope
+  <T> T exceptionWrapper(String operationMessage, String namespace, Closure<T> doOperation) {
     T result = null
     Exception failure
     try {
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.api
+
+import io.fabric8.kubernetes.api.model.Event
+import io.fabric8.kubernetes.api.model.Pod
+import io.fabric8.kubernetes.api.model.ReplicationController
+import io.fabric8.kubernetes.api.model.extensions.HorizontalPodAutoscaler
+import io.fabric8.kubernetes.api.model.extensions.ReplicaSet
+import io.fabric8.kubernetes.client.KubernetesClient
+import io.fabric8.kubernetes.client.Watcher
+
+/*
+ * Watch fed mirrors of the resources the caching agents read in a namespace. Each read returns the same data as the
+ * corresponding KubernetesApiAdaptor call, from the mirror rather than the API server, and fails the same way: with a
+ * KubernetesOperationException if the API server can't be listed or watched.
+ */
+class KubernetesNamespaceMirror {
+  final String namespace
+
+  private final KubernetesResourceMirror<ReplicationController> replicationControllers
+  private final KubernetesResourceMirror<ReplicaSet> replicaSets
+  private final KubernetesResourceMirror<Pod> pods
+  private final KubernetesResourceMirror<Event> events
+  private final KubernetesResourceMirror<HorizontalPodAutoscaler> autoscalers
+
+  KubernetesNamespaceMirror(KubernetesApiAdaptor apiAdaptor, String namespace, long resyncPeriodMillis) {
+    this.namespace = namespace
+    KubernetesClient client = apiAdaptor.client
+    this.replicationControllers = new KubernetesResourceMirror<>("ReplicationController", resyncPeriodMillis, {
+      apiAdaptor.exceptionWrapper("List Replication Controllers", namespace) {
+        client.replicationControllers().inNamespace(namespace).list()
+      }
+    }, { String resourceVersion, Watcher watcher ->
+      apiAdaptor.exceptionWrapper("Watch Replication Controllers", namespace) {
+        client.replicationControllers().inNamespace(namespace).withResourceVersion(resourceVersion).watch(watcher)
+      }
+    })
+    this.replicaSets = new KubernetesResourceMirror<>("ReplicaSet", resyncPeriodMillis, {
+      apiAdaptor.exceptionWrapper("List Replica Sets", namespace) {
+        client.extensions().replicaSets().inNamespace(namespace).list()
+      }
+    }, { String resourceVersion, Watcher watcher ->
+      apiAdaptor.exceptionWrapper("Watch Replica Sets", namespace) {
+        client.extensions().replicaSets().inNamespace(namespace).withResourceVersion(resourceVersion).watch(watcher)
+      }
+    })
+    this.pods = new KubernetesResourceMirror<>("Pod", resyncPeriodMillis, {
+      apiAdaptor.exceptionWrapper("List Pods", namespace) {
+        client.pods().inNamespace(namespace).list()
+      }
+    }, { String resourceVersion, Watcher watcher ->
+      apiAdaptor.exceptionWrapper("Watch Pods", namespace) {
+        client.pods().inNamespace(namespace).withResourceVersion(resourceVersion).watch(watcher)
+      }
+    })
+    this.events = new KubernetesResourceMirror<>("Event", resyncPeriodMillis, {
+      apiAdaptor.exceptionWrapper("List Events", namespace) {
+        client.events().inNamespace(namespace).list()
+      }
+    }, { String resourceVersion, Watcher watcher ->
+      apiAdaptor.exceptionWrapper("Watch Events", namespace) {
+        client.events().inNamespace(namespace).withResourceVersion(resourceVersion).watch(watcher)
+      }
+    })
+    this.autoscalers = new KubernetesResourceMirror<>("HorizontalPodAutoscaler", resyncPeriodMillis, {
+      apiAdaptor.exceptionWrapper("List Autoscalers", namespace) {
+        client.extensions().horizontalPodAutoscalers().inNamespace(namespace).list()
+      }
+    }, { String resourceVersion, Watcher watcher ->
+      apiAdaptor.exceptionWrapper("Watch Autoscalers", namespace) {
+        client.extensions().horizontalPodAutoscalers().inNamespace(namespace).withResourceVersion(resourceVersion).watch(watcher)
+      }
+    })
+  }
+
+  List<ReplicationController> getReplicationControllers() {
+    replicationControllers.resources
+  }
+
+  List<ReplicaSet> getReplicaSets() {
+    replicaSets.resources
+  }
+
+  List<Pod> getPods() {
+    pods.resources
+  }
+
+  List<Pod> getPods(Map<String, String> labels) {
+    pods.resources.findAll { Pod pod ->
+      labels.every { String key, String value -> pod.metadata.labels?.get(key) == value }
+    }
+  }
+
+  Map<String, List<Event>> getEvents(String type) {
+    def eventMap = [:].withDefault { _ -> [] }
+    // in the order they last occurred, as the API server lists them
+    events.resources.sort { Event event -> event.lastTimestamp }.each { Event event ->
+      if (event.involvedObject.kind == type) {
+        eventMap[event.involvedObject.name] += [event]
+      }
+    }
+    return eventMap
+  }
+
+  Map<String, HorizontalPodAutoscaler> getAutoscalers(String kind) {
+    autoscalers.resources.collectEntries { def autoscaler ->
+      autoscaler.spec.scaleRef.kind == kind ? [(autoscaler.metadata.name): autoscaler] : [:]
+    }
+  }
+
+  void close() {
+    [replicationControllers, replicaSets, pods, events, autoscalers]*.close()
+  }
+}
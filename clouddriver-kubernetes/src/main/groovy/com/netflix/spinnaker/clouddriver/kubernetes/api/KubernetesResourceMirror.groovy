@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.api
+
+import groovy.util.logging.Slf4j
+import io.fabric8.kubernetes.api.model.HasMetadata
+import io.fabric8.kubernetes.api.model.KubernetesResourceList
+import io.fabric8.kubernetes.client.KubernetesClientException
+import io.fabric8.kubernetes.client.Watch
+import io.fabric8.kubernetes.client.Watcher
+
+import java.util.concurrent.ConcurrentHashMap
+
+/*
+ * An in-process copy of the resources of one kind in a namespace, kept up to date by a watch.
+ *
+ * The first read lists the resources and watches them from the resourceVersion of the list, applying each change the
+ * watch delivers to the copy, so later reads don't go to the API server. The copy is listed again on the next read
+ * once the watch ends (for any reason, including an expired resourceVersion) or fails, and every resyncPeriodMillis,
+ * so that a missed change can't leave it wrong for long. The watch is not resumed instead: a read right after resuming
+ * would return the copy before the watch had replayed the changes made while it was down.
+ */
+@Slf4j
+class KubernetesResourceMirror<T extends HasMetadata> {
+  final String kind
+  final long resyncPeriodMillis
+
+  // () -> KubernetesResourceList of the resources
+  private final Closure<KubernetesResourceList> list
+  // (String resourceVersion, Watcher<T> watcher) -> Watch of the resources changed since resourceVersion
+  private final Closure<Watch> watch
+
+  private volatile Map<String, T> resources = new ConcurrentHashMap<>()
+  private volatile boolean watching = false
+  private volatile boolean closed = false
+  private volatile long listedAt = 0
+  private Watch activeWatch
+  // identifies the active watch, so changes delivered by a watch that has been replaced are ignored
+  private int generation = 0
+
+  KubernetesResourceMirror(String kind, long resyncPeriodMillis, Closure<KubernetesResourceList> list, Closure<Watch> watch) {
+    this.kind = kind
+    this.resyncPeriodMillis = resyncPeriodMillis
+    this.list = list
+    this.watch = watch
+  }
+
+  List<T> getResources() {
+    if (!watching || isStale()) {
+      sync()
+    }
+    return new ArrayList<T>(resources.values())
+  }
+
+  /*
+   * Stops the watch for good; reading the mirror after this fails rather than starting another watch.
+   */
+  synchronized void close() {
+    closed = true
+    stopWatch()
+  }
+
+  private void stopWatch() {
+    generation++
+    watching = false
+    activeWatch?.close()
+    activeWatch = null
+  }
+
+  private boolean isStale() {
+    System.currentTimeMillis() - listedAt >= resyncPeriodMillis
+  }
+
+  private synchronized void sync() {
+    if (closed) {
+      throw new IllegalStateException("The mirror of $kind resources has been closed")
+    }
+    if (watching && !isStale()) {
+      // another reader has synced this mirror
+      return
+    }
+    stopWatch()
+
+    KubernetesResourceList listed = list()
+    Map<String, T> listedResources = new ConcurrentHashMap<>()
+    listed.items.each { T resource ->
+      listedResources.put(resource.metadata.name, resource)
+    }
+    resources = listedResources
+    listedAt = System.currentTimeMillis()
+    log.info("Listed ${listedResources.size()} $kind resources, watching from ${listed.metadata.resourceVersion}")
+    activeWatch = watch(listed.metadata.resourceVersion, new MirrorWatcher(generation))
+    watching = true
+  }
+
+  private synchronized void changed(int watchGeneration, Watcher.Action action, T resource) {
+    if (watchGeneration != generation) {
+      return
+    }
+
+    switch (action) {
+      case Watcher.Action.ADDED:
+      case Watcher.Action.MODIFIED:
+        resources.put(resource.metadata.name, resource)
+        break
+      case Watcher.Action.DELETED:
+        resources.remove(resource.metadata.name)
+        break
+      default:
+        // the watch can't be trusted to have delivered every change, list the resources on the next read
+        watching = false
+    }
+  }
+
+  private synchronized void watchClosed(int watchGeneration, KubernetesClientException cause) {
+    if (watchGeneration != generation) {
+      return
+    }
+
+    watching = false
+    if (cause) {
+      log.warn("Watch of $kind resources failed, they will be listed on the next read", cause)
+    }
+  }
+
+  // watches the resources as HasMetadata, since an inner class can't refer to the type parameter of this one
+  private class MirrorWatcher implements Watcher<HasMetadata> {
+    private final int watchGeneration
+
+    MirrorWatcher(int watchGeneration) {
+      this.watchGeneration = watchGeneration
+    }
+
+    @Override
+    void eventReceived(Watcher.Action action, HasMetadata resource) {
+      changed(watchGeneration, action, (T) resource)
+    }
+
+    @Override
+    void onClose(KubernetesClientException cause) {
+      watchClosed(watchGeneration, cause)
+    }
+  }
+}
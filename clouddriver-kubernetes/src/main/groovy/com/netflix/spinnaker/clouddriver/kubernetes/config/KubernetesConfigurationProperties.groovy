@@ -32,6 +32,10 @@ class KubernetesConfigurationProperties {
     List<String> namespaces
     List<LinkedDockerRegistryConfiguration> dockerRegistries
     List<String> requiredGroupMembership
+    // Cache from watch fed mirrors of each namespace rather than listing its resources every cycle.
+    boolean watchResources
+    // How often a watched namespace's resources are listed again in full. Default is 300 (5 minutes).
+    long resyncPeriodSeconds
   }
 
   List<ManagedAccount> accounts = []
@@ -21,6 +21,7 @@ import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.cats.agent.*
 import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider
+import com.netflix.spinnaker.clouddriver.kubernetes.api.KubernetesNamespaceMirror
 import com.netflix.spinnaker.clouddriver.kubernetes.cache.Keys
 import com.netflix.spinnaker.clouddriver.kubernetes.model.KubernetesInstance
 import com.netflix.spinnaker.clouddriver.kubernetes.provider.KubernetesProvider
@@ -73,19 +74,27 @@ class KubernetesInstanceCachingAgent implements CachingAgent, AccountAware {
   CacheResult loadData(ProviderCache providerCache) {
     log.info("Loading pods in $agentType")
 
-    def pods = credentials.apiAdaptor.getPods(namespace)
+    KubernetesNamespaceMirror mirror = getMirror()
+    def pods = mirror ? mirror.pods : credentials.apiAdaptor.getPods(namespace)
 
-    buildCacheResult(pods)
+    buildCacheResult(pods, mirror)
   }
 
-  private CacheResult buildCacheResult(List<Pod> pods) {
+  /*
+   * The watch fed mirror of this namespace to read from, or null if this account lists resources every cycle.
+   */
+  KubernetesNamespaceMirror getMirror() {
+    credentials.apiAdaptor.watchResources ? credentials.apiAdaptor.getNamespaceMirror(namespace) : null
+  }
+
+  private CacheResult buildCacheResult(List<Pod> pods, KubernetesNamespaceMirror mirror) {
     log.info("Describing items in ${agentType}")
 
     Map<String, MutableCacheData> cachedInstances = MutableCacheData.mutableCacheMap()
 
     def podEvents = [:]
     try {
-      podEvents = credentials.apiAdaptor.getEvents(namespace, "Pod")
+      podEvents = mirror ? mirror.getEvents("Pod") : credentials.apiAdaptor.getEvents(namespace, "Pod")
     } catch (Exception e) {
       log.warn "Failure fetching events for all pods in $namespace", e
     }
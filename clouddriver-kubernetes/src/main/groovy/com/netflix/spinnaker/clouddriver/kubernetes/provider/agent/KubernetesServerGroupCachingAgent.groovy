@@ -27,6 +27,7 @@ import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.clouddriver.cache.OnDemandAgent
 import com.netflix.spinnaker.clouddriver.cache.OnDemandMetricsSupport
 import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider
+import com.netflix.spinnaker.clouddriver.kubernetes.api.KubernetesNamespaceMirror
 import com.netflix.spinnaker.clouddriver.kubernetes.cache.Keys
 import com.netflix.spinnaker.clouddriver.kubernetes.deploy.KubernetesUtil
 import com.netflix.spinnaker.clouddriver.kubernetes.model.KubernetesServerGroup
@@ -34,8 +35,10 @@ import com.netflix.spinnaker.clouddriver.kubernetes.provider.KubernetesProvider
 import com.netflix.spinnaker.clouddriver.kubernetes.provider.view.MutableCacheData
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesCredentials
 import groovy.util.logging.Slf4j
+import io.fabric8.kubernetes.api.model.Event
 import io.fabric8.kubernetes.api.model.Pod
 import io.fabric8.kubernetes.api.model.ReplicationController
+import io.fabric8.kubernetes.api.model.extensions.HorizontalPodAutoscaler
 import io.fabric8.kubernetes.api.model.extensions.ReplicaSet
 
 import static com.netflix.spinnaker.cats.agent.AgentDataType.Authority.AUTHORITATIVE
@@ -124,7 +127,8 @@ class KubernetesServerGroupCachingAgent implements CachingAgent, OnDemandAgent,
     }
 
     CacheResult result = metricsSupport.transformData {
-      buildCacheResult([new ReplicaSetOrController(replicationController: replicationController, replicaSet: replicaSet)], [:], [], Long.MAX_VALUE)
+      // read the pods, events and autoscalers from the API server too, the mirror may not have seen a change just made
+      buildCacheResult([new ReplicaSetOrController(replicationController: replicationController, replicaSet: replicaSet)], [:], [], Long.MAX_VALUE, null)
     }
 
     def jsonResult = objectMapper.writeValueAsString(result.cacheResults)
@@ -193,12 +197,19 @@ class KubernetesServerGroupCachingAgent implements CachingAgent, OnDemandAgent,
     OnDemandAgent.OnDemandType.ServerGroup == type && cloudProvider == kubernetesCloudProvider.id
   }
 
-  List<ReplicationController> loadReplicationControllers() {
-    credentials.apiAdaptor.getReplicationControllers(namespace)
+  /*
+   * The watch fed mirror of this namespace to read from, or null if this account lists resources every cycle.
+   */
+  KubernetesNamespaceMirror getMirror() {
+    credentials.apiAdaptor.watchResources ? credentials.apiAdaptor.getNamespaceMirror(namespace) : null
   }
 
-  List<ReplicaSet> loadReplicaSets() {
-    credentials.apiAdaptor.getReplicaSets(namespace)
+  List<ReplicationController> loadReplicationControllers(KubernetesNamespaceMirror mirror) {
+    mirror ? mirror.replicationControllers : credentials.apiAdaptor.getReplicationControllers(namespace)
+  }
+
+  List<ReplicaSet> loadReplicaSets(KubernetesNamespaceMirror mirror) {
+    mirror ? mirror.replicaSets : credentials.apiAdaptor.getReplicaSets(namespace)
   }
 
   ReplicaSet loadReplicaSet(String name) {
@@ -209,15 +220,24 @@ class KubernetesServerGroupCachingAgent implements CachingAgent, OnDemandAgent,
     credentials.apiAdaptor.getReplicationController(namespace, name)
   }
 
-  List<Pod> loadPods(ReplicaSetOrController serverGroup) {
-    credentials.apiAdaptor.getPods(namespace, serverGroup.selector)
+  List<Pod> loadPods(ReplicaSetOrController serverGroup, KubernetesNamespaceMirror mirror) {
+    mirror ? mirror.getPods(serverGroup.selector) : credentials.apiAdaptor.getPods(namespace, serverGroup.selector)
+  }
+
+  Map<String, List<Event>> loadEvents(String type, KubernetesNamespaceMirror mirror) {
+    mirror ? mirror.getEvents(type) : credentials.apiAdaptor.getEvents(namespace, type)
+  }
+
+  Map<String, HorizontalPodAutoscaler> loadAutoscalers(String kind, KubernetesNamespaceMirror mirror) {
+    mirror ? mirror.getAutoscalers(kind) : credentials.apiAdaptor.getAutoscalers(namespace, kind)
   }
 
   @Override
   CacheResult loadData(ProviderCache providerCache) {
     Long start = System.currentTimeMillis()
-    List<ReplicationController> replicationControllerList = loadReplicationControllers()
-    List<ReplicaSet> replicaSetList = loadReplicaSets()
+    KubernetesNamespaceMirror mirror = getMirror()
+    List<ReplicationController> replicationControllerList = loadReplicationControllers(mirror)
+    List<ReplicaSet> replicaSetList = loadReplicaSets(mirror)
     List<ReplicaSetOrController> serverGroups = replicationControllerList.collect {
       new ReplicaSetOrController(replicationController: it)
     } + replicaSetList.collect {
@@ -239,7 +259,7 @@ class KubernetesServerGroupCachingAgent implements CachingAgent, OnDemandAgent,
       }
     }
 
-    def result = buildCacheResult(serverGroups, keepInOnDemand.collectEntries { [(it.id): it] }, evictFromOnDemand*.id, start)
+    def result = buildCacheResult(serverGroups, keepInOnDemand.collectEntries { [(it.id): it] }, evictFromOnDemand*.id, start, mirror)
 
     result.cacheResults[Keys.Namespace.ON_DEMAND.ns].each {
       it.attributes.processedTime = System.currentTimeMillis()
@@ -263,7 +283,10 @@ class KubernetesServerGroupCachingAgent implements CachingAgent, OnDemandAgent,
     }
   }
 
-  private CacheResult buildCacheResult(List<ReplicaSetOrController> serverGroups, Map<String, CacheData> onDemandKeep, List<String> onDemandEvict, Long start) {
+  /*
+   * Reads the pods, events and autoscalers of serverGroups from mirror, or from the API server if mirror is null.
+   */
+  private CacheResult buildCacheResult(List<ReplicaSetOrController> serverGroups, Map<String, CacheData> onDemandKeep, List<String> onDemandEvict, Long start, KubernetesNamespaceMirror mirror) {
     log.info("Describing items in ${agentType}")
 
     Map<String, MutableCacheData> cachedApplications = MutableCacheData.mutableCacheMap()
@@ -275,8 +298,8 @@ class KubernetesServerGroupCachingAgent implements CachingAgent, OnDemandAgent,
     def rcEvents = [:]
     def rsEvents = [:]
     try {
-      rcEvents = credentials.apiAdaptor.getEvents(namespace, "ReplicationController")
-      rsEvents = credentials.apiAdaptor.getEvents(namespace, "ReplicaSet")
+      rcEvents = loadEvents("ReplicationController", mirror)
+      rsEvents = loadEvents("ReplicaSet", mirror)
     } catch (Exception e) {
       log.warn "Failure fetching events for all server groups in $namespace", e
     }
@@ -284,8 +307,8 @@ class KubernetesServerGroupCachingAgent implements CachingAgent, OnDemandAgent,
     def rcAutoscalers = [:]
     def rsAutoscalers = [:]
     try {
-      rcAutoscalers = credentials.apiAdaptor.getAutoscalers(namespace, "replicationController")
-      rsAutoscalers = credentials.apiAdaptor.getAutoscalers(namespace, "replicaSet")
+      rcAutoscalers = loadAutoscalers("replicationController", mirror)
+      rsAutoscalers = loadAutoscalers("replicaSet", mirror)
     } catch (Exception e) {
       log.warn "Failure fetching autoscalers for all server groups in $namespace", e
     }
@@ -306,7 +329,7 @@ class KubernetesServerGroupCachingAgent implements CachingAgent, OnDemandAgent,
         cache(cacheResults, Keys.Namespace.INSTANCES.ns, cachedInstances)
       } else {
         def serverGroupName = serverGroup.name
-        def pods = loadPods(serverGroup)
+        def pods = loadPods(serverGroup, mirror)
         def names = Names.parseName(serverGroupName)
         def applicationName = names.app
         def clusterName = names.cluster
@@ -33,6 +33,8 @@ import org.springframework.context.annotation.DependsOn
 import org.springframework.context.annotation.Scope
 import org.springframework.stereotype.Component
 
+import javax.annotation.PreDestroy
+
 @Component
 @Configuration
 class KubernetesCredentialsInitializer implements CredentialsInitializerSynchronizable {
@@ -65,6 +67,8 @@ class KubernetesCredentialsInitializer implements CredentialsInitializerSynchron
   @Bean
   @DependsOn("dockerRegistryNamedAccountCredentials")
   List<?> synchronizeKubernetesAccounts(KubernetesConfigurationProperties kubernetesConfigurationProperties, CatsModule catsModule) {
+    // calculateAccountDeltas removes deleted accounts from the repository, so keep hold of them to close their mirrors
+    Map<String, KubernetesNamedAccountCredentials> existingAccounts = kubernetesAccounts().collectEntries { [(it.name): it] }
     def (ArrayList<KubernetesConfigurationProperties.ManagedAccount> accountsToAdd, List<String> namesOfDeletedAccounts) =
     ProviderUtils.calculateAccountDeltas(accountCredentialsRepository,
                                          KubernetesNamedAccountCredentials,
@@ -86,6 +90,8 @@ class KubernetesCredentialsInitializer implements CredentialsInitializerSynchron
           .namespaces(managedAccount.namespaces)
           .dockerRegistries(managedAccount.dockerRegistries)
           .requiredGroupMembership(managedAccount.requiredGroupMembership)
+          .watchResources(managedAccount.watchResources)
+          .resyncPeriodSeconds(managedAccount.resyncPeriodSeconds)
           .build()
 
         accountCredentialsRepository.save(managedAccount.name, kubernetesAccount)
@@ -95,11 +101,25 @@ class KubernetesCredentialsInitializer implements CredentialsInitializerSynchron
     }
 
     ProviderUtils.unscheduleAndDeregisterAgents(namesOfDeletedAccounts, catsModule)
+    namesOfDeletedAccounts.each { String name ->
+      existingAccounts[name]?.credentials?.apiAdaptor?.closeNamespaceMirrors()
+    }
 
     if (accountsToAdd && catsModule) {
-      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers)
+      ProviderUtils.synchronizeAgentProviders(appContext, providerSynchronizerTypeWrappers, catsModule)
     }
 
+    kubernetesAccounts()
+  }
+
+  @PreDestroy
+  void closeNamespaceMirrors() {
+    kubernetesAccounts().each { KubernetesNamedAccountCredentials account ->
+      account.credentials?.apiAdaptor?.closeNamespaceMirrors()
+    }
+  }
+
+  private List<KubernetesNamedAccountCredentials> kubernetesAccounts() {
     accountCredentialsRepository.all.findAll {
       it instanceof KubernetesNamedAccountCredentials
     } as List
@@ -22,6 +22,8 @@ import com.netflix.spinnaker.clouddriver.security.AccountCredentials
 import com.netflix.spinnaker.clouddriver.security.AccountCredentialsRepository
 import io.fabric8.kubernetes.client.Config
 
+import java.util.concurrent.TimeUnit
+
 public class KubernetesNamedAccountCredentials implements AccountCredentials<KubernetesCredentials> {
   final String cloudProvider = "kubernetes"
   final String name
@@ -84,6 +86,8 @@ public class KubernetesNamedAccountCredentials implements AccountCredentials<Kub
     List<String> requiredGroupMembership
     List<LinkedDockerRegistryConfiguration> dockerRegistries
     AccountCredentialsRepository accountCredentialsRepository
+    boolean watchResources
+    long resyncPeriodSeconds
 
     Builder name(String name) {
       this.name = name
@@ -150,6 +154,16 @@ public class KubernetesNamedAccountCredentials implements AccountCredentials<Kub
       return this
     }
 
+    Builder watchResources(boolean watchResources) {
+      this.watchResources = watchResources
+      return this
+    }
+
+    Builder resyncPeriodSeconds(long resyncPeriodSeconds) {
+      this.resyncPeriodSeconds = resyncPeriodSeconds
+      return this
+    }
+
     private KubernetesCredentials buildCredentials() {
       Config config = KubernetesConfigParser.parse(kubeconfigFile, context, cluster, user, namespaces)
       config.setUserAgent(userAgent)
@@ -161,7 +175,7 @@ public class KubernetesNamedAccountCredentials implements AccountCredentials<Kub
       }
 
       return new KubernetesCredentials(
-          new KubernetesApiAdaptor(name, config),
+          new KubernetesApiAdaptor(name, config, watchResources, TimeUnit.SECONDS.toMillis(resyncPeriodSeconds)),
           namespaces,
           dockerRegistries,
           accountCredentialsRepository,
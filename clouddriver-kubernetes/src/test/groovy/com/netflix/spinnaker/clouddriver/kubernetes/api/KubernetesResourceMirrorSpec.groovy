@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.api
+
+import io.fabric8.kubernetes.api.model.ListMeta
+import io.fabric8.kubernetes.api.model.ObjectMeta
+import io.fabric8.kubernetes.api.model.Pod
+import io.fabric8.kubernetes.api.model.PodList
+import io.fabric8.kubernetes.client.KubernetesClientException
+import io.fabric8.kubernetes.client.Watch
+import io.fabric8.kubernetes.client.Watcher
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class KubernetesResourceMirrorSpec extends Specification {
+  private static final long RESYNC_PERIOD_MILLIS = 60000
+
+  // the pods the next list returns, and the resourceVersion it returns them at
+  List<Pod> listedPods = [pod("a", "1")]
+  int listedVersion = 10
+
+  int lists = 0
+  List<String> watchedFrom = []
+  List<Watcher<Pod>> watchers = []
+  List<Watch> watches = []
+
+  KubernetesResourceMirror<Pod> newMirror(long resyncPeriodMillis = RESYNC_PERIOD_MILLIS) {
+    new KubernetesResourceMirror<Pod>("Pod", resyncPeriodMillis, {
+      lists++
+      new PodList(metadata: new ListMeta(resourceVersion: (listedVersion++).toString()), items: listedPods)
+    }, { String resourceVersion, Watcher<Pod> watcher ->
+      Watch watch = Mock(Watch)
+      watchedFrom << resourceVersion
+      watchers << watcher
+      watches << watch
+      watch
+    })
+  }
+
+  void "should list once, then apply the added, modified and deleted resources the watch delivers"() {
+    setup:
+      def mirror = newMirror()
+
+    when:
+      def first = mirror.resources
+
+    then:
+      names(first) == ["a"]
+      lists == 1
+      watchedFrom == ["10"]
+
+    when:
+      watchers[0].eventReceived(Watcher.Action.ADDED, pod("b", "11"))
+      watchers[0].eventReceived(Watcher.Action.MODIFIED, pod("a", "12"))
+      watchers[0].eventReceived(Watcher.Action.ADDED, pod("c", "13"))
+      watchers[0].eventReceived(Watcher.Action.DELETED, pod("b", "14"))
+      def second = mirror.resources
+
+    then:
+      names(second) == ["a", "c"]
+      second.find { it.metadata.name == "a" }.metadata.resourceVersion == "12"
+      lists == 1
+      watchedFrom == ["10"]
+  }
+
+  void "should list again on the next read after the watch delivers an error"() {
+    setup:
+      def mirror = newMirror()
+      mirror.resources
+
+    when:
+      watchers[0].eventReceived(Watcher.Action.ERROR, null)
+      listedPods = [pod("b", "20")]
+      def resources = mirror.resources
+
+    then:
+      1 * watches[0].close()
+      names(resources) == ["b"]
+      lists == 2
+      watchedFrom == ["10", "11"]
+  }
+
+  @Unroll
+  void "should list again on the next read after the watch closes #description, rather than resuming it"() {
+    setup:
+      def mirror = newMirror()
+      mirror.resources
+
+    when:
+      watchers[0].onClose(cause)
+      listedPods = [pod("b", "20")]
+      def resources = mirror.resources
+
+    then:
+      names(resources) == ["b"]
+      lists == 2
+      watchedFrom == ["10", "11"]
+
+    where:
+      description        | cause
+      "cleanly"          | null
+      "with a failure"   | new KubernetesClientException("too old resource version")
+  }
+
+  void "should ignore the changes and close of a watch that has been replaced"() {
+    setup:
+      def mirror = newMirror()
+      mirror.resources
+      watchers[0].eventReceived(Watcher.Action.ERROR, null)
+      mirror.resources
+
+    when:
+      watchers[0].eventReceived(Watcher.Action.ADDED, pod("stale", "5"))
+      watchers[0].onClose(null)
+      def resources = mirror.resources
+
+    then:
+      names(resources) == ["a"]
+      lists == 2
+      watchedFrom == ["10", "11"]
+  }
+
+  void "should list again once resyncPeriodMillis has passed since the last list"() {
+    setup:
+      def mirror = newMirror(100)
+
+    when:
+      mirror.resources
+      mirror.resources
+
+    then:
+      lists == 1
+
+    when:
+      sleep(150)
+      def resources = mirror.resources
+
+    then:
+      1 * watches[0].close()
+      names(resources) == ["a"]
+      lists == 2
+      watchedFrom == ["10", "11"]
+  }
+
+  void "should try to list again on the next read after a list fails"() {
+    setup:
+      boolean failing = true
+      def mirror = new KubernetesResourceMirror<Pod>("Pod", RESYNC_PERIOD_MILLIS, {
+        lists++
+        if (failing) {
+          throw new KubernetesClientException("unavailable")
+        }
+        new PodList(metadata: new ListMeta(resourceVersion: "10"), items: listedPods)
+      }, { String resourceVersion, Watcher<Pod> watcher ->
+        Mock(Watch)
+      })
+
+    when:
+      mirror.resources
+
+    then:
+      thrown(KubernetesClientException)
+
+    when:
+      failing = false
+      def resources = mirror.resources
+
+    then:
+      names(resources) == ["a"]
+      lists == 2
+  }
+
+  void "should stop the watch on close, and fail reads after it"() {
+    setup:
+      def mirror = newMirror()
+      mirror.resources
+
+    when:
+      mirror.close()
+
+    then:
+      1 * watches[0].close()
+
+    when:
+      mirror.resources
+
+    then:
+      thrown(IllegalStateException)
+      lists == 1
+  }
+
+  private static Pod pod(String name, String resourceVersion) {
+    new Pod(metadata: new ObjectMeta(name: name, resourceVersion: resourceVersion))
+  }
+
+  private static List<String> names(List<Pod> pods) {
+    pods*.metadata*.name.sort()
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.provider.agent
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.provider.ProviderCache
+import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider
+import com.netflix.spinnaker.clouddriver.kubernetes.api.KubernetesApiAdaptor
+import com.netflix.spinnaker.clouddriver.kubernetes.api.KubernetesNamespaceMirror
+import com.netflix.spinnaker.clouddriver.kubernetes.cache.Keys
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesCredentials
+import com.netflix.spinnaker.clouddriver.security.AccountCredentialsRepository
+import io.fabric8.kubernetes.api.model.ObjectMeta
+import io.fabric8.kubernetes.api.model.Pod
+import io.fabric8.kubernetes.api.model.PodStatus
+import spock.lang.Specification
+
+class KubernetesInstanceCachingAgentSpec extends Specification {
+  static final private String NAMESPACE = "default"
+  static final private String ACCOUNT_NAME = "account1"
+  static final private String POD = "app-cluster-v000-instance"
+
+  KubernetesInstanceCachingAgent cachingAgent
+  KubernetesApiAdaptor apiMock
+  ProviderCache providerCacheMock
+
+  def setup() {
+    apiMock = Mock(KubernetesApiAdaptor)
+    providerCacheMock = Mock(ProviderCache)
+
+    def kubernetesCredentials = new KubernetesCredentials(apiMock, [], [], Mock(AccountCredentialsRepository))
+    cachingAgent = new KubernetesInstanceCachingAgent(new KubernetesCloudProvider(), ACCOUNT_NAME, kubernetesCredentials, NAMESPACE, new ObjectMapper(), Mock(Registry))
+  }
+
+  void "Should list pods and their events when not watching resources"() {
+    setup:
+      apiMock.getWatchResources() >> false
+
+    when:
+      def result = cachingAgent.loadData(providerCacheMock)
+
+    then:
+      1 * apiMock.getPods(NAMESPACE) >> [pod()]
+      1 * apiMock.getEvents(NAMESPACE, "Pod") >> [:]
+      0 * apiMock.getNamespaceMirror(_)
+
+      result.cacheResults[Keys.Namespace.INSTANCES.ns]*.id == [Keys.getInstanceKey(ACCOUNT_NAME, NAMESPACE, POD)]
+  }
+
+  void "Should read pods and their events from the namespace mirror when watching resources"() {
+    setup:
+      def mirrorMock = Mock(KubernetesNamespaceMirror)
+      apiMock.getWatchResources() >> true
+      apiMock.getNamespaceMirror(NAMESPACE) >> mirrorMock
+
+    when:
+      def result = cachingAgent.loadData(providerCacheMock)
+
+    then:
+      1 * mirrorMock.getPods() >> [pod()]
+      1 * mirrorMock.getEvents("Pod") >> [:]
+      0 * apiMock.getPods(_)
+      0 * apiMock.getEvents(_, _)
+
+      result.cacheResults[Keys.Namespace.INSTANCES.ns]*.id == [Keys.getInstanceKey(ACCOUNT_NAME, NAMESPACE, POD)]
+  }
+
+  private static Pod pod() {
+    new Pod(metadata: new ObjectMeta(name: POD, namespace: NAMESPACE), status: new PodStatus())
+  }
+}
@@ -22,12 +22,14 @@ import com.netflix.spinnaker.cats.agent.CacheResult
 import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider
 import com.netflix.spinnaker.clouddriver.kubernetes.api.KubernetesApiAdaptor
+import com.netflix.spinnaker.clouddriver.kubernetes.api.KubernetesNamespaceMirror
 import com.netflix.spinnaker.clouddriver.kubernetes.cache.Keys
 import com.netflix.spinnaker.clouddriver.kubernetes.deploy.KubernetesUtil
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesCredentials
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesCredentialsInitializer
 import com.netflix.spinnaker.clouddriver.security.AccountCredentialsRepository
 import io.fabric8.kubernetes.api.model.ObjectMeta
+import io.fabric8.kubernetes.api.model.Pod
 import io.fabric8.kubernetes.api.model.PodList
 import io.fabric8.kubernetes.api.model.ReplicationController
 import io.fabric8.kubernetes.api.model.ReplicationControllerList
@@ -120,4 +122,48 @@ class KubernetesServerGroupCachingAgentSpec extends Specification {
       result.cacheResults.instances.relationships.applications[0][0] == applicationKey
       result.cacheResults.instances.relationships.serverGroups[0][0] == serverGroupKey
   }
+
+  void "Should read replication controllers, pods, events and autoscalers from the namespace mirror when watching resources"() {
+    setup:
+      def replicationControllerMock = Mock(ReplicationController)
+      def replicationControllerMetadataMock = Mock(ObjectMeta)
+      def replicationControllerSpecMock = Mock(ReplicationControllerSpec)
+      def selector = ['replicationController': REPLICATION_CONTROLLER.toString()]
+      replicationControllerSpecMock.getSelector() >> selector
+      replicationControllerMetadataMock.getName() >> REPLICATION_CONTROLLER
+      replicationControllerMock.getMetadata() >> replicationControllerMetadataMock
+      replicationControllerMock.getSpec() >> replicationControllerSpecMock
+
+      def podMock = Mock(Pod)
+      def podMetadataMock = Mock(ObjectMeta)
+      podMetadataMock.getName() >> POD
+      podMock.getMetadata() >> podMetadataMock
+
+      def mirrorMock = Mock(KubernetesNamespaceMirror)
+      apiMock.getWatchResources() >> true
+      apiMock.getNamespaceMirror(NAMESPACE) >> mirrorMock
+
+      def providerCacheMock = Mock(ProviderCache)
+      providerCacheMock.getAll(_, _) >> []
+
+    when:
+      def result = cachingAgent.loadData(providerCacheMock)
+
+    then:
+      1 * mirrorMock.getReplicationControllers() >> [replicationControllerMock]
+      1 * mirrorMock.getReplicaSets() >> []
+      1 * mirrorMock.getEvents("ReplicationController") >> [:].withDefault { _ -> [] }
+      1 * mirrorMock.getEvents("ReplicaSet") >> [:].withDefault { _ -> [] }
+      1 * mirrorMock.getAutoscalers("replicationController") >> [:]
+      1 * mirrorMock.getAutoscalers("replicaSet") >> [:]
+      1 * mirrorMock.getPods(selector) >> [podMock]
+      0 * apiMock.getReplicationControllers(_)
+      0 * apiMock.getReplicaSets(_)
+      0 * apiMock.getEvents(_, _)
+      0 * apiMock.getAutoscalers(_, _)
+      0 * apiMock.getPods(_, _)
+
+      result.cacheResults.serverGroups.attributes.name == [REPLICATION_CONTROLLER]
+      result.cacheResults.serverGroups.relationships.instances[0][0] == instanceKey
+  }
 }
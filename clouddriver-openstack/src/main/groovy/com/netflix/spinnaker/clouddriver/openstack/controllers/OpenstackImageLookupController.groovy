@@ -16,7 +16,7 @@
 
 package com.netflix.spinnaker.clouddriver.openstack.controllers
 
-import com.netflix.spinnaker.cats.mem.InMemoryCache
+import com.netflix.spinnaker.cats.cache.Glob
 import com.netflix.spinnaker.clouddriver.openstack.model.Image
 import com.netflix.spinnaker.clouddriver.openstack.provider.ImageProvider
 import groovy.util.logging.Slf4j
@@ -72,6 +72,6 @@ class OpenstackImageLookupController {
     if (!glob.contains('*') && !glob.contains('?') && !glob.contains('[') && !glob.contains('\\')) {
       glob = "*${glob}*"
     }
-    new InMemoryCache.Glob(glob).toPattern()
+    new Glob(glob).toPattern()
   }
 }
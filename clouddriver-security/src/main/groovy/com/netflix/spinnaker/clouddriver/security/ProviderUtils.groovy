@@ -66,6 +66,7 @@ public class ProviderUtils {
         agentsToSchedule.each { agent ->
           agentScheduler.schedule(agent, agent.getAgentExecution(catsModule.providerRegistry), catsModule.executionInstrumentation)
         }
+        catsModule.agentsChanged()
       }
     }
   }
@@ -134,16 +135,23 @@ public class ProviderUtils {
         provider.agents.removeAll(agentsToDelete)
       }
     }
+    if (namesOfDeletedAccounts) {
+      catsModule?.agentsChanged()
+    }
   }
 
   /**
    * Request from Spring's application context each of the provider synchronizer type wrapper beans. It is expected that
    * the Accounts and Agents managed by each provider will be synchronized with the latest configured accounts as a
    * result of requesting these beans.
+   *
+   * Synchronizers schedule the agents they add before adding them to their provider, so the cats module is told that
+   * its agents changed once every provider is synchronized.
    */
-  public static void synchronizeAgentProviders(def appContext, def providerSynchronizerTypeWrappers) {
+  public static void synchronizeAgentProviders(def appContext, def providerSynchronizerTypeWrappers, def catsModule = null) {
     for (def providerSynchronizerTypeWrapper : providerSynchronizerTypeWrappers) {
       appContext.getBean(providerSynchronizerTypeWrapper.synchronizerType)
     }
+    catsModule?.agentsChanged()
   }
 }
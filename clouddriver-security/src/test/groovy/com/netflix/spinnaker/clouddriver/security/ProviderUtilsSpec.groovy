@@ -173,6 +173,7 @@ class ProviderUtilsSpec extends Specification {
     then:
       scheduler.scheduled.collect { it.agent } == [testAgent1, testAgent4]
       agentSchedulerAwareProvider.agents == [testAgent1, testAgent4]
+      catsModule.agentsVersion == 1
   }
 
   private static NetflixAmazonCredentials buildNetflixAmazonCredentials(String accountName) {
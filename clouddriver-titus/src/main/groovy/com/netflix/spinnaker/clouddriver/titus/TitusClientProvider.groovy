@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.titus
 
 import com.netflix.spinnaker.clouddriver.titus.credentials.NetflixTitusCredentials
 import com.netflix.spinnaker.clouddriver.titus.client.TitusClient
+import com.netflix.spinnaker.clouddriver.titus.client.TitusJobSnapshot
 import groovy.transform.Canonical
 
 class TitusClientProvider {
@@ -29,11 +30,19 @@ class TitusClientProvider {
   }
 
   TitusClient getTitusClient(NetflixTitusCredentials account, String region) {
+    getTitusClientHolder(account, region).titusClient
+  }
+
+  TitusJobSnapshot getJobSnapshot(NetflixTitusCredentials account, String region) {
+    getTitusClientHolder(account, region).jobSnapshot
+  }
+
+  private TitusClientHolder getTitusClientHolder(NetflixTitusCredentials account, String region) {
     TitusClientHolder titusClientHolder = titusClientHolders.find { it.account == account.name && it.region == region }
     if (!titusClientHolder) {
       throw new IllegalArgumentException("No titus client registered for account ${account.name} and region ${region}")
     }
-    titusClientHolder.titusClient
+    titusClientHolder
   }
 
   @Canonical
@@ -41,5 +50,6 @@ class TitusClientProvider {
     final String account
     final String region
     final TitusClient titusClient
+    final TitusJobSnapshot jobSnapshot
   }
 }
@@ -21,6 +21,8 @@ import com.netflix.spinnaker.clouddriver.security.AccountCredentialsRepository
 import com.netflix.spinnaker.clouddriver.titus.credentials.NetflixTitusCredentials
 import com.netflix.spinnaker.clouddriver.titus.deploy.handlers.TitusDeployHandler
 import com.netflix.spinnaker.clouddriver.titus.client.RegionScopedTitusClient
+import com.netflix.spinnaker.clouddriver.titus.client.TitusClient
+import com.netflix.spinnaker.clouddriver.titus.client.TitusJobSnapshot
 import com.netflix.spinnaker.clouddriver.titus.client.TitusRegion
 import groovy.util.logging.Slf4j
 import org.springframework.beans.factory.annotation.Value
@@ -33,6 +35,7 @@ import org.springframework.context.annotation.Configuration
 import org.springframework.context.annotation.DependsOn
 
 import javax.annotation.PostConstruct
+import java.util.concurrent.TimeUnit
 import java.util.regex.Pattern
 
 @Configuration
@@ -81,12 +84,18 @@ class TitusConfiguration {
   @Bean
   @DependsOn("netflixTitusCredentials")
   TitusClientProvider titusClientProvider(
-    @Value('#{netflixTitusCredentials}') List<NetflixTitusCredentials> netflixTitusCredentials, Registry registry) {
+    @Value('#{netflixTitusCredentials}') List<NetflixTitusCredentials> netflixTitusCredentials,
+    @Value('${titus.jobSnapshot.maxAgeSeconds:30}') long jobSnapshotMaxAgeSeconds,
+    Registry registry) {
     List<TitusClientProvider.TitusClientHolder> titusClientHolders = []
     netflixTitusCredentials.each { credentials ->
       credentials.regions.each { region ->
+        TitusClient titusClient = new RegionScopedTitusClient(region, registry)
         titusClientHolders << new TitusClientProvider.TitusClientHolder(
-          credentials.name, region.name, new RegionScopedTitusClient(region, registry)
+          credentials.name,
+          region.name,
+          titusClient,
+          new TitusJobSnapshot(titusClient, registry, credentials.name, region.name, TimeUnit.SECONDS.toMillis(jobSnapshotMaxAgeSeconds))
         )
       }
     }
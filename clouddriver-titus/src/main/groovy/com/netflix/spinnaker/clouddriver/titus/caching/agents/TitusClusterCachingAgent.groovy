@@ -37,7 +37,7 @@ import com.netflix.spinnaker.clouddriver.titus.TitusCloudProvider
 import com.netflix.spinnaker.clouddriver.titus.credentials.NetflixTitusCredentials
 import com.netflix.spinnaker.clouddriver.titus.caching.Keys
 import com.netflix.spinnaker.clouddriver.titus.caching.TitusCachingProvider
-import com.netflix.spinnaker.clouddriver.titus.client.TitusClient
+import com.netflix.spinnaker.clouddriver.titus.client.TitusJobSnapshot
 import com.netflix.spinnaker.clouddriver.titus.client.model.Job
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
@@ -61,7 +61,7 @@ class TitusClusterCachingAgent implements CachingAgent, OnDemandAgent {
   ] as Set)
 
   private final TitusCloudProvider titusCloudProvider
-  private final TitusClient titusClient
+  private final TitusJobSnapshot jobSnapshot
   private final NetflixTitusCredentials account
   private final String region
   private final ObjectMapper objectMapper
@@ -78,7 +78,7 @@ class TitusClusterCachingAgent implements CachingAgent, OnDemandAgent {
     this.account = account
     this.region = region
     this.objectMapper = objectMapper
-    this.titusClient = titusClientProvider.getTitusClient(account, region)
+    this.jobSnapshot = titusClientProvider.getJobSnapshot(account, region)
     this.registry = registry
     this.metricsSupport = new OnDemandMetricsSupport(registry, this, "${titusCloudProvider.id}:${OnDemandAgent.OnDemandType.ServerGroup}")
   }
@@ -135,7 +135,7 @@ class TitusClusterCachingAgent implements CachingAgent, OnDemandAgent {
 
     //TODO(cfieber) - this should just load a single server group and follow the same on-demand caching behaviour as the AWS provider
     List<Job> jobs = metricsSupport.readData {
-      titusClient.getAllJobs()
+      jobSnapshot.refresh()
     }
 
     CacheResult result = metricsSupport.transformData { buildCacheResult(jobs) }
@@ -200,7 +200,7 @@ class TitusClusterCachingAgent implements CachingAgent, OnDemandAgent {
 
   @Override
   CacheResult loadData(ProviderCache providerCache) {
-    List<Job> jobs = titusClient.getAllJobs()
+    List<Job> jobs = jobSnapshot.getJobs()
     CacheResult result = buildCacheResult(jobs)
     result
   }
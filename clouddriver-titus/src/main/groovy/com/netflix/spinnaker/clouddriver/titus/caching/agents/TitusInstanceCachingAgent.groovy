@@ -28,11 +28,12 @@ import com.netflix.spinnaker.clouddriver.titus.client.model.Job
 import com.netflix.spinnaker.clouddriver.titus.credentials.NetflixTitusCredentials
 import com.netflix.spinnaker.clouddriver.titus.caching.Keys
 import com.netflix.spinnaker.clouddriver.titus.caching.TitusCachingProvider
-import com.netflix.spinnaker.clouddriver.titus.client.TitusClient
+import com.netflix.spinnaker.clouddriver.titus.client.TitusJobSnapshot
 import com.netflix.spinnaker.clouddriver.titus.client.model.TaskState
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
+import java.util.function.Consumer
 
 import static com.netflix.spinnaker.clouddriver.titus.caching.Keys.Namespace.IMAGES
 import static com.netflix.spinnaker.clouddriver.titus.caching.Keys.Namespace.INSTANCES
@@ -101,17 +102,16 @@ class TitusInstanceCachingAgent implements CachingAgent {
     Map<String, CacheData> instances = cache()
     Map<String, CacheData> images = cache()
 
-    // Fetch ALL titus tasks
-    TitusClient titusClient = titusClientProvider.getTitusClient(account, region)
-    List<Job> jobs = titusClient.getAllJobs()
-    for (Job job : jobs) {
+    // Stream ALL titus tasks one job at a time, unless another agent of this region just fetched them
+    TitusJobSnapshot jobSnapshot = titusClientProvider.getJobSnapshot(account, region)
+    jobSnapshot.forEachJob({ Job job ->
       for (Job.TaskSummary task : job.tasks) {
         def data = new InstanceData(job, task, account.name, region)
         cacheImage(data, images)
         cacheServerGroup(data, serverGroups)
         cacheInstance(data, instances)
       }
-    }
+    } as Consumer<Job>)
 
     new DefaultCacheResult(
       (SERVER_GROUPS.ns): serverGroups.values(),
@@ -16,6 +16,8 @@
 
 package com.netflix.spinnaker.clouddriver.titus.client;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.frigga.Names;
 import com.netflix.spectator.api.Id;
@@ -25,6 +27,7 @@ import com.netflix.spinnaker.clouddriver.titus.model.TitusError;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,14 +37,15 @@ import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
 
 public class RegionScopedTitusClient implements TitusClient {
@@ -130,28 +134,80 @@ public class RegionScopedTitusClient implements TitusClient {
             if (success) {
                 return response.body();
             }
-            String errorMessage = response.message();
-            if (response != null && response.errorBody() != null) {
-                try {
-                  Converter<okhttp3.ResponseBody, TitusError> converter = retrofit.responseBodyConverter(TitusError.class, new Annotation[0]);
-                  TitusError error = converter.convert(response.errorBody());
-                  errorMessage = error.getMessage();
-                } catch( Exception e ){
-                }
+            throw new RuntimeException("response failed " + response.code() + " " + errorMessage(response));
+        } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+        } finally {
+            recordRequest(requestName, success, responseCode, startTime);
+        }
+
+    }
+
+    /**
+     * Reads a JSON array of jobs from the response body of call one job at a time, passing each to consumer.
+     * The request is recorded once the whole body has been read.
+     */
+    private void executeStreaming(String requestName, Call<ResponseBody> call, Consumer<Job> consumer) {
+        long startTime = System.nanoTime();
+        boolean success = false;
+        Integer responseCode = null;
+        try {
+            retrofit2.Response<ResponseBody> response = call.execute();
+            responseCode = response.code();
+            if (!response.isSuccess()) {
+                throw new RuntimeException("response failed " + response.code() + " " + errorMessage(response));
+            }
+            try (ResponseBody body = response.body()) {
+                readJobs(objectMapper, body.byteStream(), consumer);
             }
-            throw new RuntimeException("response failed " + response.code() + " " + errorMessage);
+            success = true;
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
         } finally {
-            Id timerId = registry.createId("titus.request")
-              .withTag("titusAccount", titusRegion.getAccount())
-              .withTag("titusRegion", titusRegion.getName())
-              .withTag("request", requestName)
-              .withTag("success", Boolean.toString(success))
-              .withTag("responseCode", Optional.ofNullable(responseCode).map(Object::toString).orElse("UNKNOWN"));
-            registry.timer(timerId).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            recordRequest(requestName, success, responseCode, startTime);
         }
+    }
 
+    /**
+     * Reads a JSON array of jobs from body one job at a time, passing each to consumer.
+     *
+     * @throws IOException if body is not a complete array of jobs
+     */
+    static void readJobs(ObjectMapper objectMapper, InputStream body, Consumer<Job> consumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a list of jobs but found " + parser.getCurrentToken());
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(objectMapper.readValue(parser, Job.class));
+            }
+            if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Expected a job or the end of the list of jobs but found " + parser.getCurrentToken());
+            }
+        }
+    }
+
+    private String errorMessage(retrofit2.Response<?> response) {
+        String errorMessage = response.message();
+        if (response.errorBody() != null) {
+            try {
+              Converter<okhttp3.ResponseBody, TitusError> converter = retrofit.responseBodyConverter(TitusError.class, new Annotation[0]);
+              TitusError error = converter.convert(response.errorBody());
+              errorMessage = error.getMessage();
+            } catch( Exception e ){
+            }
+        }
+        return errorMessage;
+    }
+
+    private void recordRequest(String requestName, boolean success, Integer responseCode, long startTime) {
+        Id timerId = registry.createId("titus.request")
+          .withTag("titusAccount", titusRegion.getAccount())
+          .withTag("titusRegion", titusRegion.getName())
+          .withTag("request", requestName)
+          .withTag("success", Boolean.toString(success))
+          .withTag("responseCode", Optional.ofNullable(responseCode).map(Object::toString).orElse("UNKNOWN"));
+        registry.timer(timerId).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -166,7 +222,14 @@ public class RegionScopedTitusClient implements TitusClient {
 
     @Override
     public List<Job> findJobsByApplication(String application) {
-        return execute("getJobsByApplication", titusRestAdapter.getJobsByApplication(application));
+        List<Job> jobs = new ArrayList<>();
+        streamJobsByApplication(application, jobs::add);
+        return jobs;
+    }
+
+    @Override
+    public void streamJobsByApplication(String application, Consumer<Job> consumer) {
+        executeStreaming("getJobsByApplication", titusRestAdapter.streamJobsByApplication(application), consumer);
     }
 
     @Override
@@ -248,19 +311,21 @@ public class RegionScopedTitusClient implements TitusClient {
      */
     @Override
     public List<Job> getAllJobs() {
-        return getAllJobsStream().collect(Collectors.toList());
+        List<Job> jobs = new ArrayList<>();
+        streamAllJobs(jobs::add);
+        return jobs;
     }
 
     @Override
     public List<Job.TaskSummary> getAllTasks() {
-
-        return getAllJobsStream()
-                .flatMap(j -> j.getTasks().stream())
-                .collect(Collectors.toList());
+        List<Job.TaskSummary> tasks = new ArrayList<>();
+        streamAllJobs(job -> tasks.addAll(job.getTasks()));
+        return tasks;
     }
 
-    private Stream<Job> getAllJobsStream() {
-        return execute("getJobsByType", titusRestAdapter.getJobsByType("service")).stream();
+    @Override
+    public void streamAllJobs(Consumer<Job> consumer) {
+        executeStreaming("getJobsByType", titusRestAdapter.streamJobsByType("service"), consumer);
     }
 
 }
@@ -20,6 +20,7 @@ import com.netflix.spinnaker.clouddriver.titus.client.model.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface TitusClient {
 
@@ -99,6 +100,8 @@ public interface TitusClient {
     public TitusHealth getHealth();
 
     /**
+     * Holds every service job at once; callers that can handle one job at a time should use streamAllJobs.
+     *
      * @return
      */
     public List<Job> getAllJobs();
@@ -108,4 +111,19 @@ public interface TitusClient {
      */
     public List<Job.TaskSummary> getAllTasks();
 
+    /**
+     * Passes each service job to consumer as it is read from the response, without holding the whole list.
+     *
+     * @param consumer
+     */
+    public void streamAllJobs(Consumer<Job> consumer);
+
+    /**
+     * Passes each job of application to consumer as it is read from the response, without holding the whole list.
+     *
+     * @param application
+     * @param consumer
+     */
+    public void streamJobsByApplication(String application, Consumer<Job> consumer);
+
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.titus.client;
+
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.clouddriver.titus.client.model.Job;
+
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The jobs of a Titus region, fetched at most once per maxAgeMs and shared by every caller.
+ * <p>
+ * The caching agents of a region each need every job of the region; rather than each of them fetching
+ * (and deserializing) all jobs, the first caller after the snapshot expires fetches them and concurrent
+ * callers wait for and share that fetch. Snapshots are immutable.
+ * <p>
+ * Since it is shared, a snapshot holds every job of the region. Jobs are streamed from the response into the
+ * snapshot, so the response body is not buffered as well. Callers that handle one job at a time use forEachJob,
+ * which streams the jobs from Titus unless a fresh snapshot is already held.
+ * The snapshot is held softly: between caching cycles, once its callers are done with it, the garbage collector
+ * may reclaim it before the next caller replaces it.
+ */
+public class TitusJobSnapshot {
+    private static final String REQUEST_NAME = "getJobsByType";
+
+    private final TitusClient titusClient;
+    private final Registry registry;
+    private final long maxAgeMs;
+    private final Id ageId;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private volatile SoftReference<Snapshot> current = new SoftReference<>(null);
+
+    /**
+     * @param maxAgeMs how long a snapshot is shared before the next caller fetches a new one
+     */
+    public TitusJobSnapshot(TitusClient titusClient, Registry registry, String account, String region, long maxAgeMs) {
+        this.titusClient = titusClient;
+        this.registry = registry;
+        this.maxAgeMs = maxAgeMs;
+        this.ageId = registry.createId("titus.snapshot.age")
+            .withTag("titusAccount", account)
+            .withTag("titusRegion", region)
+            .withTag("request", REQUEST_NAME);
+        registry.gauge(registry.createId("titus.snapshot.size")
+            .withTag("titusAccount", account)
+            .withTag("titusRegion", region)
+            .withTag("request", REQUEST_NAME), size);
+    }
+
+    /**
+     * @return the jobs of the current snapshot, fetching a new snapshot if it is older than maxAgeMs
+     */
+    public List<Job> getJobs() {
+        Snapshot snapshot = current.get();
+        if (snapshot == null || age(snapshot) >= maxAgeMs) {
+            synchronized (this) {
+                snapshot = current.get();
+                if (snapshot == null || age(snapshot) >= maxAgeMs) {
+                    snapshot = fetch();
+                }
+            }
+        }
+        registry.distributionSummary(ageId).record(age(snapshot));
+        return snapshot.jobs;
+    }
+
+    /**
+     * Passes each job to consumer, from the current snapshot if it is younger than maxAgeMs, and otherwise as it is
+     * read from Titus, without fetching a snapshot or holding every job at once.
+     */
+    public void forEachJob(Consumer<Job> consumer) {
+        final Snapshot snapshot = current.get();
+        if (snapshot != null && age(snapshot) < maxAgeMs) {
+            registry.distributionSummary(ageId).record(age(snapshot));
+            snapshot.jobs.forEach(consumer);
+            return;
+        }
+        titusClient.streamAllJobs(consumer);
+    }
+
+    /**
+     * Fetches a new snapshot regardless of the age of the current one, for callers that need the latest jobs.
+     */
+    public synchronized List<Job> refresh() {
+        return fetch().jobs;
+    }
+
+    private Snapshot fetch() {
+        final Snapshot snapshot = new Snapshot(Collections.unmodifiableList(titusClient.getAllJobs()), registry.clock().wallTime());
+        size.set(snapshot.jobs.size());
+        current = new SoftReference<>(snapshot);
+        return snapshot;
+    }
+
+    private long age(Snapshot snapshot) {
+        return registry.clock().wallTime() - snapshot.fetchedAt;
+    }
+
+    private static class Snapshot {
+        private final List<Job> jobs;
+        private final long fetchedAt;
+
+        Snapshot(List<Job> jobs, long fetchedAt) {
+            this.jobs = jobs;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
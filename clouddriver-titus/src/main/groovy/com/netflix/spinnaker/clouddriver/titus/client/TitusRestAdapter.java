@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.titus.client;
 
 import com.netflix.spinnaker.clouddriver.titus.client.model.*;
 import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.*;
 
@@ -44,17 +45,19 @@ public interface TitusRestAdapter {
     @GET("/v2/jobs")
     Call<List<Job>> getJobsByTaskState(@Query("taskState") TaskState taskState);
 
-    @GET("/v2/jobs")
-    Call<List<Job>> getJobsByType(@Query("type") String type);
-
     @GET("/v2/jobs")
     Call<List<Job>> getJobsByLabel(@Query("labels") String labels);
 
     @GET("/v2/jobs")
     Call<List<Job>> getJobsByUser(@Query("user") String user);
 
+    @Streaming
+    @GET("/v2/jobs")
+    Call<ResponseBody> streamJobsByType(@Query("type") String type);
+
+    @Streaming
     @GET("/v2/jobs")
-    Call<List<Job>> getJobsByApplication(@Query("appName") String application);
+    Call<ResponseBody> streamJobsByApplication(@Query("appName") String application);
 
     @POST("/v2/tasks/terminate/{taskId}")
     Call<Void> terminateTask(@Path("taskId") String taskId);
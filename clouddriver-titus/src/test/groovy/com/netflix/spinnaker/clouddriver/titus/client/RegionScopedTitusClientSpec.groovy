@@ -25,6 +25,10 @@ import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import spock.lang.Ignore
 import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+import java.util.function.Consumer
 
 class RegionScopedTitusClientSpec extends Specification {
 
@@ -207,4 +211,57 @@ class RegionScopedTitusClientSpec extends Specification {
     !foundAfterTermination
 
   }
+
+  void 'reads each job of a response as it is parsed'() {
+    given:
+    String body = """[
+      {"id": "titus-1", "name": "app-v001", "unknown": {"nested": [1, {"id": "ignored"}]}, "tasks": [{"id": "task-1", "state": "RUNNING"}]},
+      {"id": "titus-2", "name": "app-v002", "tasks": []}
+    ]"""
+    List<Job> jobs = []
+
+    when:
+    RegionScopedTitusClient.readJobs(TitusClientObjectMapper.configure(), stream(body), { Job job -> jobs << job } as Consumer<Job>)
+
+    then:
+    jobs*.id == ['titus-1', 'titus-2']
+    jobs*.name == ['app-v001', 'app-v002']
+    jobs[0].tasks*.id == ['task-1']
+    jobs[0].tasks[0].state == TaskState.RUNNING
+    jobs[1].tasks.isEmpty()
+  }
+
+  void 'reads an empty list of jobs'() {
+    given:
+    List<Job> jobs = []
+
+    when:
+    RegionScopedTitusClient.readJobs(TitusClientObjectMapper.configure(), stream('[]'), { Job job -> jobs << job } as Consumer<Job>)
+
+    then:
+    jobs.isEmpty()
+  }
+
+  @Unroll
+  void 'rejects a response that is not a complete list of jobs: #body'() {
+    given:
+    List<Job> jobs = []
+
+    when:
+    RegionScopedTitusClient.readJobs(TitusClientObjectMapper.configure(), stream(body), { Job job -> jobs << job } as Consumer<Job>)
+
+    then:
+    thrown(IOException)
+    jobs*.id == read
+
+    where:
+    body                             || read
+    '{"id": "titus-1"}'              || []
+    '[{"id": "titus-1"}, "titus-2"]' || ['titus-1']
+    '[{"id": "titus-1"}'             || ['titus-1']
+  }
+
+  private static InputStream stream(String body) {
+    new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))
+  }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.titus.client
+
+import com.netflix.spectator.api.DefaultRegistry
+import com.netflix.spectator.api.ManualClock
+import com.netflix.spinnaker.clouddriver.titus.client.model.Job
+import spock.lang.Specification
+
+import java.util.function.Consumer
+
+class TitusJobSnapshotSpec extends Specification {
+
+  ManualClock clock = new ManualClock()
+  TitusClient titusClient = Mock(TitusClient)
+  TitusJobSnapshot jobSnapshot = new TitusJobSnapshot(titusClient, new DefaultRegistry(clock), 'test', 'us-east-1', 30000)
+
+  void 'shares a snapshot until it is older than its max age'() {
+    setup:
+    def first = [new Job(id: '1')]
+    def second = [new Job(id: '2')]
+
+    when:
+    def jobs = [jobSnapshot.jobs, jobSnapshot.jobs]
+
+    then:
+    1 * titusClient.getAllJobs() >> first
+    jobs == [first, first]
+
+    when:
+    clock.setWallTime(30000)
+    jobs = jobSnapshot.jobs
+
+    then:
+    1 * titusClient.getAllJobs() >> second
+    jobs == second
+  }
+
+  void 'refresh always fetches a new snapshot that is then shared'() {
+    setup:
+    def first = [new Job(id: '1')]
+    def second = [new Job(id: '2')]
+
+    when:
+    jobSnapshot.jobs
+    def refreshed = jobSnapshot.refresh()
+    def jobs = jobSnapshot.jobs
+
+    then:
+    2 * titusClient.getAllJobs() >>> [first, second]
+    refreshed == second
+    jobs == second
+  }
+
+  void 'fetches a new snapshot once the held one was reclaimed, even if it was not yet stale'() {
+    setup:
+    def first = [new Job(id: '1')]
+    def second = [new Job(id: '2')]
+
+    when:
+    jobSnapshot.jobs
+    jobSnapshot.@current.clear()
+    def jobs = jobSnapshot.jobs
+
+    then:
+    2 * titusClient.getAllJobs() >>> [first, second]
+    jobs == second
+  }
+
+  void 'forEachJob shares a fresh snapshot, and otherwise streams the jobs without fetching a snapshot'() {
+    setup:
+    def snapshotJobs = [new Job(id: '1')]
+    def seen = []
+
+    when:
+    jobSnapshot.forEachJob { seen << it.id }
+
+    then:
+    1 * titusClient.streamAllJobs(_) >> { Consumer<Job> consumer -> consumer.accept(new Job(id: 'streamed')) }
+    0 * titusClient.getAllJobs()
+    seen == ['streamed']
+
+    when:
+    seen.clear()
+    jobSnapshot.jobs
+    jobSnapshot.forEachJob { seen << it.id }
+
+    then:
+    1 * titusClient.getAllJobs() >> snapshotJobs
+    0 * titusClient.streamAllJobs(_)
+    seen == ['1']
+
+    when:
+    seen.clear()
+    clock.setWallTime(30000)
+    jobSnapshot.forEachJob { seen << it.id }
+
+    then:
+    1 * titusClient.streamAllJobs(_) >> { Consumer<Job> consumer -> consumer.accept(new Job(id: 'streamed')) }
+    0 * titusClient.getAllJobs()
+    seen == ['streamed']
+  }
+
+  void 'snapshots can not be modified by their callers'() {
+    when:
+    jobSnapshot.jobs.add(new Job(id: '2'))
+
+    then:
+    1 * titusClient.getAllJobs() >> [new Job(id: '1')]
+    thrown(UnsupportedOperationException)
+  }
+}
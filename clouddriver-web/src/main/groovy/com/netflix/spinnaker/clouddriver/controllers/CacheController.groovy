@@ -16,6 +16,7 @@
 
 package com.netflix.spinnaker.clouddriver.controllers
 
+import com.netflix.spinnaker.clouddriver.cache.AgentTelemetryInstrumentation
 import com.netflix.spinnaker.clouddriver.cache.OnDemandAgent
 import com.netflix.spinnaker.clouddriver.cache.OnDemandCacheUpdater
 import org.springframework.beans.factory.annotation.Autowired
@@ -31,6 +32,18 @@ class CacheController {
   @Autowired
   List<OnDemandCacheUpdater> onDemandCacheUpdaters
 
+  @Autowired(required = false)
+  AgentTelemetryInstrumentation agentTelemetryInstrumentation
+
+  /**
+   * The caching agents of this node with the longest average execution time, with the phase timings and
+   * result sizes of their latest execution.
+   */
+  @RequestMapping(method = RequestMethod.GET, value = "/agents")
+  List<Map> slowestAgents(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+    agentTelemetryInstrumentation?.getSlowestAgents(limit) ?: []
+  }
+
   @RequestMapping(method = RequestMethod.POST, value = "/{cloudProvider}/{type}")
   ResponseEntity handleOnDemand(@PathVariable String cloudProvider,
                                 @PathVariable String type,